@@ -0,0 +1,111 @@
+package cfml.benchmarks;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cfml.parsing.CFMLParser;
+import cfml.parsing.analysis.AnalysisContext;
+import cfml.parsing.analysis.AnalysisEngine;
+import cfml.parsing.analysis.AnalysisRule;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * Runs a number of small rules over the statement trees of the corpus, each with an engine of its own as if every
+ * rule walked the trees itself, and all together in one engine. The trees are parsed once in the setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AnalysisBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	@Param({ "1", "10", "100" })
+	public int rules;
+	
+	private List<CFScriptStatement> trees;
+	private List<AnalysisEngine> separate;
+	private AnalysisEngine combined;
+	
+	@Setup
+	public void setUp() {
+		trees = new ArrayList<CFScriptStatement>();
+		final CFMLParser parser = new CFMLParser();
+		for (String script : Corpus.scripts(kind)) {
+			try {
+				final CFScriptStatement tree = parser.parseScript(script);
+				if (tree != null) {
+					trees.add(tree);
+				}
+			} catch (Exception e) {
+				// not a valid script
+			}
+			parser.reset();
+		}
+		final List<AnalysisRule> all = new ArrayList<AnalysisRule>();
+		separate = new ArrayList<AnalysisEngine>();
+		for (int i = 0; i < rules; i++) {
+			final IdentifierRule rule = new IdentifierRule("rule" + i, "name" + i);
+			all.add(rule);
+			separate.add(new AnalysisEngine(Collections.singletonList(rule), 1));
+		}
+		combined = new AnalysisEngine(all, 1);
+	}
+	
+	@Benchmark
+	public int separateWalks() {
+		int findings = 0;
+		for (AnalysisEngine engine : separate) {
+			findings += engine.analyze(Paths.get(kind), trees).size();
+		}
+		return findings;
+	}
+	
+	@Benchmark
+	public int oneWalk() {
+		return combined.analyze(Paths.get(kind), trees).size();
+	}
+	
+	/**
+	 * Counts the identifiers with a name, like a rule looking for a variable.
+	 */
+	private static class IdentifierRule extends AnalysisRule {
+		
+		private final String identifier;
+		private final AtomicLong seen = new AtomicLong();
+		
+		IdentifierRule(String name, String identifier) {
+			super(name, CFIdentifier.class);
+			this.identifier = identifier;
+		}
+		
+		@Override
+		public void enterExpression(CFExpression expression, AnalysisContext context) {
+			if (identifier.equalsIgnoreCase(((CFIdentifier) expression).getName())) {
+				seen.incrementAndGet();
+			}
+		}
+	}
+}
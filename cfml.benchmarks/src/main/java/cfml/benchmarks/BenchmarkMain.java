@@ -0,0 +1,42 @@
+package cfml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the usual JMH command line options. Unless told otherwise the GC profiler is added, so the
+ * allocation rate is reported next to throughput and latency, and the results are also written to jmh-result.json.
+ * The corpus directory is resolved here and passed to the forks as an absolute path, so they find it whatever their
+ * working directory.
+ */
+public class BenchmarkMain {
+	
+	public static void main(String[] args) throws Exception {
+		final CommandLineOptions commandLine = new CommandLineOptions(args);
+		final ChainedOptionsBuilder options = new OptionsBuilder().parent(commandLine);
+		if (commandLine.getProfilers().isEmpty()) {
+			options.addProfiler(GCProfiler.class);
+		}
+		if (!commandLine.getResultFormat().hasValue()) {
+			options.resultFormat(ResultFormatType.JSON);
+		}
+		final List<String> jvmArgs = new ArrayList<String>();
+		if (commandLine.getJvmArgsAppend().hasValue()) {
+			jvmArgs.addAll(commandLine.getJvmArgsAppend().get());
+		}
+		try {
+			jvmArgs.add("-D" + Corpus.PROPERTY + "=" + Corpus.directory().toAbsolutePath().normalize());
+		} catch (IllegalStateException e) {
+			// no corpus here, the benchmarks that need one report it
+		}
+		options.jvmArgsAppend(jvmArgs.toArray(new String[jvmArgs.size()]));
+		new Runner(options.build()).run();
+	}
+}
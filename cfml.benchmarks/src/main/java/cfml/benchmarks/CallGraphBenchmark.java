@@ -0,0 +1,100 @@
+package cfml.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cfml.parsing.CFMLProjectParser;
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ProjectParseResult;
+import cfml.parsing.index.CallGraph;
+import cfml.parsing.index.SymbolIndex;
+
+/**
+ * Builds the call graph of a parsed project on one and on several threads, and updates it for one changed file. The
+ * large kind has 100 synthetic components of 50 functions each, written to a temporary directory, each creating the
+ * next one and calling a function of it. The project is parsed once in the setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CallGraphBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	@Param({ "1", "4" })
+	public int threads;
+	
+	private Path temp;
+	private ProjectParseResult project;
+	private CallGraph graph;
+	private FileParseResult changed;
+	
+	@Setup
+	public void setUp() throws IOException, InterruptedException {
+		temp = Files.createTempDirectory("calls");
+		Path root = Corpus.directory();
+		if (Corpus.LARGE.equals(kind)) {
+			root = temp.resolve("app");
+			final String source = Corpus.largeScript(50);
+			final int end = source.lastIndexOf('}');
+			for (int i = 0; i < 100; i++) {
+				final Path file = root.resolve("pkg" + i % 10).resolve("Component" + i + ".cfc");
+				final int next = (i + 1) % 100;
+				final String calls = "\tfunction callNext() {\n\t\tvar next = new pkg" + next % 10 + ".Component" + next
+						+ "();\n\t\treturn next.fn" + i % 50 + "(\"a\");\n\t}\n";
+				Files.createDirectories(file.getParent());
+				Files.write(file, (source.substring(0, end) + calls + "}\n").getBytes(StandardCharsets.UTF_8));
+			}
+		}
+		project = new CFMLProjectParser().parse(root);
+		graph = new CallGraph(new SymbolIndex(root), threads);
+		graph.update(project.getResults());
+		final List<FileParseResult> results = project.getResults();
+		changed = results.isEmpty() ? null : results.get(results.size() / 2);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(temp)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+	
+	@Benchmark
+	public CallGraph build() throws InterruptedException {
+		final CallGraph built = new CallGraph(new SymbolIndex(project.getRoot()), threads);
+		built.update(project.getResults());
+		return built;
+	}
+	
+	@Benchmark
+	public int updateOne() throws InterruptedException {
+		if (changed != null) {
+			graph.update(changed);
+		}
+		return graph.size();
+	}
+}
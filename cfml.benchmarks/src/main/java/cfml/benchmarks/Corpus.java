@@ -0,0 +1,169 @@
+package cfml.benchmarks;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * The sources the benchmarks run over: the test corpus of cfml.parsing, or synthetic files large enough to show how
+ * the parser scales.
+ *
+ * The corpus directory is taken from the system property <code>cfml.benchmarks.corpus</code>, falling back to the
+ * cfml.parsing test resources relative to the working directory. {@link BenchmarkMain} resolves it once and hands the
+ * absolute path to the forked benchmark JVMs.
+ */
+final class Corpus {
+	
+	/** the corpus of cfml.parsing */
+	static final String CORPUS = "corpus";
+	/** one synthetic script component of a few hundred kilobytes */
+	static final String LARGE = "large";
+	
+	/** the system property naming the corpus directory */
+	static final String PROPERTY = "cfml.benchmarks.corpus";
+	
+	private static final String[] CANDIDATES = { "../cfml.parsing/src/test/resources/cfml",
+			"cfml.parsing/src/test/resources/cfml" };
+	
+	private Corpus() {
+	}
+	
+	static Path directory() {
+		final String configured = System.getProperty(PROPERTY);
+		if (configured != null) {
+			return Paths.get(configured);
+		}
+		for (String candidate : CANDIDATES) {
+			final Path path = Paths.get(candidate);
+			if (Files.isDirectory(path)) {
+				return path;
+			}
+		}
+		throw new IllegalStateException("Corpus not found, set -D" + PROPERTY + "=<dir>");
+	}
+	
+	/**
+	 * @return the script components (.cfc files not starting with a tag) of the corpus
+	 */
+	static List<String> scripts() {
+		final List<String> scripts = new ArrayList<String>();
+		for (String source : sources(".cfc")) {
+			if (!source.trim().startsWith("<")) {
+				scripts.add(source);
+			}
+		}
+		return scripts;
+	}
+	
+	/**
+	 * @return the tag based sources of the corpus
+	 */
+	static List<String> tagSources() {
+		final List<String> tags = new ArrayList<String>();
+		for (String source : sources(".cfm", ".cfc")) {
+			if (source.trim().startsWith("<")) {
+				tags.add(source);
+			}
+		}
+		return tags;
+	}
+	
+	/**
+	 * @param kind {@link #CORPUS} or {@link #LARGE}
+	 * @return the script sources of the given kind
+	 */
+	static List<String> scripts(String kind) {
+		if (LARGE.equals(kind)) {
+			final List<String> large = new ArrayList<String>();
+			large.add(largeScript(2000));
+			return large;
+		}
+		return scripts();
+	}
+	
+	/**
+	 * @param kind {@link #CORPUS} or {@link #LARGE}
+	 * @return the tag based sources of the given kind
+	 */
+	static List<String> tagSources(String kind) {
+		if (LARGE.equals(kind)) {
+			final List<String> large = new ArrayList<String>();
+			large.add(largeTagSource(1000));
+			return large;
+		}
+		return tagSources();
+	}
+	
+	private static List<String> sources(String... extensions) {
+		try (Stream<Path> paths = Files.walk(directory())) {
+			final List<Path> files = paths.filter(path -> {
+				final String name = path.getFileName().toString().toLowerCase();
+				for (String extension : extensions) {
+					if (name.endsWith(extension)) {
+						return true;
+					}
+				}
+				return false;
+			}).sorted().collect(Collectors.toList());
+			final List<String> sources = new ArrayList<String>(files.size());
+			for (Path file : files) {
+				sources.add(new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+			}
+			return sources;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+	
+	/**
+	 * @param functions the number of functions
+	 * @return a script component with the given number of functions
+	 */
+	static String largeScript(int functions) {
+		final StringBuilder sb = new StringBuilder("component extends=\"base\" accessors=\"true\" {\n");
+		for (int i = 0; i < functions; i++) {
+			sb.append("\tproperty name=\"prop").append(i).append("\" type=\"string\";\n");
+			sb.append("\tpublic any function fn").append(i).append("(required string a, numeric b = ").append(i)
+					.append(") {\n");
+			sb.append("\t\tvar result = { name = a, total = b * 2 + ").append(i).append(", items = [1, 2, 3] };\n");
+			sb.append("\t\tif (structKeyExists(result, \"name\") && result.total GT ").append(i).append(") {\n");
+			sb.append("\t\t\tfor (var i = 1; i <= arrayLen(result.items); i++) {\n");
+			sb.append("\t\t\t\tresult.total += result.items[i];\n");
+			sb.append("\t\t\t}\n");
+			sb.append("\t\t} else {\n");
+			sb.append("\t\t\tresult.name = \"fn").append(i).append(": \" & a;\n");
+			sb.append("\t\t}\n");
+			sb.append("\t\treturn result;\n");
+			sb.append("\t}\n");
+		}
+		return sb.append("}\n").toString();
+	}
+	
+	/**
+	 * @param functions the number of functions
+	 * @return a tag based component with the given number of functions
+	 */
+	static String largeTagSource(int functions) {
+		final StringBuilder sb = new StringBuilder("<cfcomponent output=\"false\">\n");
+		for (int i = 0; i < functions; i++) {
+			sb.append("\t<cffunction name=\"fn").append(i).append("\" access=\"public\" returntype=\"any\">\n");
+			sb.append("\t\t<cfargument name=\"a\" type=\"string\" required=\"true\">\n");
+			sb.append("\t\t<cfset var total = len(arguments.a) + ").append(i).append(">\n");
+			sb.append("\t\t<cfif total GT ").append(i).append(">\n");
+			sb.append("\t\t\t<cfset total = total * 2>\n");
+			sb.append("\t\t<cfelse>\n");
+			sb.append("\t\t\t<cfscript>total = max(total, ").append(i).append(");</cfscript>\n");
+			sb.append("\t\t</cfif>\n");
+			sb.append("\t\t<cfreturn total>\n");
+			sb.append("\t</cffunction>\n");
+		}
+		return sb.append("</cfcomponent>\n").toString();
+	}
+}
@@ -0,0 +1,47 @@
+package cfml.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cfml.dictionary.DictionaryManager;
+import cfml.dictionary.SyntaxDictionary;
+import cfml.dictionary.preferences.DictionaryPreferences;
+
+/**
+ * Loads the default syntax dictionary. DictionaryManager.initDictionaries only loads once per JVM, so the benchmark
+ * measures getDictionaryByVersion, which does the actual loading for initDictionaries and builds a new dictionary on
+ * every call: from the precompiled DictionaryImage next to each XML file when the build made one, from the XML
+ * otherwise.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({ Mode.AverageTime, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class DictionaryBenchmark {
+	
+	private String version;
+	
+	@Setup
+	public void setUp() {
+		final DictionaryPreferences prefs = new DictionaryPreferences();
+		DictionaryManager.initDictionaries(prefs);
+		version = prefs.getCFDictionary();
+	}
+	
+	@Benchmark
+	public SyntaxDictionary loadDictionary() {
+		return DictionaryManager.getDictionaryByVersion(version);
+	}
+}
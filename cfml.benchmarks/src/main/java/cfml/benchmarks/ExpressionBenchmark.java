@@ -0,0 +1,50 @@
+package cfml.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.parsing.CFMLParser;
+
+/**
+ * Parses typical tag attribute expressions with parseCFExpression, as the tag walk does for cfset, cfif and cfreturn.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ExpressionBenchmark {
+	
+	private static final String[] EXPRESSIONS = { "a = 1", "var total = len(arguments.a) + 5",
+			"structKeyExists(url, \"id\") AND isNumeric(url.id)", "x.y[\"z\"].call(1, 'two', [3, 4], { five = 5 })",
+			"not isDefined(\"session.user\") or session.user.id EQ 0", "(a + b) * c / d - e MOD f",
+			"result = obj?.value ?: \"default\"", "list = listAppend(list, \"#prefix#_#i#\")" };
+	
+	private CFMLParser parser;
+	
+	@Setup
+	public void setUp() {
+		parser = new CFMLParser();
+	}
+	
+	@Benchmark
+	public void parseCFExpression(Blackhole blackhole) throws Exception {
+		for (String expression : EXPRESSIONS) {
+			blackhole.consume(parser.parseCFExpression(expression, null));
+			parser.reset();
+		}
+		parser.clearMessages();
+	}
+}
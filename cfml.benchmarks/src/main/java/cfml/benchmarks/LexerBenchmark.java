@@ -0,0 +1,54 @@
+package cfml.benchmarks;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.CFSCRIPTLexer;
+
+/**
+ * Tokenizes every script of the corpus with the CFSCRIPTLexer.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LexerBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private List<String> scripts;
+	
+	@Setup
+	public void setUp() {
+		scripts = Corpus.scripts(kind);
+	}
+	
+	@Benchmark
+	public void tokenize(Blackhole blackhole) {
+		for (String script : scripts) {
+			final CFSCRIPTLexer lexer = new CFSCRIPTLexer(CharStreams.fromString(script));
+			lexer.removeErrorListeners();
+			final CommonTokenStream tokens = new CommonTokenStream(lexer);
+			tokens.fill();
+			blackhole.consume(tokens.size());
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package cfml.benchmarks;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.parsing.util.PoundSignFilter;
+import cfml.parsing.util.PoundSignFilterStream;
+
+/**
+ * Filters the pound sign expressions out of every script of the corpus, with the char at a time PoundSignFilterStream
+ * and with the bulk PoundSignFilter. Scripts the filters reject, e.g. for an unclosed string, are left out.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@SuppressWarnings("deprecation")
+public class PoundSignFilterBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private List<String> scripts;
+	private final char[] buffer = new char[8192];
+	private final PoundSignFilter filter = new PoundSignFilter();
+	
+	@Setup
+	public void setUp() {
+		scripts = new ArrayList<String>();
+		for (String script : Corpus.scripts(kind)) {
+			try {
+				filter.filter(script);
+				scripts.add(script);
+			} catch (RuntimeException e) {
+				// not a valid script
+			}
+		}
+	}
+	
+	@Benchmark
+	public void stream(Blackhole blackhole) throws IOException {
+		for (String script : scripts) {
+			final PoundSignFilterStream stream = new PoundSignFilterStream(new StringReader(script));
+			int read;
+			while ((read = stream.read(buffer, 0, buffer.length)) != -1) {
+				blackhole.consume(read);
+			}
+			stream.close();
+		}
+	}
+	
+	@Benchmark
+	public void filter(Blackhole blackhole) {
+		for (String script : scripts) {
+			blackhole.consume(filter.filter(script).length());
+		}
+	}
+}
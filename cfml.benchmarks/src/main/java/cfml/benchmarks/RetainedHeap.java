@@ -0,0 +1,84 @@
+package cfml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import cfml.parsing.CFMLParser;
+import cfml.parsing.TokenRetention;
+import cfml.parsing.cfscript.flat.FlatTree;
+import cfml.parsing.cfscript.flat.StringPool;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * Measures the heap held by the statement trees of the corpus for each {@link TokenRetention}: the corpus is parsed a
+ * number of times, all trees are kept, and the used heap after a full GC is compared with the heap before parsing. The
+ * same is measured for the trees flattened into {@link FlatTree}s sharing one string pool.
+ *
+ * Usage: <code>java -cp target/benchmarks.jar cfml.benchmarks.RetainedHeap [copies]</code>
+ */
+public class RetainedHeap {
+	
+	public static void main(String[] args) throws Exception {
+		final int copies = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		final List<String> scripts = Corpus.scripts();
+		System.out.println("scripts: " + scripts.size() + " x " + copies);
+		for (TokenRetention retention : TokenRetention.values()) {
+			final CFMLParser parser = new CFMLParser();
+			parser.setTokenRetention(retention);
+			// warm up the DFA so it is not counted
+			parse(parser, scripts);
+			final long before = usedHeap();
+			final List<CFScriptStatement> trees = new ArrayList<CFScriptStatement>();
+			for (int i = 0; i < copies; i++) {
+				trees.addAll(parse(parser, scripts));
+			}
+			final long retained = usedHeap() - before;
+			System.out.printf("%-10s trees: %6d retained: %8d KB (%d bytes per tree)%n", retention, trees.size(),
+					retained / 1024, trees.isEmpty() ? 0 : retained / trees.size());
+			trees.clear();
+		}
+		final CFMLParser parser = new CFMLParser();
+		parser.setTokenRetention(TokenRetention.POSITIONS);
+		final long before = usedHeap();
+		final StringPool pool = new StringPool();
+		final List<FlatTree> flat = new ArrayList<FlatTree>();
+		for (int i = 0; i < copies; i++) {
+			for (CFScriptStatement tree : parse(parser, scripts)) {
+				flat.add(FlatTree.of(Collections.singletonList(tree), pool));
+			}
+		}
+		final long retained = usedHeap() - before;
+		System.out.printf("%-10s trees: %6d retained: %8d KB (%d bytes per tree)%n", "FLAT", flat.size(),
+				retained / 1024, flat.isEmpty() ? 0 : retained / flat.size());
+	}
+	
+	private static List<CFScriptStatement> parse(CFMLParser parser, List<String> scripts) throws Exception {
+		final List<CFScriptStatement> trees = new ArrayList<CFScriptStatement>();
+		for (String script : scripts) {
+			try {
+				final CFScriptStatement tree = parser.parseScript(script);
+				if (tree != null) {
+					trees.add(tree);
+				}
+			} catch (RuntimeException e) {
+				// the corpus contains deliberately broken files: ParseExceptions, and some the visitor does not survive
+			}
+			parser.reset();
+			parser.clearMessages();
+		}
+		return trees;
+	}
+	
+	private static long usedHeap() throws InterruptedException {
+		final Runtime runtime = Runtime.getRuntime();
+		long used = Long.MAX_VALUE;
+		// several rounds, a single System.gc() does not always collect everything
+		for (int i = 0; i < 5; i++) {
+			System.gc();
+			Thread.sleep(50);
+			used = Math.min(used, runtime.totalMemory() - runtime.freeMemory());
+		}
+		return used;
+	}
+}
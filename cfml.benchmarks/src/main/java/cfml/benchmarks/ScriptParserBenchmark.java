@@ -0,0 +1,67 @@
+package cfml.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.parsing.CFMLParser;
+
+/**
+ * Parses every script of the corpus. parseTree stops at the ANTLR parse tree, parseScript also builds the
+ * CFScriptStatement tree, so the difference between the two is the cost of building the AST.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ScriptParserBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private List<String> scripts;
+	private CFMLParser parser;
+	
+	@Setup
+	public void setUp() {
+		scripts = Corpus.scripts(kind);
+		parser = new CFMLParser();
+	}
+	
+	@Benchmark
+	public void parseTree(Blackhole blackhole) throws IOException {
+		for (String script : scripts) {
+			blackhole.consume(parser.parseScriptBlockContext(script));
+		}
+		parser.clearMessages();
+	}
+	
+	@Benchmark
+	public void parseScript(Blackhole blackhole) throws IOException {
+		for (String script : scripts) {
+			try {
+				blackhole.consume(parser.parseScript(script));
+			} catch (RuntimeException e) {
+				// the corpus contains deliberately broken files: ParseExceptions, and some the visitor does not survive
+				blackhole.consume(e);
+			}
+			parser.reset();
+		}
+		parser.clearMessages();
+	}
+}
@@ -0,0 +1,112 @@
+package cfml.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import cfml.parsing.CFMLProjectParser;
+import cfml.parsing.index.ComponentSymbol;
+import cfml.parsing.index.FunctionSymbol;
+import cfml.parsing.index.SymbolIndex;
+
+/**
+ * Looks up functions in a {@link SymbolIndex}, loads a stored index and refreshes an index of an unchanged tree. The
+ * large kind indexes 100 synthetic components of 50 functions each, written to a temporary directory.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SymbolIndexBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private Path temp;
+	private Path stored;
+	private CFMLProjectParser parser;
+	private SymbolIndex index;
+	private String[] components;
+	private String[] functions;
+	private int next;
+	
+	@Setup
+	public void setUp() throws IOException {
+		temp = Files.createTempDirectory("symbols");
+		Path root = Corpus.directory();
+		if (Corpus.LARGE.equals(kind)) {
+			root = temp.resolve("app");
+			final byte[] source = Corpus.largeScript(50).getBytes(StandardCharsets.UTF_8);
+			for (int i = 0; i < 100; i++) {
+				final Path file = root.resolve("pkg" + i % 10).resolve("Component" + i + ".cfc");
+				Files.createDirectories(file.getParent());
+				Files.write(file, source);
+			}
+		}
+		parser = new CFMLProjectParser();
+		index = new SymbolIndex(root);
+		index.refresh(parser);
+		stored = temp.resolve("symbols.bin");
+		index.write(stored);
+		final List<String> componentPaths = new ArrayList<String>();
+		final List<String> functionNames = new ArrayList<String>();
+		for (ComponentSymbol component : index.getComponents()) {
+			for (FunctionSymbol function : component.getFunctions()) {
+				componentPaths.add(component.getPath());
+				functionNames.add(function.getName());
+			}
+		}
+		if (componentPaths.isEmpty()) {
+			// nothing parsed, look up a missing function
+			componentPaths.add("missing");
+			functionNames.add("missing");
+		}
+		components = componentPaths.toArray(new String[0]);
+		functions = functionNames.toArray(new String[0]);
+	}
+	
+	@TearDown
+	public void tearDown() throws IOException {
+		try (Stream<Path> paths = Files.walk(temp)) {
+			paths.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+		}
+	}
+	
+	@Benchmark
+	public FunctionSymbol findFunction() {
+		final int i = next++ % components.length;
+		final ComponentSymbol component = index.get(components[i]);
+		return component == null ? null : index.findFunction(component, functions[i]);
+	}
+	
+	@Benchmark
+	public SymbolIndex read() throws IOException {
+		return SymbolIndex.read(stored);
+	}
+	
+	@Benchmark
+	public int refreshUnchanged() throws IOException {
+		return index.refresh(parser);
+	}
+}
@@ -0,0 +1,109 @@
+package cfml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.parsing.CFMLParser;
+import cfml.parsing.CFMLSource;
+import cfml.parsing.cfml.CFMLVisitor;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import net.htmlparser.jericho.Element;
+
+/**
+ * Builds the Jericho source of tag based files, and walks their elements with CFMLParser.visit, which parses the
+ * expressions and script blocks found on the way.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TagBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private List<String> sources;
+	private List<CFMLSource> parsedSources;
+	private CFMLParser parser;
+	private CountingVisitor visitor;
+	
+	@Setup
+	public void setUp() {
+		sources = Corpus.tagSources(kind);
+		parsedSources = new ArrayList<CFMLSource>(sources.size());
+		for (String source : sources) {
+			final CFMLSource cfmlSource = new CFMLSource(source);
+			cfmlSource.getChildElements();
+			parsedSources.add(cfmlSource);
+		}
+		parser = new CFMLParser();
+		visitor = new CountingVisitor();
+	}
+	
+	@Benchmark
+	public void createCFMLSource(Blackhole blackhole) {
+		for (String source : sources) {
+			final CFMLSource cfmlSource = new CFMLSource(source);
+			blackhole.consume(cfmlSource.getChildElements());
+		}
+	}
+	
+	@Benchmark
+	public int visit() {
+		visitor.count = 0;
+		for (CFMLSource source : parsedSources) {
+			for (Element element : source.getChildElements()) {
+				try {
+					parser.visit(element, 0, visitor);
+				} catch (Exception e) {
+					// the corpus contains deliberately broken files
+					visitor.count--;
+				}
+				parser.reset();
+			}
+		}
+		parser.clearMessages();
+		return visitor.count;
+	}
+	
+	static final class CountingVisitor extends CFMLVisitor {
+		
+		int count;
+		
+		@Override
+		public void visitElementStart(Element elem) {
+			count++;
+		}
+		
+		@Override
+		public void visitElementEnd(Element elem) {
+		}
+		
+		@Override
+		public void visitExpression(String context, CFExpression expression) {
+			count++;
+		}
+		
+		@Override
+		public void visitScript(CFScriptStatement scriptStatement) {
+			count++;
+		}
+	}
+}
@@ -0,0 +1,141 @@
+package cfml.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import cfml.parsing.CFMLParser;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.flat.FlatTree;
+import cfml.parsing.cfscript.flat.StringPool;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+/**
+ * Visits every node of the statement trees of the corpus, recursing over decomposeExpression and decomposeScript as
+ * the rules of a linter do, with the CFScriptTreeWalker, and as a loop over the nodes of the same trees flattened into
+ * a FlatTree. The trees are parsed and flattened once in the setup.
+ */
+@State(Scope.Thread)
+@BenchmarkMode({ Mode.Throughput, Mode.SampleTime })
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TreeWalkBenchmark {
+	
+	@Param({ Corpus.CORPUS, Corpus.LARGE })
+	public String kind;
+	
+	private List<CFScriptStatement> trees;
+	private FlatTree flat;
+	private final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+	private final Counter counter = new Counter();
+	
+	@Setup
+	public void setUp() {
+		trees = new ArrayList<CFScriptStatement>();
+		final CFMLParser parser = new CFMLParser();
+		for (String script : Corpus.scripts(kind)) {
+			try {
+				final CFScriptStatement tree = parser.parseScript(script);
+				if (tree != null) {
+					trees.add(tree);
+				}
+			} catch (Exception e) {
+				// not a valid script
+			}
+			parser.reset();
+		}
+		flat = FlatTree.of(trees, new StringPool());
+	}
+	
+	@Benchmark
+	public int decompose() {
+		int nodes = 0;
+		for (CFScriptStatement tree : trees) {
+			nodes += decompose(tree);
+		}
+		return nodes;
+	}
+	
+	@Benchmark
+	public void walker(Blackhole blackhole) {
+		counter.nodes = 0;
+		for (CFScriptStatement tree : trees) {
+			walker.walk(tree, counter);
+		}
+		blackhole.consume(counter.nodes);
+	}
+	
+	@Benchmark
+	public int flat() {
+		// reads what a rule reads of each node, its kind and line
+		int sum = 0;
+		for (int i = 0, size = flat.size(); i < size; i++) {
+			sum += flat.getKind(i) + flat.getLine(i);
+		}
+		return sum;
+	}
+	
+	private static int decompose(CFScriptStatement statement) {
+		int nodes = 1;
+		for (CFExpression expression : statement.decomposeExpression()) {
+			if (expression != null) {
+				nodes += decompose(expression);
+			}
+		}
+		for (CFScriptStatement child : statement.decomposeScript()) {
+			if (child != null) {
+				nodes += decompose(child);
+			}
+		}
+		return nodes;
+	}
+	
+	private static int decompose(CFExpression expression) {
+		int nodes = 1;
+		for (CFExpression child : expression.decomposeExpression()) {
+			if (child != null) {
+				nodes += decompose(child);
+			}
+		}
+		for (CFScriptStatement statement : expression.decomposeScript()) {
+			if (statement != null) {
+				nodes += decompose(statement);
+			}
+		}
+		return nodes;
+	}
+	
+	private static class Counter extends CFScriptTreeVisitor {
+		
+		int nodes;
+		
+		@Override
+		public Action enterStatement(CFScriptStatement statement) {
+			nodes++;
+			return Action.CONTINUE;
+		}
+		
+		@Override
+		public Action enterExpression(CFExpression expression) {
+			nodes++;
+			return Action.CONTINUE;
+		}
+	}
+}
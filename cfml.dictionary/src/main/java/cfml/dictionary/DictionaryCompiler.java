@@ -0,0 +1,118 @@
+package cfml.dictionary;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.XMLReader;
+
+/**
+ * Compiles dictionary XMLs into {@link DictionaryImage}s. Run by the build on the dictionaries of
+ * dictionaryconfig.xml, so the dictionaries in the jar are loaded from their images:
+ *
+ * <pre>
+ * java cfml.dictionary.DictionaryCompiler &lt;dictionary dir&gt; [grammar.xml ...]
+ * </pre>
+ */
+public class DictionaryCompiler {
+	
+	/**
+	 * @param args the dictionary directory, followed by the XMLs to compile; all grammars of the dictionaryconfig.xml
+	 *            in the directory if there are none
+	 * @throws Exception if a dictionary cannot be compiled
+	 */
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: DictionaryCompiler <dictionary dir> [grammar.xml ...]");
+			System.exit(1);
+		}
+		final File directory = new File(args[0]);
+		final Set<String> grammars = new LinkedHashSet<String>();
+		for (int i = 1; i < args.length; i++) {
+			grammars.add(args[i]);
+		}
+		if (grammars.isEmpty()) {
+			grammars.addAll(getGrammars(new File(directory, "dictionaryconfig.xml")));
+		}
+		for (String grammar : grammars) {
+			final File xml = new File(directory, grammar);
+			final File image = new File(directory, grammar + DictionaryImage.SUFFIX);
+			compile(xml, image);
+			System.out.println("Compiled " + xml + " (" + xml.length() + " bytes) to " + image.getName() + " ("
+					+ image.length() + " bytes)");
+		}
+	}
+	
+	/**
+	 * @param config a dictionaryconfig.xml
+	 * @return the locations of the XML grammars it lists, each once
+	 * @throws Exception if the config cannot be read
+	 */
+	static Set<String> getGrammars(File config) throws Exception {
+		final Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(config);
+		final NodeList nodes = document.getElementsByTagName("grammar");
+		final Set<String> grammars = new LinkedHashSet<String>();
+		for (int i = 0; i < nodes.getLength(); i++) {
+			final String location = ((Element) nodes.item(i)).getAttribute("location").trim();
+			if (location.endsWith(".xml")) {
+				grammars.add(location);
+			}
+		}
+		return grammars;
+	}
+	
+	/**
+	 * Parses a dictionary XML and writes its image.
+	 *
+	 * @param xml the dictionary XML
+	 * @param image the image file to write
+	 * @throws IOException if either file cannot be accessed
+	 * @throws SAXException if the XML is not well formed
+	 * @throws ParserConfigurationException if there is no SAX parser
+	 */
+	public static void compile(File xml, File image) throws IOException, SAXException, ParserConfigurationException {
+		final Map<String, Tag> tags = new HashMap<String, Tag>();
+		final Map<String, Function> functions = new HashMap<String, Function>();
+		final Map<String, Object> scopeVars = new HashMap<String, Object>();
+		final Map<String, Object> scopes = new HashMap<String, Object>();
+		
+		final InputSource input = new InputSource(xml.toURI().toString());
+		final SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(false);
+		factory.setValidating(false);
+		final XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+		xmlReader.setContentHandler(new DictionaryContentHandler(tags, functions, scopeVars, scopes));
+		xmlReader.parse(input);
+		final byte[] digest;
+		final InputStream in = new FileInputStream(xml);
+		try {
+			digest = DictionaryImage.digest(in);
+		} finally {
+			in.close();
+		}
+		
+		final OutputStream out = new BufferedOutputStream(new FileOutputStream(image));
+		try {
+			DictionaryImage.write(tags, functions, scopeVars, scopes, digest, out);
+		} finally {
+			out.close();
+		}
+	}
+}
@@ -0,0 +1,672 @@
+package cfml.dictionary;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.ref.SoftReference;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A precompiled dictionary. {@link DictionaryCompiler} writes the tags, functions, scopes and components of a
+ * dictionary XML next to it as an image, e.g. cf11.xml.bin, which {@link SyntaxDictionary} loads instead of parsing the
+ * XML.
+ *
+ * The image starts with a magic number, the format version and the SHA-256 of the XML it was compiled from, followed by
+ * a table of all distinct strings and then the items, which refer to the strings by their index (-1 for null). The
+ * digest lets {@link DictionaryRegistry} tell identical grammars apart without reading their XML. Strings are decoded
+ * from the table the first time they are used, and an image on the file system is mapped rather than read.
+ *
+ * Loading an image only reads the names and flags of the tags and functions, the skeleton the parser needs. The help
+ * and parameters of a procedure, with their values and triggers, are stored as a block of their own that is read when
+ * they are asked for, and held softly, so they are read again if the garbage collector has dropped them.
+ */
+public class DictionaryImage {
+	
+	/** appended to the URL of a dictionary XML to get the URL of its image */
+	public static final String SUFFIX = ".bin";
+	
+	private static final int MAGIC = 0x43464449;
+	private static final int VERSION = 5;
+	
+	private static final int SINGLE = 0x01;
+	private static final int XMLSTYLE = 0x02;
+	private static final int HYBRID = 0x04;
+	private static final int ANYATTRIBUTE = 0x08;
+	private static final int ENDTAGREQUIRED = 0x10;
+	
+	private static final byte SCOPEVAR = 0;
+	private static final byte COMPONENT = 1;
+	
+	private DictionaryImage() {
+	}
+	
+	/**
+	 * Writes the items of a dictionary as an image.
+	 *
+	 * @param tags the tags by name
+	 * @param functions the functions by name
+	 * @param scopeVars the scope variables, ScopeVar or Component, by name
+	 * @param scopes the scopes by name
+	 * @param out receives the image, not closed
+	 * @throws IOException if the image cannot be written
+	 */
+	public static void write(Map<String, Tag> tags, Map<String, Function> functions, Map<String, ?> scopeVars,
+			Map<String, ?> scopes, OutputStream out) throws IOException {
+		write(tags, functions, scopeVars, scopes, new byte[0], out);
+	}
+	
+	/**
+	 * Writes the items of a dictionary as an image, with the digest of the XML they were read from.
+	 *
+	 * @param sourceDigest the SHA-256 of the XML, see {@link #digest(InputStream)}; empty for none
+	 * @see #write(Map, Map, Map, Map, OutputStream)
+	 */
+	public static void write(Map<String, Tag> tags, Map<String, Function> functions, Map<String, ?> scopeVars,
+			Map<String, ?> scopes, byte[] sourceDigest, OutputStream out) throws IOException {
+		final Writer writer = new Writer();
+		writer.writeItems(tags, functions, scopeVars, scopes);
+		final DataOutputStream data = new DataOutputStream(out);
+		data.writeInt(MAGIC);
+		data.writeInt(VERSION);
+		data.writeByte(sourceDigest.length);
+		data.write(sourceDigest);
+		writer.writeStrings(data);
+		writer.body.writeTo(data);
+		data.flush();
+	}
+	
+	/**
+	 * Loads the image of a dictionary XML into the maps of a dictionary, if there is an image that is not older than
+	 * the XML.
+	 *
+	 * @param dictionaryURL the URL of the dictionary XML
+	 * @param dictionary receives the items
+	 * @return true if the image was loaded, false if the XML has to be parsed
+	 * @throws IOException if the image cannot be read
+	 */
+	static boolean load(String dictionaryURL, SyntaxDictionary dictionary) throws IOException {
+		final ByteBuffer buffer = open(dictionaryURL);
+		if (buffer == null || buffer.remaining() < 9 || buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+			return false;
+		}
+		try {
+			final int digestLength = buffer.get() & 0xFF;
+			buffer.position(buffer.position() + digestLength);
+			new Reader(buffer).readItems(dictionary);
+		} catch (RuntimeException e) {
+			// a truncated image, the xml overwrites whatever was read
+			System.err.println("Could not load the dictionary image of " + dictionaryURL + ": " + e);
+			return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * Gets the SHA-256 of a dictionary XML, from the header of its image if there is one that is not older than the
+	 * XML, so the XML is only read if there is none.
+	 *
+	 * @param dictionaryURL the URL of the dictionary XML
+	 * @return the digest in hex
+	 * @throws IOException if neither the image nor the XML can be read
+	 */
+	static String digest(String dictionaryURL) throws IOException {
+		final InputStream image = openImage(dictionaryURL);
+		if (image != null) {
+			try {
+				final DataInputStream data = new DataInputStream(image);
+				if (data.readInt() == MAGIC && data.readInt() == VERSION) {
+					final byte[] digest = new byte[data.readUnsignedByte()];
+					data.readFully(digest);
+					if (digest.length > 0) {
+						return hex(digest);
+					}
+				}
+			} catch (EOFException e) {
+				// a truncated image, digest the xml
+			} finally {
+				image.close();
+			}
+		}
+		final InputStream xml = new URL(dictionaryURL).openStream();
+		try {
+			return hex(digest(xml));
+		} finally {
+			xml.close();
+		}
+	}
+	
+	/**
+	 * @param in the content to digest, not closed
+	 * @return the SHA-256 of the content
+	 */
+	static byte[] digest(InputStream in) throws IOException {
+		final MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("SHA-256");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+		final byte[] buffer = new byte[8192];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			digest.update(buffer, 0, read);
+		}
+		return digest.digest();
+	}
+	
+	private static String hex(byte[] bytes) {
+		final StringBuilder hex = new StringBuilder();
+		for (byte b : bytes) {
+			hex.append(String.format("%02x", b));
+		}
+		return hex.toString();
+	}
+	
+	/**
+	 * @return the image file of a dictionary XML on the file system, null if there is none that is not older than the
+	 *         XML or the XML is not a file
+	 */
+	private static File getImageFile(String dictionaryURL) throws IOException {
+		final URL xml = new URL(dictionaryURL);
+		final URL image = new URL(dictionaryURL + SUFFIX);
+		final File imageFile;
+		final File xmlFile;
+		try {
+			imageFile = new File(image.toURI());
+			xmlFile = new File(xml.toURI());
+		} catch (URISyntaxException e) {
+			return null;
+		}
+		if (!imageFile.isFile() || xmlFile.lastModified() > imageFile.lastModified()) {
+			return null;
+		}
+		return imageFile;
+	}
+	
+	/**
+	 * @return the image of a dictionary XML, null if there is none or it is older than the XML
+	 */
+	private static InputStream openImage(String dictionaryURL) throws IOException {
+		final URL image = new URL(dictionaryURL + SUFFIX);
+		if ("file".equals(image.getProtocol())) {
+			final File imageFile = getImageFile(dictionaryURL);
+			return imageFile == null ? null : new BufferedInputStream(new FileInputStream(imageFile), 64);
+		}
+		try {
+			return image.openStream();
+		} catch (IOException e) {
+			// no image in the jar
+			return null;
+		}
+	}
+	
+	private static ByteBuffer open(String dictionaryURL) throws IOException {
+		if ("file".equals(new URL(dictionaryURL + SUFFIX).getProtocol())) {
+			final File imageFile = getImageFile(dictionaryURL);
+			if (imageFile == null) {
+				return null;
+			}
+			try (FileChannel channel = FileChannel.open(imageFile.toPath(), StandardOpenOption.READ)) {
+				return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+			}
+		}
+		final InputStream in = openImage(dictionaryURL);
+		if (in == null) {
+			return null;
+		}
+		try {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			final byte[] chunk = new byte[8192];
+			int read;
+			while ((read = in.read(chunk)) != -1) {
+				bytes.write(chunk, 0, read);
+			}
+			return ByteBuffer.wrap(bytes.toByteArray());
+		} finally {
+			in.close();
+		}
+	}
+	
+	/**
+	 * Collects the strings while writing the items, the table is written ahead of them.
+	 */
+	private static final class Writer {
+		private final Map<String, Integer> stringIndexes = new HashMap<String, Integer>();
+		private final List<String> strings = new ArrayList<String>();
+		private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+		private DataOutputStream out = new DataOutputStream(body);
+		
+		void writeItems(Map<String, Tag> tags, Map<String, Function> functions, Map<String, ?> scopeVars,
+				Map<String, ?> scopes) throws IOException {
+			out.writeInt(tags.size());
+			for (Map.Entry<String, Tag> entry : tags.entrySet()) {
+				final Tag tag = entry.getValue();
+				writeString(entry.getKey());
+				writeString(tag.getName());
+				out.writeByte(tag.getCreatorFlags());
+				out.writeByte((tag.isSingle() ? SINGLE : 0) | (tag.isXMLStyle() ? XMLSTYLE : 0)
+						| (tag.isHybrid() ? HYBRID : 0) | (tag.allowsAnyAttribute() ? ANYATTRIBUTE : 0)
+						| (tag.isEndtagrequired() ? ENDTAGREQUIRED : 0));
+				out.writeInt(tag.getReturns().size());
+				for (Return returnItem : tag.getReturns()) {
+					writeString(returnItem.getParameterName());
+					writeString(returnItem.getType());
+				}
+				writeDetails(tag);
+			}
+			out.writeInt(functions.size());
+			for (Map.Entry<String, Function> entry : functions.entrySet()) {
+				writeString(entry.getKey());
+				writeFunction(entry.getValue());
+			}
+			// components are shared by the scope variables they define
+			final Map<Component, Integer> components = new IdentityHashMap<Component, Integer>();
+			final List<Component> componentList = new ArrayList<Component>();
+			for (Object value : scopeVars.values()) {
+				if (value instanceof Component && !components.containsKey(value)) {
+					components.put((Component) value, components.size());
+					componentList.add((Component) value);
+				}
+			}
+			out.writeInt(componentList.size());
+			for (Component component : componentList) {
+				writeString(component.getName());
+				writeString(component.path);
+				writeString(component.framework);
+				out.writeByte(component.getCreatorFlags());
+				writeDetails(component);
+				writeSize(component.getMethods());
+				if (component.getMethods() != null) {
+					for (Object method : component.getMethods()) {
+						writeFunction((Function) method);
+					}
+				}
+				writeSize(component.getScopes());
+				if (component.getScopes() != null) {
+					for (Object scope : component.getScopes()) {
+						writeString((String) scope);
+					}
+				}
+			}
+			out.writeInt(scopeVars.size());
+			for (Map.Entry<String, ?> entry : scopeVars.entrySet()) {
+				writeString(entry.getKey());
+				if (entry.getValue() instanceof Component) {
+					out.writeByte(COMPONENT);
+					out.writeInt(components.get(entry.getValue()));
+				} else {
+					out.writeByte(SCOPEVAR);
+					writeScopeVar((ScopeVar) entry.getValue());
+				}
+			}
+			out.writeInt(scopes.size());
+			for (Map.Entry<String, ?> entry : scopes.entrySet()) {
+				writeString(entry.getKey());
+				writeScopeVar((ScopeVar) entry.getValue());
+			}
+			out.flush();
+		}
+		
+		private void writeFunction(Function function) throws IOException {
+			writeString(function.getName());
+			out.writeByte(function.getCreatorFlags());
+			writeString(function.returns);
+			writeDetails(function);
+		}
+		
+		/**
+		 * Writes whether a procedure has parameters and the hash of its details, then its help and parameters as a
+		 * block preceded by its length, so it can be skipped.
+		 */
+		private void writeDetails(Procedure procedure) throws IOException {
+			out.writeBoolean(procedure.hasParameters());
+			out.writeLong(DictionaryInterner.detailsHash(procedure));
+			final DataOutputStream items = out;
+			final ByteArrayOutputStream details = new ByteArrayOutputStream();
+			out = new DataOutputStream(details);
+			writeString(procedure.getHelp());
+			writeParameters(procedure.getParameters());
+			out.flush();
+			out = items;
+			out.writeInt(details.size());
+			details.writeTo(out);
+		}
+		
+		private void writeParameters(Set<Parameter> parameters) throws IOException {
+			writeSize(parameters);
+			if (parameters == null) {
+				return;
+			}
+			for (Parameter parameter : parameters) {
+				writeString(parameter.getName());
+				writeString(parameter.getType());
+				out.writeBoolean(parameter.isRequired());
+				writeString(parameter.getDefaultValue());
+				writeString(parameter.getCategory());
+				writeString(parameter.getReturnVarType());
+				writeString(parameter.getHelp());
+				writeSize(parameter.values);
+				if (parameter.values != null) {
+					for (Object item : parameter.values) {
+						final Value value = (Value) item;
+						writeString(value.getValue());
+						writeString(value.getHelp());
+					}
+				}
+				out.writeInt(parameter.triggers.size());
+				for (Object item : parameter.triggers) {
+					final Trigger trigger = (Trigger) item;
+					out.writeBoolean(trigger.isRequired);
+					out.writeInt(trigger.index);
+					out.writeInt(trigger.triggerParams.size());
+					for (Iterator<?> it = trigger.triggerParams.entrySet().iterator(); it.hasNext();) {
+						final Map.Entry<?, ?> param = (Map.Entry<?, ?>) it.next();
+						writeString((String) param.getKey());
+						writeString((String) param.getValue());
+					}
+				}
+			}
+		}
+		
+		private void writeScopeVar(ScopeVar scopeVar) throws IOException {
+			writeString(scopeVar.getType());
+			writeString(scopeVar.getName());
+			writeString(scopeVar.getHelp());
+		}
+		
+		private void writeSize(Set<?> set) throws IOException {
+			out.writeInt(set == null ? -1 : set.size());
+		}
+		
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				out.writeInt(-1);
+				return;
+			}
+			Integer index = stringIndexes.get(value);
+			if (index == null) {
+				index = strings.size();
+				stringIndexes.put(value, index);
+				strings.add(value);
+			}
+			out.writeInt(index);
+		}
+		
+		/**
+		 * The count, the offsets of the strings in the UTF-8 bytes followed by the offset behind the last, then the
+		 * bytes.
+		 */
+		void writeStrings(DataOutputStream data) throws IOException {
+			final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			data.writeInt(strings.size());
+			for (String value : strings) {
+				data.writeInt(bytes.size());
+				final byte[] encoded = value.getBytes(StandardCharsets.UTF_8);
+				bytes.write(encoded, 0, encoded.length);
+			}
+			data.writeInt(bytes.size());
+			bytes.writeTo(data);
+		}
+	}
+	
+	/**
+	 * The help and parameters of a procedure, read from the image when they are first asked for. They are held softly,
+	 * so the garbage collector may drop them, they are read again on the next call.
+	 */
+	static final class Details {
+		private final Reader image;
+		private final int position;
+		private final boolean ordered;
+		private final boolean hasParameters;
+		private final long hash;
+		private SoftReference<Object[]> loaded;
+		
+		Details(Reader image, int position, boolean ordered, boolean hasParameters, long hash) {
+			this.image = image;
+			this.position = position;
+			this.ordered = ordered;
+			this.hasParameters = hasParameters;
+			this.hash = hash;
+		}
+		
+		/**
+		 * @return the hash of the help and parameters, see {@link DictionaryInterner#detailsHash(Procedure)}
+		 */
+		long getHash() {
+			return hash;
+		}
+		
+		/**
+		 * @return true if the help and parameters have been read and not dropped since
+		 */
+		synchronized boolean isLoaded() {
+			return loaded != null && loaded.get() != null;
+		}
+		
+		/**
+		 * @return true if the procedure has parameters, known without reading them
+		 */
+		boolean hasParameters() {
+			return hasParameters;
+		}
+		
+		String getHelp() {
+			return (String) load()[0];
+		}
+		
+		@SuppressWarnings("unchecked")
+		Set<Parameter> getParameters() {
+			return (Set<Parameter>) load()[1];
+		}
+		
+		private synchronized Object[] load() {
+			Object[] details = loaded == null ? null : loaded.get();
+			if (details == null) {
+				final Reader reader = new Reader(image, position);
+				details = new Object[] { reader.readText(), reader.readParameters(ordered) };
+				loaded = new SoftReference<Object[]>(details);
+			}
+			return details;
+		}
+	}
+	
+	private static final class Reader {
+		private final ByteBuffer buffer;
+		private final String[] strings;
+		private final int offsets;
+		private final int bytes;
+		
+		Reader(ByteBuffer buffer) {
+			this.buffer = buffer;
+			strings = new String[buffer.getInt()];
+			offsets = buffer.position();
+			bytes = offsets + (strings.length + 1) * 4;
+			buffer.position(bytes + buffer.getInt(bytes - 4));
+		}
+		
+		/**
+		 * A reader at another position of the same image, sharing the strings decoded so far.
+		 */
+		Reader(Reader image, int position) {
+			buffer = image.buffer.duplicate();
+			buffer.position(position);
+			strings = image.strings;
+			offsets = image.offsets;
+			bytes = image.bytes;
+		}
+		
+		@SuppressWarnings("unchecked")
+		void readItems(SyntaxDictionary dictionary) {
+			for (int count = buffer.getInt(); count > 0; count--) {
+				final String key = readString();
+				final String name = readString();
+				final byte creator = buffer.get();
+				final int flags = buffer.get();
+				final Tag tag = new Tag(name, (flags & SINGLE) != 0, (flags & XMLSTYLE) != 0, creator,
+						(flags & HYBRID) != 0, (flags & ANYATTRIBUTE) != 0, (flags & ENDTAGREQUIRED) != 0);
+				for (int returns = buffer.getInt(); returns > 0; returns--) {
+					tag.getReturns().add(new Return(readString(), readString()));
+				}
+				readDetails(tag);
+				dictionary.syntaxelements.put(key, tag);
+			}
+			for (int count = buffer.getInt(); count > 0; count--) {
+				final String key = readString();
+				dictionary.functions.put(key, readFunction());
+			}
+			final Component[] components = new Component[buffer.getInt()];
+			for (int i = 0; i < components.length; i++) {
+				final String name = readString();
+				final String path = readString();
+				final String framework = readString();
+				final Component component = new Component(name, path, framework, buffer.get());
+				readDetails(component);
+				for (int methods = buffer.getInt(); methods > 0; methods--) {
+					component.addMethod(readFunction());
+				}
+				for (int scopes = buffer.getInt(); scopes > 0; scopes--) {
+					component.addScope(readString());
+				}
+				components[i] = component;
+			}
+			// scopeVars holds components as well, as DictionaryContentHandler puts them there
+			final Map<String, Object> scopeVars = (Map<String, Object>) (Map<String, ?>) dictionary.scopeVars;
+			for (int count = buffer.getInt(); count > 0; count--) {
+				final String key = readString();
+				if (buffer.get() == COMPONENT) {
+					scopeVars.put(key, components[buffer.getInt()]);
+				} else {
+					scopeVars.put(key, readScopeVar());
+				}
+			}
+			for (int count = buffer.getInt(); count > 0; count--) {
+				final String key = readString();
+				dictionary.scopes.put(key, readScopeVar());
+			}
+		}
+		
+		private Function readFunction() {
+			final String name = readString();
+			final byte creator = buffer.get();
+			final Function function = new Function(name, readString(), creator);
+			readDetails(function);
+			return function;
+		}
+		
+		/**
+		 * Skips the help and parameters of a procedure, leaving them to be read on demand.
+		 */
+		private void readDetails(Procedure procedure) {
+			final boolean hasParameters = buffer.get() != 0;
+			final long hash = buffer.getLong();
+			final int length = buffer.getInt();
+			procedure.details = new Details(this, buffer.position(), procedure instanceof Function, hasParameters,
+					hash);
+			buffer.position(buffer.position() + length);
+		}
+		
+		/**
+		 * @param ordered true for the parameters of a function, whose order matters
+		 * @return the parameters, null if the procedure has none
+		 */
+		Set<Parameter> readParameters(boolean ordered) {
+			final int count = buffer.getInt();
+			if (count < 0) {
+				return null;
+			}
+			final Set<Parameter> parameters = ordered ? new LinkedHashSet<Parameter>() : new HashSet<Parameter>();
+			for (int i = 0; i < count; i++) {
+				final String name = readString();
+				final String type = readString();
+				final boolean required = buffer.get() != 0;
+				final String defaultValue = readString();
+				final String category = readString();
+				final Parameter parameter = new Parameter(name, type, required, defaultValue, category, readString());
+				parameter.setHelp(readText());
+				for (int values = buffer.getInt(); values > 0; values--) {
+					final Value value = new Value(readString());
+					value.setHelp(readText());
+					parameter.addValue(value);
+				}
+				for (int triggers = buffer.getInt(); triggers > 0; triggers--) {
+					final boolean triggerRequired = buffer.get() != 0;
+					final int index = buffer.getInt();
+					final HashMap<String, String> params = new HashMap<String, String>();
+					for (int entries = buffer.getInt(); entries > 0; entries--) {
+						params.put(readString(), readString());
+					}
+					parameter.addTrigger(new Trigger(params, triggerRequired, index));
+				}
+				parameters.add(parameter);
+			}
+			return parameters;
+		}
+		
+		private ScopeVar readScopeVar() {
+			final ScopeVar scopeVar = new ScopeVar(readString(), readString());
+			scopeVar.setHelp(readString());
+			return scopeVar;
+		}
+		
+		/**
+		 * Reads a name, type or other short string, which is kept once decoded.
+		 */
+		private String readString() {
+			final int index = buffer.getInt();
+			if (index < 0) {
+				return null;
+			}
+			String value = strings[index];
+			if (value == null) {
+				value = decode(index);
+				strings[index] = value;
+			}
+			return value;
+		}
+		
+		/**
+		 * Reads a help text, which is decoded every time so it is only held as long as its procedure's details.
+		 */
+		String readText() {
+			final int index = buffer.getInt();
+			if (index < 0) {
+				return null;
+			}
+			final String value = strings[index];
+			return value != null ? value : decode(index);
+		}
+		
+		private String decode(int index) {
+			final int start = buffer.getInt(offsets + index * 4);
+			final int end = buffer.getInt(offsets + index * 4 + 4);
+			final byte[] encoded = new byte[end - start];
+			final ByteBuffer slice = buffer.duplicate();
+			slice.position(bytes + start);
+			slice.get(encoded);
+			return new String(encoded, StandardCharsets.UTF_8);
+		}
+	}
+}
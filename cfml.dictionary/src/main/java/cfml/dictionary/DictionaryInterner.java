@@ -0,0 +1,232 @@
+package cfml.dictionary;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Shares equal items between the grammars of a {@link DictionaryRegistry}. Dictionary versions differ in a few tags
+ * and functions only, so after interning a version holds its own map of names and the items it does not have in
+ * common with the versions loaded before it; everything else is the same objects.
+ *
+ * Items are matched by their whole content, help included. Only the hash of the content is kept, so the interner
+ * costs a few bytes per distinct item. A procedure is described by its names and flags and a 64 bit hash of its help
+ * and parameters, which an image stores, so procedures loaded from an image are shared whole without reading their
+ * details; those parsed from an XML have their parameters, values, triggers and help shared as well.
+ */
+class DictionaryInterner {
+	
+	private final Map<Integer, List<Object>> items = new HashMap<Integer, List<Object>>();
+	private final Map<String, String> strings = new HashMap<String, String>();
+	private int lookups;
+	private int hits;
+	
+	/**
+	 * Replaces the tags, functions and scope variables of a dictionary by equal ones interned before, and interns the
+	 * others.
+	 *
+	 * @param dictionary a dictionary that is not frozen
+	 */
+	synchronized void intern(SyntaxDictionary dictionary) {
+		for (Map.Entry<String, Tag> entry : dictionary.syntaxelements.entrySet()) {
+			entry.setValue(internProcedure(entry.getValue()));
+		}
+		for (Map.Entry<String, Function> entry : dictionary.functions.entrySet()) {
+			entry.setValue(internProcedure(entry.getValue()));
+		}
+		for (Map.Entry<String, ScopeVar> entry : dictionary.scopeVars.entrySet()) {
+			// components refer to each other, they are left alone
+			if (entry.getValue().getClass() == ScopeVar.class) {
+				entry.setValue(internItem(entry.getValue(), describe(entry.getValue())));
+			}
+		}
+	}
+	
+	/**
+	 * @return the share of the items that were found interned, between 0 and 1
+	 */
+	synchronized double getHitRatio() {
+		return lookups == 0 ? 0 : (double) hits / lookups;
+	}
+	
+	private <T extends Procedure> T internProcedure(T procedure) {
+		final T interned = internItem(procedure, describe(procedure));
+		if (interned == procedure && procedure.details == null && procedure.parameters != null) {
+			// a new procedure, share its parts; this does not change its content
+			final Set<Parameter> parameters = procedure.parameters instanceof LinkedHashSet
+					? new LinkedHashSet<Parameter>() : new HashSet<Parameter>();
+			for (Parameter parameter : procedure.parameters) {
+				parameters.add(internParameter(parameter));
+			}
+			procedure.parameters = parameters;
+			procedure.help = internString(procedure.help);
+		}
+		return interned;
+	}
+	
+	private Parameter internParameter(Parameter parameter) {
+		parameter.help = internString(parameter.help);
+		if (parameter.values != null) {
+			final Set<Value> values = new HashSet<Value>();
+			for (Object value : parameter.values) {
+				((Value) value).help = internString(((Value) value).help);
+				values.add(internItem((Value) value, describe((Value) value)));
+			}
+			parameter.values = values;
+		}
+		for (int i = 0; i < parameter.triggers.size(); i++) {
+			final Trigger trigger = (Trigger) parameter.triggers.get(i);
+			parameter.triggers.set(i, internItem(trigger, describe(trigger)));
+		}
+		return internItem(parameter, describe(parameter));
+	}
+	
+	private String internString(String string) {
+		if (string == null) {
+			return null;
+		}
+		final String interned = strings.get(string);
+		if (interned != null) {
+			return interned;
+		}
+		strings.put(string, string);
+		return string;
+	}
+	
+	/**
+	 * @param item an item
+	 * @param description the content of the item
+	 * @return the interned item with that content, item if there is none
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T internItem(T item, String description) {
+		lookups++;
+		final Integer hash = description.hashCode();
+		List<Object> candidates = items.get(hash);
+		if (candidates == null) {
+			candidates = new ArrayList<Object>(1);
+			items.put(hash, candidates);
+		}
+		for (Object candidate : candidates) {
+			if (candidate == item) {
+				return item;
+			}
+			if (candidate.getClass() == item.getClass() && describeItem(candidate).equals(description)) {
+				hits++;
+				return (T) candidate;
+			}
+		}
+		candidates.add(item);
+		return item;
+	}
+	
+	private static String describeItem(Object item) {
+		if (item instanceof Procedure) {
+			return describe((Procedure) item);
+		} else if (item instanceof Parameter) {
+			return describe((Parameter) item);
+		} else if (item instanceof Value) {
+			return describe((Value) item);
+		} else if (item instanceof Trigger) {
+			return describe((Trigger) item);
+		}
+		return describe((ScopeVar) item);
+	}
+	
+	private static String describe(Procedure procedure) {
+		final StringBuilder description = new StringBuilder();
+		description.append(procedure.getClass().getName()).append('\0').append(procedure.getName()).append('\0')
+				.append(procedure.getCreatorFlags());
+		if (procedure instanceof Tag) {
+			final Tag tag = (Tag) procedure;
+			description.append('\0').append(tag.single).append(tag.xmlstyle).append(tag.hybrid)
+					.append(tag.anyAttribute).append(tag.endtagrequired);
+			final List<String> returns = new ArrayList<String>();
+			for (Return returnItem : tag.returns) {
+				returns.add(returnItem.getParameterName() + "\0" + returnItem.getType());
+			}
+			Collections.sort(returns);
+			description.append(returns);
+		} else if (procedure instanceof Function) {
+			description.append('\0').append(((Function) procedure).returns);
+		}
+		return description.append('\1').append(Long.toHexString(detailsHash(procedure))).toString();
+	}
+	
+	/**
+	 * @param procedure a procedure
+	 * @return a 64 bit hash of its help and parameters; for a procedure loaded from an image the one stored there, so
+	 *         they are not read
+	 */
+	static long detailsHash(Procedure procedure) {
+		final DictionaryImage.Details details = procedure.details;
+		if (details != null) {
+			return details.getHash();
+		}
+		// FNV-1a
+		final String description = describeDetails(procedure);
+		long hash = 0xcbf29ce484222325L;
+		for (int i = 0; i < description.length(); i++) {
+			hash = (hash ^ description.charAt(i)) * 0x100000001b3L;
+		}
+		return hash;
+	}
+	
+	private static String describeDetails(Procedure procedure) {
+		final StringBuilder description = new StringBuilder();
+		description.append(procedure.help);
+		final Set<Parameter> parameterSet = procedure.parameters;
+		if (parameterSet != null) {
+			final List<String> parameters = new ArrayList<String>();
+			for (Parameter parameter : parameterSet) {
+				parameters.add(describe(parameter));
+			}
+			if (!(parameterSet instanceof LinkedHashSet)) {
+				Collections.sort(parameters);
+			}
+			description.append('\1').append(parameters);
+		}
+		return description.toString();
+	}
+	
+	private static String describe(Parameter parameter) {
+		final StringBuilder description = new StringBuilder();
+		description.append(parameter.name).append('\0').append(parameter.type).append('\0')
+				.append(parameter.required).append('\0').append(parameter.defaultValue).append('\0')
+				.append(parameter.category).append('\0').append(parameter.returnVarType).append('\0')
+				.append(parameter.help).append('\0');
+		if (parameter.values != null) {
+			final List<String> values = new ArrayList<String>();
+			for (Object value : parameter.values) {
+				values.add(describe((Value) value));
+			}
+			Collections.sort(values);
+			description.append(values);
+		}
+		description.append('\0');
+		for (Object trigger : parameter.triggers) {
+			description.append(describe((Trigger) trigger)).append('\0');
+		}
+		return description.toString();
+	}
+	
+	private static String describe(Value value) {
+		return value.value + "\0" + value.help;
+	}
+	
+	private static String describe(Trigger trigger) {
+		@SuppressWarnings("unchecked")
+		final Map<Object, Object> params = new TreeMap<Object, Object>(trigger.triggerParams);
+		return params + "\0" + trigger.isRequired + "\0" + trigger.index;
+	}
+	
+	private static String describe(ScopeVar scopeVar) {
+		return scopeVar.getType() + "\0" + scopeVar.getName() + "\0" + scopeVar.getHelp();
+	}
+}
@@ -29,8 +29,8 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
@@ -52,6 +52,9 @@ import cfml.dictionary.syntax.SQLSyntaxDictionary;
  * @author Rob
  *         This class loads all the dictionaries and can be used to get specific dictionaries. This (hopefully) well
  *         help in abstracting the dictionaries not intended to be instantiated
+ *         <p>
+ *         The dictionaries are global to the process. Use a {@link DictionaryRegistry} to share read only
+ *         dictionaries of several versions between threads.
  */
 public class DictionaryManager {
 	
@@ -67,12 +70,12 @@ public class DictionaryManager {
 	/** the (yet to be made) html dictionary */
 	public static final String HTDIC_KEY = DictionaryPreferenceConstants.HTDIC_KEY;
 	/** all the dictionaries */
-	private static final Map<String, SyntaxDictionary> dictionaries = new HashMap<>();
+	private static final Map<String, SyntaxDictionary> dictionaries = new ConcurrentHashMap<>();
 	/** the dictionary cache - for switching between grammars */
-	private static Map<String, SyntaxDictionary> dictionariesCache = new HashMap<>();
+	private static Map<String, SyntaxDictionary> dictionariesCache = new ConcurrentHashMap<>();
 	
 	/** map of versions, might be a replication of the above */
-	private static final Map<String, SyntaxDictionary> dictionaryVersionCache = new HashMap<>();
+	private static final Map<String, SyntaxDictionary> dictionaryVersionCache = new ConcurrentHashMap<>();
 	
 	/** the dictionary config file in DOM form */
 	private static Document dictionaryConfig = null;
@@ -0,0 +1,255 @@
+package cfml.dictionary;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import cfml.dictionary.preferences.DictionaryPreferenceConstants;
+import cfml.dictionary.preferences.DictionaryPreferences;
+import cfml.dictionary.syntax.HTMLSyntaxDictionary;
+import cfml.dictionary.syntax.JSSyntaxDictionary;
+import cfml.dictionary.syntax.SQLSyntaxDictionary;
+
+/**
+ * A registry of the dictionary versions of one dictionaryconfig.xml. Unlike {@link DictionaryManager} it holds no
+ * static state, so a process can have registries for different dictionary directories, and it is thread safe: every
+ * version is loaded once, by the first thread that asks for it, and handed out as a read only dictionary that all
+ * threads share. Any number of versions can be loaded side by side, e.g. cf11 and lucee5 for a lint service.
+ *
+ * The grammars of the versions are loaded once per content, so versions share the tags and functions of the grammars
+ * they have in common, e.g. user.xml, or cf10.xml and railo4.xml, which are the same file. Within different grammars
+ * the equal items are shared too, see {@link DictionaryInterner}.
+ */
+public class DictionaryRegistry {
+	
+	private static final String BUILT_IN = "/org.cfeclipse.cfml/dictionary/";
+	
+	/** the constructors of the CF dictionaries reset static keyword sets */
+	private static final Object CREATE_LOCK = new Object();
+	
+	/**
+	 * A version of a dictionary in the config.
+	 */
+	private static final class Version {
+		final String dictionary;
+		final String label;
+		final List<String> grammars = new ArrayList<String>();
+		
+		Version(String dictionary, String label) {
+			this.dictionary = dictionary;
+			this.label = label;
+		}
+	}
+	
+	/**
+	 * The items of one grammar file.
+	 */
+	private static final class Grammar extends SyntaxDictionary {
+	}
+	
+	private final String dictionaryDir;
+	private final Map<String, Version> versions = new LinkedHashMap<String, Version>();
+	/** the versions by key */
+	private final ConcurrentMap<String, FutureTask<SyntaxDictionary>> dictionaries = new ConcurrentHashMap<>();
+	/** the grammars by the digest of their content */
+	private final ConcurrentMap<String, FutureTask<SyntaxDictionary>> grammars = new ConcurrentHashMap<>();
+	private final DictionaryInterner interner = new DictionaryInterner();
+	
+	/**
+	 * Creates a registry of the built in dictionaries.
+	 */
+	public DictionaryRegistry() {
+		this(new DictionaryPreferences());
+	}
+	
+	/**
+	 * @param prefs the dictionary directory; the built in dictionaries if it is empty
+	 */
+	public DictionaryRegistry(DictionaryPreferences prefs) {
+		dictionaryDir = prefs.getDictionaryDir();
+		final Document config;
+		try {
+			final DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+			factory.setIgnoringComments(true);
+			final InputStream in = new URL(getLocation("dictionaryconfig.xml")).openStream();
+			try {
+				config = factory.newDocumentBuilder().parse(in);
+			} finally {
+				in.close();
+			}
+		} catch (Exception e) {
+			throw new IllegalArgumentException("Problem loading dictionaryconfig.xml", e);
+		}
+		final NodeList dictionaryNodes = config.getElementsByTagName("dictionary");
+		for (int i = 0; i < dictionaryNodes.getLength(); i++) {
+			final Element dictionaryNode = (Element) dictionaryNodes.item(i);
+			final NodeList versionNodes = dictionaryNode.getElementsByTagName("version");
+			for (int j = 0; j < versionNodes.getLength(); j++) {
+				final Element versionNode = (Element) versionNodes.item(j);
+				final Version version = new Version(dictionaryNode.getAttribute("id"), versionNode.getAttribute("label"));
+				final NodeList grammarNodes = versionNode.getElementsByTagName("grammar");
+				for (int k = 0; k < grammarNodes.getLength(); k++) {
+					version.grammars.add(((Element) grammarNodes.item(k)).getAttribute("location").trim());
+				}
+				// the first of a key wins, as with getElementById
+				if (!versions.containsKey(versionNode.getAttribute("key"))) {
+					versions.put(versionNode.getAttribute("key"), version);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @param dictionary a dictionary key, e.g. {@link DictionaryPreferenceConstants#CFDIC_KEY}
+	 * @return the keys of its versions, in the order of the config
+	 */
+	public List<String> getVersions(String dictionary) {
+		final List<String> keys = new ArrayList<String>();
+		for (Map.Entry<String, Version> version : versions.entrySet()) {
+			if (version.getValue().dictionary.equals(dictionary)) {
+				keys.add(version.getKey());
+			}
+		}
+		return keys;
+	}
+	
+	/**
+	 * @param versionkey a version key, e.g. cf11
+	 * @return its label, e.g. ColdFusion 11, null for an unknown version
+	 */
+	public String getLabel(String versionkey) {
+		final Version version = versions.get(versionkey);
+		return version == null ? null : version.label;
+	}
+	
+	/**
+	 * @return the keys of the versions loaded so far
+	 */
+	public Set<String> getLoadedVersions() {
+		return Collections.unmodifiableSet(dictionaries.keySet());
+	}
+	
+	/**
+	 * Gets a version, loading it on the first call. The dictionary is read only and shared by all callers.
+	 *
+	 * @param versionkey a version key of the config, e.g. cf11 or lucee5
+	 * @return the dictionary of the version
+	 * @throws IllegalArgumentException if the version is not in the config or cannot be loaded
+	 */
+	public SyntaxDictionary getDictionary(final String versionkey) {
+		final Version version = versions.get(versionkey);
+		if (version == null) {
+			throw new IllegalArgumentException("No version " + versionkey + " in dictionaryconfig.xml");
+		}
+		return loadOnce(dictionaries, versionkey, new Callable<SyntaxDictionary>() {
+			public SyntaxDictionary call() throws Exception {
+				return createDictionary(version);
+			}
+		});
+	}
+	
+	private SyntaxDictionary createDictionary(Version version) throws Exception {
+		final SyntaxDictionary dic;
+		synchronized (CREATE_LOCK) {
+			if (version.dictionary.equals(DictionaryPreferenceConstants.CFDIC_KEY)) {
+				dic = new SQLSyntaxDictionary();
+				final List<String> sqlVersions = getVersions(DictionaryPreferenceConstants.SQLDIC_KEY);
+				if (!sqlVersions.isEmpty()) {
+					((SQLSyntaxDictionary) dic)
+							.loadKeywords(new URL(getLocation(versions.get(sqlVersions.get(0)).grammars.get(0))));
+				}
+			} else if (version.dictionary.equals(DictionaryPreferenceConstants.JSDIC_KEY)) {
+				dic = new JSSyntaxDictionary();
+			} else if (version.dictionary.equals(DictionaryPreferenceConstants.HTDIC_KEY)) {
+				dic = new HTMLSyntaxDictionary();
+			} else {
+				throw new IllegalArgumentException("Unknown dictionary " + version.dictionary);
+			}
+		}
+		for (String location : version.grammars) {
+			final String url = getLocation(location);
+			dic.addItems(getGrammar(url));
+			dic.setURL(url);
+		}
+		dic.freeze();
+		return dic;
+	}
+	
+	/**
+	 * Loads a grammar once per content, so identical files share their items. The digest of the content comes from the
+	 * image of the grammar when it has one, so the XML is not read then.
+	 */
+	private SyntaxDictionary getGrammar(final String url) throws IOException {
+		return loadOnce(grammars, DictionaryImage.digest(url), new Callable<SyntaxDictionary>() {
+			public SyntaxDictionary call() throws Exception {
+				final SyntaxDictionary grammar = new Grammar();
+				grammar.load(url);
+				interner.intern(grammar);
+				grammar.freeze();
+				return grammar;
+			}
+		});
+	}
+	
+	private static SyntaxDictionary loadOnce(ConcurrentMap<String, FutureTask<SyntaxDictionary>> cache, String key,
+			Callable<SyntaxDictionary> loader) {
+		FutureTask<SyntaxDictionary> task = cache.get(key);
+		if (task == null) {
+			final FutureTask<SyntaxDictionary> created = new FutureTask<SyntaxDictionary>(loader);
+			task = cache.putIfAbsent(key, created);
+			if (task == null) {
+				task = created;
+				created.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (ExecutionException e) {
+			// let the next caller try again
+			cache.remove(key, task);
+			if (e.getCause() instanceof IllegalArgumentException) {
+				throw (IllegalArgumentException) e.getCause();
+			}
+			throw new IllegalArgumentException("Problem loading " + key, e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while loading " + key, e);
+		}
+	}
+	
+	/**
+	 * @param path a file of the dictionary directory, or a URL
+	 * @return the URL of the file
+	 */
+	private String getLocation(String path) throws IOException {
+		if (path.indexOf(':') > 1) {
+			return path;
+		}
+		if (dictionaryDir.isEmpty()) {
+			final URL url = DictionaryRegistry.class.getResource(BUILT_IN + path);
+			if (url == null) {
+				throw new IOException("No built in dictionary file " + path);
+			}
+			return url.toString();
+		}
+		return new File(dictionaryDir, path).getAbsoluteFile().toURI().toString();
+	}
+}
@@ -26,6 +26,7 @@ package cfml.dictionary;
 
 import java.util.Iterator;
 import java.util.LinkedHashSet;
+import java.util.Set;
 
 /**
  * This is a function. Functions are like tags except they have a return type. A function derives from the Procedure
@@ -58,6 +59,7 @@ public class Function extends Procedure {
 	 * Function needs to override because param order is important (makes parameters a LinkedHashSet)
 	 */
 	public void addParameter(Parameter param) {
+		pinDetails();
 		if (parameters == null)
 			parameters = new LinkedHashSet();
 			
@@ -85,6 +87,7 @@ public class Function extends Procedure {
 			// to lowercase for the createobject hack
 			sb.append(this.name + "(");
 			
+			final Set<Parameter> parameters = getParameters();
 			if (parameters != null) {
 				Iterator it = parameters.iterator();
 				while (it.hasNext()) {
@@ -119,6 +122,7 @@ public class Function extends Procedure {
 			// to lowercase for the createobject hack
 			sb.append(this.name + "(");
 			
+			final Set<Parameter> parameters = getParameters();
 			if (parameters != null) {
 				Iterator it = parameters.iterator();
 				while (it.hasNext()) {
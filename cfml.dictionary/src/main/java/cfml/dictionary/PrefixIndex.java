@@ -0,0 +1,161 @@
+package cfml.dictionary;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * A case insensitive prefix index of the items of a dictionary map, for completion. The names are sorted once, a
+ * lookup is two binary searches and returns a view of the matching range, in name order.
+ *
+ * @param <T> the type of the items
+ */
+class PrefixIndex<T> {
+	
+	private final String[] names;
+	private final Object[] items;
+	private final Map<String, ?> source;
+	private final int version;
+	
+	/**
+	 * @param source the items by name, e.g. the tags of a dictionary
+	 * @param version the version of the items, see {@link SyntaxDictionary#itemsChanged()}
+	 */
+	PrefixIndex(Map<String, ? extends T> source, int version) {
+		@SuppressWarnings("unchecked")
+		final Map.Entry<String, ? extends T>[] entries = source.entrySet().toArray(new Map.Entry[source.size()]);
+		Arrays.sort(entries, new Comparator<Map.Entry<String, ? extends T>>() {
+			public int compare(Map.Entry<String, ? extends T> a, Map.Entry<String, ? extends T> b) {
+				final int order = String.CASE_INSENSITIVE_ORDER.compare(a.getKey(), b.getKey());
+				return order != 0 ? order : a.getKey().compareTo(b.getKey());
+			}
+		});
+		names = new String[entries.length];
+		items = new Object[entries.length];
+		for (int i = 0; i < entries.length; i++) {
+			names[i] = entries[i].getKey();
+			items[i] = entries[i].getValue();
+		}
+		this.source = source;
+		this.version = version;
+	}
+	
+	/**
+	 * @param source the current map of the items
+	 * @param version the current version of the items
+	 * @return true if the index was built from another map or another version of it
+	 */
+	boolean isStale(Map<String, ?> source, int version) {
+		return source != this.source || version != this.version;
+	}
+	
+	/**
+	 * @param prefix the start of the names, in any case
+	 * @return the items whose names start with prefix, in name order
+	 */
+	Set<T> find(String prefix) {
+		return new Range(bound(prefix, false), bound(prefix, true));
+	}
+	
+	/**
+	 * @param name a name, in any case
+	 * @return the items with that name
+	 */
+	Set<T> findExact(String name) {
+		int from = bound(name, false);
+		int to = from;
+		while (to < names.length && names[to].equalsIgnoreCase(name)) {
+			to++;
+		}
+		return new Range(from, to);
+	}
+	
+	/**
+	 * @param prefix the prefix
+	 * @param upper false for the first name starting with prefix, true for the first name behind them
+	 * @return the index of the name
+	 */
+	private int bound(String prefix, boolean upper) {
+		int low = 0;
+		int high = names.length;
+		while (low < high) {
+			final int middle = (low + high) >>> 1;
+			final int order = comparePrefix(names[middle], prefix);
+			if (order < 0 || (upper && order == 0)) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+	
+	/**
+	 * Compares the start of a name, as long as the prefix, to the prefix, ignoring case.
+	 */
+	private static int comparePrefix(String name, String prefix) {
+		final int length = Math.min(name.length(), prefix.length());
+		for (int i = 0; i < length; i++) {
+			char a = name.charAt(i);
+			char b = prefix.charAt(i);
+			if (a != b) {
+				// the folding of String.CASE_INSENSITIVE_ORDER
+				a = Character.toLowerCase(Character.toUpperCase(a));
+				b = Character.toLowerCase(Character.toUpperCase(b));
+				if (a != b) {
+					return a - b;
+				}
+			}
+		}
+		return name.length() < prefix.length() ? -1 : 0;
+	}
+	
+	/**
+	 * An unmodifiable view of the items in [from, to).
+	 */
+	private final class Range extends AbstractSet<T> {
+		private final int from;
+		private final int to;
+		
+		Range(int from, int to) {
+			this.from = from;
+			this.to = Math.max(from, to);
+		}
+		
+		@Override
+		public int size() {
+			return to - from;
+		}
+		
+		@Override
+		public Iterator<T> iterator() {
+			if (from == to) {
+				return Collections.<T> emptyIterator();
+			}
+			return new Iterator<T>() {
+				private int next = from;
+				
+				public boolean hasNext() {
+					return next < to;
+				}
+				
+				@SuppressWarnings("unchecked")
+				public T next() {
+					if (next >= to) {
+						throw new NoSuchElementException();
+					}
+					return (T) items[next++];
+				}
+				
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}
+			};
+		}
+	}
+}
@@ -76,7 +76,7 @@ public class Procedure implements Comparable {
 		 * If so it allocates whether it is required &amp; triggered or just triggered.
 		 */
 		HashMap params2Return = new HashMap();
-		Iterator paramIter = this.parameters.iterator();
+		Iterator paramIter = getParameters().iterator();
 		while (paramIter.hasNext()) {
 			Parameter currParam = (Parameter) paramIter.next();
 			// System.out.print("Testing \"" + currParam.getName() + "\"");
@@ -143,6 +143,13 @@ public class Procedure implements Comparable {
 	/** The parameters that belong to this procedure (if any) */
 	protected Set<Parameter> parameters = null;
 	
+	/**
+	 * The help and parameters of a procedure loaded from a {@link DictionaryImage}, read on first use. Null for a
+	 * procedure built from the xml, or once they have been copied to the fields. Read once into a local, as another
+	 * thread may copy them meanwhile.
+	 */
+	volatile DictionaryImage.Details details = null;
+	
 	/**
 	 * Constructs the procedure with a name.
 	 * 
@@ -169,6 +176,11 @@ public class Procedure implements Comparable {
 	 * @return true/false, figure it out :)
 	 */
 	public boolean hasParameters() {
+		final DictionaryImage.Details details = this.details;
+		if (details != null) {
+			return details.hasParameters();
+		}
+		final Set<Parameter> parameters = this.parameters;
 		if (parameters == null || parameters.size() < 1)
 			return false;
 		
@@ -182,6 +194,7 @@ public class Procedure implements Comparable {
 	 *            the parameter to add
 	 */
 	public void addParameter(Parameter param) {
+		pinDetails();
 		if (parameters == null)
 			parameters = new HashSet<Parameter>();
 		
@@ -193,7 +206,7 @@ public class Procedure implements Comparable {
 	 * 
 	 */
 	public void dumpParams() {
-		Object[] params = parameters.toArray();
+		Object[] params = getParameters().toArray();
 		for (int i = 0; i < params.length; i++) {
 			System.err.println("Procedure::getParameters() - Param for \'" + name + "\' is \'"
 					+ ((Parameter) params[i]).name + "\'");
@@ -206,9 +219,25 @@ public class Procedure implements Comparable {
 	 * @return Set of parameters belong to this procedure.
 	 */
 	public Set<Parameter> getParameters() {
+		final DictionaryImage.Details details = this.details;
+		if (details != null) {
+			return details.getParameters();
+		}
 		return parameters;
 	}
 	
+	/**
+	 * Copies the help and parameters read from the dictionary image to the fields, so they can be changed.
+	 */
+	void pinDetails() {
+		final DictionaryImage.Details details = this.details;
+		if (details != null) {
+			parameters = details.getParameters();
+			help = details.getHelp();
+			this.details = null;
+		}
+	}
+	
 	/**
 	 * Gets the name of this procedure.
 	 * 
@@ -224,6 +253,7 @@ public class Procedure implements Comparable {
 	 * @param help the help text to set
 	 */
 	public void setHelp(String help) {
+		pinDetails();
 		this.help = help;
 	}
 	
@@ -233,10 +263,15 @@ public class Procedure implements Comparable {
 	 * @return the help text
 	 */
 	public String getHelp() {
+		final DictionaryImage.Details details = this.details;
+		if (details != null) {
+			return details.getHelp();
+		}
 		return help;
 	}
 	
 	public String toString() {
+		final Set<Parameter> parameters = getParameters();
 		if (parameters != null) {
 			return name + ":" + parameters.size();
 		}
@@ -248,7 +283,7 @@ public class Procedure implements Comparable {
 			// if it has the same name and number of parameters assume its
 			// the same (this may need to be adjusted in the future)
 			if (((Procedure) obj).getName().equals(this.name)
-					&& ((Procedure) obj).getParameters().size() == parameters.size()) {
+					&& ((Procedure) obj).getParameters().size() == getParameters().size()) {
 				return true;
 			}
 		}
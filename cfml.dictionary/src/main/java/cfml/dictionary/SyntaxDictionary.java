@@ -27,9 +27,14 @@ package cfml.dictionary;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
@@ -66,6 +71,16 @@ public abstract class SyntaxDictionary {
 	/** the file name for this dictionary */
 	protected String dictionaryURL = null;
 	
+	/** prefix indexes for completion, built on first use */
+	private volatile PrefixIndex<Tag> elementIndex;
+	private volatile PrefixIndex<Function> functionIndex;
+	private volatile PrefixIndex<Object> scopeVarIndex;
+	/** counts the changes of the tags, functions and scope variables, see {@link #itemsChanged()} */
+	private volatile int itemsVersion;
+	
+	/** set once the dictionary is shared read only, see {@link DictionaryRegistry} */
+	private boolean frozen = false;
+	
 	public SyntaxDictionary() {
 		syntaxelements = new HashMap<String, Tag>();
 		functions = new HashMap<String, Function>();
@@ -80,15 +95,78 @@ public abstract class SyntaxDictionary {
 	 * @param url The URL of the XML dictionary to load.
 	 */
 	public void loadDictionary(String url) {
-		setURL(url);
-		
 		try {
-			loadDictionary();
+			load(url);
+		} catch (IllegalStateException e) {
+			throw e;
 		} catch (Exception e) {
 			e.printStackTrace(System.err);
 		}
 	}
 	
+	/**
+	 * Like {@link #loadDictionary(String)}, but passes on the errors.
+	 * 
+	 * @param url The URL of the XML dictionary to load.
+	 * @throws Exception if the dictionary cannot be read
+	 */
+	void load(String url) throws Exception {
+		checkNotFrozen();
+		setURL(url);
+		try {
+			loadDictionary();
+		} finally {
+			itemsChanged();
+		}
+	}
+	
+	/**
+	 * Adds the tags, functions and scopes of another dictionary to this one. The items are shared, not copied.
+	 * 
+	 * @param other the dictionary to add, e.g. one grammar of a version
+	 */
+	void addItems(SyntaxDictionary other) {
+		checkNotFrozen();
+		syntaxelements.putAll(other.syntaxelements);
+		functions.putAll(other.functions);
+		scopeVars.putAll(other.scopeVars);
+		scopes.putAll(other.scopes);
+		itemsChanged();
+	}
+	
+	/**
+	 * Makes the maps of this dictionary read only, so it can be shared between threads once it is loaded. Loading
+	 * into it afterwards fails with an IllegalStateException.
+	 */
+	void freeze() {
+		syntaxelements = Collections.unmodifiableMap(syntaxelements);
+		functions = Collections.unmodifiableMap(functions);
+		scopeVars = Collections.unmodifiableMap(scopeVars);
+		scopes = Collections.unmodifiableMap(scopes);
+		frozen = true;
+	}
+	
+	/**
+	 * @return true if the dictionary is shared read only
+	 */
+	public boolean isFrozen() {
+		return frozen;
+	}
+	
+	private void checkNotFrozen() {
+		if (frozen) {
+			throw new IllegalStateException("The dictionary " + dictionaryURL + " is shared and cannot be changed");
+		}
+	}
+	
+	/**
+	 * Marks the tags, functions and scope variables as changed, so the completion indexes are rebuilt. Code that
+	 * changes the maps other than by loading a dictionary calls this afterwards.
+	 */
+	public void itemsChanged() {
+		itemsVersion++;
+	}
+	
 	/**
 	 * Sets the URL for the dictionary.
 	 * 
@@ -198,18 +276,40 @@ public abstract class SyntaxDictionary {
 					"SyntaxDictionary::getFilteredElements() - WARNING: Tag name requested that does NOT begin with CF. Tag name was \'"
 							+ start + "\'");
 		}
-		Set<Object> elements = new HashSet<Object>();
-		Set<String> keys = getAllElements();
-		if (keys == null) {
-			return elements;
+		PrefixIndex<Tag> index = elementIndex;
+		if (index == null || index.isStale(syntaxelements, itemsVersion)) {
+			index = new PrefixIndex<Tag>(syntaxelements, itemsVersion);
+			elementIndex = index;
 		}
-		Iterator<String> it = keys.iterator();
-		while (it.hasNext()) {
-			elements.add(syntaxelements.get((String) it.next()));
+		return new LinkedHashSet<Object>(findPrefix(index, start));
+	}
+	
+	/**
+	 * get a set of filtered functions limited by start
+	 * 
+	 * @param start
+	 *            the string to filter by (i.e. "arr" will return all functions beginning with "arr"
+	 * @return A set of matching functions, in name order.
+	 */
+	public Set<Object> getFilteredFunctions(String start) {
+		PrefixIndex<Function> index = functionIndex;
+		if (index == null || index.isStale(functions, itemsVersion)) {
+			index = new PrefixIndex<Function>(functions, itemsVersion);
+			functionIndex = index;
 		}
-		
-		return limitSet(elements, start);
-		// return limitSet(getAllElements(),start);
+		return new LinkedHashSet<Object>(findPrefix(index, start));
+	}
+	
+	/**
+	 * Looks up the items starting with start; inside a function call, e.g. "len(", the item named like the function.
+	 * The set is a read-only view of the index, the public methods return copies.
+	 */
+	@SuppressWarnings("unchecked")
+	private static Set<Object> findPrefix(PrefixIndex<?> index, String start) {
+		if (start.endsWith("(")) {
+			return (Set<Object>) index.findExact(start.substring(0, start.length() - 1));
+		}
+		return (Set<Object>) index.find(start);
 	}
 	
 	/**
@@ -219,9 +319,43 @@ public abstract class SyntaxDictionary {
 	 *            the string to filter by (i.e. "cfou" will return all tags beginning with "cfou"
 	 * @return A set of matching elements.
 	 */
+	@SuppressWarnings("unchecked")
 	public Set<Object> getFilteredScopeVars(String start) {
-		return limitSet(getAllScopeVars(), start);
-		// return limitSet(getAllElements(),start);
+		PrefixIndex<Object> index = scopeVarIndex;
+		if (index == null || index.isStale(scopeVars, itemsVersion)) {
+			index = new PrefixIndex<Object>((Map<String, Object>) (Map<String, ?>) scopeVars, itemsVersion);
+			scopeVarIndex = index;
+		}
+		final Set<Object> found = findPrefix(index, start);
+		final Set<Object> owners = start.endsWith(".") ? index.findExact(start.substring(0, start.length() - 1))
+				: Collections.emptySet();
+		if (!containsComponent(found) && !containsComponent(owners)) {
+			return new LinkedHashSet<Object>(found);
+		}
+		// components are completed by limitSet, as their scopes, or after "scope." as their methods
+		final Set<Object> filterset = new LinkedHashSet<Object>();
+		for (Object item : found) {
+			if (item instanceof Component) {
+				filterset.addAll(limitSet(Collections.singleton(item), start));
+			} else {
+				filterset.add(item);
+			}
+		}
+		for (Object item : owners) {
+			if (item instanceof Component) {
+				filterset.addAll(limitSet(Collections.singleton(item), start));
+			}
+		}
+		return filterset;
+	}
+	
+	private static boolean containsComponent(Set<Object> items) {
+		for (Object item : items) {
+			if (item instanceof Component) {
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	/**
@@ -436,71 +570,84 @@ public abstract class SyntaxDictionary {
 	}
 	
 	/**
-	 * limits a set based on a starting string. The set can either be a set of Strings, Tag, Functions, or Parameters
+	 * limits a set based on a starting string, ignoring case. The set can either be a set of Strings, Tag, Functions,
+	 * or Parameters
 	 * 
 	 * @param st
 	 *            the full set
 	 * @param start
 	 *            the string to use as a limiter
-	 * @return everything in the set that starts with start in the format passed in
+	 * @return everything in the set that starts with start in the format passed in, ordered by name
 	 */
 	public static Set<Object> limitSet(Set<? extends Object> st, String start) {
-		Set<Object> filterset = new HashSet<Object>();
+		final List<Object> matches = new ArrayList<Object>();
 		Set<? extends Object> fullset = st;
 		
 		if (fullset != null) {
 			Iterator<? extends Object> it = fullset.iterator();
 			while (it.hasNext()) {
 				Object item = it.next();
-				String possible = "";
+				String possible = getName(item);
 				
-				if (item instanceof String) {
-					possible = (String) item;
-				} else if (item instanceof Tag) {
-					possible = ((Tag) item).getName();
-				} else if (item instanceof Function) {
-					possible = ((Function) item).getName();
-				} else if (item instanceof Parameter) {
-					possible = ((Parameter) item).getName();
-				} else if (item instanceof Value) {
-					possible = ((Value) item).getValue();
-				} else if (item instanceof ScopeVar) {
-					possible = ((ScopeVar) item).getName();
-				} else if (item instanceof Component) {
+				if (item instanceof Component) {
 					Iterator<?> i = ((Component) item).getScopes().iterator();
 					ScopeVar val;
-					// Component c;
 					while (i.hasNext()) {
-						
 						possible = (String) i.next();
-						// System.out.println("Checking " + possible + ":" + start);
-						if (possible.toUpperCase().startsWith(start.toUpperCase())) {
+						if (startsWithIgnoreCase(possible, start)) {
 							val = new ScopeVar("componentscope", possible);
 							val.setHelp(((Component) item).getHelp());
-							filterset.add(new ScopeVar("componentscope", possible));
-						} else if ((possible + ".").toUpperCase().equals(start.toUpperCase())) {
-							Iterator<?> j = ((Component) item).getMethods().iterator();
-							while (j.hasNext()) {
-								filterset.add(j.next());
-							}
+							matches.add(val);
+						} else if (possible.length() + 1 == start.length() && start.endsWith(".")
+								&& startsWithIgnoreCase(start, possible) && ((Component) item).getMethods() != null) {
+							matches.addAll(((Component) item).getMethods());
 						}
 					}
 					possible = "";
-				} else {
+				} else if (possible == null) {
 					throw new IllegalArgumentException(
 							"The passed set must have only Strings, Procedures, or Parameters");
 				}
 				
 				// Strip out unnecessary entries if we are inside a function.
-				if (start.endsWith("(") && possible.equalsIgnoreCase(start.substring(0, start.length() - 1))) {
-					filterset.add(item);
-				} else if (possible.toUpperCase().startsWith(start.toUpperCase())) {
-					// System.out.println(possible);
-					filterset.add(item);
+				if (start.endsWith("(") && possible.length() == start.length() - 1
+						&& startsWithIgnoreCase(start, possible)) {
+					matches.add(item);
+				} else if (startsWithIgnoreCase(possible, start)) {
+					matches.add(item);
 				}
 			}
 		}
-		return filterset;
+		Collections.sort(matches, new Comparator<Object>() {
+			public int compare(Object a, Object b) {
+				return String.CASE_INSENSITIVE_ORDER.compare(getName(a), getName(b));
+			}
+		});
+		return new LinkedHashSet<Object>(matches);
+	}
+	
+	/**
+	 * @return the name completion matches an item of a dictionary by, "" for a component, null for anything else
+	 */
+	private static String getName(Object item) {
+		if (item instanceof String) {
+			return (String) item;
+		} else if (item instanceof Procedure && !(item instanceof Component)) {
+			return ((Procedure) item).getName();
+		} else if (item instanceof Parameter) {
+			return ((Parameter) item).getName();
+		} else if (item instanceof Value) {
+			return ((Value) item).getValue();
+		} else if (item instanceof ScopeVar) {
+			return ((ScopeVar) item).getName();
+		} else if (item instanceof Component) {
+			return "";
+		}
+		return null;
+	}
+	
+	private static boolean startsWithIgnoreCase(String value, String prefix) {
+		return value.regionMatches(true, 0, prefix, 0, prefix.length());
 	}
 	
 	/**
@@ -539,7 +686,8 @@ public abstract class SyntaxDictionary {
 	}
 	
 	/**
-	 * Loads and parses an cfeclipse xml dictionary into this dictionary object
+	 * Loads and parses an cfeclipse xml dictionary into this dictionary object. The precompiled image of the xml is
+	 * loaded instead when there is one, see {@link DictionaryImage}.
 	 * 
 	 * @throws IOException
 	 * @throws SAXException
@@ -550,6 +698,10 @@ public abstract class SyntaxDictionary {
 		if (this.dictionaryURL == null)
 			throw new IOException("Dictionary file name can not be null!");
 		
+		if (DictionaryImage.load(this.dictionaryURL, this)) {
+			return;
+		}
+		
 		final URL url = new URL(this.dictionaryURL);
 		final InputSource input = new InputSource(new BufferedInputStream(url.openStream()));
 		input.setSystemId(url.toString());
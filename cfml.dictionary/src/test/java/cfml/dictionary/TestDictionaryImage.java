@@ -0,0 +1,257 @@
+package cfml.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.xml.sax.InputSource;
+import org.xml.sax.XMLReader;
+
+import cfml.dictionary.syntax.CFSyntaxDictionary;
+
+public class TestDictionaryImage {
+	
+	private static final String COMPONENT_DICTIONARY = "<dictionary>\n"
+			+ " <tags><tag name=\"cfthing\" single=\"true\" creator=\"3\">\n"
+			+ "  <help><![CDATA[ A thing ]]></help>\n"
+			+ "  <parameter name=\"action\" type=\"String\" required=\"true\">\n"
+			+ "   <help>What to do</help>\n"
+			+ "   <values><value option=\"read\"/><value option=\"write\"/></values>\n"
+			+ "  </parameter>\n"
+			+ "  <parameter name=\"file\" type=\"String\">\n"
+			+ "   <triggers><selectedValue attributeName=\"action\" value=\"read\" required=\"true\" index=\"2\"/>"
+			+ "</triggers>\n"
+			+ "  </parameter>\n"
+			+ "  <return parameter=\"name\" type=\"Query\"/>\n"
+			+ " </tag></tags>\n"
+			+ " <scopes><scope type=\"String\" value=\"server.os.name\"><help>The OS</help></scope></scopes>\n"
+			+ " <components><component path=\"app.model.User\" framework=\"app\" creator=\"1\">\n"
+			+ "  <function name=\"getName\" returns=\"String\"><parameter name=\"upper\" type=\"boolean\"/></function>\n"
+			+ "  <scope type=\"app.model.User\" value=\"session.user\"/>\n"
+			+ "  <scope type=\"app.model.User\" value=\"request.user\"/>\n"
+			+ " </component></components>\n"
+			+ "</dictionary>\n";
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	/**
+	 * The largest shipped dictionary loads the same from its image as from the XML.
+	 */
+	@Test
+	public void testCF11() throws Exception {
+		final File xml = folder.newFile("cf11.xml");
+		Files.copy(new File("src/main/resources/org.cfeclipse.cfml/dictionary/cf11.xml").toPath(), xml.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		assertSameItems(xml);
+	}
+	
+	@Test
+	public void testComponents() throws Exception {
+		final File xml = folder.newFile("components.xml");
+		Files.write(xml.toPath(), COMPONENT_DICTIONARY.getBytes(StandardCharsets.UTF_8));
+		final SyntaxDictionary dictionary = assertSameItems(xml);
+		final Object user = dictionary.getScopeVars().get("session.user");
+		assertTrue(user instanceof Component);
+		assertSame(user, dictionary.getScopeVars().get("request.user"));
+		assertEquals("[getName([boolean upper]) : String]", ((Component) user).getMethods().toString());
+		for (Parameter parameter : dictionary.getTag("cfthing").getParameters()) {
+			if (parameter.getName().equals("file")) {
+				assertEquals(2, ((Trigger) parameter.getTriggers().get(0)).paramIndex());
+			}
+		}
+	}
+	
+	/**
+	 * Loading an image reads the skeleton only, help and parameters are read when asked for.
+	 */
+	@Test
+	public void testLazyDetails() throws Exception {
+		final File xml = folder.newFile("lazy.xml");
+		Files.write(xml.toPath(), COMPONENT_DICTIONARY.getBytes(StandardCharsets.UTF_8));
+		DictionaryCompiler.compile(xml, new File(xml.getPath() + DictionaryImage.SUFFIX));
+		final SyntaxDictionary dictionary = load(xml);
+		final Tag tag = dictionary.getTag("cfthing");
+		assertTrue(tag.isSingle());
+		assertEquals("", tag.help);
+		assertNull(tag.parameters);
+		assertNotNull(tag.details);
+		// stored in the skeleton
+		assertTrue(tag.hasParameters());
+		assertEquals(2, dictionary.getElementAttributes("cfthing").size());
+		assertSame(tag.getParameters(), tag.getParameters());
+		assertEquals("[read, write]", new TreeSet<Object>(
+				dictionary.getFilteredAttributeValues("cfthing", "action", "")).toString());
+		
+		// changing a procedure copies its details to the fields
+		tag.addParameter(new Parameter("extra", "string"));
+		assertNull(tag.details);
+		assertEquals(3, tag.getParameters().size());
+		assertTrue(tag.getHelp().contains("A thing"));
+	}
+	
+	/**
+	 * An image older than its XML is ignored.
+	 */
+	@Test
+	public void testStaleImage() throws Exception {
+		final File xml = folder.newFile("stale.xml");
+		Files.write(xml.toPath(), COMPONENT_DICTIONARY.getBytes(StandardCharsets.UTF_8));
+		final File image = new File(xml.getPath() + DictionaryImage.SUFFIX);
+		DictionaryCompiler.compile(xml, image);
+		final OutputStream out = new FileOutputStream(image);
+		try {
+			// an image of an empty dictionary
+			DictionaryImage.write(new HashMap<String, Tag>(), new HashMap<String, Function>(),
+					new HashMap<String, Object>(), new HashMap<String, Object>(), out);
+		} finally {
+			out.close();
+		}
+		assertEquals(0, load(xml).getAllTags().size());
+		xml.setLastModified(image.lastModified() + 2000);
+		assertEquals(1, load(xml).getAllTags().size());
+	}
+	
+	/**
+	 * The digest of the XML is read from the image header; without an image the XML is digested.
+	 */
+	@Test
+	public void testDigest() throws Exception {
+		final File xml = folder.newFile("digest.xml");
+		Files.write(xml.toPath(), COMPONENT_DICTIONARY.getBytes(StandardCharsets.UTF_8));
+		final String url = xml.toURI().toString();
+		final String digest = DictionaryImage.digest(url);
+		assertEquals(64, digest.length());
+		final File image = new File(xml.getPath() + DictionaryImage.SUFFIX);
+		DictionaryCompiler.compile(xml, image);
+		assertEquals(digest, DictionaryImage.digest(url));
+		
+		// the XML is not read while the image is up to date
+		final long modified = xml.lastModified();
+		Files.write(xml.toPath(), "<dictionary/>".getBytes(StandardCharsets.UTF_8));
+		xml.setLastModified(modified);
+		image.setLastModified(modified);
+		assertEquals(digest, DictionaryImage.digest(url));
+		assertTrue(image.delete());
+		assertFalse(digest.equals(DictionaryImage.digest(url)));
+	}
+	
+	private SyntaxDictionary assertSameItems(File xml) throws Exception {
+		final Map<String, Tag> tags = new HashMap<String, Tag>();
+		final Map<String, Function> functions = new HashMap<String, Function>();
+		final Map<String, Object> scopeVars = new HashMap<String, Object>();
+		final Map<String, Object> scopes = new HashMap<String, Object>();
+		final SAXParserFactory factory = SAXParserFactory.newInstance();
+		final XMLReader xmlReader = factory.newSAXParser().getXMLReader();
+		xmlReader.setContentHandler(new DictionaryContentHandler(tags, functions, scopeVars, scopes));
+		xmlReader.parse(new InputSource(xml.toURI().toString()));
+		
+		final File image = new File(xml.getPath() + DictionaryImage.SUFFIX);
+		DictionaryCompiler.compile(xml, image);
+		assertTrue(image.length() < xml.length());
+		final SyntaxDictionary dictionary = load(xml);
+		
+		// from the skeleton, before the details are read
+		for (Map.Entry<String, Tag> entry : tags.entrySet()) {
+			final Tag tag = dictionary.syntaxelements.get(entry.getKey());
+			assertEquals(entry.getKey(), entry.getValue().hasParameters(), tag.hasParameters());
+			assertEquals(entry.getKey(), DictionaryInterner.detailsHash(entry.getValue()),
+					DictionaryInterner.detailsHash(tag));
+			assertFalse(entry.getKey(), tag.details.isLoaded());
+		}
+		for (Map.Entry<String, Function> entry : functions.entrySet()) {
+			final Function function = dictionary.functions.get(entry.getKey());
+			assertEquals(entry.getKey(), entry.getValue().hasParameters(), function.hasParameters());
+			assertEquals(entry.getKey(), DictionaryInterner.detailsHash(entry.getValue()),
+					DictionaryInterner.detailsHash(function));
+		}
+		assertEquals(describe(tags), describe(dictionary.syntaxelements));
+		assertEquals(describe(functions), describe(dictionary.functions));
+		assertEquals(describe(scopeVars), describe(dictionary.scopeVars));
+		assertEquals(describe(scopes), describe(dictionary.scopes));
+		return dictionary;
+	}
+	
+	private static SyntaxDictionary load(File xml) {
+		final SyntaxDictionary dictionary = new CFSyntaxDictionary();
+		dictionary.loadDictionary(xml.toURI().toString());
+		return dictionary;
+	}
+	
+	private static Map<String, String> describe(Map<String, ?> items) {
+		final Map<String, String> descriptions = new TreeMap<String, String>();
+		for (Map.Entry<String, ?> entry : items.entrySet()) {
+			descriptions.put(entry.getKey(), describe(entry.getValue()));
+		}
+		return descriptions;
+	}
+	
+	private static String describe(Object item) {
+		if (item instanceof ScopeVar) {
+			final ScopeVar scopeVar = (ScopeVar) item;
+			return scopeVar.getType() + " " + scopeVar.getName() + " " + scopeVar.getHelp();
+		}
+		final Procedure procedure = (Procedure) item;
+		final StringBuilder description = new StringBuilder();
+		description.append(procedure.getClass().getSimpleName()).append(' ').append(procedure).append(' ')
+				.append(procedure.getCreatorFlags()).append(' ').append(procedure.getHelp());
+		if (procedure instanceof Tag) {
+			final Tag tag = (Tag) procedure;
+			description.append(tag.isSingle()).append(tag.isXMLStyle()).append(tag.isHybrid())
+					.append(tag.allowsAnyAttribute()).append(tag.isEndtagrequired());
+			final List<String> returns = new ArrayList<String>();
+			for (Return returnItem : tag.getReturns()) {
+				returns.add(returnItem.getParameterName() + ":" + returnItem.getType());
+			}
+			Collections.sort(returns);
+			description.append(returns);
+		}
+		if (procedure instanceof Component) {
+			description.append(((Component) procedure).getMethods()).append(((Component) procedure).getScopes());
+		}
+		final List<String> parameters = new ArrayList<String>();
+		final Set<Parameter> parameterSet = procedure.getParameters();
+		if (parameterSet != null) {
+			for (Parameter parameter : parameterSet) {
+				final List<String> values = new ArrayList<String>();
+				for (Object value : parameter.getValues()) {
+					values.add(((Value) value).getValue() + ":" + ((Value) value).getHelp());
+				}
+				Collections.sort(values);
+				final List<String> triggers = new ArrayList<String>();
+				for (Object trigger : parameter.getTriggers()) {
+					triggers.add(trigger + ":" + ((Trigger) trigger).paramIndex() + ":" + ((Trigger) trigger).isRequired);
+				}
+				parameters.add(parameter + " " + parameter.getDefaultValue() + " " + parameter.getCategory() + " "
+						+ parameter.getReturnVarType() + " " + parameter.getHelp() + " " + values + " " + triggers);
+			}
+		}
+		if (!(procedure instanceof Function)) {
+			Collections.sort(parameters);
+		}
+		return description.append(parameters).toString();
+	}
+}
@@ -0,0 +1,193 @@
+package cfml.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.dictionary.preferences.DictionaryPreferenceConstants;
+import cfml.dictionary.preferences.DictionaryPreferences;
+import cfml.dictionary.syntax.CFSyntaxDictionary;
+import cfml.dictionary.syntax.JSSyntaxDictionary;
+import cfml.dictionary.syntax.SQLSyntaxDictionary;
+
+public class TestDictionaryRegistry {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testVersions() {
+		final DictionaryRegistry registry = new DictionaryRegistry();
+		assertTrue(registry.getVersions(DictionaryPreferenceConstants.CFDIC_KEY).contains("cf11"));
+		assertEquals("[ecma]", registry.getVersions(DictionaryPreferenceConstants.JSDIC_KEY).toString());
+		assertEquals("ColdFusion 11", registry.getLabel("cf11"));
+		assertTrue(registry.getLoadedVersions().isEmpty());
+		
+		final SyntaxDictionary cf11 = registry.getDictionary("cf11");
+		assertTrue(cf11 instanceof SQLSyntaxDictionary);
+		assertNotNull(cf11.getTag("cfoutput"));
+		assertTrue(registry.getDictionary("ecma") instanceof JSSyntaxDictionary);
+		assertSame(cf11, registry.getDictionary("cf11"));
+		assertEquals(2, registry.getLoadedVersions().size());
+	}
+	
+	/**
+	 * Versions are loaded side by side, and share the items of identical grammars.
+	 */
+	@Test
+	public void testSharedGrammars() {
+		final DictionaryRegistry registry = new DictionaryRegistry();
+		final SyntaxDictionary cf10 = registry.getDictionary("cf10");
+		final SyntaxDictionary railo4 = registry.getDictionary("railo4");
+		final SyntaxDictionary cf11 = registry.getDictionary("cf11");
+		assertNotSame(cf10, railo4);
+		assertSame(cf10.getTag("cfoutput"), railo4.getTag("cfoutput"));
+		assertNotSame(cf10.getTag("cfspreadsheet"), cf11.getTag("cfspreadsheet"));
+		assertEquals(cf10.getAllTags().size(), railo4.getAllTags().size());
+	}
+	
+	/**
+	 * Versions loaded from different grammars share the items they have in common.
+	 */
+	@Test
+	public void testSharedItems() {
+		final DictionaryRegistry registry = new DictionaryRegistry();
+		final SyntaxDictionary cf10 = registry.getDictionary("cf10");
+		final SyntaxDictionary cf11 = registry.getDictionary("cf11");
+		int shared = 0;
+		for (Tag tag : cf10.getSyntaxelements().values()) {
+			if (cf11.getTag(tag.getName()) == tag) {
+				shared++;
+			}
+		}
+		assertTrue(shared > cf10.getAllTags().size() / 2);
+		assertNotSame(cf10.getTag("cfspreadsheet"), cf11.getTag("cfspreadsheet"));
+	}
+	
+	/**
+	 * Items parsed from an XML share their parameters and values too.
+	 */
+	@Test
+	public void testInternParameters() throws Exception {
+		final SyntaxDictionary cf10 = loadXML("cf10.xml");
+		final SyntaxDictionary cf11 = loadXML("cf11.xml");
+		final DictionaryInterner interner = new DictionaryInterner();
+		interner.intern(cf10);
+		interner.intern(cf11);
+		assertTrue(interner.getHitRatio() > 0.5);
+		
+		final Tag cf10Spreadsheet = cf10.getTag("cfspreadsheet");
+		final Tag cf11Spreadsheet = cf11.getTag("cfspreadsheet");
+		assertNotSame(cf10Spreadsheet, cf11Spreadsheet);
+		int shared = 0;
+		for (Parameter parameter : cf10Spreadsheet.getParameters()) {
+			for (Parameter other : cf11Spreadsheet.getParameters()) {
+				if (parameter == other) {
+					shared++;
+				}
+			}
+		}
+		assertTrue(shared > 0);
+	}
+	
+	/**
+	 * Procedures loaded from an image are interned without reading their help and parameters.
+	 */
+	@Test
+	public void testInternKeepsDetailsUnread() {
+		final DictionaryRegistry registry = new DictionaryRegistry();
+		final SyntaxDictionary cf10 = registry.getDictionary("cf10");
+		final SyntaxDictionary cf11 = registry.getDictionary("cf11");
+		assertSame(cf10.getTag("cfoutput"), cf11.getTag("cfoutput"));
+		int lazy = 0;
+		for (SyntaxDictionary dictionary : new SyntaxDictionary[] { cf10, cf11 }) {
+			for (Tag tag : dictionary.getSyntaxelements().values()) {
+				if (tag.details != null) {
+					assertFalse(tag.getName(), tag.details.isLoaded());
+					lazy++;
+				}
+			}
+		}
+		assertTrue(lazy > 0);
+	}
+	
+	@Test
+	public void testConcurrentLoad() throws Exception {
+		final DictionaryRegistry registry = new DictionaryRegistry();
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<SyntaxDictionary>> results = new ArrayList<Future<SyntaxDictionary>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<SyntaxDictionary>() {
+					public SyntaxDictionary call() {
+						return registry.getDictionary("lucee5");
+					}
+				}));
+			}
+			final SyntaxDictionary first = results.get(0).get();
+			for (Future<SyntaxDictionary> result : results) {
+				assertSame(first, result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testReadOnly() {
+		final SyntaxDictionary cf11 = new DictionaryRegistry().getDictionary("cf11");
+		assertTrue(cf11.isFrozen());
+		try {
+			cf11.loadDictionary("file:/nowhere.xml");
+			fail();
+		} catch (IllegalStateException e) {
+			// expected
+		}
+		try {
+			cf11.getSyntaxelements().put("cfnew", null);
+			fail();
+		} catch (UnsupportedOperationException e) {
+			// expected
+		}
+	}
+	
+	private SyntaxDictionary loadXML(String name) throws Exception {
+		final File xml = folder.newFile(name);
+		Files.copy(new File("src/main/resources/org.cfeclipse.cfml/dictionary/" + name).toPath(), xml.toPath(),
+				StandardCopyOption.REPLACE_EXISTING);
+		final SyntaxDictionary dictionary = new CFSyntaxDictionary();
+		dictionary.loadDictionary(xml.toURI().toString());
+		return dictionary;
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testUnknownVersion() {
+		new DictionaryRegistry().getDictionary("cf99");
+	}
+	
+	@Test
+	public void testDictionaryDir() {
+		final DictionaryPreferences prefs = new DictionaryPreferences();
+		prefs.setDictionaryDir("src/test/resources/dictionary");
+		final DictionaryRegistry registry = new DictionaryRegistry(prefs);
+		assertNotNull(registry.getDictionary("awesomedic").getTag("cfif"));
+	}
+}
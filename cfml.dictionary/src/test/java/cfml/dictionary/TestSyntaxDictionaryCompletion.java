@@ -0,0 +1,132 @@
+package cfml.dictionary;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cfml.dictionary.syntax.CFSyntaxDictionary;
+
+public class TestSyntaxDictionaryCompletion {
+	
+	private static SyntaxDictionary dictionary;
+	
+	@BeforeClass
+	public static void setUpClass() {
+		dictionary = new CFSyntaxDictionary();
+		dictionary.loadDictionary(
+				TestSyntaxDictionaryCompletion.class.getResource("/org.cfeclipse.cfml/dictionary/cf11.xml").toString());
+	}
+	
+	private static List<String> names(Set<Object> items) {
+		final List<String> names = new ArrayList<String>();
+		for (Object item : items) {
+			names.add(item instanceof Procedure ? ((Procedure) item).getName() : ((ScopeVar) item).getName());
+		}
+		return names;
+	}
+	
+	/**
+	 * The names that a scan of all of them finds, in name order.
+	 */
+	private static List<String> scan(Set<String> all, String start) {
+		final List<String> names = new ArrayList<String>();
+		for (String name : all) {
+			if (name.toUpperCase().startsWith(start.toUpperCase())) {
+				names.add(name);
+			}
+		}
+		names.sort(String.CASE_INSENSITIVE_ORDER);
+		return names;
+	}
+	
+	@Test
+	public void testFilteredElements() {
+		assertEquals(scan(dictionary.getAllElements(), "cfou"), names(dictionary.getFilteredElements("cfou")));
+		assertEquals(scan(dictionary.getAllElements(), "CFQ"), names(dictionary.getFilteredElements("CFQ")));
+		assertEquals(dictionary.getAllElements().size(), dictionary.getFilteredElements("").size());
+		assertTrue(dictionary.getFilteredElements("cfnosuchtag").isEmpty());
+	}
+	
+	@Test
+	public void testFilteredFunctions() {
+		final List<String> arrayFunctions = names(dictionary.getFilteredFunctions("Array"));
+		assertEquals(scan(dictionary.getFunctions(), "array"), arrayFunctions);
+		assertTrue(arrayFunctions.contains("arrayappend") || arrayFunctions.contains("arrayAppend"));
+		assertEquals(1, dictionary.getFilteredFunctions("LEN(").size());
+		assertEquals(dictionary.getFunctions().size(), dictionary.getFilteredFunctions("").size());
+	}
+	
+	@Test
+	public void testFilteredScopeVars() {
+		final List<String> server = names(dictionary.getFilteredScopeVars("server.coldfusion."));
+		assertEquals(scan(dictionary.getScopeVars().keySet(), "server.coldfusion."), server);
+		assertTrue(server.size() > 1);
+	}
+	
+	/**
+	 * Callers may change the sets they get, as they could with the sets limitSet used to build.
+	 */
+	@Test
+	public void testFilteredSetsAreCopies() {
+		final int size = dictionary.getFilteredElements("cfou").size();
+		final Set<Object> elements = dictionary.getFilteredElements("cfou");
+		elements.addAll(dictionary.getFilteredFunctions("array"));
+		elements.clear();
+		dictionary.getFilteredFunctions("array").clear();
+		dictionary.getFilteredScopeVars("server.").clear();
+		assertEquals(size, dictionary.getFilteredElements("cfou").size());
+		assertTrue(dictionary.getFilteredFunctions("array").size() > 1);
+		assertTrue(dictionary.getFilteredScopeVars("server.").size() > 1);
+	}
+	
+	@Test
+	public void testFilteredAttributes() {
+		final List<String> names = new ArrayList<String>();
+		for (Object parameter : dictionary.getFilteredAttributes("cfquery", "DAT")) {
+			names.add(((Parameter) parameter).getName());
+		}
+		assertEquals("[datasource]", names.toString());
+		final List<String> all = new ArrayList<String>();
+		for (Object parameter : dictionary.getFilteredAttributes("cfquery", "")) {
+			all.add(((Parameter) parameter).getName());
+		}
+		final List<String> sorted = new ArrayList<String>(all);
+		sorted.sort(String.CASE_INSENSITIVE_ORDER);
+		assertEquals(sorted, all);
+	}
+	
+	/**
+	 * The index follows the dictionary when another grammar is loaded into it.
+	 */
+	@Test
+	public void testReload() {
+		final SyntaxDictionary reloaded = new CFSyntaxDictionary();
+		assertTrue(reloaded.getFilteredElements("cf").isEmpty());
+		reloaded.loadDictionary(
+				TestSyntaxDictionaryCompletion.class.getResource("/org.cfeclipse.cfml/dictionary/mxunit.xml").toString());
+		reloaded.loadDictionary(
+				TestSyntaxDictionaryCompletion.class.getResource("/org.cfeclipse.cfml/dictionary/cf11.xml").toString());
+		assertEquals(scan(reloaded.getAllElements(), "cf"), names(reloaded.getFilteredElements("cf")));
+	}
+	
+	/**
+	 * A change that keeps the number of items rebuilds the index as well.
+	 */
+	@Test
+	public void testChangedItems() {
+		final SyntaxDictionary changed = new CFSyntaxDictionary();
+		changed.loadDictionary(
+				TestSyntaxDictionaryCompletion.class.getResource("/org.cfeclipse.cfml/dictionary/cf11.xml").toString());
+		assertEquals("[cfoutput]", names(changed.getFilteredElements("cfoutput")).toString());
+		changed.getSyntaxelements().remove("cfoutput");
+		changed.getSyntaxelements().put("cfoutputs", new Tag("cfoutputs", false));
+		changed.itemsChanged();
+		assertEquals("[cfoutputs]", names(changed.getFilteredElements("cfoutput")).toString());
+	}
+}
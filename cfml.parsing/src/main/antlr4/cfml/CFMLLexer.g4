@@ -1,12 +1,13 @@
 lexer grammar CFMLLexer;
 
 
-HTML_COMMENT     
-    : '<!--' .*? '-->'
+// before HTML_COMMENT, which matches a CFML comment as well; CFML comments nest
+CFML_COMMENT     
+    : '<!---' ( CFML_COMMENT | . )*? '--->'
     ;
 
-CFML_COMMENT     
-    : '<!---' .*? '--->'
+HTML_COMMENT     
+    : '<!--' .*? '-->'
     ;
 
 HTML_CONDITIONAL_COMMENT    
@@ -42,12 +43,18 @@ STYLE_OPEN
     : '<style' .*? '>'  ->pushMode(STYLE)
     ;
 
+// the body of a cfscript tag is not CFML, it is parsed by the cfscript grammar
+CFSCRIPT_OPEN
+    : '<' [cC][fF][sS][cC][rR][iI][pP][tT] [ \t\r\n]* '>' -> pushMode(CFSCRIPT_MODE)
+    ;
+
 TAG_OPEN
     : '<' -> pushMode(TAG)
     ;
             
+// a '<' that can not start a tag, e.g. in "a < b", is text
 HTML_TEXT
-    : ~'<'+
+    : ( ~'<' | '<' [ \t\r\n=] )+
     ;   
        
 //
@@ -55,7 +62,11 @@ HTML_TEXT
 //
 mode TAG;
 
-CFSET	: [cC][fF][sS][eE][tT]' ' -> pushMode(CFEXPRESSION_MODE);
+// tags holding an expression instead of attributes
+CFSET	: [cC][fF][sS][eE][tT] [ \t\r\n] -> pushMode(CFEXPRESSION_MODE);
+CFIF	: [cC][fF][iI][fF] [ \t\r\n] -> pushMode(CFEXPRESSION_MODE);
+CFELSEIF	: [cC][fF][eE][lL][sS][eE][iI][fF] [ \t\r\n] -> pushMode(CFEXPRESSION_MODE);
+CFRETURN	: [cC][fF][rR][eE][tT][uU][rR][nN] [ \t\r\n] -> pushMode(CFEXPRESSION_MODE);
 
 TAG_CLOSE      
     : '>' -> popMode
@@ -196,6 +207,36 @@ fragment SINGLE_QUOTE_STRING
     ;
 
     
+//
+// the expression of cfset, cfif, cfelseif and cfreturn, up to the '>' closing the tag; strings, parentheses and the
+// '<>' operator may hold a '>'. The '/' of a '/>' is part of the expression.
+//
 mode CFEXPRESSION_MODE;
-EXPRESSION	: ~[/>]+ -> popMode;
+
+EXPRESSION
+    : ( EXPRESSION_STRING | EXPRESSION_GROUP | '<>' | ~[>"'(] )+ -> popMode
+    ;
+
+fragment EXPRESSION_STRING
+    : '"' ~'"'* '"'
+    | '\'' ~'\''* '\''
+    ;
+
+fragment EXPRESSION_GROUP
+    : '(' ( EXPRESSION_STRING | EXPRESSION_GROUP | ~[()"'] )* ')'
+    ;
+
+//
+// <cfscript>
+//
+mode CFSCRIPT_MODE;
+
+CFSCRIPT_CLOSE
+    : '</' [cC][fF][sS][cC][rR][iI][pP][tT] [ \t\r\n]* '>' -> popMode
+    ;
+
+CFSCRIPT_BODY
+    : ~'<'+
+    | '<'
+    ;
 
@@ -7,6 +7,40 @@ htmlDocument
     	( cfmlElement | htmlElements)*
     ;
 
+// a CFML document as a flat sequence of tags, comments and text; tags are nested by the caller, which knows the tags
+// without an end tag
+cfmlDocument
+    : cfmlContent* EOF
+    ;
+
+cfmlContent
+    : cfmlComment
+    | cfscript
+    | cfexpressionTag
+    | cfmlStartTag
+    | cfmlCloseTag
+    | htmlComment
+    | htmlChardata
+    | xhtmlCDATA
+    | dtd
+    | xml
+    | scriptlet
+    | script
+    | style
+    ;
+
+cfmlStartTag
+    : TAG_OPEN htmlTagName htmlAttribute* (TAG_CLOSE | TAG_SLASH_CLOSE)
+    ;
+
+cfexpressionTag
+    : TAG_OPEN (CFSET | CFIF | CFELSEIF | CFRETURN) cfexpression? TAG_CLOSE
+    ;
+
+cfscript
+    : CFSCRIPT_OPEN CFSCRIPT_BODY* CFSCRIPT_CLOSE
+    ;
+
 cfmlComment:
     CFML_COMMENT;
 
@@ -23,6 +57,7 @@ htmlElement
     | TAG_OPEN htmlTagName htmlAttribute* TAG_SLASH_CLOSE
     | TAG_OPEN htmlTagName htmlAttribute* TAG_CLOSE
     
+    | cfscript
     | scriptlet
     | script
     | style
@@ -31,6 +66,7 @@ htmlElement
 cfmlElement
     : cfmlComment
     | cfset
+    | cfscript
     ;
         
 cfset
@@ -1,10 +1,5 @@
 lexer grammar CFSCRIPTLexer;
 
-// Special rule to start in DefaultMode.
-START: 'START' -> skip, pushMode(DefaultMode);
-
-mode DefaultMode;
-
 //Note: need case insensitive stream: http://www.antlr.org/wiki/pages/viewpage.action?pageId=1782
 
 WS: (' ' | '\t' | '\f')+ -> skip; //
@@ -322,11 +317,11 @@ fragment ExponentPart: [eE] [+-]? DecimalDigit+;
 mode InDoubleQuotes;
 CLOSE_STRING: '"' -> popMode;
 DOUBLEHASH: '##';
-STRING_LITERAL: '"' (~["#]+ | '""')* '"';
+STRING_LITERAL: (~["#]+ | '""')+;
 //STRING_LITERAL: '"' ( ~["\r\n\\] | '\\' . )* '"';
 
 HASH:
-	'#' -> type(POUND_SIGN), pushMode(HashMode), pushMode(DefaultMode);
+	'#' -> type(POUND_SIGN), pushMode(HashMode), pushMode(DEFAULT_MODE);
 
 //FallThrough
 // @after{ throw new RuntimeException(String.format( "Encountered an illegal char on line \%d,
@@ -338,7 +333,7 @@ CLOSE_STRING_SINGLE: '\'' -> type(CLOSE_STRING), popMode;
 DOUBLEHASH_SINGLE: '##' -> type(DOUBLEHASH);
 STRING_LITERAL_SINGLE: (~['#]+ | '\'\'')+ -> type(STRING_LITERAL);
 HASH_SINGLE:
-	'#' -> type(POUND_SIGN), pushMode(HashMode), pushMode(DefaultMode);
+	'#' -> type(POUND_SIGN), pushMode(HashMode), pushMode(DEFAULT_MODE);
 
 mode HashMode;
 HashMode_ANY: 'ANY' -> popMode, skip;
\ No newline at end of file
@@ -0,0 +1,70 @@
+package cfml.parsing;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import org.antlr.v4.runtime.TokenStream;
+
+/**
+ * The fields of the AST node classes, for code that handles every node class alike, like {@link TokenDetacher}.
+ */
+final class ASTFields {
+	
+	private static final ClassValue<Field[]> LAYOUTS = new ClassValue<Field[]>() {
+		@Override
+		protected Field[] computeValue(Class<?> type) {
+			final List<Field> fields = new ArrayList<Field>();
+			collectFields(type, fields);
+			final Field[] layout = fields.toArray(new Field[fields.size()]);
+			for (Field field : layout) {
+				field.setAccessible(true);
+			}
+			return layout;
+		}
+	};
+	
+	private ASTFields() {
+	}
+	
+	/**
+	 * @param type a class of the cfml packages
+	 * @return the fields of the class and of its superclasses in the cfml packages, ordered by class, superclass first,
+	 *         then by name. Static and transient fields, token streams and fields of the JDK collection classes are left
+	 *         out. The fields are accessible.
+	 */
+	static Field[] layout(Class<?> type) {
+		return LAYOUTS.get(type);
+	}
+	
+	private static void collectFields(Class<?> type, List<Field> fields) {
+		if (type == null || !isCFMLClass(type)) {
+			return;
+		}
+		collectFields(type.getSuperclass(), fields);
+		final Field[] declared = type.getDeclaredFields();
+		Arrays.sort(declared, Comparator.comparing(Field::getName));
+		for (Field field : declared) {
+			final int modifiers = field.getModifiers();
+			if (Modifier.isStatic(modifiers) || Modifier.isTransient(modifiers) || field.isSynthetic()
+					|| TokenStream.class.isAssignableFrom(field.getType())) {
+				continue;
+			}
+			fields.add(field);
+		}
+	}
+	
+	static boolean isCFMLClass(Class<?> type) {
+		return type.getName().startsWith("cfml.parsing.");
+	}
+	
+	/**
+	 * @return the declaring class, name and type of the field
+	 */
+	static String describe(Field field) {
+		return field.getDeclaringClass().getSimpleName() + "." + field.getName() + ":" + field.getType().getSimpleName();
+	}
+}
@@ -0,0 +1,1463 @@
+package cfml.parsing;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+
+import cfml.CFSCRIPTLexer;
+import cfml.CFSCRIPTParser;
+import cfml.parsing.cfscript.ArgumentsVector;
+import cfml.parsing.cfscript.CFAnonymousFunctionExpression;
+import cfml.parsing.cfscript.CFArrayExpression;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFElvisExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFJavaMethodExpression;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFMember;
+import cfml.parsing.cfscript.CFMultipartIdentifier;
+import cfml.parsing.cfscript.CFNestedExpression;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFStringExpression;
+import cfml.parsing.cfscript.CFStructElementExpression;
+import cfml.parsing.cfscript.CFStructExpression;
+import cfml.parsing.cfscript.CFTernaryExpression;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFAbortStatement;
+import cfml.parsing.cfscript.script.CFAdminStatement;
+import cfml.parsing.cfscript.script.CFBreakStatement;
+import cfml.parsing.cfscript.script.CFCase;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFContinueStatement;
+import cfml.parsing.cfscript.script.CFDoWhileStatement;
+import cfml.parsing.cfscript.script.CFEmptyStatement;
+import cfml.parsing.cfscript.script.CFExitStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFForInStatement;
+import cfml.parsing.cfscript.script.CFForStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFImportStatement;
+import cfml.parsing.cfscript.script.CFIncludeStatement;
+import cfml.parsing.cfscript.script.CFInterfaceDeclStatement;
+import cfml.parsing.cfscript.script.CFLockStatement;
+import cfml.parsing.cfscript.script.CFMLFunctionStatement;
+import cfml.parsing.cfscript.script.CFParamStatement;
+import cfml.parsing.cfscript.script.CFParsedAttributeStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFReThrowStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFSwitchStatement;
+import cfml.parsing.cfscript.script.CFTagStatement;
+import cfml.parsing.cfscript.script.CFTagThrowStatement;
+import cfml.parsing.cfscript.script.CFThreadStatement;
+import cfml.parsing.cfscript.script.CFThrowStatement;
+import cfml.parsing.cfscript.script.CFTransactionStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.script.CFWhileStatement;
+import cfml.parsing.cfscript.script.IncludeStatement;
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+
+/**
+ * A compact binary format for parse results: the cfscript statement tree and the parse messages.
+ *
+ * No ANTLR objects, no Java serialization and no reflection are involved. Every node class has a tag and a codec of
+ * its own: a node is written as the arguments of its constructor followed by what the parser adds afterwards, and read
+ * back by calling that constructor and those methods, so the class invariants hold for a tree that was read back. Tags
+ * of classes without a codec are rejected. Strings (identifiers, literals, attribute names) and tokens are written once
+ * and referenced by index afterwards, and all numbers are varints, with token offsets and lines stored as the
+ * difference to the previous token. Nodes are numbered when they are constructed, which a node occurring again
+ * refers to, and the parents of all nodes are set from a table at the end. Token streams are not stored; a tree that
+ * was read back holds plain CommonTokens with their type, text and position.
+ *
+ * Codecs are matched by the exact class of a node; a new node class needs a codec and a new tag, and a changed codec a
+ * new {@link #FORMAT_VERSION}.
+ */
+public class ASTSerializer {
+	
+	/** version of the binary format, part of {@link #getGrammarVersion()} */
+	public static final int FORMAT_VERSION = 2;
+	
+	private static final int MAGIC = 0x43464153;
+	/** the longest string read, a longer one means the data is corrupt */
+	private static final int MAX_STRING_BYTES = 64 * 1024 * 1024;
+	
+	/** the node classes by tag; tags are the index in the array plus 2, after null and references */
+	private static final Class<?>[] NODE_CLASSES = { CFLiteral.class, CFIdentifier.class, CFFullVarExpression.class,
+			CFMultipartIdentifier.class, CFAssignmentExpression.class, CFTernaryExpression.class,
+			CFBinaryExpression.class, CFElvisExpression.class, CFUnaryExpression.class, CFNestedExpression.class,
+			CFStringExpression.class, CFArrayExpression.class, CFStructExpression.class,
+			CFStructElementExpression.class, CFMember.class, CFFunctionExpression.class, CFJavaMethodExpression.class,
+			CFNewExpression.class, CFVarDeclExpression.class, CFAnonymousFunctionExpression.class,
+			ArgumentsVector.class, CFCompoundStatement.class, CFExpressionStatement.class, CFEmptyStatement.class,
+			CFIfStatement.class, CFWhileStatement.class, CFDoWhileStatement.class, CFForStatement.class,
+			CFForInStatement.class, CFSwitchStatement.class, CFCase.class, CFTryCatchStatement.class,
+			CFCatchStatement.class, CFBreakStatement.class, CFContinueStatement.class, CFReThrowStatement.class,
+			CFReturnStatement.class, CFThrowStatement.class, CFAbortStatement.class, CFExitStatement.class,
+			CFImportStatement.class, CFIncludeStatement.class, IncludeStatement.class, CFFuncDeclStatement.class,
+			CFFunctionParameter.class, CFCompDeclStatement.class, CFInterfaceDeclStatement.class,
+			CFPropertyStatement.class, CFParamStatement.class, CFTagStatement.class, CFTagThrowStatement.class,
+			CFAdminStatement.class, CFLockStatement.class, CFThreadStatement.class, CFTransactionStatement.class,
+			CFMLFunctionStatement.class };
+	
+	private static final int T_NULL = 0;
+	private static final int T_REF = 1;
+	private static final int T_LITERAL = 2;
+	private static final int T_IDENTIFIER = 3;
+	private static final int T_FULL_VAR = 4;
+	private static final int T_MULTIPART_IDENTIFIER = 5;
+	private static final int T_ASSIGNMENT = 6;
+	private static final int T_TERNARY = 7;
+	private static final int T_BINARY = 8;
+	private static final int T_ELVIS = 9;
+	private static final int T_UNARY = 10;
+	private static final int T_NESTED = 11;
+	private static final int T_STRING_EXPRESSION = 12;
+	private static final int T_ARRAY = 13;
+	private static final int T_STRUCT = 14;
+	private static final int T_STRUCT_ELEMENT = 15;
+	private static final int T_MEMBER = 16;
+	private static final int T_FUNCTION = 17;
+	private static final int T_JAVA_METHOD = 18;
+	private static final int T_NEW = 19;
+	private static final int T_VAR_DECL = 20;
+	private static final int T_ANONYMOUS_FUNCTION = 21;
+	private static final int T_ARGUMENTS = 22;
+	private static final int T_COMPOUND = 23;
+	private static final int T_EXPRESSION_STATEMENT = 24;
+	private static final int T_EMPTY = 25;
+	private static final int T_IF = 26;
+	private static final int T_WHILE = 27;
+	private static final int T_DO_WHILE = 28;
+	private static final int T_FOR = 29;
+	private static final int T_FOR_IN = 30;
+	private static final int T_SWITCH = 31;
+	private static final int T_CASE = 32;
+	private static final int T_TRY_CATCH = 33;
+	private static final int T_CATCH = 34;
+	private static final int T_BREAK = 35;
+	private static final int T_CONTINUE = 36;
+	private static final int T_RETHROW = 37;
+	private static final int T_RETURN = 38;
+	private static final int T_THROW = 39;
+	private static final int T_ABORT = 40;
+	private static final int T_EXIT = 41;
+	private static final int T_IMPORT = 42;
+	private static final int T_CFINCLUDE = 43;
+	private static final int T_INCLUDE = 44;
+	private static final int T_FUNC_DECL = 45;
+	private static final int T_FUNCTION_PARAMETER = 46;
+	private static final int T_COMP_DECL = 47;
+	private static final int T_INTERFACE_DECL = 48;
+	private static final int T_PROPERTY = 49;
+	private static final int T_PARAM = 50;
+	private static final int T_TAG = 51;
+	private static final int T_TAG_THROW = 52;
+	private static final int T_ADMIN = 53;
+	private static final int T_LOCK = 54;
+	private static final int T_THREAD = 55;
+	private static final int T_TRANSACTION = 56;
+	private static final int T_CFML_FUNCTION = 57;
+	
+	private static final int M_MESSAGE = 0;
+	private static final int M_ERROR = 1;
+	private static final int M_WARNING = 2;
+	private static final int M_SUPPRESSED = 3;
+	
+	private static final Map<Class<?>, Integer> TAGS = new HashMap<Class<?>, Integer>();
+	
+	static {
+		for (int i = 0; i < NODE_CLASSES.length; i++) {
+			TAGS.put(NODE_CLASSES[i], i + 2);
+		}
+	}
+	
+	private static String grammarVersion;
+	
+	private ASTSerializer() {
+	}
+	
+	/**
+	 * @return an identifier of the cfscript grammar and of this format; serialized trees are only valid for the same
+	 *         grammar version
+	 */
+	public static synchronized String getGrammarVersion() {
+		if (grammarVersion == null) {
+			try {
+				final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+				digest.update(CFSCRIPTLexer._serializedATN.getBytes(StandardCharsets.UTF_8));
+				digest.update(CFSCRIPTParser._serializedATN.getBytes(StandardCharsets.UTF_8));
+				grammarVersion = FORMAT_VERSION + "-" + toHex(digest.digest()).substring(0, 16);
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+		return grammarVersion;
+	}
+	
+	static String toHex(byte[] bytes) {
+		final StringBuilder sb = new StringBuilder(bytes.length * 2);
+		for (byte b : bytes) {
+			sb.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+		}
+		return sb.toString();
+	}
+	
+	/**
+	 * @param result the result to serialize
+	 * @return the serialized result
+	 * @throws IllegalArgumentException if the tree holds a node class without a codec, or a node that contains itself
+	 */
+	public static byte[] serialize(ParseResult result) {
+		final ByteArrayOutputStream out = new ByteArrayOutputStream(4096);
+		try {
+			write(result, out);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+		return out.toByteArray();
+	}
+	
+	/**
+	 * @param data a result serialized by {@link #serialize(ParseResult)}
+	 * @return the result
+	 * @throws IOException if the data is corrupt, or was written for a different grammar or format version
+	 */
+	public static ParseResult deserialize(byte[] data) throws IOException {
+		return read(new ByteArrayInputStream(data));
+	}
+	
+	/**
+	 * Writes a result to a stream. The stream is not closed.
+	 *
+	 * @param result the result to write
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 * @throws IllegalArgumentException if the tree holds a node class without a codec, or a node that contains itself
+	 */
+	public static void write(ParseResult result, OutputStream out) throws IOException {
+		final BufferedOutputStream buffered = new BufferedOutputStream(out);
+		new Encoder(buffered).writeResult(result);
+		buffered.flush();
+	}
+	
+	/**
+	 * Reads a result written by {@link #write(ParseResult, OutputStream)}.
+	 *
+	 * @param in where to read from
+	 * @return the result
+	 * @throws IOException if the data is corrupt, or was written for a different grammar or format version
+	 */
+	public static ParseResult read(InputStream in) throws IOException {
+		try {
+			return new Decoder(new BufferedInputStream(in)).readResult();
+		} catch (RuntimeException e) {
+			throw new IOException("Corrupt AST data: " + e, e);
+		}
+	}
+	
+	private static String accessName(byte access) {
+		switch (access) {
+		case UserDefinedFunction.ACCESS_PRIVATE:
+			return "private";
+		case UserDefinedFunction.ACCESS_PACKAGE:
+			return "package";
+		case UserDefinedFunction.ACCESS_REMOTE:
+			return "remote";
+		default:
+			return "public";
+		}
+	}
+	
+	private static final class Encoder {
+		
+		private final OutputStream out;
+		/** the number of every node written, in the order they are constructed when reading */
+		private final Map<Object, Integer> nodes = new IdentityHashMap<>();
+		private final List<HasToken> order = new ArrayList<HasToken>();
+		/** the nodes whose constructor arguments are being written */
+		private final Map<Object, Boolean> open = new IdentityHashMap<>();
+		private final Map<Token, Integer> tokens = new IdentityHashMap<Token, Integer>();
+		private final Map<String, Integer> strings = new HashMap<String, Integer>();
+		private int lastStart;
+		private int lastLine;
+		
+		Encoder(OutputStream out) {
+			this.out = out;
+		}
+		
+		void writeResult(ParseResult result) throws IOException {
+			writeFixedInt(MAGIC);
+			writeString(getGrammarVersion());
+			writeNode(result.getScript());
+			writeParents();
+			writeVarint(result.getMessages().size());
+			for (ParseMessage message : result.getMessages()) {
+				writeMessage(message);
+			}
+		}
+		
+		/**
+		 * The parent of every node, by number; 0 stands for none or one outside of the tree.
+		 */
+		private void writeParents() throws IOException {
+			writeVarint(order.size());
+			for (HasToken node : order) {
+				final Integer parent = nodes.get(node.getParent());
+				writeVarint(parent == null ? 0 : parent + 1);
+			}
+		}
+		
+		private void register(HasToken node) {
+			open.remove(node);
+			nodes.put(node, order.size());
+			order.add(node);
+		}
+		
+		private void writeNode(HasToken node) throws IOException {
+			if (node == null) {
+				writeVarint(T_NULL);
+				return;
+			}
+			final Integer ref = nodes.get(node);
+			if (ref != null) {
+				writeVarint(T_REF);
+				writeVarint(ref);
+				return;
+			}
+			final Integer tag = TAGS.get(node.getClass());
+			if (tag == null) {
+				throw new IllegalArgumentException("Can not serialize " + node.getClass().getName());
+			}
+			if (open.put(node, Boolean.TRUE) != null) {
+				throw new IllegalArgumentException("Can not serialize a " + node.getClass().getName()
+						+ " that contains itself");
+			}
+			writeVarint(tag);
+			switch (tag) {
+			case T_LITERAL: {
+				final CFLiteral literal = (CFLiteral) node;
+				writeToken(literal.getToken());
+				// literals created with an image of their own have it as their value
+				final boolean image = Objects.equals(literal.getVal(), literal.getImage());
+				writeBoolean(image);
+				if (image) {
+					writeString(literal.getImage());
+				}
+				register(node);
+				break;
+			}
+			case T_IDENTIFIER: {
+				final CFIdentifier identifier = (CFIdentifier) node;
+				writeToken(identifier.getToken());
+				writeString(identifier.getScope());
+				writeString(identifier.getName());
+				register(node);
+				writeBoolean(identifier.isIndirect());
+				break;
+			}
+			case T_FULL_VAR: {
+				final CFFullVarExpression fullVar = (CFFullVarExpression) node;
+				writeToken(fullVar.getToken());
+				register(node);
+				writeNodes(fullVar.getExpressions());
+				writeBoolean(fullVar.isIndirect());
+				break;
+			}
+			case T_MULTIPART_IDENTIFIER: {
+				final CFMultipartIdentifier multipart = (CFMultipartIdentifier) node;
+				writeNodes(multipart.getIds());
+				register(node);
+				writeBoolean(multipart.isIndirect());
+				break;
+			}
+			case T_ASSIGNMENT: {
+				final CFAssignmentExpression assignment = (CFAssignmentExpression) node;
+				writeToken(assignment.getToken());
+				writeNode(assignment.getLeft());
+				writeNode(assignment.getRight());
+				register(node);
+				writeNodes(assignment.getOtherIds());
+				break;
+			}
+			case T_TERNARY: {
+				final CFTernaryExpression ternary = (CFTernaryExpression) node;
+				writeToken(ternary.getToken());
+				writeNode(ternary.getCond());
+				writeNode(ternary.getLeft());
+				writeNode(ternary.getRight());
+				register(node);
+				writeNodes(ternary.getOtherIds());
+				break;
+			}
+			case T_BINARY:
+			case T_ELVIS: {
+				final CFBinaryExpression binary = (CFBinaryExpression) node;
+				writeToken(binary.getToken());
+				writeNode(binary.getLeft());
+				writeNode(binary.getRight());
+				register(node);
+				break;
+			}
+			case T_UNARY: {
+				final CFUnaryExpression unary = (CFUnaryExpression) node;
+				writeToken(unary.getToken());
+				writeNode(unary.getSub());
+				writeBoolean(unary.isPrefixop());
+				register(node);
+				break;
+			}
+			case T_NESTED: {
+				final CFNestedExpression nested = (CFNestedExpression) node;
+				writeToken(nested.getToken());
+				writeNode(nested.getSub());
+				register(node);
+				break;
+			}
+			case T_STRING_EXPRESSION: {
+				final CFStringExpression string = (CFStringExpression) node;
+				writeToken(string.getToken());
+				register(node);
+				writeNodes(string.getSubExpressions());
+				break;
+			}
+			case T_ARRAY: {
+				final CFArrayExpression array = (CFArrayExpression) node;
+				writeToken(array.getToken());
+				register(node);
+				writeNodes(array.getElements());
+				break;
+			}
+			case T_STRUCT: {
+				final CFStructExpression struct = (CFStructExpression) node;
+				writeToken(struct.getToken());
+				writeBoolean(struct.isOrdered());
+				register(node);
+				writeNodes(struct.getElements());
+				break;
+			}
+			case T_STRUCT_ELEMENT: {
+				final CFStructElementExpression element = (CFStructElementExpression) node;
+				writeToken(element.getToken());
+				writeNode(element.getKey());
+				writeNode(element.getValue());
+				register(node);
+				break;
+			}
+			case T_MEMBER: {
+				final CFMember member = (CFMember) node;
+				writeToken(member.getToken());
+				writeNode(member.getExpression());
+				register(node);
+				break;
+			}
+			case T_FUNCTION: {
+				final CFFunctionExpression function = (CFFunctionExpression) node;
+				writeToken(function.getToken());
+				writeNode(function.getNameId());
+				writeArguments(function.getArgs());
+				register(node);
+				writeNode(function.getBody());
+				break;
+			}
+			case T_JAVA_METHOD: {
+				final CFJavaMethodExpression method = (CFJavaMethodExpression) node;
+				writeToken(method.getToken());
+				writeNode(method.getName());
+				writeArguments(method.getArgs());
+				register(node);
+				writeBoolean(method.isOnMethodMissing());
+				break;
+			}
+			case T_NEW: {
+				final CFNewExpression newExpression = (CFNewExpression) node;
+				writeToken(newExpression.getToken());
+				writeNode(newExpression.getComponentPath());
+				writeArguments(newExpression.getArgs());
+				register(node);
+				break;
+			}
+			case T_VAR_DECL: {
+				final CFVarDeclExpression varDecl = (CFVarDeclExpression) node;
+				writeToken(varDecl.getToken());
+				writeNode(varDecl.getVar());
+				writeNode(varDecl.getInit());
+				register(node);
+				writeNodes(varDecl.getOtherVars());
+				writeNodes(varDecl.getOtherIds());
+				break;
+			}
+			case T_ANONYMOUS_FUNCTION: {
+				final CFAnonymousFunctionExpression function = (CFAnonymousFunctionExpression) node;
+				writeToken(function.getToken());
+				writeNode(function.getFuncDeclStatement());
+				register(node);
+				break;
+			}
+			case T_ARGUMENTS:
+				register(node);
+				writeNodes((ArgumentsVector) node);
+				break;
+			case T_COMPOUND: {
+				final CFCompoundStatement compound = (CFCompoundStatement) node;
+				writeToken(compound.getToken());
+				register(node);
+				writeNodes(compound.getStatements());
+				break;
+			}
+			case T_EXPRESSION_STATEMENT:
+				writeNode(((CFExpressionStatement) node).getExpression());
+				register(node);
+				break;
+			case T_EMPTY:
+			case T_BREAK:
+			case T_CONTINUE:
+			case T_RETHROW:
+				writeToken(node.getToken());
+				register(node);
+				break;
+			case T_IF: {
+				final CFIfStatement ifStatement = (CFIfStatement) node;
+				writeToken(ifStatement.getToken());
+				writeNode(ifStatement.getCond());
+				writeNode(ifStatement.getThenStatement());
+				writeNode(ifStatement.getElseStatement());
+				register(node);
+				break;
+			}
+			case T_WHILE: {
+				final CFWhileStatement whileStatement = (CFWhileStatement) node;
+				writeToken(whileStatement.getToken());
+				writeNode(whileStatement.getCond());
+				writeNode(whileStatement.getBody());
+				register(node);
+				break;
+			}
+			case T_DO_WHILE: {
+				final CFDoWhileStatement doWhile = (CFDoWhileStatement) node;
+				writeToken(doWhile.getToken());
+				writeNode(doWhile.getCondition());
+				writeNode(doWhile.getBody());
+				register(node);
+				break;
+			}
+			case T_FOR: {
+				final CFForStatement forStatement = (CFForStatement) node;
+				writeToken(forStatement.getToken());
+				writeNode(forStatement.getInit());
+				writeNode(forStatement.getCond());
+				writeNode(forStatement.getNext());
+				writeNode(forStatement.getBody());
+				register(node);
+				break;
+			}
+			case T_FOR_IN: {
+				final CFForInStatement forIn = (CFForInStatement) node;
+				writeToken(forIn.getToken());
+				writeNode(forIn.getVariable());
+				writeNode(forIn.getStructure());
+				writeNode(forIn.getBody());
+				register(node);
+				break;
+			}
+			case T_SWITCH: {
+				final CFSwitchStatement switchStatement = (CFSwitchStatement) node;
+				writeToken(switchStatement.getToken());
+				writeNode(switchStatement.getVariable());
+				writeNodes(switchStatement.getCases());
+				register(node);
+				break;
+			}
+			case T_CASE: {
+				final CFCase caseStatement = (CFCase) node;
+				writeBoolean(caseStatement.isDefault());
+				writeNode(caseStatement.getConstant());
+				writeNodes(caseStatement.getStatements());
+				register(node);
+				break;
+			}
+			case T_TRY_CATCH: {
+				final CFTryCatchStatement tryCatch = (CFTryCatchStatement) node;
+				writeToken(tryCatch.getToken());
+				writeNode(tryCatch.getBody());
+				writeNodes(tryCatch.getCatchStatements());
+				writeNode(tryCatch.getFinallyStatement());
+				register(node);
+				break;
+			}
+			case T_CATCH: {
+				final CFCatchStatement catchStatement = (CFCatchStatement) node;
+				writeString(catchStatement.getType());
+				writeNode(catchStatement.getVariable());
+				writeNode(catchStatement.getCatchBody());
+				writeZigZag(catchStatement.getOffset());
+				writeZigZag(catchStatement.getLine());
+				writeZigZag(catchStatement.getColumn());
+				register(node);
+				break;
+			}
+			case T_RETURN:
+				writeToken(node.getToken());
+				writeNode(((CFReturnStatement) node).getExpression());
+				register(node);
+				break;
+			case T_THROW:
+				writeToken(node.getToken());
+				writeNode(((CFThrowStatement) node).getMessage());
+				register(node);
+				break;
+			case T_ABORT:
+				writeToken(node.getToken());
+				writeNode(((CFAbortStatement) node).getMessage());
+				register(node);
+				break;
+			case T_EXIT:
+				writeToken(node.getToken());
+				writeNode(((CFExitStatement) node).getMethod());
+				register(node);
+				break;
+			case T_IMPORT: {
+				final CFImportStatement importStatement = (CFImportStatement) node;
+				writeToken(importStatement.getToken());
+				writeNode(importStatement.getPath());
+				writeBoolean(importStatement.isAll());
+				register(node);
+				break;
+			}
+			case T_CFINCLUDE:
+				writeToken(node.getToken());
+				writeNode(((CFIncludeStatement) node).getTemplate());
+				register(node);
+				break;
+			case T_INCLUDE:
+				writeToken(node.getToken());
+				writeNode(((IncludeStatement) node).getTemplate());
+				register(node);
+				break;
+			case T_FUNC_DECL: {
+				final CFFuncDeclStatement function = (CFFuncDeclStatement) node;
+				writeToken(function.getToken());
+				writeNode(function.getName());
+				out.write(function.getAccess());
+				writeNode(function.getReturnType());
+				writeNodes(function.getFormals());
+				writeBoolean(function.getAttributes() != null);
+				writeNode(function.getBody());
+				writeBoolean(function.isAbstract());
+				writeBoolean(function.isFinal());
+				writeBoolean(function.isStatic());
+				register(node);
+				writeAttributes(function.getAttributes());
+				break;
+			}
+			case T_FUNCTION_PARAMETER: {
+				final CFFunctionParameter parameter = (CFFunctionParameter) node;
+				writeNode(parameter.getIdentifier());
+				writeBoolean(parameter.isRequired());
+				writeString(parameter.getType());
+				writeNode(parameter.getDefaultExpression());
+				register(node);
+				break;
+			}
+			case T_COMP_DECL:
+			case T_INTERFACE_DECL: {
+				final CFCompDeclStatement component = (CFCompDeclStatement) node;
+				writeToken(component.getToken());
+				writeBoolean(component.getAttributes() != null);
+				writeNode(component.getBody());
+				register(node);
+				writeAttributes(component.getAttributes());
+				break;
+			}
+			case T_PROPERTY: {
+				final CFPropertyStatement property = (CFPropertyStatement) node;
+				writeToken(property.getToken());
+				writeBoolean(property.getAttributes() != null);
+				register(node);
+				writeAttributes(property.getAttributes());
+				writeBoolean(property.isShortHand());
+				writeNode(property.getPropertyName());
+				writeNode(property.getPropertyType());
+				break;
+			}
+			case T_PARAM:
+			case T_TAG:
+			case T_TAG_THROW:
+			case T_ADMIN: {
+				final CFParsedAttributeStatement statement = (CFParsedAttributeStatement) node;
+				writeToken(statement.getToken());
+				writeBoolean(statement.getAttributes() != null);
+				register(node);
+				writeAttributes(statement.getAttributes());
+				break;
+			}
+			case T_LOCK: {
+				final CFLockStatement statement = (CFLockStatement) node;
+				writeToken(statement.getToken());
+				writeBoolean(statement.getAttributes() != null);
+				writeNode(statement.getBody());
+				register(node);
+				writeAttributes(statement.getAttributes());
+				break;
+			}
+			case T_THREAD: {
+				final CFThreadStatement statement = (CFThreadStatement) node;
+				writeToken(statement.getToken());
+				writeBoolean(statement.getAttributes() != null);
+				writeNode(statement.getBody());
+				register(node);
+				writeAttributes(statement.getAttributes());
+				break;
+			}
+			case T_TRANSACTION: {
+				final CFTransactionStatement statement = (CFTransactionStatement) node;
+				writeToken(statement.getToken());
+				writeBoolean(statement.getAttributes() != null);
+				writeNode(statement.getBody());
+				register(node);
+				writeAttributes(statement.getAttributes());
+				break;
+			}
+			case T_CFML_FUNCTION: {
+				final CFMLFunctionStatement function = (CFMLFunctionStatement) node;
+				writeToken(function.getToken());
+				writeToken(function.getType());
+				writeBoolean(function.getAttributes() != null);
+				writeNode(function.getBody());
+				register(node);
+				writeAttributes(function.getAttributes());
+				break;
+			}
+			default:
+				throw new IllegalStateException("No codec for tag " + tag);
+			}
+		}
+		
+		/**
+		 * A list of nodes; 0 stands for null, otherwise the size plus 1 followed by the nodes.
+		 */
+		private void writeNodes(List<? extends HasToken> list) throws IOException {
+			if (list == null) {
+				writeVarint(0);
+				return;
+			}
+			writeVarint(list.size() + 1);
+			for (HasToken node : list) {
+				writeNode(node);
+			}
+		}
+		
+		/**
+		 * Function arguments, either an {@link ArgumentsVector} node or a plain list.
+		 */
+		private void writeArguments(List<?> args) throws IOException {
+			if (args instanceof ArgumentsVector) {
+				writeBoolean(true);
+				writeNode((ArgumentsVector) args);
+				return;
+			}
+			writeBoolean(false);
+			@SuppressWarnings("unchecked")
+			final List<? extends HasToken> list = (List<? extends HasToken>) args;
+			writeNodes(list);
+		}
+		
+		/**
+		 * The entries of attributes, which the parser puts after constructing a statement; whether there are
+		 * attributes at all is written before.
+		 */
+		private void writeAttributes(Map<? extends HasToken, ? extends HasToken> attributes) throws IOException {
+			if (attributes == null) {
+				return;
+			}
+			writeVarint(attributes.size());
+			for (Map.Entry<? extends HasToken, ? extends HasToken> attribute : attributes.entrySet()) {
+				writeNode(attribute.getKey());
+				writeNode(attribute.getValue());
+			}
+		}
+		
+		private void writeMessage(ParseMessage message) throws IOException {
+			final Class<?> type = message.getClass();
+			if (type == SuppressedMessages.class) {
+				writeVarint(M_SUPPRESSED);
+				writeVarint(((SuppressedMessages) message).getCount());
+			} else if (type == ParseError.class) {
+				writeVarint(M_ERROR);
+			} else if (type == ParseWarning.class) {
+				writeVarint(M_WARNING);
+			} else if (type == ParseMessage.class) {
+				writeVarint(M_MESSAGE);
+			} else {
+				throw new IllegalArgumentException("Can not serialize " + type.getName());
+			}
+			writeZigZag(message.getLineNumber());
+			writeZigZag(message.getDocStartOffset());
+			writeZigZag(message.getDocEndOffset());
+			writeString(message.getDocData());
+			writeString(message.getMessage());
+			writeBoolean(message.isFatal());
+		}
+		
+		private void writeToken(Token token) throws IOException {
+			if (token == null) {
+				writeVarint(0);
+				return;
+			}
+			final Integer ref = tokens.get(token);
+			if (ref != null) {
+				writeVarint(ref + 2);
+				return;
+			}
+			tokens.put(token, tokens.size());
+			writeVarint(1);
+			writeZigZag(token.getType());
+			writeString(token.getText());
+			writeZigZag(token.getStartIndex() - lastStart);
+			writeZigZag(token.getStopIndex() - token.getStartIndex());
+			writeZigZag(token.getLine() - lastLine);
+			writeZigZag(token.getCharPositionInLine());
+			writeVarint(token.getChannel());
+			writeZigZag(token.getTokenIndex());
+			lastStart = token.getStartIndex();
+			lastLine = token.getLine();
+		}
+		
+		private void writeString(String value) throws IOException {
+			if (value == null) {
+				writeVarint(0);
+				return;
+			}
+			final Integer ref = strings.get(value);
+			if (ref != null) {
+				writeVarint(ref + 2);
+				return;
+			}
+			strings.put(value, strings.size());
+			writeVarint(1);
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarint(bytes.length);
+			out.write(bytes);
+		}
+		
+		private void writeBoolean(boolean value) throws IOException {
+			out.write(value ? 1 : 0);
+		}
+		
+		private void writeZigZag(long value) throws IOException {
+			writeVarint((value << 1) ^ (value >> 63));
+		}
+		
+		private void writeVarint(long value) throws IOException {
+			while ((value & ~0x7FL) != 0) {
+				out.write((int) (value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write((int) value);
+		}
+		
+		private void writeFixedInt(int value) throws IOException {
+			out.write(value >>> 24);
+			out.write(value >>> 16);
+			out.write(value >>> 8);
+			out.write(value);
+		}
+	}
+	
+	private static final class Decoder {
+		
+		private final InputStream in;
+		private final List<HasToken> nodes = new ArrayList<HasToken>();
+		private final List<Token> tokens = new ArrayList<Token>();
+		private final List<String> strings = new ArrayList<String>();
+		private int lastStart;
+		private int lastLine;
+		
+		Decoder(InputStream in) {
+			this.in = in;
+		}
+		
+		ParseResult readResult() throws IOException {
+			if (readFixedInt() != MAGIC) {
+				throw new IOException("Not a serialized AST");
+			}
+			final String version = readString();
+			if (!getGrammarVersion().equals(version)) {
+				throw new IOException("AST was serialized for grammar version " + version);
+			}
+			final CFScriptStatement script = readNode(CFScriptStatement.class);
+			readParents();
+			final int count = (int) readVarint();
+			final List<ParseMessage> messages = new ArrayList<ParseMessage>(Math.min(count, 1024));
+			for (int i = 0; i < count; i++) {
+				messages.add(readMessage());
+			}
+			return new ParseResult(script, messages);
+		}
+		
+		private void readParents() throws IOException {
+			if (readVarint() != nodes.size()) {
+				throw new IOException("Parent table does not match the nodes");
+			}
+			for (HasToken node : nodes) {
+				final int parent = (int) readVarint();
+				setParent(node, parent == 0 ? null : nodes.get(parent - 1));
+			}
+		}
+		
+		private static void setParent(HasToken node, HasToken parent) {
+			if (node instanceof CFScriptStatement) {
+				((CFScriptStatement) node).setParent(parent);
+			} else if (node instanceof CFExpression) {
+				((CFExpression) node).setParent(parent);
+			} else if (node instanceof CFFunctionParameter) {
+				((CFFunctionParameter) node).setParent(parent);
+			} else {
+				((ArgumentsVector) node).setParent((CFExpression) parent);
+			}
+		}
+		
+		private <T extends HasToken> T register(T node) {
+			nodes.add(node);
+			return node;
+		}
+		
+		private <T> T readNode(Class<T> type) throws IOException {
+			return type.cast(readNode());
+		}
+		
+		private HasToken readNode() throws IOException {
+			final int tag = (int) readVarint();
+			switch (tag) {
+			case T_NULL:
+				return null;
+			case T_REF:
+				return nodes.get((int) readVarint());
+			case T_LITERAL: {
+				final Token token = readToken();
+				return register(readBoolean() ? new CFLiteral(token, readString()) : new CFLiteral(token));
+			}
+			case T_IDENTIFIER: {
+				final Token token = readToken();
+				final String scope = readString();
+				final CFIdentifier identifier = register(new CFIdentifier(token, scope, readString()));
+				identifier.setIndirect(readBoolean());
+				return identifier;
+			}
+			case T_FULL_VAR: {
+				final CFFullVarExpression fullVar = register(new CFFullVarExpression(readToken(), null));
+				for (CFExpression member : readNodes(CFExpression.class)) {
+					fullVar.addMember(member);
+				}
+				fullVar.setIndirect(readBoolean());
+				return fullVar;
+			}
+			case T_MULTIPART_IDENTIFIER: {
+				final List<CFIdentifier> ids = readNodes(CFIdentifier.class);
+				final CFMultipartIdentifier multipart = register(
+						new CFMultipartIdentifier(ids.toArray(new CFIdentifier[ids.size()])));
+				multipart.setIndirect(readBoolean());
+				return multipart;
+			}
+			case T_ASSIGNMENT: {
+				final Token token = readToken();
+				final CFExpression left = readNode(CFExpression.class);
+				final CFAssignmentExpression assignment = register(
+						new CFAssignmentExpression(token, left, readNode(CFExpression.class)));
+				assignment.getOtherIds().addAll(readNodes(CFIdentifier.class));
+				return assignment;
+			}
+			case T_TERNARY: {
+				final Token token = readToken();
+				final CFExpression cond = readNode(CFExpression.class);
+				final CFExpression left = readNode(CFExpression.class);
+				final CFTernaryExpression ternary = register(
+						new CFTernaryExpression(token, cond, left, readNode(CFExpression.class)));
+				ternary.getOtherIds().addAll(readNodes(CFIdentifier.class));
+				return ternary;
+			}
+			case T_BINARY: {
+				final Token token = readToken();
+				final CFExpression left = readNode(CFExpression.class);
+				return register(new CFBinaryExpression(token, left, readNode(CFExpression.class)));
+			}
+			case T_ELVIS: {
+				final Token token = readToken();
+				final CFExpression left = readNode(CFExpression.class);
+				return register(new CFElvisExpression(token, left, readNode(CFExpression.class)));
+			}
+			case T_UNARY: {
+				final Token token = readToken();
+				final CFExpression sub = readNode(CFExpression.class);
+				return register(new CFUnaryExpression(token, sub, readBoolean()));
+			}
+			case T_NESTED: {
+				final Token token = readToken();
+				return register(new CFNestedExpression(token, readNode(CFExpression.class)));
+			}
+			case T_STRING_EXPRESSION: {
+				final CFStringExpression string = register(new CFStringExpression(readToken()));
+				string.getSubExpressions().addAll(readNodes(CFExpression.class));
+				return string;
+			}
+			case T_ARRAY: {
+				final CFArrayExpression array = register(new CFArrayExpression(readToken()));
+				for (CFExpression element : readNodes(CFExpression.class)) {
+					array.addElement(element);
+				}
+				return array;
+			}
+			case T_STRUCT: {
+				final Token token = readToken();
+				final CFStructExpression struct = register(new CFStructExpression(token, readBoolean()));
+				for (CFStructElementExpression element : readNodes(CFStructElementExpression.class)) {
+					struct.addElement(element);
+				}
+				return struct;
+			}
+			case T_STRUCT_ELEMENT: {
+				final Token token = readToken();
+				final CFIdentifier key = readNode(CFIdentifier.class);
+				return register(new CFStructElementExpression(token, key, readNode(CFExpression.class)));
+			}
+			case T_MEMBER: {
+				final Token token = readToken();
+				return register(new CFMember(token, readNode(CFExpression.class)));
+			}
+			case T_FUNCTION: {
+				final Token token = readToken();
+				final CFIdentifier name = readNode(CFIdentifier.class);
+				final CFFunctionExpression function = register(new CFFunctionExpression(token, name, readArguments()));
+				function.setBody(readNode(CFScriptStatement.class));
+				return function;
+			}
+			case T_JAVA_METHOD: {
+				final Token token = readToken();
+				final CFExpression name = readNode(CFExpression.class);
+				final CFJavaMethodExpression method = register(
+						new CFJavaMethodExpression(token, name, readArguments()));
+				if (readBoolean()) {
+					method.setOnMethodMissing();
+				}
+				return method;
+			}
+			case T_NEW: {
+				final Token token = readToken();
+				final CFExpression path = readNode(CFExpression.class);
+				return register(new CFNewExpression(token, path, readArguments()));
+			}
+			case T_VAR_DECL: {
+				final Token token = readToken();
+				final CFExpression var = readNode(CFExpression.class);
+				final CFVarDeclExpression varDecl = register(
+						new CFVarDeclExpression(token, var, readNode(CFExpression.class)));
+				varDecl.getOtherVars().addAll(readNodes(CFIdentifier.class));
+				varDecl.getOtherIds().addAll(readNodes(CFIdentifier.class));
+				return varDecl;
+			}
+			case T_ANONYMOUS_FUNCTION: {
+				final Token token = readToken();
+				return register(new CFAnonymousFunctionExpression(token, readNode(CFFuncDeclStatement.class)));
+			}
+			case T_ARGUMENTS: {
+				final ArgumentsVector args = register(new ArgumentsVector());
+				args.addAll(readNodes(CFExpression.class));
+				return args;
+			}
+			case T_COMPOUND: {
+				final Token token = readToken();
+				final CFCompoundStatement compound = register(
+						token == null ? new CFCompoundStatement() : new CFCompoundStatement(token));
+				for (CFScriptStatement statement : readNodes(CFScriptStatement.class)) {
+					compound.add(statement);
+				}
+				return compound;
+			}
+			case T_EXPRESSION_STATEMENT:
+				return register(new CFExpressionStatement(readNode(CFExpression.class)));
+			case T_EMPTY: {
+				final Token token = readToken();
+				return register(token == null ? new CFEmptyStatement() : new CFEmptyStatement(token));
+			}
+			case T_IF: {
+				final Token token = readToken();
+				final CFExpression cond = readNode(CFExpression.class);
+				final CFScriptStatement then = readNode(CFScriptStatement.class);
+				return register(new CFIfStatement(token, cond, then, readNode(CFScriptStatement.class)));
+			}
+			case T_WHILE: {
+				final Token token = readToken();
+				final CFExpression cond = readNode(CFExpression.class);
+				return register(new CFWhileStatement(token, cond, readNode(CFScriptStatement.class)));
+			}
+			case T_DO_WHILE: {
+				final Token token = readToken();
+				final CFExpression cond = readNode(CFExpression.class);
+				return register(new CFDoWhileStatement(token, cond, readNode(CFScriptStatement.class)));
+			}
+			case T_FOR: {
+				final Token token = readToken();
+				final CFExpression init = readNode(CFExpression.class);
+				final CFExpression cond = readNode(CFExpression.class);
+				final CFExpression next = readNode(CFExpression.class);
+				return register(new CFForStatement(token, init, cond, next, readNode(CFScriptStatement.class)));
+			}
+			case T_FOR_IN: {
+				final Token token = readToken();
+				final CFExpression variable = readNode(CFExpression.class);
+				final CFExpression structure = readNode(CFExpression.class);
+				return register(new CFForInStatement(token, variable, structure, readNode(CFScriptStatement.class)));
+			}
+			case T_SWITCH: {
+				final Token token = readToken();
+				final CFExpression variable = readNode(CFExpression.class);
+				return register(new CFSwitchStatement(token, variable, readNodes(CFCase.class)));
+			}
+			case T_CASE: {
+				final boolean isDefault = readBoolean();
+				final CFExpression constant = readNode(CFExpression.class);
+				final List<CFScriptStatement> statements = readNodes(CFScriptStatement.class);
+				return register(isDefault ? new CFCase(statements) : new CFCase(constant, statements));
+			}
+			case T_TRY_CATCH: {
+				final Token token = readToken();
+				final CFScriptStatement body = readNode(CFScriptStatement.class);
+				final List<CFCatchStatement> catches = readNodes(CFCatchStatement.class);
+				return register(new CFTryCatchStatement(token, body, catches, readNode(CFScriptStatement.class)));
+			}
+			case T_CATCH: {
+				final String type = readString();
+				final CFIdentifier var = readNode(CFIdentifier.class);
+				final CFScriptStatement body = readNode(CFScriptStatement.class);
+				final int offset = (int) readZigZag();
+				final int line = (int) readZigZag();
+				return register(new CFCatchStatement(type, var, body, offset, line, (int) readZigZag()));
+			}
+			case T_BREAK:
+				return register(new CFBreakStatement(readToken()));
+			case T_CONTINUE:
+				return register(new CFContinueStatement(readToken()));
+			case T_RETHROW:
+				return register(new CFReThrowStatement(readToken()));
+			case T_RETURN: {
+				final Token token = readToken();
+				return register(new CFReturnStatement(token, readNode(CFExpression.class)));
+			}
+			case T_THROW: {
+				final Token token = readToken();
+				return register(new CFThrowStatement(token, readNode(CFExpression.class)));
+			}
+			case T_ABORT: {
+				final Token token = readToken();
+				return register(new CFAbortStatement(token, readNode(CFExpression.class)));
+			}
+			case T_EXIT: {
+				final Token token = readToken();
+				return register(new CFExitStatement(token, readNode(CFExpression.class)));
+			}
+			case T_IMPORT: {
+				final Token token = readToken();
+				final CFExpression path = readNode(CFExpression.class);
+				return register(new CFImportStatement(token, path, readBoolean()));
+			}
+			case T_CFINCLUDE: {
+				final Token token = readToken();
+				return register(new CFIncludeStatement(token, readNode(CFExpression.class)));
+			}
+			case T_INCLUDE: {
+				final Token token = readToken();
+				return register(new IncludeStatement(token, readNode(CFExpression.class)));
+			}
+			case T_FUNC_DECL: {
+				final Token token = readToken();
+				final CFIdentifier name = readNode(CFIdentifier.class);
+				final String access = accessName((byte) readByte());
+				final CFIdentifier returnType = readNode(CFIdentifier.class);
+				final List<CFFunctionParameter> formals = readNodes(CFFunctionParameter.class);
+				final Map<CFExpression, CFExpression> attributes = newAttributes();
+				final CFScriptStatement body = readNode(CFScriptStatement.class);
+				final boolean isAbstract = readBoolean();
+				final boolean isFinal = readBoolean();
+				final CFFuncDeclStatement function = register(new CFFuncDeclStatement(token, name, access, returnType,
+						formals, attributes, body, isAbstract, isFinal, readBoolean()));
+				readAttributes(attributes, CFExpression.class);
+				return function;
+			}
+			case T_FUNCTION_PARAMETER: {
+				final CFIdentifier identifier = readNode(CFIdentifier.class);
+				final boolean required = readBoolean();
+				final String type = readString();
+				return register(new CFFunctionParameter(identifier, required, type, readNode(CFExpression.class)));
+			}
+			case T_COMP_DECL:
+			case T_INTERFACE_DECL: {
+				final Token token = readToken();
+				final Map<CFExpression, CFExpression> attributes = newAttributes();
+				final CFScriptStatement body = readNode(CFScriptStatement.class);
+				final CFCompDeclStatement component = register(tag == T_COMP_DECL
+						? new CFCompDeclStatement(token, attributes, body)
+						: new CFInterfaceDeclStatement(token, attributes, body));
+				readAttributes(attributes, CFExpression.class);
+				return component;
+			}
+			case T_PROPERTY: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFPropertyStatement property = register(new CFPropertyStatement(token, attributes));
+				readAttributes(attributes, CFIdentifier.class);
+				property.setIsShortHand(readBoolean());
+				property.setPropertyName(readNode(CFExpression.class));
+				property.setPropertyType(readNode(CFExpression.class));
+				return property;
+			}
+			case T_PARAM: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFParamStatement statement = register(new CFParamStatement(token, attributes));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_TAG: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFTagStatement statement = register(new CFTagStatement(token, attributes));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_TAG_THROW: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFTagThrowStatement statement = register(new CFTagThrowStatement(token, attributes));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_ADMIN: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFAdminStatement statement = register(new CFAdminStatement(token, attributes));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_LOCK: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFLockStatement statement = register(
+						new CFLockStatement(token, attributes, readNode(CFScriptStatement.class)));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_THREAD: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFThreadStatement statement = register(
+						new CFThreadStatement(token, attributes, readNode(CFScriptStatement.class)));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_TRANSACTION: {
+				final Token token = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFTransactionStatement statement = register(
+						new CFTransactionStatement(token, attributes, readNode(CFScriptStatement.class)));
+				readAttributes(attributes, CFIdentifier.class);
+				return statement;
+			}
+			case T_CFML_FUNCTION: {
+				final Token token = readToken();
+				final Token type = readToken();
+				final Map<CFIdentifier, CFExpression> attributes = newAttributes();
+				final CFMLFunctionStatement function = register(
+						new CFMLFunctionStatement(token, type, attributes, readNode(CFScriptStatement.class)));
+				readAttributes(attributes, CFIdentifier.class);
+				return function;
+			}
+			default:
+				throw new IOException("Unknown node tag " + tag);
+			}
+		}
+		
+		private <T> ArrayList<T> readNodes(Class<T> type) throws IOException {
+			final int size = (int) readVarint() - 1;
+			if (size < 0) {
+				return null;
+			}
+			final ArrayList<T> list = new ArrayList<T>(Math.min(size, 1024));
+			for (int i = 0; i < size; i++) {
+				list.add(readNode(type));
+			}
+			return list;
+		}
+		
+		private ArrayList<CFExpression> readArguments() throws IOException {
+			return readBoolean() ? readNode(ArgumentsVector.class) : readNodes(CFExpression.class);
+		}
+		
+		/**
+		 * @return an empty map for attributes keeping the order they were written in, whatever the class of the
+		 *         original; null if there were none
+		 */
+		private <K> Map<K, CFExpression> newAttributes() throws IOException {
+			return readBoolean() ? new LinkedHashMap<K, CFExpression>() : null;
+		}
+		
+		private <K> void readAttributes(Map<K, CFExpression> attributes, Class<K> keyType) throws IOException {
+			if (attributes == null) {
+				return;
+			}
+			final int size = (int) readVarint();
+			for (int i = 0; i < size; i++) {
+				final K key = readNode(keyType);
+				attributes.put(key, readNode(CFExpression.class));
+			}
+		}
+		
+		private ParseMessage readMessage() throws IOException {
+			final int tag = (int) readVarint();
+			final int count = tag == M_SUPPRESSED ? (int) readVarint() : 0;
+			final int line = (int) readZigZag();
+			final int start = (int) readZigZag();
+			final int end = (int) readZigZag();
+			final String data = readString();
+			final String text = readString();
+			final boolean fatal = readBoolean();
+			switch (tag) {
+			case M_MESSAGE:
+				return new ParseMessage(line, start, end, data, text, fatal);
+			case M_ERROR:
+				return new ParseError(line, start, end, data, text, fatal);
+			case M_WARNING:
+				return new ParseWarning(line, start, end, data, text);
+			case M_SUPPRESSED: {
+				final SuppressedMessages suppressed = new SuppressedMessages(count);
+				suppressed.setLineNumber(line);
+				suppressed.setDocStartOffset(start);
+				suppressed.setDocEndOffset(end);
+				suppressed.setDocData(data);
+				suppressed.setMessage(text);
+				return suppressed;
+			}
+			default:
+				throw new IOException("Unknown message tag " + tag);
+			}
+		}
+		
+		private Token readToken() throws IOException {
+			final int ref = (int) readVarint();
+			if (ref == 0) {
+				return null;
+			}
+			if (ref > 1) {
+				return tokens.get(ref - 2);
+			}
+			final CommonToken token = new CommonToken((int) readZigZag(), readString());
+			final int start = lastStart + (int) readZigZag();
+			token.setStartIndex(start);
+			token.setStopIndex(start + (int) readZigZag());
+			final int line = lastLine + (int) readZigZag();
+			token.setLine(line);
+			token.setCharPositionInLine((int) readZigZag());
+			token.setChannel((int) readVarint());
+			token.setTokenIndex((int) readZigZag());
+			lastStart = start;
+			lastLine = line;
+			tokens.add(token);
+			return token;
+		}
+		
+		private String readString() throws IOException {
+			final int ref = (int) readVarint();
+			if (ref == 0) {
+				return null;
+			}
+			if (ref > 1) {
+				return strings.get(ref - 2);
+			}
+			final long length = readVarint();
+			if (length > MAX_STRING_BYTES) {
+				throw new IOException("String of " + length + " bytes");
+			}
+			// grown as the bytes arrive, so a corrupt length in truncated data does not allocate it all
+			byte[] bytes = new byte[(int) Math.min(length, 8192)];
+			int read = 0;
+			while (read < length) {
+				if (read == bytes.length) {
+					bytes = Arrays.copyOf(bytes, (int) Math.min(length, 2L * bytes.length));
+				}
+				final int n = in.read(bytes, read, bytes.length - read);
+				if (n < 0) {
+					throw new EOFException();
+				}
+				read += n;
+			}
+			final String value = new String(bytes, StandardCharsets.UTF_8);
+			strings.add(value);
+			return value;
+		}
+		
+		private boolean readBoolean() throws IOException {
+			final int b = readByte();
+			if (b > 1) {
+				throw new IOException("Malformed boolean " + b);
+			}
+			return b == 1;
+		}
+		
+		private long readZigZag() throws IOException {
+			final long value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+		
+		private long readVarint() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 64; shift += 7) {
+				final int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Malformed varint");
+		}
+		
+		private int readFixedInt() throws IOException {
+			return readByte() << 24 | readByte() << 16 | readByte() << 8 | readByte();
+		}
+		
+		private int readByte() throws IOException {
+			final int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			return b;
+		}
+	}
+}
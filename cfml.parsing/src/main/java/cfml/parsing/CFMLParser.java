@@ -1,14 +1,14 @@
 package cfml.parsing;
 
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 import java.net.URL;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -19,26 +19,38 @@ import org.antlr.v4.runtime.BailErrorStrategy;
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.DefaultErrorStrategy;
 import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.NoViableAltException;
 import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
 import org.antlr.v4.runtime.RecognitionException;
 import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.Token;
 import org.antlr.v4.runtime.atn.ATNConfigSet;
 import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.atn.ProfilingATNSimulator;
 import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.tree.ErrorNode;
+import org.antlr.v4.runtime.tree.ParseTreeListener;
+import org.antlr.v4.runtime.tree.TerminalNode;
 
 import cfml.CFSCRIPTLexer;
 import cfml.CFSCRIPTParser;
 import cfml.CFSCRIPTParser.CfmlExpressionContext;
+import cfml.CFSCRIPTParser.ComponentGutsContext;
 import cfml.CFSCRIPTParser.ExpressionContext;
 import cfml.CFSCRIPTParser.ScriptBlockContext;
 import cfml.dictionary.DictionaryManager;
 import cfml.dictionary.SyntaxDictionary;
 import cfml.dictionary.preferences.DictionaryPreferences;
+import cfml.parsing.cfml.CFMLDocument;
+import cfml.parsing.cfml.CFMLTag;
 import cfml.parsing.cfml.CFMLVisitor;
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.script.CFScriptStatement;
 import cfml.parsing.cfscript.walker.CFExpressionVisitor;
 import cfml.parsing.cfscript.walker.CFScriptStatementVisitor;
+import cfml.parsing.reporting.DiagnosticCollector;
 import cfml.parsing.reporting.IErrorReporter;
 import cfml.parsing.reporting.ParseException;
 import net.htmlparser.jericho.Element;
@@ -49,6 +61,8 @@ public class CFMLParser {
 	
 	private Map<String, CFMLSource> fCfmlSources = new HashMap<String, CFMLSource>();
 	protected ArrayList<ParseMessage> messages = new ArrayList<ParseMessage>();
+	private int maxMessages = Integer.MAX_VALUE;
+	private int suppressedMessages;
 	private boolean hadFatal;
 	/** Syntax dictionary for working out important things for the parser. */
 	private SyntaxDictionary cfdic;
@@ -58,8 +72,59 @@ public class CFMLParser {
 	CFScriptStatementVisitor scriptVisitor = new CFScriptStatementVisitor();
 	CFSCRIPTLexer lexer = null;
 	CFSCRIPTParser parser = null;
+	private DFACache dfaCache;
+	private GrammarProfiler profiler;
+	private TokenRetention tokenRetention = TokenRetention.FULL;
+	private ScriptParseMode lastParseMode;
+	/** how each named source was parsed last, least recently parsed first */
+	private final Map<String, RememberedMode> parseModes = new LinkedHashMap<String, RememberedMode>(16, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+		
+		@Override
+		protected boolean removeEldestEntry(Map.Entry<String, RememberedMode> eldest) {
+			return size() > MAX_PARSE_MODES;
+		}
+	};
+	private static final int MAX_PARSE_MODES = 1024;
+	/** how often a remembered LL or SYNTAX_ERROR mode skips the SLL parse before SLL is tried again */
+	static final int MAX_SKIPPED_PROBES = 16;
 	
+	/**
+	 * How a named source was parsed last: the mode, the token types it was parsed from, and the first token of the top
+	 * level element the SLL parse failed on.
+	 */
+	private static final class RememberedMode {
+		final ScriptParseMode mode;
+		final int fingerprint;
+		final int failedIndex;
+		final int skippedProbes;
+		
+		RememberedMode(ScriptParseMode mode, int fingerprint, int failedIndex, int skippedProbes) {
+			this.mode = mode;
+			this.fingerprint = fingerprint;
+			this.failedIndex = failedIndex;
+			this.skippedProbes = skippedProbes;
+		}
+		
+		/**
+		 * @return true if the SLL parse can be skipped for tokens with that fingerprint: it failed on the same tokens
+		 *         before, and not too many parses ago
+		 */
+		boolean skipsProbe(int fingerprint) {
+			return mode != ScriptParseMode.SLL && fingerprint == this.fingerprint
+					&& skippedProbes < MAX_SKIPPED_PROBES;
+		}
+	}
+	
+	/**
+	 * Clears the lexer and parser DFA caches. Without a {@link DFACache} these are static in the generated recognizers,
+	 * so this affects every parser in the JVM, including the workers of a {@link CFMLParserPool}.
+	 */
 	public void clearDFA() {
+		if (dfaCache != null) {
+			dfaCache.reset();
+			return;
+		}
 		if (parser != null)
 			parser.getInterpreter().clearDFA();
 		if (lexer != null)
@@ -67,16 +132,26 @@ public class CFMLParser {
 	}
 	
 	public CFExpression parseCFExpression(String _infix, ANTLRErrorListener errorReporter) throws Exception {
+		return parseCFExpression(CharStreams.fromString(_infix), 1, 0, errorReporter);
+	}
+	
+	/**
+	 * Parses an expression read from a char stream, e.g. a {@link RegionCharStream} of a document, giving the tokens the
+	 * indexes of the stream and lines and columns counted from the given position.
+	 */
+	CFExpression parseCFExpression(CharStream input, int line, int charPositionInLine, ANTLRErrorListener errorReporter)
+			throws Exception {
 		if (errorReporter == null) {
 			errorReporter = this.errorReporter;
 		}
-		final CharStream input = CharStreams.fromString(_infix);
 		if (lexer == null) {
 			lexer = new CFSCRIPTLexer(input);
 			lexer.removeErrorListeners();
 		} else {
 			lexer.setInputStream(input);
 		}
+		lexer.setLine(line);
+		lexer.setCharPositionInLine(charPositionInLine);
 		
 		final CommonTokenStream tokens = new CommonTokenStream(lexer);
 		
@@ -91,6 +166,8 @@ public class CFMLParser {
 		} else {
 			parser.setTokenStream(tokens);
 		}
+		installDFACache(lexer, parser);
+		startProfiling(parser);
 		
 		if (errorReporter != null) {
 			lexer.addErrorListener(errorReporter);
@@ -109,6 +186,8 @@ public class CFMLParser {
 			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
 			expressionContext = parser.expression(); // STAGE 2
 		} finally {
+			checkDFACacheLimit();
+			recordProfile(parser);
 			if (errorReporter != null) {
 				lexer.removeErrorListener(errorReporter);
 				parser.removeErrorListener(errorReporter);
@@ -146,6 +225,8 @@ public class CFMLParser {
 		} else {
 			parser.setTokenStream(tokens);
 		}
+		installDFACache(lexer, parser);
+		startProfiling(parser);
 		
 		if (errorReporter != null) {
 			lexer.addErrorListener(errorReporter);
@@ -164,6 +245,8 @@ public class CFMLParser {
 			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
 			expressionContext = parser.cfmlExpression(); // STAGE 2
 		} finally {
+			checkDFACacheLimit();
+			recordProfile(parser);
 			if (errorReporter != null) {
 				lexer.removeErrorListener(errorReporter);
 				parser.removeErrorListener(errorReporter);
@@ -175,6 +258,67 @@ public class CFMLParser {
 			return null;
 	}
 	
+	/**
+	 * Parses the CFML tags of a document with the CFML tag grammar, reporting syntax errors to the error reporter.
+	 *
+	 * @param source the document
+	 * @return the tags, with the expressions of cfset, cfif, cfelseif and cfreturn and the cfscript blocks parsed
+	 */
+	public CFMLDocument parseCFMLDocument(String source) {
+		return parseCFMLDocument(source, errorReporter);
+	}
+	
+	/**
+	 * Parses the CFML tags of a document. Unlike {@link #visit(Element, int, CFMLVisitor)}, which walks the Jericho
+	 * element tree and parses every expression from a copy of its tag, the expressions and scripts are lexed from the
+	 * char stream of the document, so their positions are those in the document.
+	 *
+	 * @param source the document
+	 * @param errorListener receives the syntax errors, e.g. a {@link CFMLVisitor}
+	 * @return the tags
+	 */
+	public CFMLDocument parseCFMLDocument(String source, ANTLRErrorListener errorListener) {
+		return new CFMLTreeBuilder(this, errorListener).build(CharStreams.fromString(source), source);
+	}
+	
+	/**
+	 * Parses the CFML tags of a file, see {@link #parseCFMLDocument(String, ANTLRErrorListener)}. The tags, expressions
+	 * and scripts are all lexed from the {@link SourceCharStream} of the file.
+	 *
+	 * @param file the path of the file
+	 * @return the tags
+	 */
+	public CFMLDocument parseCFMLDocumentFile(String file) throws IOException {
+		final SourceCharStream input = SourceCharStream.open(Paths.get(file));
+		return new CFMLTreeBuilder(this, errorReporter).build(input, input.toString());
+	}
+	
+	/**
+	 * Walks the tags of a document.
+	 *
+	 * @param document the document
+	 * @param visitor receives the tags, expressions and scripts
+	 */
+	public void visit(CFMLDocument document, CFMLVisitor visitor) {
+		for (CFMLTag tag : document.getChildren()) {
+			visit(tag, 0, visitor);
+		}
+	}
+	
+	public void visit(final CFMLTag tag, final int level, CFMLVisitor visitor) {
+		visitor.visitTagStart(tag);
+		if (tag.getExpression() != null) {
+			visitor.visitExpression("TAG", tag.getExpression());
+		}
+		if (tag.getScript() != null) {
+			visitor.visitScript(tag.getScript());
+		}
+		for (CFMLTag child : tag.getChildren()) {
+			visit(child, level + 1, visitor);
+		}
+		visitor.visitTagEnd(tag);
+	}
+	
 	int skipToPosition = 0;
 	
 	public void visit(final Element elem, final int level, CFMLVisitor visitor) throws Exception {
@@ -251,20 +395,6 @@ public class CFMLParser {
 		visitor.visitElementEnd(elem);
 	}
 	
-	private static String readFileAsString(String filePath) throws java.io.IOException {
-		StringBuffer fileData = new StringBuffer(1000);
-		BufferedReader reader = new BufferedReader(new FileReader(filePath));
-		char[] buf = new char[1024];
-		int numRead = 0;
-		while ((numRead = reader.read(buf)) != -1) {
-			String readData = String.valueOf(buf, 0, numRead);
-			fileData.append(readData);
-			buf = new char[1024];
-		}
-		reader.close();
-		return fileData.toString();
-	}
-	
 	public CFMLParser() {
 		DictionaryManager.initDictionaries();
 		cfdic = DictionaryManager.getDictionaryByVersion(fDictPrefs.getCFDictionary());
@@ -283,6 +413,18 @@ public class CFMLParser {
 		}
 	}
 	
+	/**
+	 * Creates a parser around an already loaded dictionary, skipping the dictionary load.
+	 *
+	 * @param dictionary the syntax dictionary to use
+	 */
+	public CFMLParser(SyntaxDictionary dictionary) {
+		if (dictionary == null) {
+			throw new IllegalArgumentException("The syntax dictionary could not be loaded!");
+		}
+		cfdic = dictionary;
+	}
+	
 	/**
 	 * Initialises the dictionary
 	 * 
@@ -304,17 +446,22 @@ public class CFMLParser {
 	}
 	
 	public CFMLSource addCFMLSource(String path, String cfmlsource) {
-		CFMLSource source = new CFMLSource(cfmlsource);
+		CFMLSource source = new CFMLSource(cfmlsource, cfdic);
 		fCfmlSources.put(path, source);
 		return source;
 	}
 	
+	/**
+	 * Adds a file, which Jericho reads in place from its {@link SourceCharStream}.
+	 */
 	public CFMLSource addCFMLSource(File cfmlsource) throws IOException {
-		return addCFMLSource(cfmlsource.getPath(), readFileAsString(cfmlsource.getPath()));
+		final CFMLSource source = new CFMLSource(SourceCharStream.open(cfmlsource.toPath()), cfdic);
+		fCfmlSources.put(cfmlsource.getPath(), source);
+		return source;
 	}
 	
 	public CFMLSource addCFMLSource(URL url) throws IOException {
-		CFMLSource source = new CFMLSource(url);
+		CFMLSource source = new CFMLSource(url, cfdic);
 		fCfmlSources.put(url.getPath(), source);
 		return source;
 	}
@@ -338,21 +485,19 @@ public class CFMLParser {
 	}
 	
 	public String getCacheDebugInfo() {
-		String info = "";
-		Iterator<String> sources = fCfmlSources.keySet().iterator();
-		while (sources.hasNext()) {
-			info = info.concat((((CFMLSource) fCfmlSources.get(sources.next())).getCacheDebugInfo()));
+		final StringBuilder info = new StringBuilder();
+		for (CFMLSource source : fCfmlSources.values()) {
+			info.append(source.getCacheDebugInfo());
 		}
-		return info;
+		return info.toString();
 	}
 	
 	public String getDebuggingInfo() {
-		String info = "";
-		Iterator<String> sources = fCfmlSources.keySet().iterator();
-		while (sources.hasNext()) {
-			info = info.concat((((CFMLSource) fCfmlSources.get(sources.next())).getDebuggingInfo()));
+		final StringBuilder info = new StringBuilder();
+		for (CFMLSource source : fCfmlSources.values()) {
+			info.append(source.getDebuggingInfo());
 		}
-		return info;
+		return info.toString();
 	}
 	
 	/**
@@ -376,7 +521,11 @@ public class CFMLParser {
 				hadFatal = true;
 		}
 		
-		messages.add(newMsg);
+		if (messages.size() < maxMessages || newMsg.isFatal()) {
+			messages.add(newMsg);
+		} else {
+			suppressedMessages++;
+		}
 	}
 	
 	/**
@@ -387,14 +536,8 @@ public class CFMLParser {
 	 */
 	public void addMessages(ArrayList<?> newMessages) {
 		Iterator<?> msgIter = newMessages.iterator();
-		ParseMessage currMsg = null;
 		while (msgIter.hasNext()) {
-			currMsg = (ParseMessage) msgIter.next();
-			if (currMsg instanceof ParseError) {
-				if (((ParseError) currMsg).isFatal())
-					hadFatal = true;
-			}
-			messages.add(currMsg);
+			addMessage((ParseMessage) msgIter.next());
 		}
 	}
 	
@@ -402,12 +545,48 @@ public class CFMLParser {
 		return messages;
 	}
 	
+	/**
+	 * Drops all collected messages and the fatal flag, so the parser can be reused for another source.
+	 */
+	public void clearMessages() {
+		messages.clear();
+		suppressedMessages = 0;
+		hadFatal = false;
+	}
+	
+	/**
+	 * Limits the messages kept, so a source with thousands of syntax errors does not use up memory. Messages past the
+	 * limit are counted, fatal ones are always kept.
+	 * 
+	 * @param maxMessages the number of messages to keep, Integer.MAX_VALUE for all
+	 */
+	public void setMaxMessages(int maxMessages) {
+		if (maxMessages < 1) {
+			throw new IllegalArgumentException("maxMessages must be at least 1");
+		}
+		this.maxMessages = maxMessages;
+	}
+	
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+	
+	/**
+	 * @return the number of messages dropped since the last {@link #clearMessages()} because of the limit
+	 */
+	public int getSuppressedMessages() {
+		return suppressedMessages;
+	}
+	
 	public String printMessages() {
-		String messagesText = "";
+		final StringBuilder messagesText = new StringBuilder();
 		for (ParseMessage message : messages) {
-			messagesText = messagesText + message.toString() + "\n";
+			messagesText.append(message.toString()).append('\n');
+		}
+		if (suppressedMessages > 0) {
+			messagesText.append(DiagnosticCollector.suppressedText(suppressedMessages)).append('\n');
 		}
-		return messagesText;
+		return messagesText.toString();
 	}
 	
 	public void parseElements(CFMLSource cfmlSource) {
@@ -523,24 +702,60 @@ public class CFMLParser {
 		
 	}
 	
+	/**
+	 * Parses a script file, lexed from its {@link SourceCharStream}; its path is the name of the source.
+	 */
 	public CFScriptStatement parseScriptFile(String file) throws ParseException, IOException {
-		return parseScript(readFileAsString(file));
+		final SourceCharStream input = SourceCharStream.open(Paths.get(file));
+		return parseScript(input, 1, 0, tokenRetention == TokenRetention.SOURCE ? input.toString() : null);
 	}
 	
 	public CFScriptStatement parseScript(String cfscript) throws ParseException, IOException {
-		CommonTokenStream tokens = createTokenStream(cfscript);
+		return parseScript(CharStreams.fromString(cfscript), 1, 0, cfscript);
+	}
+	
+	/**
+	 * Parses a script, remembering how it was parsed under its name, see {@link #getParseMode(String)}.
+	 *
+	 * @param sourceName the name of the script, e.g. its path
+	 */
+	public CFScriptStatement parseScript(String cfscript, String sourceName) throws ParseException, IOException {
+		return parseScript(CharStreams.fromString(cfscript, sourceName), 1, 0, cfscript);
+	}
+	
+	/**
+	 * Parses a script read from a char stream, see {@link #parseCFExpression(CharStream, int, int, ANTLRErrorListener)}.
+	 *
+	 * @param source the text the stream indexes refer to, kept by {@link TokenRetention#SOURCE} trees
+	 */
+	CFScriptStatement parseScript(CharStream input, int line, int charPositionInLine, String source)
+			throws ParseException, IOException {
+		CommonTokenStream tokens = createTokenStream(input, line, charPositionInLine);
 		ScriptBlockContext scriptBlockContext = parseScriptBlockContext(tokens);
 		CFScriptStatement result = scriptVisitor.visit(scriptBlockContext);
-		if (result != null)
-			result.setTokens(tokens);
+		if (result != null) {
+			if (tokenRetention == TokenRetention.FULL) {
+				result.setTokens(tokens);
+			} else {
+				TokenDetacher.detach(result, tokenRetention == TokenRetention.SOURCE ? source : null);
+			}
+		}
 		return result;
 		
 	}
 	
 	public CommonTokenStream createTokenStream(String cfscript) throws ParseException, IOException {
-		final CharStream input = CharStreams.fromString(cfscript);
+		return createTokenStream(CharStreams.fromString(cfscript), 1, 0);
+	}
+	
+	private CommonTokenStream createTokenStream(CharStream input, int line, int charPositionInLine) {
 		final CFSCRIPTLexer lexer = new CFSCRIPTLexer(input);
 		lexer.removeErrorListeners();
+		lexer.setLine(line);
+		lexer.setCharPositionInLine(charPositionInLine);
+		if (dfaCache != null) {
+			dfaCache.install(lexer);
+		}
 		return new CommonTokenStream(lexer);
 	}
 	
@@ -549,39 +764,195 @@ public class CFMLParser {
 		return parseScriptBlockContext(tokens);
 	}
 	
+	/**
+	 * Parses a script block. The script is parsed with SLL prediction and no error recovery first, which is fast and
+	 * succeeds for nearly every valid script. When that fails, it is parsed again without error recovery, with LL
+	 * prediction for the top level statement or function that failed only and SLL for the elements before and after
+	 * it; that succeeds if the element merely had an SLL conflict. If that fails too, the script is parsed a last time
+	 * with error recovery, SLL prediction up to the failed element and LL from there to the end. Errors are only
+	 * reported by that last parse, so they are real syntax errors.
+	 *
+	 * If the token source has a name, how it was parsed is remembered, and a source that needed LL last time skips
+	 * the SLL parse, and one with syntax errors skips to the last parse, using the failed element of the earlier parse,
+	 * as long as its token types have not changed. After {@link #MAX_SKIPPED_PROBES} skips the SLL parse is tried
+	 * again.
+	 */
 	public ScriptBlockContext parseScriptBlockContext(final CommonTokenStream tokens) throws ParseException, IOException {
 		
 		ScriptBlockContext scriptStatement = null;
 		CFSCRIPTParser parser = new CFSCRIPTParser(tokens);
+		if (dfaCache != null) {
+			dfaCache.install(parser);
+		}
+		startProfiling(parser);
 		parser.removeErrorListeners();
 		if (tokens.getTokenSource() instanceof CFSCRIPTLexer) {
 			((CFSCRIPTLexer) tokens.getTokenSource()).addErrorListener(errorReporter);
 			((CFSCRIPTLexer) tokens.getTokenSource()).removeErrorListeners();
 		}
+		final String sourceName = tokens.getSourceName();
+		final boolean named = sourceName != null && !sourceName.equals(IntStream.UNKNOWN_SOURCE_NAME);
+		final int fingerprint = named ? fingerprint(tokens) : 0;
+		final RememberedMode remembered = named ? parseModes.get(sourceName) : null;
+		final boolean probe = remembered == null || !remembered.skipsProbe(fingerprint);
 		parser.reset();
-		// parser.addErrorListener(errorReporter);
-		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
-		parser.setErrorHandler(new BailErrorStrategy());
 		try {
-			scriptStatement = parser.scriptBlock();
-			
-		} catch (Exception e) {
-			/*
-			 * throw new ParseException(e.getOffendingToken(), "Unexpected \'" +
-			 * parser.getTokenErrorDisplay(e.getOffendingToken()) + "\' (" + e.getOffendingToken().getText() + ")");
-			 */
-			tokens.seek(0); // rewind input stream
-			parser.reset();
-			parser.addErrorListener(errorReporter);
-			
-			parser.setErrorHandler(new DefaultErrorStrategy());
-			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
-			scriptStatement = parser.scriptBlock(); // STAGE 2
+			int failedIndex = probe ? 0 : remembered.failedIndex;
+			if (probe) {
+				parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+				parser.setErrorHandler(new BailErrorStrategy());
+				try {
+					scriptStatement = parser.scriptBlock();
+					lastParseMode = ScriptParseMode.SLL;
+				} catch (Exception e) {
+					failedIndex = getFailedIndex(e);
+					tokens.seek(0); // rewind input stream
+					parser.reset();
+				}
+			}
+			if (scriptStatement == null && failedIndex > 0 && (probe || remembered.mode == ScriptParseMode.LL)) {
+				// STAGE 2, LL for the failed element only
+				parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+				parser.setErrorHandler(new BailErrorStrategy());
+				parser.addParseListener(new PredictionSwitch(parser, failedIndex, true));
+				try {
+					scriptStatement = parser.scriptBlock();
+					lastParseMode = ScriptParseMode.LL;
+				} catch (Exception e) {
+					tokens.seek(0);
+					parser.reset();
+				}
+				parser.removeParseListeners();
+			}
+			if (scriptStatement == null) {
+				// STAGE 3
+				parser.addErrorListener(errorReporter);
+				parser.setErrorHandler(new DefaultErrorStrategy());
+				if (failedIndex > 0) {
+					parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+					parser.addParseListener(new PredictionSwitch(parser, failedIndex, false));
+				} else {
+					parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				}
+				scriptStatement = parser.scriptBlock();
+				if (parser.getNumberOfSyntaxErrors() > 0) {
+					lastParseMode = ScriptParseMode.SYNTAX_ERROR;
+				} else if (!probe && remembered.mode == ScriptParseMode.SYNTAX_ERROR) {
+					// the errors were fixed, try the fast path again next time
+					lastParseMode = ScriptParseMode.SLL;
+				} else {
+					lastParseMode = ScriptParseMode.LL;
+				}
+			}
+			if (named) {
+				parseModes.put(sourceName, new RememberedMode(lastParseMode, fingerprint, failedIndex,
+						probe ? 0 : remembered.skippedProbes + 1));
+			}
+		} finally {
+			checkDFACacheLimit();
+			recordProfile(parser);
 		}
 		// TestUtils.showGUI(scriptStatement, CFSCRIPTParser.ruleNames);
 		return scriptStatement;
 	}
 	
+	/**
+	 * @return a hash of the types of the tokens on the default channel, which are all a parse depends on
+	 */
+	private static int fingerprint(CommonTokenStream tokens) {
+		tokens.fill();
+		int hash = 1;
+		for (Token token : tokens.getTokens()) {
+			if (token.getChannel() == Token.DEFAULT_CHANNEL) {
+				hash = 31 * hash + token.getType();
+			}
+		}
+		return hash;
+	}
+	
+	/**
+	 * @param e the exception of a failed SLL parse
+	 * @return the index of the first token of the top level statement or function that failed, 0 if not known
+	 */
+	private static int getFailedIndex(Exception e) {
+		if (!(e.getCause() instanceof RecognitionException)) {
+			return 0;
+		}
+		final RecognitionException re = (RecognitionException) e.getCause();
+		for (RuleContext ctx = re.getCtx(); ctx != null; ctx = ctx.parent) {
+			if (ctx.parent instanceof ScriptBlockContext || ctx.parent instanceof ComponentGutsContext) {
+				return ((ParserRuleContext) ctx).getStart().getTokenIndex();
+			}
+			if ((ctx instanceof ScriptBlockContext || ctx instanceof ComponentGutsContext)
+					&& re instanceof NoViableAltException) {
+				// the choice of the next top level element failed
+				return ((NoViableAltException) re).getStartToken().getTokenIndex();
+			}
+		}
+		return 0;
+	}
+	
+	/**
+	 * Switches a parser to LL prediction once it reaches a token, and back to SLL once it has parsed the top level
+	 * element starting there if asked to.
+	 */
+	static final class PredictionSwitch implements ParseTreeListener {
+		private final Parser parser;
+		private final int index;
+		private final boolean back;
+		private boolean switched;
+		private boolean switchedBack;
+		
+		PredictionSwitch(Parser parser, int index, boolean back) {
+			this.parser = parser;
+			this.index = index;
+			this.back = back;
+		}
+		
+		private void check() {
+			if (!switched && parser.getInputStream().index() >= index) {
+				parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+				switched = true;
+			}
+		}
+		
+		public void visitTerminal(TerminalNode node) {
+			check();
+		}
+		
+		public void visitErrorNode(ErrorNode node) {
+			check();
+		}
+		
+		public void enterEveryRule(ParserRuleContext ctx) {
+			check();
+		}
+		
+		public void exitEveryRule(ParserRuleContext ctx) {
+			if (back && switched && !switchedBack && ctx.getStart().getTokenIndex() >= index
+					&& (ctx.parent instanceof ScriptBlockContext || ctx.parent instanceof ComponentGutsContext)) {
+				parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+				switchedBack = true;
+			}
+		}
+	}
+	
+	/**
+	 * @return how the last script was parsed, null if none was
+	 */
+	public ScriptParseMode getLastParseMode() {
+		return lastParseMode;
+	}
+	
+	/**
+	 * @param sourceName the name of a script, e.g. the path passed to {@link #parseScriptFile(String)}
+	 * @return how it was parsed last, null if it was not parsed by this parser or not recently
+	 */
+	public ScriptParseMode getParseMode(String sourceName) {
+		final RememberedMode remembered = parseModes.get(sourceName);
+		return remembered == null ? null : remembered.mode;
+	}
+	
 	public void parse() {
 		Iterator<String> sources = fCfmlSources.keySet().iterator();
 		while (sources.hasNext()) {
@@ -598,6 +969,95 @@ public class CFMLParser {
 		this.errorReporter = errorReporter;
 	}
 	
+	/**
+	 * @return the DFA cache used by this parser, or null if the static caches of the generated recognizers are used
+	 */
+	public DFACache getDFACache() {
+		return dfaCache;
+	}
+	
+	/**
+	 * Makes this parser use the given DFA cache instead of the static caches of the generated recognizers.
+	 *
+	 * @param dfaCache the cache, may be shared with other parsers; null to use the static caches
+	 */
+	public void setDFACache(DFACache dfaCache) {
+		this.dfaCache = dfaCache;
+		if (dfaCache == null) {
+			// the reused recognizers still point at the old cache
+			lexer = null;
+			parser = null;
+		}
+	}
+	
+	private void installDFACache(CFSCRIPTLexer lexer, CFSCRIPTParser parser) {
+		if (dfaCache != null) {
+			// installed on every call so that a reset of the cache is picked up
+			dfaCache.install(lexer);
+			dfaCache.install(parser);
+		}
+	}
+	
+	/**
+	 * @return the profiler receiving the decision statistics of this parser, or null if profiling is off
+	 */
+	public GrammarProfiler getProfiler() {
+		return profiler;
+	}
+	
+	/**
+	 * Turns on profiling of the cfscript parser's decisions. Profiling is slow and meant for grammar work; while it is
+	 * on the hit and miss counts of a {@link DFACache} are not updated.
+	 *
+	 * @param profiler receives the statistics of every parse, null to turn profiling off
+	 */
+	public void setProfiler(GrammarProfiler profiler) {
+		this.profiler = profiler;
+		if (profiler == null) {
+			// drop the reused recognizers, their interpreter still profiles
+			lexer = null;
+			parser = null;
+		}
+	}
+	
+	private void startProfiling(CFSCRIPTParser parser) {
+		if (profiler != null) {
+			// a fresh simulator per parse, the statistics of ProfilingATNSimulator are cumulative
+			parser.setInterpreter(new ProfilingATNSimulator(parser));
+		}
+	}
+	
+	private void recordProfile(CFSCRIPTParser parser) {
+		if (profiler != null) {
+			profiler.record(parser);
+		}
+	}
+	
+	public TokenRetention getTokenRetention() {
+		return tokenRetention;
+	}
+	
+	/**
+	 * Sets what the statement trees returned by {@link #parseScript(String)} keep of their tokens. With anything but
+	 * {@link TokenRetention#FULL} the token stream, the character stream and the lexer can be collected once the script is
+	 * parsed, and every node holds a small {@link PositionToken} instead of its ANTLR token, which saves most of the heap
+	 * a tree takes when many trees are kept, e.g. when indexing a whole project.
+	 *
+	 * @param tokenRetention what to keep, not null
+	 */
+	public void setTokenRetention(TokenRetention tokenRetention) {
+		if (tokenRetention == null) {
+			throw new IllegalArgumentException("tokenRetention must not be null");
+		}
+		this.tokenRetention = tokenRetention;
+	}
+	
+	private void checkDFACacheLimit() {
+		if (dfaCache != null) {
+			dfaCache.parsed();
+		}
+	}
+	
 	public void reset() {
 		expressionVisitor.clear();
 		scriptVisitor.clear();
@@ -0,0 +1,195 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+
+import cfml.dictionary.DictionaryManager;
+import cfml.dictionary.SyntaxDictionary;
+import cfml.dictionary.preferences.DictionaryPreferences;
+import cfml.parsing.cfmentat.tag.CFMLTags;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.reporting.ParseException;
+
+/**
+ * A thread-safe front end to {@link CFMLParser}.
+ *
+ * A CFMLParser keeps mutable lexer, parser, visitor and message state, so it must not be shared between threads. The
+ * pool hands every calling thread its own CFMLParser, created lazily around one shared dictionary. The ATN and DFA
+ * caches are static in the generated CFSCRIPTLexer/CFSCRIPTParser, or held by the {@link DFACache} given to the pool,
+ * so all workers warm up and reuse the same prediction state; nothing on the parse path takes a lock.
+ */
+public class CFMLParserPool {
+	
+	private final SyntaxDictionary cfdic;
+	private final DFACache dfaCache;
+	private final ThreadLocal<CFMLParser> parsers = ThreadLocal.withInitial(this::createParser);
+	private volatile int maxMessages = Integer.MAX_VALUE;
+	
+	/**
+	 * Creates a pool using the default dictionary.
+	 */
+	public CFMLParserPool() {
+		this(loadDictionary(new DictionaryPreferences()));
+	}
+	
+	/**
+	 * Creates a pool loading the dictionary from the given location.
+	 *
+	 * @param dictionariesPath the dictionary directory
+	 * @param dictionary the dictionary version key
+	 */
+	public CFMLParserPool(String dictionariesPath, String dictionary) {
+		this(loadDictionary(dictionaryPreferences(dictionariesPath, dictionary)));
+	}
+	
+	/**
+	 * Creates a pool around an already loaded dictionary. The dictionary is only read by the workers.
+	 *
+	 * @param dictionary the syntax dictionary shared by all workers
+	 */
+	public CFMLParserPool(SyntaxDictionary dictionary) {
+		this(dictionary, null);
+	}
+	
+	/**
+	 * Creates a pool around an already loaded dictionary whose workers share the given DFA cache.
+	 *
+	 * @param dictionary the syntax dictionary shared by all workers
+	 * @param dfaCache the DFA cache shared by all workers, null to use the static caches
+	 */
+	public CFMLParserPool(SyntaxDictionary dictionary, DFACache dfaCache) {
+		if (dictionary == null) {
+			throw new IllegalArgumentException("The syntax dictionary could not be loaded!");
+		}
+		cfdic = dictionary;
+		this.dfaCache = dfaCache;
+		// before any worker parses, see CFMLTags.register(SyntaxDictionary)
+		CFMLTags.register(dictionary);
+	}
+	
+	private static DictionaryPreferences dictionaryPreferences(String dictionariesPath, String dictionary) {
+		DictionaryPreferences prefs = new DictionaryPreferences();
+		prefs.setDictionaryDir(dictionariesPath);
+		prefs.setCFDictionary(dictionary);
+		return prefs;
+	}
+	
+	private static SyntaxDictionary loadDictionary(DictionaryPreferences prefs) {
+		DictionaryManager.initDictionaries(prefs);
+		return DictionaryManager.getDictionaryByVersion(prefs.getCFDictionary());
+	}
+	
+	/**
+	 * Creates a new worker. Subclasses may override this to configure the parsers handed out by the pool.
+	 *
+	 * @return a parser sharing this pool's dictionary
+	 */
+	protected CFMLParser createParser() {
+		final CFMLParser parser = new CFMLParser(cfdic);
+		parser.setDFACache(dfaCache);
+		return parser;
+	}
+	
+	/**
+	 * @return the parser owned by the calling thread
+	 */
+	public CFMLParser getParser() {
+		return parsers.get();
+	}
+	
+	/**
+	 * @return the dictionary shared by all workers
+	 */
+	public SyntaxDictionary getDictionary() {
+		return cfdic;
+	}
+	
+	/**
+	 * @return the DFA cache shared by all workers, or null if the static caches are used
+	 */
+	public DFACache getDFACache() {
+		return dfaCache;
+	}
+	
+	public int getMaxMessages() {
+		return maxMessages;
+	}
+	
+	/**
+	 * Limits the messages kept per script, see {@link CFMLParser#setMaxMessages(int)}. The messages past the limit are
+	 * summed up in a final {@link SuppressedMessages}.
+	 *
+	 * @param maxMessages the number of messages to keep per script
+	 */
+	public void setMaxMessages(int maxMessages) {
+		if (maxMessages < 1) {
+			throw new IllegalArgumentException("maxMessages must be at least 1");
+		}
+		this.maxMessages = maxMessages;
+	}
+	
+	/**
+	 * Parses a block of cfscript on the calling thread's parser.
+	 *
+	 * @param cfscript the script to parse
+	 * @return the statement and the messages reported for this script only
+	 * @throws ParseException if the script can not be parsed
+	 * @throws IOException if the script can not be read
+	 */
+	public ParseResult parseScript(String cfscript) throws ParseException, IOException {
+		final CFMLParser parser = parsers.get();
+		parser.clearMessages();
+		parser.setMaxMessages(maxMessages);
+		try {
+			final CFScriptStatement script = parser.parseScript(cfscript);
+			final List<ParseMessage> messages = new ArrayList<ParseMessage>(parser.getMessages());
+			if (parser.getSuppressedMessages() > 0) {
+				messages.add(new SuppressedMessages(parser.getSuppressedMessages()));
+			}
+			return new ParseResult(script, messages);
+		} finally {
+			parser.reset();
+			parser.clearMessages();
+		}
+	}
+	
+	/**
+	 * Parses a cfscript expression on the calling thread's parser.
+	 *
+	 * @param expression the expression to parse
+	 * @param errorListener receives syntax errors, may be null
+	 * @return the expression, or null if nothing could be parsed
+	 * @throws Exception if the expression can not be parsed
+	 */
+	public CFExpression parseCFExpression(String expression, ANTLRErrorListener errorListener) throws Exception {
+		final CFMLParser parser = parsers.get();
+		try {
+			return parser.parseCFExpression(expression, errorListener);
+		} finally {
+			parser.reset();
+			parser.clearMessages();
+		}
+	}
+	
+	/**
+	 * Parses a CFML tag expression on the calling thread's parser.
+	 *
+	 * @param expression the expression to parse
+	 * @param errorListener receives syntax errors, may be null
+	 * @return the expression, or null if nothing could be parsed
+	 * @throws Exception if the expression can not be parsed
+	 */
+	public CFExpression parseCFMLExpression(String expression, ANTLRErrorListener errorListener) throws Exception {
+		final CFMLParser parser = parsers.get();
+		try {
+			return parser.parseCFMLExpression(expression, errorListener);
+		} finally {
+			parser.reset();
+			parser.clearMessages();
+		}
+	}
+}
@@ -0,0 +1,343 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import cfml.parsing.cfml.CFMLTagHandler;
+import cfml.parsing.cfml.CFMLTagScanner;
+import cfml.parsing.cfml.ScannedTag;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.reporting.DiagnosticSink;
+import cfml.parsing.reporting.ParseException;
+
+/**
+ * Parses every .cfm and .cfc file below a directory in parallel.
+ *
+ * Files are read through a {@link SourceCharStream}, which finds their charset, and parsed on a work-stealing
+ * {@link ForkJoinPool}, each worker using its own parser from a shared {@link CFMLParserPool}. The amount of source
+ * text held by queued and running tasks is bounded, so walking a very large tree does not load it all into memory at
+ * once.
+ *
+ * Script components are parsed as a whole; in tag based files each &lt;cfscript&gt; block is parsed, with message line
+ * numbers adjusted to the file. The blocks are found with a {@link CFMLTagScanner}, without building an element tree of
+ * the file. With a {@link ParseCache} set, scripts that were parsed before are read from the cache.
+ */
+public class CFMLProjectParser {
+	
+	/** default upper bound of source bytes held by queued and running tasks */
+	public static final long DEFAULT_MAX_IN_FLIGHT_BYTES = 64L * 1024 * 1024;
+	
+	private static final String COMMENT_START = "<!---";
+	private static final String COMMENT_END = "--->";
+	
+	private final CFMLParserPool pool;
+	private final int parallelism;
+	private final long maxInFlightBytes;
+	private Charset charset = StandardCharsets.UTF_8;
+	private ParseCache cache;
+	private int maxMessagesPerFile = Integer.MAX_VALUE;
+	private DiagnosticSink sink;
+	
+	public CFMLProjectParser() {
+		this(new CFMLParserPool());
+	}
+	
+	public CFMLProjectParser(CFMLParserPool pool) {
+		this(pool, Runtime.getRuntime().availableProcessors(), DEFAULT_MAX_IN_FLIGHT_BYTES);
+	}
+	
+	/**
+	 * @param pool the parsers to use
+	 * @param parallelism the number of worker threads
+	 * @param maxInFlightBytes the upper bound of source bytes held by queued and running tasks
+	 */
+	public CFMLProjectParser(CFMLParserPool pool, int parallelism, long maxInFlightBytes) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		if (maxInFlightBytes < 1) {
+			throw new IllegalArgumentException("maxInFlightBytes must be at least 1");
+		}
+		this.pool = pool;
+		this.parallelism = parallelism;
+		this.maxInFlightBytes = maxInFlightBytes;
+	}
+	
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	/**
+	 * @param charset the charset of the files that have no byte order mark and declare no pageencoding
+	 */
+	public void setCharset(Charset charset) {
+		this.charset = charset;
+	}
+	
+	public ParseCache getCache() {
+		return cache;
+	}
+	
+	/**
+	 * @param cache where to look up and store parse results, null to always parse
+	 */
+	public void setCache(ParseCache cache) {
+		this.cache = cache;
+	}
+	
+	public int getMaxMessagesPerFile() {
+		return maxMessagesPerFile;
+	}
+	
+	/**
+	 * Limits the messages kept per file. The messages past the limit are summed up in a final {@link SuppressedMessages};
+	 * fatal errors are always kept. Also limits the messages of the pool's parsers.
+	 *
+	 * @param maxMessagesPerFile the number of messages to keep per file
+	 */
+	public void setMaxMessagesPerFile(int maxMessagesPerFile) {
+		pool.setMaxMessages(maxMessagesPerFile);
+		this.maxMessagesPerFile = maxMessagesPerFile;
+	}
+	
+	public DiagnosticSink getDiagnosticSink() {
+		return sink;
+	}
+	
+	/**
+	 * @param sink receives the messages of every file as soon as the file is parsed, from the worker threads; null for
+	 *            none
+	 */
+	public void setDiagnosticSink(DiagnosticSink sink) {
+		this.sink = sink;
+	}
+	
+	/**
+	 * Finds all .cfm and .cfc files below a directory.
+	 *
+	 * @param root the directory to search
+	 * @return the files, ordered by path
+	 * @throws IOException if the directory can not be walked
+	 */
+	public static List<Path> findSources(Path root) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(CFMLProjectParser::isCFMLSource).sorted().collect(Collectors.toList());
+		}
+	}
+	
+	static boolean isCFMLSource(Path path) {
+		if (!Files.isRegularFile(path)) {
+			return false;
+		}
+		final String name = path.getFileName().toString().toLowerCase();
+		return name.endsWith(".cfc") || name.endsWith(".cfm");
+	}
+	
+	/**
+	 * Parses every source file below a directory.
+	 *
+	 * @param root the directory to parse
+	 * @return the per file results, ordered by path
+	 * @throws IOException if the directory can not be walked, or the calling thread is interrupted
+	 */
+	public ProjectParseResult parse(Path root) throws IOException {
+		return new ProjectParseResult(root, parse(findSources(root)));
+	}
+	
+	/**
+	 * Parses the given files in parallel.
+	 *
+	 * @param files the files to parse
+	 * @return the per file results, in the order of files
+	 * @throws IOException if the calling thread is interrupted
+	 */
+	public List<FileParseResult> parse(List<Path> files) throws IOException {
+		final ForkJoinPool executor = new ForkJoinPool(parallelism);
+		final int maxPermits = permits(maxInFlightBytes);
+		final Semaphore inFlight = new Semaphore(maxPermits);
+		final List<Future<FileParseResult>> futures = new ArrayList<Future<FileParseResult>>(files.size());
+		try {
+			for (final Path file : files) {
+				final int cost = Math.min(permits(sizeOf(file)), maxPermits);
+				inFlight.acquire(cost);
+				futures.add(executor.submit(() -> {
+					try {
+						return parseFile(file);
+					} finally {
+						inFlight.release(cost);
+					}
+				}));
+			}
+			final List<FileParseResult> results = new ArrayList<FileParseResult>(futures.size());
+			for (Future<FileParseResult> future : futures) {
+				results.add(future.get());
+			}
+			return results;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while parsing");
+		} catch (ExecutionException e) {
+			// parseFile reports its own failures as messages
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Reads and parses a single file on the calling thread. Failures are reported as a fatal {@link ParseError} in the
+	 * result rather than thrown.
+	 *
+	 * @param file the file to parse
+	 * @return the result for the file
+	 */
+	public FileParseResult parseFile(Path file) {
+		final List<CFScriptStatement> scripts = new ArrayList<CFScriptStatement>();
+		final List<ParseMessage> messages = new ArrayList<ParseMessage>();
+		try {
+			final String contents = SourceCharStream.open(file, charset).toString();
+			if (isScript(file, contents)) {
+				addResult(parseScript(contents), 0, scripts, messages);
+			} else {
+				parseScriptBlocks(contents, scripts, messages);
+			}
+		} catch (Exception e) {
+			messages.add(new ParseError(0, 0, 0, file.toString(), String.valueOf(e.getMessage()), true));
+		}
+		final List<ParseMessage> kept = limit(messages);
+		if (sink != null) {
+			for (ParseMessage message : kept) {
+				sink.report(file.toString(), message);
+			}
+		}
+		return new FileParseResult(file, scripts, kept);
+	}
+	
+	/**
+	 * Keeps the first messages up to the limit per file, and the fatal ones. The messages dropped by the parsers and
+	 * here are summed up in one {@link SuppressedMessages} at the end.
+	 */
+	private List<ParseMessage> limit(List<ParseMessage> messages) {
+		final List<ParseMessage> kept = new ArrayList<ParseMessage>(Math.min(messages.size(), maxMessagesPerFile) + 1);
+		int suppressed = 0;
+		for (ParseMessage message : messages) {
+			if (message instanceof SuppressedMessages) {
+				suppressed += ((SuppressedMessages) message).getCount();
+			} else if (kept.size() < maxMessagesPerFile || message.isFatal()) {
+				kept.add(message);
+			} else {
+				suppressed++;
+			}
+		}
+		if (suppressed > 0) {
+			kept.add(new SuppressedMessages(suppressed));
+		}
+		return kept;
+	}
+	
+	private void parseScriptBlocks(String contents, List<CFScriptStatement> scripts, List<ParseMessage> messages)
+			throws IOException {
+		final List<String> bodies = new ArrayList<String>();
+		final List<Integer> lines = new ArrayList<Integer>();
+		new CFMLTagScanner().scan(contents, new CFMLTagHandler() {
+			@Override
+			public void body(ScannedTag tag, String body, int line, int column) {
+				if (tag.getName().equals("cfscript")) {
+					bodies.add(body);
+					lines.add(line);
+				}
+			}
+		});
+		for (int i = 0; i < bodies.size(); i++) {
+			addResult(parseScript(bodies.get(i)), lines.get(i) - 1, scripts, messages);
+		}
+	}
+	
+	private ParseResult parseScript(String cfscript) throws ParseException, IOException {
+		return cache == null ? pool.parseScript(cfscript) : cache.parseScript(pool, cfscript);
+	}
+	
+	private static void addResult(ParseResult result, int lineOffset, List<CFScriptStatement> scripts,
+			List<ParseMessage> messages) {
+		if (result.getScript() != null) {
+			scripts.add(result.getScript());
+		}
+		for (ParseMessage message : result.getMessages()) {
+			// copied, the messages may be shared with the cache
+			messages.add(lineOffset == 0 ? message : message.atLine(message.getLineNumber() + lineOffset));
+		}
+	}
+	
+	/**
+	 * Templates (.cfm) are tag based, text and #expressions# included. A component (.cfc) is a script component if it
+	 * starts with code, and tag based if it starts with a tag once leading whitespace and CFML comments are skipped.
+	 */
+	static boolean isScript(Path file, String contents) {
+		if (!file.getFileName().toString().toLowerCase().endsWith(".cfc")) {
+			return false;
+		}
+		for (int i = 0; i < contents.length(); i++) {
+			final char c = contents.charAt(i);
+			if (contents.startsWith(COMMENT_START, i)) {
+				i = skipComment(contents, i) - 1;
+			} else if (!Character.isWhitespace(c) && c != '\uFEFF') {
+				return c != '<';
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @param start the index of a CFML comment, which may hold nested ones
+	 * @return the index after its end, the length of contents if it is not closed
+	 */
+	private static int skipComment(String contents, int start) {
+		int depth = 0;
+		int i = start;
+		while (i < contents.length()) {
+			if (contents.startsWith(COMMENT_START, i)) {
+				depth++;
+				i += COMMENT_START.length();
+			} else if (contents.startsWith(COMMENT_END, i)) {
+				i += COMMENT_END.length();
+				if (--depth == 0) {
+					return i;
+				}
+			} else {
+				i++;
+			}
+		}
+		return i;
+	}
+	
+	private static long sizeOf(Path file) {
+		try {
+			return Files.size(file);
+		} catch (IOException e) {
+			return 0;
+		}
+	}
+	
+	private static int permits(long bytes) {
+		return (int) Math.max(1, Math.min(Integer.MAX_VALUE, (bytes + 1023) / 1024));
+	}
+	
+	/**
+	 * @return the parsers used by the workers
+	 */
+	public CFMLParserPool getPool() {
+		return pool;
+	}
+}
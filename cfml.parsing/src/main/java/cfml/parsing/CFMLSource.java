@@ -6,6 +6,7 @@ import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 
+import cfml.dictionary.SyntaxDictionary;
 import cfml.parsing.cfmentat.tag.CFMLTags;
 import cfml.parsing.preferences.ParserPreferences;
 import net.htmlparser.jericho.Element;
@@ -56,6 +57,18 @@ public class CFMLSource implements Logger {
 		fSource.setLogger(this);
 	}
 	
+	/**
+	 * Constructs a CFMLSource from the given contents, with the tags of the given dictionary.
+	 *
+	 * @param contents The contents to initialize the source, e.g. a {@link SourceCharStream} of a file.
+	 * @param cfdic The CF dictionary whose tags to recognize.
+	 */
+	public CFMLSource(CharSequence contents, SyntaxDictionary cfdic) {
+		CFMLTags.register(cfdic);
+		fSource = new Source(contents);
+		fSource.setLogger(this);
+	}
+	
 	/**
 	 * Constructs a CFMLSource from the given URL.
 	 *
@@ -83,6 +96,19 @@ public class CFMLSource implements Logger {
 		fSource.setLogger(this);
 	}
 	
+	/**
+	 * Constructs a CFMLSource from the given URL, with the tags of the given dictionary.
+	 *
+	 * @param url The URL to initialize the source.
+	 * @param cfdic The CF dictionary whose tags to recognize.
+	 * @throws IOException If an error occurs while reading the URL.
+	 */
+	public CFMLSource(URL url, SyntaxDictionary cfdic) throws IOException {
+		CFMLTags.register(cfdic);
+		fSource = new Source(url);
+		fSource.setLogger(this);
+	}
+	
 	/**
 	 * Gets debugging information for the source.
 	 *
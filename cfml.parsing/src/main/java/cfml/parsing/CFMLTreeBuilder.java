@@ -0,0 +1,273 @@
+package cfml.parsing;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.antlr.v4.runtime.ANTLRErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.TerminalNode;
+
+import cfml.CFMLLexer;
+import cfml.CFMLParser.CfexpressionTagContext;
+import cfml.CFMLParser.CfmlCloseTagContext;
+import cfml.CFMLParser.CfmlContentContext;
+import cfml.CFMLParser.CfmlStartTagContext;
+import cfml.CFMLParser.CfscriptContext;
+import cfml.CFMLParser.HtmlAttributeContext;
+import cfml.dictionary.SyntaxDictionary;
+import cfml.dictionary.Tag;
+import cfml.parsing.cfml.CFMLDocument;
+import cfml.parsing.cfml.CFMLTag;
+import cfml.parsing.cfml.DefaultCFMLDictionary;
+import cfml.parsing.cfml.ICFMLDictionary;
+
+/**
+ * Builds a {@link CFMLDocument} with the CFML tag grammar. The grammar yields the tags as a flat sequence; they are
+ * nested in two passes, the first pairing end tags with their start tags, the second building the tree, so a tag whose
+ * end tag is missing, or optional like that of cfinvoke, holds no tags. Expressions and scripts are lexed from the
+ * char stream of the document itself.
+ */
+class CFMLTreeBuilder {
+	
+	private final CFMLParser parser;
+	private final ANTLRErrorListener errorListener;
+	private final ICFMLDictionary cfmlDictionary = new DefaultCFMLDictionary();
+	
+	private CharStream input;
+	private CFMLDocument document;
+	
+	/**
+	 * A start or end tag, in document order.
+	 */
+	private static final class TagEvent {
+		final CFMLTag tag;
+		final String endName;
+		final Token endToken;
+		final int end;
+		TagEvent match;
+		
+		TagEvent(CFMLTag tag) {
+			this.tag = tag;
+			this.endName = null;
+			this.endToken = null;
+			this.end = -1;
+		}
+		
+		/**
+		 * @param endToken the first token of the end tag
+		 */
+		TagEvent(String endName, Token endToken, int end) {
+			this.tag = null;
+			this.endName = endName;
+			this.endToken = endToken;
+			this.end = end;
+		}
+	}
+	
+	/**
+	 * @param parser parses the expressions and scripts
+	 * @param errorListener receives the syntax errors
+	 */
+	CFMLTreeBuilder(CFMLParser parser, ANTLRErrorListener errorListener) {
+		this.parser = parser;
+		this.errorListener = errorListener;
+	}
+	
+	/**
+	 * @param input the document
+	 * @param source its text
+	 */
+	CFMLDocument build(CharStream input, String source) {
+		this.input = input;
+		input.seek(0);
+		document = new CFMLDocument(source);
+		final CFMLLexer lexer = new CFMLLexer(input);
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(errorListener);
+		final cfml.CFMLParser tagParser = new cfml.CFMLParser(new CommonTokenStream(lexer));
+		tagParser.removeErrorListeners();
+		tagParser.addErrorListener(errorListener);
+		tagParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		final List<TagEvent> events = new ArrayList<TagEvent>();
+		for (CfmlContentContext content : tagParser.cfmlDocument().cfmlContent()) {
+			if (content.cfmlStartTag() != null) {
+				addStartTag(content.cfmlStartTag(), events);
+			} else if (content.cfexpressionTag() != null) {
+				addExpressionTag(content.cfexpressionTag(), events);
+			} else if (content.cfscript() != null) {
+				addScript(content.cfscript(), events);
+			} else if (content.cfmlCloseTag() != null) {
+				addEndTag(content.cfmlCloseTag(), events);
+			}
+		}
+		matchEndTags(events);
+		nest(events);
+		final CFMLDocument result = document;
+		input = null;
+		document = null;
+		return result;
+	}
+	
+	private void addStartTag(CfmlStartTagContext context, List<TagEvent> events) {
+		final String name = context.htmlTagName().getText();
+		if (!cfmlDictionary.isColdFusionTag(name)) {
+			return;
+		}
+		final CFMLTag tag = createTag(name, context.TAG_OPEN(), context.getStop(), context.TAG_SLASH_CLOSE() != null);
+		for (HtmlAttributeContext attribute : context.htmlAttribute()) {
+			final String value = attribute.htmlAttributeValue() == null ? ""
+					: unquote(attribute.htmlAttributeValue().getText());
+			tag.getAttributes().put(attribute.htmlAttributeName().getText(), value);
+		}
+		events.add(new TagEvent(tag));
+	}
+	
+	private void addExpressionTag(CfexpressionTagContext context, List<TagEvent> events) {
+		final Token open = context.TAG_OPEN().getSymbol();
+		final Token nameToken = context.getChild(TerminalNode.class, 1).getSymbol();
+		final Token expression = context.cfexpression() == null ? null : context.cfexpression().getStart();
+		int expressionEnd = expression == null ? -1 : expression.getStopIndex() + 1;
+		boolean selfClosing = false;
+		if (expression != null) {
+			expressionEnd = trimEnd(expression.getStartIndex(), expressionEnd);
+			if (expressionEnd > expression.getStartIndex() && charAt(expressionEnd - 1) == '/') {
+				selfClosing = true;
+				expressionEnd = trimEnd(expression.getStartIndex(), expressionEnd - 1);
+			}
+		}
+		final CFMLTag tag = createTag(nameToken.getText().trim(), context.TAG_OPEN(), context.getStop(), selfClosing);
+		if (expression != null && expressionEnd > expression.getStartIndex()) {
+			try {
+				tag.setExpression(parser.parseCFExpression(
+						new RegionCharStream(input, expression.getStartIndex(), expressionEnd), expression.getLine(),
+						expression.getCharPositionInLine(), errorListener));
+			} catch (Exception e) {
+				error(open, "Could not parse the expression of " + tag.getName() + ": " + e.getMessage());
+			}
+		}
+		events.add(new TagEvent(tag));
+	}
+	
+	private void addScript(CfscriptContext context, List<TagEvent> events) {
+		final Token open = context.CFSCRIPT_OPEN().getSymbol();
+		final TerminalNode close = context.CFSCRIPT_CLOSE();
+		final CFMLTag tag = createTag("cfscript", context.CFSCRIPT_OPEN(), open, false);
+		events.add(new TagEvent(tag));
+		if (close == null || close.getSymbol().getStartIndex() < 0) {
+			return;
+		}
+		final List<TerminalNode> body = context.CFSCRIPT_BODY();
+		if (!body.isEmpty()) {
+			final Token first = body.get(0).getSymbol();
+			try {
+				tag.setScript(parser.parseScript(
+						new RegionCharStream(input, first.getStartIndex(), close.getSymbol().getStartIndex()),
+						first.getLine(), first.getCharPositionInLine(), document.getSource()));
+			} catch (Exception e) {
+				error(open, "Could not parse cfscript: " + e.getMessage());
+			}
+		}
+		events.add(new TagEvent("cfscript", close.getSymbol(), close.getSymbol().getStopIndex() + 1));
+	}
+	
+	private void addEndTag(CfmlCloseTagContext context, List<TagEvent> events) {
+		final String name = context.htmlTagName().getText();
+		if (cfmlDictionary.isColdFusionTag(name)) {
+			events.add(new TagEvent(name.toLowerCase(), context.getStart(), context.getStop().getStopIndex() + 1));
+		}
+	}
+	
+	private CFMLTag createTag(String name, TerminalNode open, Token stop, boolean selfClosing) {
+		final Token start = open.getSymbol();
+		return new CFMLTag(name, start.getStartIndex(), stop.getStopIndex() + 1, start.getLine(),
+				start.getCharPositionInLine() + 1, selfClosing);
+	}
+	
+	/**
+	 * Pairs every end tag with the innermost open start tag of the same name. Start tags that are left open in between
+	 * stay without end tag.
+	 */
+	private void matchEndTags(List<TagEvent> events) {
+		final Deque<TagEvent> open = new ArrayDeque<TagEvent>();
+		for (TagEvent event : events) {
+			if (event.tag != null) {
+				if (!event.tag.isSelfClosing() && !isSingle(event.tag.getName())) {
+					open.push(event);
+				}
+				continue;
+			}
+			TagEvent start = null;
+			for (TagEvent candidate : open) {
+				if (candidate.tag.getName().equals(event.endName)) {
+					start = candidate;
+					break;
+				}
+			}
+			if (start == null) {
+				error(event.endToken, "Unexpected end tag " + event.endName);
+				continue;
+			}
+			while (open.pop() != start) {
+				// left open
+			}
+			start.match = event;
+			event.match = start;
+		}
+	}
+	
+	private void nest(List<TagEvent> events) {
+		final Deque<CFMLTag> open = new ArrayDeque<CFMLTag>();
+		for (TagEvent event : events) {
+			if (event.tag == null) {
+				if (event.match != null) {
+					open.pop().setEnd(event.end, true);
+				}
+				continue;
+			}
+			if (open.isEmpty()) {
+				document.addChild(event.tag);
+			} else {
+				open.peek().addChild(event.tag);
+			}
+			if (event.match != null) {
+				open.push(event.tag);
+			}
+		}
+	}
+	
+	private boolean isSingle(String name) {
+		final SyntaxDictionary dictionary = parser.getDictionary();
+		final Tag tag = dictionary == null ? null : dictionary.getTag(name);
+		return tag != null && tag.isSingle() && !tag.isHybrid();
+	}
+	
+	private int trimEnd(int start, int end) {
+		while (end > start && Character.isWhitespace(charAt(end - 1))) {
+			end--;
+		}
+		return end;
+	}
+	
+	private int charAt(int index) {
+		input.seek(index);
+		return input.LA(1);
+	}
+	
+	private void error(Token token, String message) {
+		errorListener.syntaxError(null, token, token.getLine(), token.getCharPositionInLine(), message, null);
+	}
+	
+	private static String unquote(String value) {
+		final String trimmed = value.trim();
+		if (trimmed.length() >= 2 && (trimmed.charAt(0) == '"' || trimmed.charAt(0) == '\'')
+				&& trimmed.charAt(trimmed.length() - 1) == trimmed.charAt(0)) {
+			return trimmed.substring(1, trimmed.length() - 1);
+		}
+		return trimmed;
+	}
+}
@@ -0,0 +1,340 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RuleContext;
+import org.antlr.v4.runtime.TokenStream;
+import org.antlr.v4.runtime.atn.ATN;
+import org.antlr.v4.runtime.atn.ATNConfigSet;
+import org.antlr.v4.runtime.atn.ATNState;
+import org.antlr.v4.runtime.atn.LexerATNSimulator;
+import org.antlr.v4.runtime.atn.ParserATNSimulator;
+import org.antlr.v4.runtime.atn.PredictionContextCache;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.dfa.DFA;
+import org.antlr.v4.runtime.dfa.DFAState;
+
+import cfml.CFSCRIPTLexer;
+import cfml.CFSCRIPTParser;
+
+/**
+ * A managed DFA cache for the cfscript lexer and parser.
+ *
+ * The generated recognizers keep their DFA in static arrays that can only be cleared in place, which is unsafe while
+ * other threads are parsing. A DFACache owns its own arrays instead and installs them into the lexers and parsers it is
+ * given, so any number of parsers on any number of threads share one cache. When the number of cached DFA states
+ * exceeds the configured maximum the cache is reset by swapping in fresh arrays; recognizers that are still running keep
+ * the arrays they started with, and pick up the new ones the next time they are installed.
+ *
+ * The cache can be pre-warmed from a bundled corpus of typical cfscript with {@link #warmUp()}, and counts DFA hits
+ * and misses: a token the lexer matched, or a prediction the parser made, is a hit if it only followed cached
+ * transitions, and a miss if a state had to be computed from the ATN. Counting per token and prediction keeps the
+ * counters off the per character path. After a parse the limit is checked every {@link #getCheckInterval()} parses,
+ * since counting the states walks every DFA.
+ */
+public class DFACache {
+	
+	/** default upper bound of cached DFA states, lexer and parser combined */
+	public static final int DEFAULT_MAX_STATES = 50000;
+	
+	/** default number of parses between two checks of the limit */
+	public static final int DEFAULT_CHECK_INTERVAL = 32;
+	
+	private static final String WARMUP_CORPUS = "/cfml/parsing/dfa-warmup.cfc";
+	
+	private final int maxStates;
+	private final int checkInterval;
+	private final AtomicInteger parses = new AtomicInteger();
+	private volatile Generation generation = new Generation();
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	private final LongAdder resets = new LongAdder();
+	
+	public DFACache() {
+		this(DEFAULT_MAX_STATES);
+	}
+	
+	/**
+	 * @param maxStates the number of cached DFA states above which the cache is reset
+	 */
+	public DFACache(int maxStates) {
+		this(maxStates, DEFAULT_CHECK_INTERVAL);
+	}
+	
+	/**
+	 * @param maxStates the number of cached DFA states above which the cache is reset
+	 * @param checkInterval the number of parses between two checks of the limit, 1 to check after every parse
+	 */
+	public DFACache(int maxStates, int checkInterval) {
+		if (maxStates < 1) {
+			throw new IllegalArgumentException("maxStates must be at least 1");
+		}
+		if (checkInterval < 1) {
+			throw new IllegalArgumentException("checkInterval must be at least 1");
+		}
+		this.maxStates = maxStates;
+		this.checkInterval = checkInterval;
+	}
+	
+	/**
+	 * One set of DFA arrays. Replaced as a whole on reset, never cleared in place.
+	 */
+	private static final class Generation {
+		final DFA[] lexerDFA = createDFA(CFSCRIPTLexer._ATN);
+		final DFA[] parserDFA = createDFA(CFSCRIPTParser._ATN);
+		final PredictionContextCache lexerContextCache = new PredictionContextCache();
+		final PredictionContextCache parserContextCache = new PredictionContextCache();
+		
+		private static DFA[] createDFA(ATN atn) {
+			final DFA[] dfa = new DFA[atn.getNumberOfDecisions()];
+			for (int i = 0; i < dfa.length; i++) {
+				dfa[i] = new DFA(atn.getDecisionState(i), i);
+			}
+			return dfa;
+		}
+	}
+	
+	/**
+	 * Makes the lexer use this cache.
+	 *
+	 * @param lexer the lexer to configure
+	 * @return the lexer
+	 */
+	public CFSCRIPTLexer install(CFSCRIPTLexer lexer) {
+		final Generation current = generation;
+		lexer.setInterpreter(
+				new CountingLexerATNSimulator(lexer, lexer.getATN(), current.lexerDFA, current.lexerContextCache));
+		return lexer;
+	}
+	
+	/**
+	 * Makes the parser use this cache. The prediction mode of the parser is kept.
+	 *
+	 * @param parser the parser to configure
+	 * @return the parser
+	 */
+	public CFSCRIPTParser install(CFSCRIPTParser parser) {
+		final Generation current = generation;
+		final PredictionMode mode = parser.getInterpreter().getPredictionMode();
+		final ParserATNSimulator interpreter = new CountingParserATNSimulator(parser, parser.getATN(),
+				current.parserDFA, current.parserContextCache);
+		interpreter.setPredictionMode(mode);
+		parser.setInterpreter(interpreter);
+		return parser;
+	}
+	
+	/**
+	 * Called after a parse: checks the limit every {@link #getCheckInterval()} parses.
+	 *
+	 * @return true if the cache was reset
+	 */
+	public boolean parsed() {
+		if (parses.incrementAndGet() % checkInterval != 0) {
+			return false;
+		}
+		return checkLimit();
+	}
+	
+	/**
+	 * Resets the cache if it holds more than the maximum number of states.
+	 *
+	 * @return true if the cache was reset
+	 */
+	public boolean checkLimit() {
+		if (getStateCount() > maxStates) {
+			reset();
+			return true;
+		}
+		return false;
+	}
+	
+	/**
+	 * Drops all cached states. Safe to call while other threads are parsing.
+	 */
+	public void reset() {
+		generation = new Generation();
+		resets.increment();
+	}
+	
+	/**
+	 * Pre-warms the cache by parsing the bundled corpus.
+	 *
+	 * @throws IOException if the corpus can not be read
+	 */
+	public void warmUp() throws IOException {
+		try (InputStream in = DFACache.class.getResourceAsStream(WARMUP_CORPUS)) {
+			if (in == null) {
+				throw new IOException("Missing DFA warm-up corpus " + WARMUP_CORPUS);
+			}
+			warmUp(CharStreams.fromStream(in).toString());
+		}
+	}
+	
+	/**
+	 * Pre-warms the cache by parsing the given cfscript the way {@link CFMLParser} does, SLL first and LL if that fails.
+	 * Syntax errors are ignored.
+	 *
+	 * @param cfscript the script to parse
+	 */
+	public void warmUp(String cfscript) {
+		final CFSCRIPTLexer lexer = install(new CFSCRIPTLexer(CharStreams.fromString(cfscript)));
+		lexer.removeErrorListeners();
+		final CommonTokenStream tokens = new CommonTokenStream(lexer);
+		final CFSCRIPTParser parser = install(new CFSCRIPTParser(tokens));
+		parser.removeErrorListeners();
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.setErrorHandler(new BailErrorStrategy());
+		try {
+			parser.scriptBlock();
+		} catch (Exception e) {
+			tokens.seek(0);
+			parser.reset();
+			parser.setErrorHandler(new DefaultErrorStrategy());
+			parser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			parser.scriptBlock();
+		}
+		checkLimit();
+	}
+	
+	/**
+	 * @return the number of DFA states currently cached, lexer and parser combined
+	 */
+	public int getStateCount() {
+		final Generation current = generation;
+		return countStates(current.lexerDFA) + countStates(current.parserDFA);
+	}
+	
+	private static int countStates(DFA[] dfa) {
+		int count = 0;
+		for (DFA decision : dfa) {
+			count += decision.states.size();
+		}
+		return count;
+	}
+	
+	public int getMaxStates() {
+		return maxStates;
+	}
+	
+	public int getCheckInterval() {
+		return checkInterval;
+	}
+	
+	/**
+	 * @return the number of tokens and predictions served from the cache alone
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of tokens and predictions that computed states from the ATN
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	/**
+	 * @return the fraction of tokens and predictions served from the cache, 0 if there were none yet
+	 */
+	public double getHitRatio() {
+		final long hit = hits.sum();
+		final long total = hit + misses.sum();
+		return total == 0 ? 0 : (double) hit / total;
+	}
+	
+	/**
+	 * @return the number of times the cache was reset
+	 */
+	public long getResets() {
+		return resets.sum();
+	}
+	
+	/**
+	 * Zeroes the hit, miss and reset counters. The cached states are kept.
+	 */
+	public void resetStatistics() {
+		hits.reset();
+		misses.reset();
+		resets.reset();
+	}
+	
+	@Override
+	public String toString() {
+		return "DFACache states:" + getStateCount() + "/" + maxStates + " hits:" + getHits() + " misses:" + getMisses()
+				+ " resets:" + getResets();
+	}
+	
+	private final class CountingLexerATNSimulator extends LexerATNSimulator {
+		
+		/** whether the token being matched computed a state */
+		private boolean computed;
+		
+		CountingLexerATNSimulator(Lexer recog, ATN atn, DFA[] decisionToDFA, PredictionContextCache sharedContextCache) {
+			super(recog, atn, decisionToDFA, sharedContextCache);
+		}
+		
+		@Override
+		public int match(CharStream input, int mode) {
+			computed = false;
+			final int type = super.match(input, mode);
+			(computed ? misses : hits).increment();
+			return type;
+		}
+		
+		@Override
+		protected int matchATN(CharStream input) {
+			computed = true;
+			return super.matchATN(input);
+		}
+		
+		@Override
+		protected DFAState computeTargetState(CharStream input, DFAState s, int t) {
+			computed = true;
+			return super.computeTargetState(input, s, t);
+		}
+	}
+	
+	private final class CountingParserATNSimulator extends ParserATNSimulator {
+		
+		/** whether the prediction being made computed a state */
+		private boolean computed;
+		
+		CountingParserATNSimulator(Parser parser, ATN atn, DFA[] decisionToDFA,
+				PredictionContextCache sharedContextCache) {
+			super(parser, atn, decisionToDFA, sharedContextCache);
+		}
+		
+		@Override
+		public int adaptivePredict(TokenStream input, int decision, ParserRuleContext outerContext) {
+			computed = false;
+			final int alt = super.adaptivePredict(input, decision, outerContext);
+			(computed ? misses : hits).increment();
+			return alt;
+		}
+		
+		@Override
+		protected ATNConfigSet computeStartState(ATNState p, RuleContext ctx, boolean fullCtx) {
+			computed = true;
+			return super.computeStartState(p, ctx, fullCtx);
+		}
+		
+		@Override
+		protected DFAState computeTargetState(DFA dfa, DFAState previousD, int t) {
+			computed = true;
+			return super.computeTargetState(dfa, previousD, t);
+		}
+	}
+}
@@ -0,0 +1,76 @@
+package cfml.parsing;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * The outcome of parsing one source file: the script trees found in it and the messages reported for it.
+ *
+ * A script component yields a single tree; a tag based file yields one tree per &lt;cfscript&gt; block, in document
+ * order.
+ */
+public class FileParseResult {
+	
+	private final Path path;
+	private final List<CFScriptStatement> scripts;
+	private final List<ParseMessage> messages;
+	
+	public FileParseResult(Path path, List<CFScriptStatement> scripts, List<ParseMessage> messages) {
+		this.path = path;
+		this.scripts = Collections.unmodifiableList(scripts);
+		this.messages = Collections.unmodifiableList(messages);
+	}
+	
+	/**
+	 * @return the file that was parsed
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return the parsed script trees, never null
+	 */
+	public List<CFScriptStatement> getScripts() {
+		return scripts;
+	}
+	
+	/**
+	 * @return the messages reported for this file, never null
+	 */
+	public List<ParseMessage> getMessages() {
+		return messages;
+	}
+	
+	/**
+	 * @return true if any of the messages is a fatal error
+	 */
+	public boolean hadFatal() {
+		for (ParseMessage message : messages) {
+			if (message.isFatal()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return true if any errors were reported
+	 */
+	public boolean hasErrors() {
+		for (ParseMessage message : messages) {
+			if (message instanceof ParseError) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	@Override
+	public String toString() {
+		return path + " scripts:" + scripts.size() + " messages:" + messages.size();
+	}
+}
@@ -0,0 +1,379 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.antlr.v4.runtime.Parser;
+import org.antlr.v4.runtime.atn.DecisionInfo;
+import org.antlr.v4.runtime.atn.ParseInfo;
+
+import cfml.dictionary.SyntaxDictionary;
+
+/**
+ * Collects the per decision statistics of ANTLR's ProfilingATNSimulator over any number of parses, and reports them per
+ * decision and per grammar rule as CSV or JSON.
+ *
+ * Profiling is opt-in: hand a profiler to {@link CFMLParser#setProfiler(GrammarProfiler)}, or parse a corpus with the
+ * pool returned by {@link #createPool(SyntaxDictionary)}. Both stages of the SLL-then-LL strategy of CFMLParser are
+ * recorded, so a decision that needed the LL retry shows up with its full-context fallbacks. A profiler may be shared
+ * between threads.
+ *
+ * Usage from the command line: <code>GrammarProfiler &lt;source dir&gt; [report.csv|report.json]</code>
+ */
+public class GrammarProfiler {
+	
+	private static final String[] COLUMNS = { "rule", "decision", "invocations", "timeNanos", "sllTotalLook",
+			"sllMaxLook", "llFallback", "llTotalLook", "llMaxLook", "atnTransitions", "dfaTransitions", "ambiguities",
+			"contextSensitivities", "errors" };
+	
+	private final Map<Integer, Entry> decisions = new TreeMap<Integer, Entry>();
+	private int parses;
+	
+	/**
+	 * The statistics of one decision, or of all decisions of one rule.
+	 */
+	public static class Entry {
+		
+		private final String rule;
+		private final int decision;
+		private long invocations;
+		private long timeNanos;
+		private long sllTotalLook;
+		private long sllMaxLook;
+		private long llFallback;
+		private long llTotalLook;
+		private long llMaxLook;
+		private long atnTransitions;
+		private long dfaTransitions;
+		private long ambiguities;
+		private long contextSensitivities;
+		private long errors;
+		
+		Entry(String rule, int decision) {
+			this.rule = rule;
+			this.decision = decision;
+		}
+		
+		void add(DecisionInfo info) {
+			invocations += info.invocations;
+			timeNanos += info.timeInPrediction;
+			sllTotalLook += info.SLL_TotalLook;
+			sllMaxLook = Math.max(sllMaxLook, info.SLL_MaxLook);
+			llFallback += info.LL_Fallback;
+			llTotalLook += info.LL_TotalLook;
+			llMaxLook = Math.max(llMaxLook, info.LL_MaxLook);
+			atnTransitions += info.SLL_ATNTransitions + info.LL_ATNTransitions;
+			dfaTransitions += info.SLL_DFATransitions + info.LL_DFATransitions;
+			ambiguities += info.ambiguities.size();
+			contextSensitivities += info.contextSensitivities.size();
+			errors += info.errors.size();
+		}
+		
+		void add(Entry other) {
+			invocations += other.invocations;
+			timeNanos += other.timeNanos;
+			sllTotalLook += other.sllTotalLook;
+			sllMaxLook = Math.max(sllMaxLook, other.sllMaxLook);
+			llFallback += other.llFallback;
+			llTotalLook += other.llTotalLook;
+			llMaxLook = Math.max(llMaxLook, other.llMaxLook);
+			atnTransitions += other.atnTransitions;
+			dfaTransitions += other.dfaTransitions;
+			ambiguities += other.ambiguities;
+			contextSensitivities += other.contextSensitivities;
+			errors += other.errors;
+		}
+		
+		long[] values() {
+			return new long[] { invocations, timeNanos, sllTotalLook, sllMaxLook, llFallback, llTotalLook, llMaxLook,
+					atnTransitions, dfaTransitions, ambiguities, contextSensitivities, errors };
+		}
+		
+		/**
+		 * @return the grammar rule the decision belongs to
+		 */
+		public String getRule() {
+			return rule;
+		}
+		
+		/**
+		 * @return the decision number, -1 for a rule total
+		 */
+		public int getDecision() {
+			return decision;
+		}
+		
+		public long getInvocations() {
+			return invocations;
+		}
+		
+		/**
+		 * @return the time spent predicting, in nanoseconds
+		 */
+		public long getTimeNanos() {
+			return timeNanos;
+		}
+		
+		public long getSllTotalLook() {
+			return sllTotalLook;
+		}
+		
+		public long getSllMaxLook() {
+			return sllMaxLook;
+		}
+		
+		/**
+		 * @return the number of times SLL prediction had to fall back to full context (LL) prediction
+		 */
+		public long getLlFallback() {
+			return llFallback;
+		}
+		
+		public long getLlTotalLook() {
+			return llTotalLook;
+		}
+		
+		public long getLlMaxLook() {
+			return llMaxLook;
+		}
+		
+		/**
+		 * @return the number of lookahead steps computed from the ATN, i.e. not found in the DFA
+		 */
+		public long getAtnTransitions() {
+			return atnTransitions;
+		}
+		
+		/**
+		 * @return the number of lookahead steps served by the DFA
+		 */
+		public long getDfaTransitions() {
+			return dfaTransitions;
+		}
+		
+		public long getAmbiguities() {
+			return ambiguities;
+		}
+		
+		public long getContextSensitivities() {
+			return contextSensitivities;
+		}
+		
+		public long getErrors() {
+			return errors;
+		}
+		
+		@Override
+		public String toString() {
+			return rule + (decision < 0 ? "" : "#" + decision) + " invocations:" + invocations + " time:" + timeNanos
+					+ "ns fallbacks:" + llFallback;
+		}
+	}
+	
+	/**
+	 * Adds the statistics of a parser whose interpreter is a ProfilingATNSimulator. Parsers without profiling are
+	 * ignored.
+	 *
+	 * @param parser the parser, after parsing
+	 */
+	public synchronized void record(Parser parser) {
+		final ParseInfo parseInfo = parser.getParseInfo();
+		if (parseInfo == null) {
+			return;
+		}
+		final String[] ruleNames = parser.getRuleNames();
+		for (DecisionInfo info : parseInfo.getDecisionInfo()) {
+			if (info.invocations == 0) {
+				continue;
+			}
+			Entry entry = decisions.get(info.decision);
+			if (entry == null) {
+				final int ruleIndex = parser.getATN().getDecisionState(info.decision).ruleIndex;
+				entry = new Entry(ruleNames[ruleIndex], info.decision);
+				decisions.put(info.decision, entry);
+			}
+			entry.add(info);
+		}
+		parses++;
+	}
+	
+	/**
+	 * @return the number of parses recorded
+	 */
+	public synchronized int getParses() {
+		return parses;
+	}
+	
+	/**
+	 * @return a snapshot of the statistics of every decision that was invoked, ordered by decision number
+	 */
+	public synchronized List<Entry> getDecisions() {
+		final List<Entry> copy = new ArrayList<Entry>(decisions.size());
+		for (Entry decision : decisions.values()) {
+			final Entry entry = new Entry(decision.rule, decision.decision);
+			entry.add(decision);
+			copy.add(entry);
+		}
+		return copy;
+	}
+	
+	/**
+	 * @return a snapshot of the statistics per grammar rule, the most expensive rule first
+	 */
+	public synchronized List<Entry> getRules() {
+		final Map<String, Entry> rules = new LinkedHashMap<String, Entry>();
+		for (Entry decision : decisions.values()) {
+			Entry rule = rules.get(decision.rule);
+			if (rule == null) {
+				rule = new Entry(decision.rule, -1);
+				rules.put(decision.rule, rule);
+			}
+			rule.add(decision);
+		}
+		final List<Entry> sorted = new ArrayList<Entry>(rules.values());
+		Collections.sort(sorted, (a, b) -> Long.compare(b.timeNanos, a.timeNanos));
+		return sorted;
+	}
+	
+	/**
+	 * Drops all recorded statistics.
+	 */
+	public synchronized void clear() {
+		decisions.clear();
+		parses = 0;
+	}
+	
+	/**
+	 * Creates a parser pool whose parsers report to this profiler, e.g. for use with {@link CFMLProjectParser}.
+	 *
+	 * @param dictionary the syntax dictionary shared by the parsers
+	 * @return the pool
+	 */
+	public CFMLParserPool createPool(SyntaxDictionary dictionary) {
+		return new CFMLParserPool(dictionary) {
+			@Override
+			protected CFMLParser createParser() {
+				final CFMLParser parser = super.createParser();
+				parser.setProfiler(GrammarProfiler.this);
+				return parser;
+			}
+		};
+	}
+	
+	/**
+	 * Writes one CSV line per decision.
+	 *
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeDecisionsCSV(Writer out) throws IOException {
+		writeCSV(out, getDecisions());
+	}
+	
+	/**
+	 * Writes one CSV line per rule, the decision column is -1.
+	 *
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeRulesCSV(Writer out) throws IOException {
+		writeCSV(out, getRules());
+	}
+	
+	private static void writeCSV(Writer out, List<Entry> entries) throws IOException {
+		out.write(String.join(",", COLUMNS));
+		out.write('\n');
+		for (Entry entry : entries) {
+			out.write(entry.rule);
+			out.write(',');
+			out.write(Integer.toString(entry.decision));
+			for (long value : entry.values()) {
+				out.write(',');
+				out.write(Long.toString(value));
+			}
+			out.write('\n');
+		}
+		out.flush();
+	}
+	
+	/**
+	 * Writes the rule and decision statistics as one JSON object.
+	 *
+	 * @param out where to write
+	 * @throws IOException if writing fails
+	 */
+	public void writeJSON(Writer out) throws IOException {
+		final List<Entry> rules;
+		final List<Entry> decisions;
+		final int parses;
+		synchronized (this) {
+			rules = getRules();
+			decisions = getDecisions();
+			parses = this.parses;
+		}
+		out.write("{\n  \"parses\": " + parses + ",\n  \"rules\": [");
+		writeJSON(out, rules);
+		out.write("],\n  \"decisions\": [");
+		writeJSON(out, decisions);
+		out.write("]\n}\n");
+		out.flush();
+	}
+	
+	private static void writeJSON(Writer out, List<Entry> entries) throws IOException {
+		for (int i = 0; i < entries.size(); i++) {
+			final Entry entry = entries.get(i);
+			// rule names are grammar identifiers and need no escaping
+			out.write(i == 0 ? "\n    {" : ",\n    {");
+			out.write("\"rule\": \"" + entry.rule + "\", \"decision\": " + entry.decision);
+			final long[] values = entry.values();
+			for (int v = 0; v < values.length; v++) {
+				out.write(", \"" + COLUMNS[v + 2] + "\": " + values[v]);
+			}
+			out.write('}');
+		}
+		if (!entries.isEmpty()) {
+			out.write("\n  ");
+		}
+	}
+	
+	/**
+	 * Profiles every source file below a directory and writes the report.
+	 *
+	 * @param args the source directory, and optionally a .csv or .json file to write, default is CSV per rule on
+	 *            standard out
+	 * @throws IOException if reading the sources or writing the report fails
+	 */
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: GrammarProfiler <source dir> [report.csv|report.json]");
+			return;
+		}
+		final GrammarProfiler profiler = new GrammarProfiler();
+		final CFMLParserPool pool = profiler.createPool(new CFMLParserPool().getDictionary());
+		new CFMLProjectParser(pool).parse(Paths.get(args[0]));
+		if (args.length < 2) {
+			final Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+			profiler.writeRulesCSV(out);
+			return;
+		}
+		final Path report = Paths.get(args[1]);
+		try (Writer out = Files.newBufferedWriter(report, StandardCharsets.UTF_8)) {
+			if (report.toString().toLowerCase().endsWith(".json")) {
+				profiler.writeJSON(out);
+			} else {
+				profiler.writeDecisionsCSV(out);
+			}
+		}
+	}
+}
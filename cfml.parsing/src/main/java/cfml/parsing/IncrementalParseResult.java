@@ -0,0 +1,324 @@
+package cfml.parsing;
+
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenFactory;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+import org.antlr.v4.runtime.misc.Pair;
+
+import cfml.CFSCRIPTParser.ScriptBlockContext;
+import cfml.parsing.cfscript.PositionShift;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * The state {@link IncrementalScriptParser} keeps for a script between edits: the text, its tokens, the ANTLR parse
+ * tree and the statement tree, plus which statement tree node was built from which grammar rule.
+ *
+ * A result is handed back to {@link IncrementalScriptParser#reparse(IncrementalParseResult, TextEdit)}, which reuses
+ * and updates its tokens and trees in place for the new result. The previous result is stale from then on.
+ *
+ * The positions of the tokens and nodes behind an edit are moved when they are next read, so reading them updates the
+ * trees; a result must not be read by more than one thread at a time.
+ */
+public class IncrementalParseResult {
+	
+	private final TextBuffer buffer;
+	private String text;
+	private final SplicedTokenStream tokens;
+	private final ScriptBlockContext tree;
+	private final CFScriptStatement script;
+	private final Nodes nodes;
+	private final List<ParseMessage> messages;
+	private final boolean incremental;
+	private final int reparsedOffset;
+	private final int reparsedLength;
+	private boolean stale;
+	
+	IncrementalParseResult(TextBuffer buffer, SplicedTokenStream tokens, ScriptBlockContext tree,
+			CFScriptStatement script, Nodes nodes, List<ParseMessage> messages, boolean incremental, int reparsedOffset,
+			int reparsedLength) {
+		this.buffer = buffer;
+		this.tokens = tokens;
+		this.tree = tree;
+		this.script = script;
+		this.nodes = nodes;
+		this.messages = Collections.unmodifiableList(messages);
+		this.incremental = incremental;
+		this.reparsedOffset = reparsedOffset;
+		this.reparsedLength = reparsedLength;
+	}
+	
+	/**
+	 * @return the parsed text
+	 */
+	public String getText() {
+		if (text == null) {
+			text = buffer.toString();
+		}
+		return text;
+	}
+	
+	/**
+	 * @return the statement tree, null if nothing could be parsed
+	 */
+	public CFScriptStatement getScript() {
+		return script;
+	}
+	
+	/**
+	 * @return the ANTLR parse tree
+	 */
+	public ScriptBlockContext getTree() {
+		return tree;
+	}
+	
+	/**
+	 * @return all tokens of the text, including hidden ones
+	 */
+	public List<Token> getTokens() {
+		return tokens.getTokens();
+	}
+	
+	/**
+	 * @return the messages reported for the text, never null
+	 */
+	public List<ParseMessage> getMessages() {
+		return messages;
+	}
+	
+	/**
+	 * @return true if this result was produced by re-parsing a single statement or function of the previous result
+	 */
+	public boolean isIncremental() {
+		return incremental;
+	}
+	
+	/**
+	 * @return the start of the text that was lexed and parsed again, 0 after a full parse
+	 */
+	public int getReparsedOffset() {
+		return reparsedOffset;
+	}
+	
+	/**
+	 * @return the length of the text that was lexed and parsed again, the whole text after a full parse
+	 */
+	public int getReparsedLength() {
+		return reparsedLength;
+	}
+	
+	/**
+	 * @return true once this result has been superseded by a reparse
+	 */
+	public boolean isStale() {
+		return stale;
+	}
+	
+	TextBuffer getBuffer() {
+		return buffer;
+	}
+	
+	SplicedTokenStream getTokenStream() {
+		return tokens;
+	}
+	
+	Nodes getNodes() {
+		return nodes;
+	}
+	
+	void markStale() {
+		stale = true;
+	}
+	
+	@Override
+	public String toString() {
+		return (incremental ? "incremental" : "full") + " reparsed:" + reparsedOffset + "+" + reparsedLength + " tokens:"
+				+ tokens.size() + " messages:" + messages.size();
+	}
+	
+	/**
+	 * A token stream whose buffer can be spliced, so the statement tree keeps one token stream across edits. The tokens
+	 * behind an edit are moved lazily, along its chain of shifts.
+	 */
+	static final class SplicedTokenStream extends CommonTokenStream {
+		
+		private PositionShift shift = new PositionShift();
+		
+		SplicedTokenStream(TokenSource tokenSource) {
+			super(tokenSource);
+		}
+		
+		/**
+		 * @return the buffered tokens, for in place editing
+		 */
+		List<Token> buffer() {
+			return tokens;
+		}
+		
+		/**
+		 * @return the last shift, the one new tokens and nodes start from
+		 */
+		PositionShift getShift() {
+			return shift;
+		}
+		
+		void setShift(PositionShift shift) {
+			this.shift = shift;
+		}
+	}
+	
+	/**
+	 * A token whose position follows a chain of shifts, applied when the position is read.
+	 */
+	static final class ShiftedToken extends CommonToken {
+		
+		private static final long serialVersionUID = 1L;
+		
+		private transient PositionShift shift;
+		
+		ShiftedToken(Pair<TokenSource, CharStream> source, int type, int channel, int start, int stop) {
+			super(source, type, channel, start, stop);
+		}
+		
+		ShiftedToken(int type, String text) {
+			super(type, text);
+		}
+		
+		/**
+		 * @param shift the last shift of the chain, its edits are already part of the position
+		 */
+		void track(PositionShift shift) {
+			this.shift = shift;
+		}
+		
+		private void shiftPosition() {
+			for (PositionShift next; shift != null && (next = shift.next()) != null; shift = next) {
+				if (next.moves(start)) {
+					// keep the text, the token's char stream still holds the text before the edit
+					text = super.getText();
+					start += next.getOffsetDelta();
+					stop += next.getOffsetDelta();
+					charPositionInLine += next.getColumnDelta(line);
+					line += next.getLineDelta();
+					index += next.getIndexDelta();
+				}
+			}
+		}
+		
+		@Override
+		public String getText() {
+			shiftPosition();
+			return super.getText();
+		}
+		
+		@Override
+		public int getLine() {
+			shiftPosition();
+			return line;
+		}
+		
+		@Override
+		public int getCharPositionInLine() {
+			shiftPosition();
+			return charPositionInLine;
+		}
+		
+		@Override
+		public int getStartIndex() {
+			shiftPosition();
+			return start;
+		}
+		
+		@Override
+		public int getStopIndex() {
+			shiftPosition();
+			return stop;
+		}
+		
+		@Override
+		public int getTokenIndex() {
+			shiftPosition();
+			return index;
+		}
+		
+		@Override
+		public String toString(Recognizer<?, ?> r) {
+			shiftPosition();
+			return super.toString(r);
+		}
+	}
+	
+	/**
+	 * Creates {@link ShiftedToken}s, for the lexers of {@link IncrementalScriptParser}.
+	 */
+	static final class ShiftedTokenFactory extends CommonTokenFactory {
+		
+		static final ShiftedTokenFactory INSTANCE = new ShiftedTokenFactory();
+		
+		@Override
+		public CommonToken create(Pair<TokenSource, CharStream> source, int type, String text, int channel, int start,
+				int stop, int line, int charPositionInLine) {
+			final ShiftedToken token = new ShiftedToken(source, type, channel, start, stop);
+			token.setLine(line);
+			token.setCharPositionInLine(charPositionInLine);
+			if (text != null) {
+				token.setText(text);
+			}
+			return token;
+		}
+		
+		@Override
+		public CommonToken create(int type, String text) {
+			return new ShiftedToken(type, text);
+		}
+	}
+	
+	/**
+	 * Which statement tree node was built from which statement or function declaration, and which nodes were built
+	 * from one.
+	 */
+	static final class Nodes {
+		
+		private final Map<ParserRuleContext, CFScriptStatement> nodes = new IdentityHashMap<>();
+		private final Map<CFScriptStatement, Integer> contexts = new IdentityHashMap<>();
+		
+		CFScriptStatement get(ParserRuleContext context) {
+			return nodes.get(context);
+		}
+		
+		void put(ParserRuleContext context, CFScriptStatement node) {
+			remove(context);
+			nodes.put(context, node);
+			contexts.merge(node, 1, Integer::sum);
+		}
+		
+		void putAll(Nodes other) {
+			for (Map.Entry<ParserRuleContext, CFScriptStatement> entry : other.nodes.entrySet()) {
+				put(entry.getKey(), entry.getValue());
+			}
+		}
+		
+		void remove(ParserRuleContext context) {
+			final CFScriptStatement node = nodes.remove(context);
+			if (node != null) {
+				contexts.computeIfPresent(node, (key, count) -> count == 1 ? null : count - 1);
+			}
+		}
+		
+		/**
+		 * @return true if the node was built from a statement or function declaration
+		 */
+		boolean isUnit(CFScriptStatement node) {
+			return contexts.containsKey(node);
+		}
+	}
+}
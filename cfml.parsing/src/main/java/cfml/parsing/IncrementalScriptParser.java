@@ -0,0 +1,519 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Set;
+
+import org.antlr.v4.runtime.BailErrorStrategy;
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.DefaultErrorStrategy;
+import org.antlr.v4.runtime.Lexer;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.antlr.v4.runtime.tree.ParseTree;
+
+import cfml.CFSCRIPTLexer;
+import cfml.CFSCRIPTParser;
+import cfml.CFSCRIPTParser.CompoundStatementContext;
+import cfml.CFSCRIPTParser.FunctionDeclarationContext;
+import cfml.CFSCRIPTParser.ScriptBlockContext;
+import cfml.CFSCRIPTParser.StatementContext;
+import cfml.parsing.IncrementalParseResult.Nodes;
+import cfml.parsing.IncrementalParseResult.ShiftedToken;
+import cfml.parsing.IncrementalParseResult.ShiftedTokenFactory;
+import cfml.parsing.IncrementalParseResult.SplicedTokenStream;
+import cfml.parsing.cfscript.CFParsedStatement;
+import cfml.parsing.cfscript.PositionShift;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptStatementVisitor;
+import cfml.parsing.reporting.ParseException;
+
+/**
+ * Re-parses a script after a small text edit by parsing only the statement or function declaration that encloses the
+ * edit.
+ *
+ * For an edit strictly inside a statement or function declaration that ends with ';' or '}', only the text of that
+ * statement is lexed and parsed again. The new subtree replaces the old one in the ANTLR parse tree and in the
+ * statement tree. The tokens and nodes behind it are left as they are: they follow a chain of {@link PositionShift}s
+ * and take their new offsets when their positions are next read. With the text in a gap buffer, a reparse costs about
+ * the size of the statement rather than that of the script. The innermost such statement is tried first, then the
+ * enclosing ones. Whenever the edit can not be confined this way - the statement no longer parses on its own, the edit
+ * crosses a statement boundary, the previous parse reported errors, ... - the whole script is parsed again, so the
+ * result is always the same as that of a full parse.
+ *
+ * Like {@link CFMLParser}, an IncrementalScriptParser must not be used by more than one thread at a time.
+ */
+public class IncrementalScriptParser {
+	
+	private final CFMLParser parser;
+	private final RecordingVisitor visitor = new RecordingVisitor();
+	
+	public IncrementalScriptParser() {
+		this(new CFMLParser());
+	}
+	
+	/**
+	 * @param parser the parser used for full parses; its messages are cleared by every parse
+	 */
+	public IncrementalScriptParser(CFMLParser parser) {
+		this.parser = parser;
+	}
+	
+	/**
+	 * Parses a whole script.
+	 *
+	 * @param cfscript the script to parse
+	 * @return the result, to be passed to {@link #reparse(IncrementalParseResult, TextEdit)} after the next edit
+	 * @throws ParseException if the script can not be parsed
+	 * @throws IOException if the script can not be read
+	 */
+	public IncrementalParseResult parse(String cfscript) throws ParseException, IOException {
+		return parse(new TextBuffer(cfscript), cfscript);
+	}
+	
+	private IncrementalParseResult parse(TextBuffer buffer, String cfscript) throws ParseException, IOException {
+		final SplicedTokenStream tokens = new SplicedTokenStream(createLexer(CharStreams.fromString(cfscript)));
+		parser.clearMessages();
+		try {
+			final ScriptBlockContext tree = parser.parseScriptBlockContext(tokens);
+			tokens.fill();
+			final Nodes nodes = new Nodes();
+			final CFScriptStatement script = visitor.visit(tree, nodes);
+			if (script != null) {
+				script.setTokens(tokens);
+				trackNodes(script, tokens.getShift());
+			}
+			for (Token token : tokens.buffer()) {
+				((ShiftedToken) token).track(tokens.getShift());
+			}
+			return new IncrementalParseResult(buffer, tokens, tree, script, nodes,
+					new ArrayList<ParseMessage>(parser.getMessages()), false, 0, cfscript.length());
+		} finally {
+			visitor.clear();
+			parser.clearMessages();
+		}
+	}
+	
+	/**
+	 * Applies an edit to the text of a previous result and parses the result again, incrementally where possible. The
+	 * tokens and trees of the previous result are reused and updated in place; it must not be used afterwards.
+	 *
+	 * @param previous the result for the text before the edit
+	 * @param edit the edit
+	 * @return the result for the edited text
+	 * @throws ParseException if the edited script can not be parsed
+	 * @throws IOException if the edited script can not be read
+	 * @throws IllegalStateException if previous has already been reparsed
+	 */
+	public IncrementalParseResult reparse(IncrementalParseResult previous, TextEdit edit)
+			throws ParseException, IOException {
+		if (previous.isStale()) {
+			throw new IllegalStateException("The result has already been reparsed");
+		}
+		final TextBuffer text = previous.getBuffer();
+		final List<ParserRuleContext> units = previous.getScript() != null && previous.getMessages().isEmpty()
+				? enclosingUnits(previous.getTree(), edit) : Collections.<ParserRuleContext> emptyList();
+		final String removed = text.apply(edit);
+		previous.markStale();
+		for (ParserRuleContext unit : units) {
+			final IncrementalParseResult result = reparseUnit(previous, removed, edit, unit);
+			if (result != null) {
+				return result;
+			}
+		}
+		return parse(text, text.toString());
+	}
+	
+	/**
+	 * @return the statements and function declarations enclosing the edit, innermost first
+	 */
+	private static List<ParserRuleContext> enclosingUnits(ParserRuleContext root, TextEdit edit) {
+		final List<ParserRuleContext> units = new ArrayList<ParserRuleContext>();
+		ParserRuleContext current = root;
+		while (current != null && current.children != null) {
+			ParserRuleContext next = null;
+			for (ParseTree child : current.children) {
+				if (child instanceof ParserRuleContext && encloses((ParserRuleContext) child, edit)) {
+					next = (ParserRuleContext) child;
+					break;
+				}
+			}
+			if (next instanceof FunctionDeclarationContext || next instanceof StatementContext) {
+				units.add(next);
+			}
+			current = next;
+		}
+		Collections.reverse(units);
+		return units;
+	}
+	
+	/**
+	 * The first character of a unit and its last token must survive the edit, so the unit still starts and ends where
+	 * it did.
+	 */
+	private static boolean encloses(ParserRuleContext context, TextEdit edit) {
+		final Token start = context.getStart();
+		final Token stop = context.getStop();
+		return start != null && stop != null && start.getType() != Token.EOF && stop.getType() != Token.EOF
+				&& start.getStartIndex() < edit.getOffset() && edit.getOldEnd() <= stop.getStartIndex();
+	}
+	
+	/**
+	 * @param removed the text the edit removed, already applied to the text of previous
+	 */
+	private IncrementalParseResult reparseUnit(IncrementalParseResult previous, String removed, TextEdit edit,
+			ParserRuleContext unit) {
+		final TextBuffer text = previous.getBuffer();
+		final Nodes nodes = previous.getNodes();
+		final CFScriptStatement oldNode = nodes.get(unit);
+		final Token start = unit.getStart();
+		final Token stop = unit.getStop();
+		if (oldNode == null || stop.getType() != CFSCRIPTLexer.SEMICOLON && stop.getType() != CFSCRIPTLexer.RIGHTCURLYBRACKET) {
+			// a statement ended by a newline depends on the token behind it
+			return null;
+		}
+		final int begin = start.getStartIndex();
+		final int oldEnd = stop.getStopIndex() + 1;
+		final int end = oldEnd + edit.getDelta();
+		final List<Token> unitTokens = lex(text.subSequence(begin, end), begin, start.getLine(),
+				start.getCharPositionInLine());
+		if (unitTokens == null || unitTokens.get(unitTokens.size() - 1).getType() != stop.getType()) {
+			return null;
+		}
+		final ParserRuleContext newUnit = parseUnit(unitTokens, unit);
+		if (newUnit == null) {
+			return null;
+		}
+		final Nodes newNodes = new Nodes();
+		final CFScriptStatement newNode;
+		try {
+			newNode = visitor.visit(newUnit, newNodes);
+		} catch (RuntimeException e) {
+			return null;
+		} finally {
+			visitor.clear();
+		}
+		if (newNode == null || newNode.getClass() != oldNode.getClass()
+				|| oldNode instanceof CFCompoundStatement
+						&& unit.getRuleContext(CompoundStatementContext.class, 0) == null) {
+			// the visitor folded the statement into its enclosing block, it can not be replaced on its own
+			return null;
+		}
+		final List<CFCompoundStatement> containers = findContainers(previous.getScript(), unit, oldNode, nodes);
+		if (containers.isEmpty()) {
+			return null;
+		}
+		
+		// from here on the previous result is updated in place
+		final int[] editPosition = position(text, start.getLine(), start.getCharPositionInLine(), begin,
+				edit.getOffset());
+		final int[] oldPosition = position(removed, editPosition[0], editPosition[1], 0, removed.length());
+		final int[] newPosition = position(edit.getInsertedText(), editPosition[0], editPosition[1], 0,
+				edit.getInsertedText().length());
+		final SplicedTokenStream tokens = previous.getTokenStream();
+		final PositionShift shift = tokens.getShift().append(oldEnd, edit.getDelta(), oldPosition[0],
+				newPosition[0] - oldPosition[0], newPosition[1] - oldPosition[1],
+				unitTokens.size() - (stop.getTokenIndex() - start.getTokenIndex() + 1));
+		tokens.setShift(shift);
+		spliceTokens(tokens, start.getTokenIndex(), stop.getTokenIndex(), unitTokens, shift);
+		spliceTree(unit, newUnit);
+		for (CFCompoundStatement container : containers) {
+			final List<CFScriptStatement> statements = container.getStatements();
+			for (int i = 0; i < statements.size(); i++) {
+				if (statements.get(i) == oldNode) {
+					statements.set(i, newNode);
+				}
+			}
+		}
+		newNode.setParent(oldNode.getParent());
+		removeNodes(nodes, unit);
+		nodes.putAll(newNodes);
+		for (ParserRuleContext context = newUnit.getParent(); context != null
+				&& nodes.get(context) == oldNode; context = context.getParent()) {
+			// e.g. the statement around a function declaration
+			nodes.put(context, newNode);
+		}
+		trackNodes(newNode, shift);
+		return new IncrementalParseResult(text, tokens, previous.getTree(), previous.getScript(), nodes,
+				new ArrayList<ParseMessage>(), true, begin, end - begin);
+	}
+	
+	private CFSCRIPTLexer createLexer(CharStream input) {
+		final CFSCRIPTLexer lexer = new CFSCRIPTLexer(input);
+		lexer.setTokenFactory(ShiftedTokenFactory.INSTANCE);
+		lexer.removeErrorListeners();
+		if (parser.getDFACache() != null) {
+			parser.getDFACache().install(lexer);
+		}
+		return lexer;
+	}
+	
+	/**
+	 * Lexes the text of a unit with the positions it has in the whole script.
+	 *
+	 * @return the tokens, or null if the text does not lex cleanly into whole tokens
+	 */
+	private List<Token> lex(String unitText, int offset, int line, int column) {
+		final CFSCRIPTLexer lexer = createLexer(CharStreams.fromString(unitText));
+		final ErrorCounter errors = new ErrorCounter();
+		lexer.addErrorListener(errors);
+		lexer.setLine(line);
+		lexer.setCharPositionInLine(column);
+		final List<Token> tokens = new ArrayList<Token>();
+		for (Token token = lexer.nextToken(); token.getType() != Token.EOF; token = lexer.nextToken()) {
+			final CommonToken unitToken = (CommonToken) token;
+			// the text is kept, the token's char stream only holds the unit
+			unitToken.setText(unitToken.getText());
+			unitToken.setStartIndex(unitToken.getStartIndex() + offset);
+			unitToken.setStopIndex(unitToken.getStopIndex() + offset);
+			tokens.add(unitToken);
+		}
+		if (errors.count > 0 || tokens.isEmpty() || lexer._mode != Lexer.DEFAULT_MODE || !lexer._modeStack.isEmpty()) {
+			return null;
+		}
+		return tokens;
+	}
+	
+	/**
+	 * Parses the tokens of a unit with the rule the unit was parsed with, SLL first and LL if that fails.
+	 *
+	 * @return the new subtree, or null if the tokens are not exactly one error free unit
+	 */
+	private ParserRuleContext parseUnit(List<Token> unitTokens, ParserRuleContext unit) {
+		final CommonTokenStream tokens = new CommonTokenStream(new ListTokenSource(unitTokens));
+		final CFSCRIPTParser unitParser = new CFSCRIPTParser(tokens);
+		if (parser.getDFACache() != null) {
+			parser.getDFACache().install(unitParser);
+		}
+		unitParser.removeErrorListeners();
+		final ErrorCounter errors = new ErrorCounter();
+		unitParser.addErrorListener(errors);
+		unitParser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		unitParser.setErrorHandler(new BailErrorStrategy());
+		ParserRuleContext result;
+		try {
+			result = parseRule(unitParser, unit);
+		} catch (RuntimeException e) {
+			tokens.seek(0);
+			unitParser.reset();
+			unitParser.setErrorHandler(new DefaultErrorStrategy());
+			unitParser.getInterpreter().setPredictionMode(PredictionMode.LL);
+			try {
+				result = parseRule(unitParser, unit);
+			} catch (RuntimeException e2) {
+				return null;
+			}
+		}
+		if (errors.count > 0 || tokens.LA(1) != Token.EOF || result.getClass() != unit.getClass()) {
+			return null;
+		}
+		return result;
+	}
+	
+	private static ParserRuleContext parseRule(CFSCRIPTParser parser, ParserRuleContext unit) {
+		return unit instanceof FunctionDeclarationContext ? parser.functionDeclaration() : parser.statement();
+	}
+	
+	/**
+	 * @return the blocks holding the node, found by identity below the node of the closest enclosing unit, or of the
+	 *         whole script; the nodes of other units do not hold it and are not searched
+	 */
+	private static List<CFCompoundStatement> findContainers(CFScriptStatement script, ParserRuleContext unit,
+			CFScriptStatement node, Nodes nodes) {
+		CFScriptStatement root = null;
+		for (ParserRuleContext context = unit.getParent(); context != null && root == null; context = context
+				.getParent()) {
+			final CFScriptStatement enclosing = nodes.get(context);
+			if (enclosing != node) {
+				root = enclosing;
+			}
+		}
+		final List<CFCompoundStatement> containers = new ArrayList<CFCompoundStatement>();
+		final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		final Deque<CFScriptStatement> pending = new ArrayDeque<CFScriptStatement>();
+		pending.push(root == null ? script : root);
+		while (!pending.isEmpty()) {
+			final CFScriptStatement current = pending.pop();
+			if (current == node || !seen.add(current)) {
+				continue;
+			}
+			if (current instanceof CFCompoundStatement) {
+				for (CFScriptStatement statement : ((CFCompoundStatement) current).getStatements()) {
+					if (statement == node) {
+						containers.add((CFCompoundStatement) current);
+						break;
+					}
+				}
+			}
+			final List<CFScriptStatement> children = current.decomposeScript();
+			if (children != null) {
+				for (CFScriptStatement child : children) {
+					if (child != null && !nodes.isUnit(child)) {
+						pending.push(child);
+					}
+				}
+			}
+		}
+		return containers;
+	}
+	
+	/**
+	 * Lets every statement and expression below root follow the shifts appended after shift.
+	 */
+	private static void trackNodes(CFScriptStatement root, PositionShift shift) {
+		final Set<Object> seen = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+		final Deque<Object> pending = new ArrayDeque<Object>();
+		pending.push(root);
+		while (!pending.isEmpty()) {
+			final Object current = pending.pop();
+			if (!seen.add(current)) {
+				continue;
+			}
+			if (current instanceof CFScriptStatement) {
+				final CFScriptStatement statement = (CFScriptStatement) current;
+				if (statement instanceof cfml.parsing.cfscript.script.CFParsedStatement) {
+					((cfml.parsing.cfscript.script.CFParsedStatement) statement).trackPosition(shift);
+				}
+				pushAll(pending, statement.decomposeScript());
+				pushAll(pending, statement.decomposeExpression());
+			} else {
+				final CFParsedStatement expression = (CFParsedStatement) current;
+				expression.trackPosition(shift);
+				pushAll(pending, expression.decomposeScript());
+				pushAll(pending, expression.decomposeExpression());
+			}
+		}
+	}
+	
+	private static void pushAll(Deque<Object> pending, List<?> nodes) {
+		if (nodes != null) {
+			for (Object node : nodes) {
+				if (node != null) {
+					pending.push(node);
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Replaces the tokens first to last by the replacement. The tokens behind them are moved by the shift when read.
+	 */
+	private static void spliceTokens(SplicedTokenStream stream, int first, int last, List<Token> replacement,
+			PositionShift shift) {
+		final List<Token> buffer = stream.buffer();
+		buffer.subList(first, last + 1).clear();
+		buffer.addAll(first, replacement);
+		for (int i = 0; i < replacement.size(); i++) {
+			final ShiftedToken token = (ShiftedToken) replacement.get(i);
+			token.setTokenIndex(first + i);
+			token.track(shift);
+		}
+	}
+	
+	private static void spliceTree(ParserRuleContext oldUnit, ParserRuleContext newUnit) {
+		final ParserRuleContext parent = oldUnit.getParent();
+		newUnit.parent = parent;
+		newUnit.invokingState = oldUnit.invokingState;
+		for (int i = 0; i < parent.children.size(); i++) {
+			if (parent.children.get(i) == oldUnit) {
+				parent.children.set(i, newUnit);
+			}
+		}
+		for (ParserRuleContext context = parent; context != null; context = context.getParent()) {
+			if (context.start == oldUnit.start) {
+				context.start = newUnit.start;
+			}
+			if (context.stop == oldUnit.stop) {
+				context.stop = newUnit.stop;
+			}
+		}
+	}
+	
+	private static void removeNodes(Nodes nodes, ParserRuleContext unit) {
+		final Deque<ParseTree> pending = new ArrayDeque<ParseTree>();
+		pending.push(unit);
+		while (!pending.isEmpty()) {
+			final ParseTree current = pending.pop();
+			if (current instanceof ParserRuleContext) {
+				nodes.remove((ParserRuleContext) current);
+				for (int i = 0; i < current.getChildCount(); i++) {
+					pending.push(current.getChild(i));
+				}
+			}
+		}
+	}
+	
+	/**
+	 * @return the line and column of offset to, counted from from at line and column
+	 */
+	private static int[] position(CharSequence text, int line, int column, int from, int to) {
+		for (int i = from; i < to; i++) {
+			if (text.charAt(i) == '\n') {
+				line++;
+				column = 0;
+			} else {
+				column++;
+			}
+		}
+		return new int[] { line, column };
+	}
+	
+	/**
+	 * Builds the statement tree and remembers which node each statement and function declaration produced.
+	 */
+	private static final class RecordingVisitor extends CFScriptStatementVisitor {
+		
+		private Nodes nodes;
+		
+		CFScriptStatement visit(ParseTree tree, Nodes nodes) {
+			this.nodes = nodes;
+			try {
+				return visit(tree);
+			} finally {
+				this.nodes = null;
+			}
+		}
+		
+		@Override
+		public CFScriptStatement visitFunctionDeclaration(FunctionDeclarationContext ctx) {
+			return record(ctx, super.visitFunctionDeclaration(ctx));
+		}
+		
+		@Override
+		public CFScriptStatement visitStatement(StatementContext ctx) {
+			return record(ctx, super.visitStatement(ctx));
+		}
+		
+		private CFScriptStatement record(ParserRuleContext ctx, CFScriptStatement node) {
+			if (nodes != null && node != null) {
+				nodes.put(ctx, node);
+			}
+			return node;
+		}
+	}
+	
+	private static final class ErrorCounter extends BaseErrorListener {
+		
+		int count;
+		
+		@Override
+		public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line, int charPositionInLine,
+				String msg, RecognitionException e) {
+			count++;
+		}
+	}
+}
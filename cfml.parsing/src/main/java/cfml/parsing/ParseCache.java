@@ -0,0 +1,201 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.atomic.LongAdder;
+
+import cfml.parsing.reporting.ParseException;
+
+/**
+ * A persistent cache of cfscript parse results, so unchanged sources are not parsed again on the next run.
+ *
+ * Entries are stored with {@link ASTSerializer} below the cache directory, keyed by the SHA-256 hash of the source text
+ * and of the parser settings that change a result, the {@link TokenRetention} and the message limit, and grouped in a
+ * directory per grammar version, so a changed grammar or AST never reads stale entries. Entries are written to a
+ * temporary file and moved into place, which makes a cache directory safe to share between threads and processes.
+ * Entries that can not be read are deleted and count as misses.
+ */
+public class ParseCache {
+	
+	private static final String SUFFIX = ".ast";
+	
+	private final Path directory;
+	
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+	
+	/**
+	 * @param directory the cache directory, created when the first entry is written
+	 */
+	public ParseCache(Path directory) {
+		this.directory = directory.resolve(ASTSerializer.getGrammarVersion());
+	}
+	
+	/**
+	 * @return the directory holding the entries of the current grammar version
+	 */
+	public Path getDirectory() {
+		return directory;
+	}
+	
+	/**
+	 * Returns the cached result for a source parsed with the settings of the pool, or parses and caches it. Scripts
+	 * that fail with an exception are not cached.
+	 *
+	 * @param pool the parsers to use on a miss
+	 * @param cfscript the script
+	 * @return the result
+	 * @throws ParseException if the script can not be parsed
+	 * @throws IOException if the script can not be read
+	 */
+	public ParseResult parseScript(CFMLParserPool pool, String cfscript) throws ParseException, IOException {
+		final Path entry = entryFor(cfscript, pool.getParser().getTokenRetention(), pool.getMaxMessages());
+		ParseResult result = read(entry);
+		if (result == null) {
+			result = pool.parseScript(cfscript);
+			write(entry, result);
+		}
+		return result;
+	}
+	
+	/**
+	 * @param source the source text
+	 * @return the cached result of parsing with the default settings, or null if there is none
+	 */
+	public ParseResult get(String source) {
+		return get(source, TokenRetention.FULL, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @param source the source text
+	 * @param retention the token retention of the parser
+	 * @param maxMessages the message limit of the parser
+	 * @return the cached result of parsing with these settings, or null if there is none
+	 */
+	public ParseResult get(String source, TokenRetention retention, int maxMessages) {
+		return read(entryFor(source, retention, maxMessages));
+	}
+	
+	private ParseResult read(Path entry) {
+		try (InputStream in = Files.newInputStream(entry)) {
+			final ParseResult result = ASTSerializer.read(in);
+			hits.increment();
+			return result;
+		} catch (NoSuchFileException e) {
+			// not cached yet
+		} catch (IOException e) {
+			try {
+				Files.deleteIfExists(entry);
+			} catch (IOException ignored) {
+				// a later put replaces the entry
+			}
+		}
+		misses.increment();
+		return null;
+	}
+	
+	/**
+	 * Caches a result of parsing with the default settings. Failures to write are ignored, the cache just stays cold.
+	 *
+	 * @param source the source text
+	 * @param result the result of parsing it
+	 * @return true if the entry was written
+	 */
+	public boolean put(String source, ParseResult result) {
+		return put(source, TokenRetention.FULL, Integer.MAX_VALUE, result);
+	}
+	
+	/**
+	 * Caches a result. Failures to write are ignored, the cache just stays cold.
+	 *
+	 * @param source the source text
+	 * @param retention the token retention of the parser
+	 * @param maxMessages the message limit of the parser
+	 * @param result the result of parsing it
+	 * @return true if the entry was written
+	 */
+	public boolean put(String source, TokenRetention retention, int maxMessages, ParseResult result) {
+		return write(entryFor(source, retention, maxMessages), result);
+	}
+	
+	private boolean write(Path entry, ParseResult result) {
+		Path temp = null;
+		try {
+			Files.createDirectories(entry.getParent());
+			temp = Files.createTempFile(entry.getParent(), entry.getFileName().toString(), ".tmp");
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				ASTSerializer.write(result, out);
+			}
+			try {
+				Files.move(temp, entry, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, entry, StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException | IllegalArgumentException e) {
+			if (temp != null) {
+				try {
+					Files.deleteIfExists(temp);
+				} catch (IOException ignored) {
+					// nothing left to clean up
+				}
+			}
+			return false;
+		}
+	}
+	
+	/**
+	 * @param source the source text
+	 * @return the file holding the entry for the source parsed with the default settings
+	 */
+	Path entryFor(String source) {
+		return entryFor(source, TokenRetention.FULL, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @return the file holding the entry for the source parsed with the given settings
+	 */
+	Path entryFor(String source, TokenRetention retention, int maxMessages) {
+		final String hash = hash(source, retention.name() + ':' + maxMessages);
+		return directory.resolve(hash.substring(0, 2)).resolve(hash + SUFFIX);
+	}
+	
+	static String hash(String source, String settings) {
+		try {
+			final MessageDigest digest = MessageDigest.getInstance("SHA-256");
+			digest.update(settings.getBytes(StandardCharsets.UTF_8));
+			digest.update((byte) 0);
+			return ASTSerializer.toHex(digest.digest(source.getBytes(StandardCharsets.UTF_8)));
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * @return the number of results read from the cache
+	 */
+	public long getHits() {
+		return hits.sum();
+	}
+	
+	/**
+	 * @return the number of lookups that found no usable entry
+	 */
+	public long getMisses() {
+		return misses.sum();
+	}
+	
+	@Override
+	public String toString() {
+		return "ParseCache " + directory + " hits:" + getHits() + " misses:" + getMisses();
+	}
+}
@@ -30,7 +30,7 @@ package cfml.parsing;
  * 
  * @author Oliver
  */
-public class ParseMessage {
+public class ParseMessage implements Cloneable {
 	/**
 	 * The line number that the message should be reported for.
 	 */
@@ -193,6 +193,24 @@ public class ParseMessage {
 		this.message = message;
 	}
 	
+	/**
+	 * Copies the message to another line, e.g. to report a message of an embedded script on the line of its file. The
+	 * message itself is left as it is, it may be shared.
+	 * 
+	 * @param lineNum
+	 *            The line number of the copy
+	 * @return A copy of the same class with the line number changed
+	 */
+	public ParseMessage atLine(int lineNum) {
+		try {
+			final ParseMessage copy = (ParseMessage) clone();
+			copy.lineNumber = lineNum;
+			return copy;
+		} catch (CloneNotSupportedException e) {
+			throw new AssertionError(e);
+		}
+	}
+	
 	@Override
 	public String toString() {
 		return "Line: " + lineNumber + " offset:" + docStartOffset + " endoffset:" + docEndOffset + " message:" + message;
@@ -0,0 +1,60 @@
+package cfml.parsing;
+
+import java.util.Collections;
+import java.util.List;
+
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * The outcome of parsing one piece of cfscript: the resulting statement tree and the messages reported while
+ * parsing it.
+ */
+public class ParseResult {
+	
+	private final CFScriptStatement script;
+	private final List<ParseMessage> messages;
+	
+	public ParseResult(CFScriptStatement script, List<ParseMessage> messages) {
+		this.script = script;
+		this.messages = messages == null ? Collections.<ParseMessage> emptyList()
+				: Collections.unmodifiableList(messages);
+	}
+	
+	/**
+	 * @return the parsed statement, or null if nothing could be parsed
+	 */
+	public CFScriptStatement getScript() {
+		return script;
+	}
+	
+	/**
+	 * @return the messages reported while parsing, never null
+	 */
+	public List<ParseMessage> getMessages() {
+		return messages;
+	}
+	
+	/**
+	 * @return true if any of the messages is a fatal error
+	 */
+	public boolean hadFatal() {
+		for (ParseMessage message : messages) {
+			if (message.isFatal()) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return true if any errors were reported
+	 */
+	public boolean hasErrors() {
+		for (ParseMessage message : messages) {
+			if (message instanceof ParseError) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
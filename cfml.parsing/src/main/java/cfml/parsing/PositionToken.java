@@ -0,0 +1,144 @@
+package cfml.parsing;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.TokenSource;
+
+/**
+ * A token that only records where it was found: its type, offset, length, line and column, and its text, either as the
+ * source text it points into or as a string of its own. It holds no reference to a lexer, character stream or token
+ * stream, so a statement tree using PositionTokens does not keep those alive.
+ */
+public final class PositionToken implements Token {
+	
+	private final int type;
+	private final int start;
+	private final int length;
+	private final int line;
+	private final int column;
+	private final String source;
+	private final String text;
+	
+	/**
+	 * @param type the token type
+	 * @param start the offset of the first character
+	 * @param length the number of characters
+	 * @param line the line, starting at 1
+	 * @param column the position in the line, starting at 0
+	 * @param source the text the offsets refer to, may be null
+	 */
+	public PositionToken(int type, int start, int length, int line, int column, String source) {
+		this(type, start, length, line, column, source, null);
+	}
+	
+	private PositionToken(int type, int start, int length, int line, int column, String source, String text) {
+		this.type = type;
+		this.start = start;
+		this.length = length;
+		this.line = line;
+		this.column = column;
+		this.source = source;
+		this.text = text;
+	}
+	
+	/**
+	 * Creates a PositionToken with the position of another token.
+	 *
+	 * @param token the token to copy
+	 * @param source the text the offsets refer to, may be null
+	 * @return the new token
+	 */
+	public static PositionToken of(Token token, String source) {
+		return of(token, source, null);
+	}
+	
+	/**
+	 * Creates a PositionToken with the position of another token and its text, kept as given when there is no source.
+	 *
+	 * @param token the token to copy
+	 * @param source the text the offsets refer to, may be null
+	 * @param text the text of the token, used without a source; may be null
+	 * @return the new token
+	 */
+	static PositionToken of(Token token, String source, String text) {
+		final int length = Math.max(0, token.getStopIndex() - token.getStartIndex() + 1);
+		return new PositionToken(token.getType(), token.getStartIndex(), length, token.getLine(),
+				token.getCharPositionInLine(), source, source == null ? text : null);
+	}
+	
+	/**
+	 * @return the text of the token, or null if neither a source nor a text is known or the position lies outside of
+	 *         the source
+	 */
+	@Override
+	public String getText() {
+		if (source == null) {
+			return text;
+		}
+		if (start < 0 || start + length > source.length()) {
+			return null;
+		}
+		return source.substring(start, start + length);
+	}
+	
+	@Override
+	public int getType() {
+		return type;
+	}
+	
+	@Override
+	public int getLine() {
+		return line;
+	}
+	
+	@Override
+	public int getCharPositionInLine() {
+		return column;
+	}
+	
+	@Override
+	public int getChannel() {
+		return DEFAULT_CHANNEL;
+	}
+	
+	@Override
+	public int getTokenIndex() {
+		return -1;
+	}
+	
+	@Override
+	public int getStartIndex() {
+		return start;
+	}
+	
+	@Override
+	public int getStopIndex() {
+		return start + length - 1;
+	}
+	
+	public int getLength() {
+		return length;
+	}
+	
+	/**
+	 * @return the text the offsets refer to, or null
+	 */
+	public String getSource() {
+		return source;
+	}
+	
+	@Override
+	public TokenSource getTokenSource() {
+		return null;
+	}
+	
+	@Override
+	public CharStream getInputStream() {
+		return null;
+	}
+	
+	@Override
+	public String toString() {
+		return "[@" + start + ":" + getStopIndex() + "='" + getText() + "',<" + type + ">," + line + ":" + column + "]";
+	}
+}
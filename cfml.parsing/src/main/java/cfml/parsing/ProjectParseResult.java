@@ -0,0 +1,74 @@
+package cfml.parsing;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The outcome of parsing a source tree with {@link CFMLProjectParser}: one {@link FileParseResult} per file, ordered by
+ * path, plus the messages of all files.
+ */
+public class ProjectParseResult {
+	
+	private final Path root;
+	private final List<FileParseResult> results;
+	
+	public ProjectParseResult(Path root, List<FileParseResult> results) {
+		this.root = root;
+		this.results = Collections.unmodifiableList(results);
+	}
+	
+	/**
+	 * @return the directory that was parsed
+	 */
+	public Path getRoot() {
+		return root;
+	}
+	
+	/**
+	 * @return the per file results, ordered by path
+	 */
+	public List<FileParseResult> getResults() {
+		return results;
+	}
+	
+	/**
+	 * @return all messages of all files, in file order
+	 */
+	public List<ParseMessage> getMessages() {
+		List<ParseMessage> messages = new ArrayList<ParseMessage>();
+		for (FileParseResult result : results) {
+			messages.addAll(result.getMessages());
+		}
+		return messages;
+	}
+	
+	/**
+	 * @return the messages of every file that reported any, keyed by path
+	 */
+	public Map<Path, List<ParseMessage>> getMessagesByFile() {
+		Map<Path, List<ParseMessage>> messages = new LinkedHashMap<Path, List<ParseMessage>>();
+		for (FileParseResult result : results) {
+			if (!result.getMessages().isEmpty()) {
+				messages.put(result.getPath(), result.getMessages());
+			}
+		}
+		return messages;
+	}
+	
+	/**
+	 * @return the number of files that reported errors
+	 */
+	public int getFilesWithErrors() {
+		int count = 0;
+		for (FileParseResult result : results) {
+			if (result.hasErrors()) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,86 @@
+package cfml.parsing;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * A view of part of another char stream, so a region of a document, e.g. the expression of a cfset, can be lexed
+ * without copying it. Indexes are those of the underlying stream, so the tokens carry document offsets, and their text
+ * is read from the document.
+ */
+class RegionCharStream implements CharStream {
+	
+	private final CharStream input;
+	private final int start;
+	private final int stop;
+	
+	/**
+	 * @param input the whole document
+	 * @param start the index of the first character of the region
+	 * @param stop the index behind the last character of the region
+	 */
+	RegionCharStream(CharStream input, int start, int stop) {
+		if (start < 0 || stop < start || stop > input.size()) {
+			throw new IllegalArgumentException("Invalid region " + start + ".." + stop + " of " + input.size());
+		}
+		this.input = input;
+		this.start = start;
+		this.stop = stop;
+		input.seek(start);
+	}
+	
+	@Override
+	public void consume() {
+		if (input.index() >= stop) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		input.consume();
+	}
+	
+	@Override
+	public int LA(int i) {
+		if (i > 0 && input.index() + i - 1 >= stop) {
+			return IntStream.EOF;
+		}
+		if (i < 0 && input.index() + i < start) {
+			return IntStream.EOF;
+		}
+		return input.LA(i);
+	}
+	
+	@Override
+	public int mark() {
+		return input.mark();
+	}
+	
+	@Override
+	public void release(int marker) {
+		input.release(marker);
+	}
+	
+	@Override
+	public int index() {
+		return input.index();
+	}
+	
+	@Override
+	public void seek(int index) {
+		input.seek(Math.max(start, Math.min(index, stop)));
+	}
+	
+	@Override
+	public int size() {
+		return stop;
+	}
+	
+	@Override
+	public String getSourceName() {
+		return input.getSourceName();
+	}
+	
+	@Override
+	public String getText(Interval interval) {
+		return input.getText(interval);
+	}
+}
@@ -0,0 +1,22 @@
+package cfml.parsing;
+
+/**
+ * How a script was parsed, see {@link CFMLParser#getLastParseMode()}.
+ */
+public enum ScriptParseMode {
+	/**
+	 * The fast path: SLL prediction without error recovery.
+	 */
+	SLL,
+	/**
+	 * The script is valid but SLL prediction failed on it, a conflict only full LL prediction resolves. The script was
+	 * parsed again with LL prediction for the top level statement or function that failed, or from there to the end
+	 * if a later element needed it too.
+	 */
+	LL,
+	/**
+	 * The script has syntax errors. It was parsed again with LL prediction and error recovery from the top level
+	 * statement or function that failed.
+	 */
+	SYNTAX_ERROR
+}
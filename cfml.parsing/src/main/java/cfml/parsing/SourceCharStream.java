@@ -0,0 +1,339 @@
+package cfml.parsing;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.antlr.v4.runtime.CharStream;
+import org.antlr.v4.runtime.IntStream;
+import org.antlr.v4.runtime.misc.Interval;
+
+/**
+ * The text of a source file, decoded once and read in place both as an ANTLR {@link CharStream}, by the CFML and
+ * CFSCRIPT lexers, and as a {@link CharSequence}, by Jericho, so the file is not copied into strings and code point
+ * buffers on the way. Large files are memory mapped for decoding.
+ *
+ * The charset is that of the byte order mark, if the file has one, else that of a cfprocessingdirective pageencoding
+ * tag or a pageencoding directive of a script component near the start of the file, else the default charset. The
+ * stream indexes are char indexes, as Jericho's are; a char outside the basic multilingual plane is two chars of the
+ * stream.
+ */
+public class SourceCharStream implements CharStream, CharSequence {
+	
+	/** files from this size on are mapped rather than read */
+	private static final long MAP_THRESHOLD = 64 * 1024;
+	/** a pageencoding directive is looked for in this many leading bytes */
+	static final int PAGEENCODING_SCAN_LENGTH = 4096;
+	private static final byte[] PAGEENCODING = ascii("pageencoding");
+	private static final byte[] PROCESSINGDIRECTIVE = ascii("<cfprocessingdirective");
+	
+	private final char[] data;
+	private final int size;
+	private final String name;
+	private final Charset charset;
+	private int p;
+	private String string;
+	
+	private SourceCharStream(char[] data, int size, String name, Charset charset) {
+		this.data = data;
+		this.size = size;
+		this.name = name;
+		this.charset = charset;
+	}
+	
+	/**
+	 * Reads a file with the platform charset as default, like a FileReader.
+	 *
+	 * @param file the file
+	 * @return its text
+	 */
+	public static SourceCharStream open(Path file) throws IOException {
+		return open(file, Charset.defaultCharset());
+	}
+	
+	/**
+	 * @param file the file
+	 * @param defaultCharset the charset of a file that declares none
+	 * @return its text
+	 */
+	public static SourceCharStream open(Path file, Charset defaultCharset) throws IOException {
+		final ByteBuffer bytes;
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			final long length = channel.size();
+			if (length > Integer.MAX_VALUE) {
+				throw new IOException("File too large: " + file);
+			}
+			if (length >= MAP_THRESHOLD) {
+				bytes = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+			} else {
+				bytes = ByteBuffer.allocate((int) length);
+				while (bytes.hasRemaining() && channel.read(bytes) != -1) {
+					// until the buffer is full
+				}
+				bytes.flip();
+			}
+		}
+		final Charset charset = detectCharset(bytes, defaultCharset);
+		final CharsetDecoder decoder = charset.newDecoder().onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		final CharBuffer chars = decoder.decode(bytes);
+		return new SourceCharStream(chars.array(), chars.limit(), file.toString(), charset);
+	}
+	
+	/**
+	 * Finds the charset of a file and skips its byte order mark.
+	 *
+	 * @param bytes the content of the file, positioned behind the byte order mark on return
+	 * @param defaultCharset the charset of a file that declares none
+	 * @return the charset of the file
+	 */
+	static Charset detectCharset(ByteBuffer bytes, Charset defaultCharset) {
+		final int start = bytes.position();
+		if (startsWith(bytes, start, 0xEF, 0xBB, 0xBF)) {
+			bytes.position(start + 3);
+			return StandardCharsets.UTF_8;
+		} else if (startsWith(bytes, start, 0xFE, 0xFF)) {
+			bytes.position(start + 2);
+			return StandardCharsets.UTF_16BE;
+		} else if (startsWith(bytes, start, 0xFF, 0xFE)) {
+			bytes.position(start + 2);
+			return StandardCharsets.UTF_16LE;
+		}
+		final Charset declared = findPageEncoding(bytes);
+		return declared != null ? declared : defaultCharset;
+	}
+	
+	/**
+	 * Looks for pageencoding in a cfprocessingdirective tag, &lt;cfprocessingdirective pageencoding="utf-8"&gt;, or as
+	 * a directive of a script component, pageencoding "utf-8";, in the first {@link #PAGEENCODING_SCAN_LENGTH} bytes.
+	 * The bytes are read as ASCII, which the names are in every charset that can declare itself.
+	 */
+	private static Charset findPageEncoding(ByteBuffer bytes) {
+		final int limit = bytes.limit();
+		final int end = (int) Math.min(limit, (long) bytes.position() + PAGEENCODING_SCAN_LENGTH);
+		for (int i = indexOf(bytes, PAGEENCODING, bytes.position(), end); i >= 0; i = indexOf(bytes, PAGEENCODING,
+				i + PAGEENCODING.length, end)) {
+			int j = skipSpace(bytes, i + PAGEENCODING.length);
+			final boolean tag = j < limit && bytes.get(j) == '=';
+			if (tag) {
+				if (!inDirectiveTag(bytes, i)) {
+					continue;
+				}
+				j = skipSpace(bytes, j + 1);
+			} else if (j == i + PAGEENCODING.length || !isStatementStart(bytes, i)) {
+				continue;
+			}
+			if (j < limit && (bytes.get(j) == '"' || bytes.get(j) == '\'')) {
+				j++;
+			} else if (!tag) {
+				continue;
+			}
+			final StringBuilder encoding = new StringBuilder();
+			while (j < limit && isCharsetNameChar(bytes.get(j))) {
+				encoding.append((char) bytes.get(j++));
+			}
+			try {
+				if (encoding.length() > 0 && Charset.isSupported(encoding.toString())) {
+					return Charset.forName(encoding.toString());
+				}
+			} catch (IllegalArgumentException e) {
+				// not a charset name
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return true if the attribute at index is inside a cfprocessingdirective tag
+	 */
+	private static boolean inDirectiveTag(ByteBuffer bytes, int index) {
+		for (int i = index - 1; i >= bytes.position(); i--) {
+			final byte b = bytes.get(i);
+			if (b == '>') {
+				return false;
+			}
+			if (b == '<') {
+				return regionMatches(bytes, i, PROCESSINGDIRECTIVE);
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * @return true if the text in front of index ends a statement or opens a block
+	 */
+	private static boolean isStatementStart(ByteBuffer bytes, int index) {
+		for (int i = index - 1; i >= bytes.position(); i--) {
+			final byte b = bytes.get(i);
+			if (!isSpace(b)) {
+				return b == '{' || b == ';' || b == '}';
+			}
+		}
+		return true;
+	}
+	
+	private static boolean isCharsetNameChar(byte b) {
+		return b >= 'a' && b <= 'z' || b >= 'A' && b <= 'Z' || b >= '0' && b <= '9' || b == '-' || b == '_' || b == '.'
+				|| b == ':';
+	}
+	
+	private static boolean isSpace(byte b) {
+		return b == ' ' || b == '\t' || b == '\r' || b == '\n';
+	}
+	
+	private static int skipSpace(ByteBuffer bytes, int index) {
+		while (index < bytes.limit() && isSpace(bytes.get(index))) {
+			index++;
+		}
+		return index;
+	}
+	
+	/**
+	 * @param lower the pattern, in lower case
+	 * @param end the index the match has to end by
+	 * @return the index of the first match from index on, ignoring case, -1 if there is none
+	 */
+	private static int indexOf(ByteBuffer bytes, byte[] lower, int index, int end) {
+		final int last = end - lower.length;
+		for (int i = index; i <= last; i++) {
+			if ((bytes.get(i) | 0x20) == lower[0] && regionMatches(bytes, i, lower)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	private static boolean regionMatches(ByteBuffer bytes, int index, byte[] lower) {
+		if (index + lower.length > bytes.limit()) {
+			return false;
+		}
+		for (int i = 0; i < lower.length; i++) {
+			final byte b = bytes.get(index + i);
+			if (b != lower[i] && (b < 'A' || b > 'Z' || (b | 0x20) != lower[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static boolean startsWith(ByteBuffer bytes, int index, int... mark) {
+		if (bytes.limit() - index < mark.length) {
+			return false;
+		}
+		for (int i = 0; i < mark.length; i++) {
+			if ((bytes.get(index + i) & 0xFF) != mark[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	private static byte[] ascii(String text) {
+		return text.getBytes(StandardCharsets.US_ASCII);
+	}
+	
+	/**
+	 * @return the charset the file was decoded with
+	 */
+	public Charset getCharset() {
+		return charset;
+	}
+	
+	@Override
+	public void consume() {
+		if (p >= size) {
+			throw new IllegalStateException("cannot consume EOF");
+		}
+		p++;
+	}
+	
+	@Override
+	public int LA(int i) {
+		if (i > 0) {
+			final int index = p + i - 1;
+			return index < size ? data[index] : IntStream.EOF;
+		} else if (i < 0) {
+			final int index = p + i;
+			return index >= 0 ? data[index] : IntStream.EOF;
+		}
+		return 0;
+	}
+	
+	@Override
+	public int mark() {
+		return -1;
+	}
+	
+	@Override
+	public void release(int marker) {
+	}
+	
+	@Override
+	public int index() {
+		return p;
+	}
+	
+	@Override
+	public void seek(int index) {
+		p = Math.min(index, size);
+	}
+	
+	@Override
+	public int size() {
+		return size;
+	}
+	
+	@Override
+	public String getSourceName() {
+		return name;
+	}
+	
+	@Override
+	public String getText(Interval interval) {
+		final int start = Math.max(interval.a, 0);
+		final int stop = Math.min(interval.b, size - 1);
+		if (stop < start) {
+			return "";
+		}
+		return new String(data, start, stop - start + 1);
+	}
+	
+	@Override
+	public int length() {
+		return size;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException("index " + index + ", length " + size);
+		}
+		return data[index];
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		if (start < 0 || end > size || start > end) {
+			throw new IndexOutOfBoundsException("start " + start + ", end " + end + ", length " + size);
+		}
+		return CharBuffer.wrap(data, start, end - start).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * @return the whole text, made once and kept
+	 */
+	@Override
+	public String toString() {
+		if (string == null) {
+			string = new String(data, 0, size);
+		}
+		return string;
+	}
+}
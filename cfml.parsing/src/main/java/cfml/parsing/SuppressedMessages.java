@@ -0,0 +1,26 @@
+package cfml.parsing;
+
+import cfml.parsing.reporting.DiagnosticCollector;
+
+/**
+ * Stands in for the messages dropped because a limit on the number of messages was reached.
+ */
+public class SuppressedMessages extends ParseWarning {
+	
+	private final int count;
+	
+	/**
+	 * @param count the number of messages dropped
+	 */
+	public SuppressedMessages(int count) {
+		super(0, 0, 0, null, DiagnosticCollector.suppressedText(count));
+		this.count = count;
+	}
+	
+	/**
+	 * @return the number of messages dropped
+	 */
+	public int getCount() {
+		return count;
+	}
+}
@@ -0,0 +1,85 @@
+package cfml.parsing;
+
+/**
+ * The text of a script being edited, kept in a gap buffer: the characters sit at both ends of an array with the gap
+ * in between moved to each edit, so an edit costs the distance from the previous edit rather than the whole text.
+ */
+final class TextBuffer implements CharSequence {
+	
+	private char[] chars;
+	private int gapStart;
+	private int gapEnd;
+	
+	TextBuffer(String text) {
+		chars = new char[text.length() + 64];
+		text.getChars(0, text.length(), chars, 0);
+		gapStart = text.length();
+		gapEnd = chars.length;
+	}
+	
+	/**
+	 * @return the removed text
+	 * @throws IllegalArgumentException if the edit does not lie within the text
+	 */
+	String apply(TextEdit edit) {
+		if (edit.getOldEnd() > length()) {
+			throw new IllegalArgumentException("Edit " + edit + " is outside of the text (length " + length() + ")");
+		}
+		final String removed = subSequence(edit.getOffset(), edit.getOldEnd());
+		moveGap(edit.getOffset());
+		gapEnd += edit.getRemovedLength();
+		final String inserted = edit.getInsertedText();
+		if (inserted.length() > gapEnd - gapStart) {
+			grow(inserted.length());
+		}
+		inserted.getChars(0, inserted.length(), chars, gapStart);
+		gapStart += inserted.length();
+		return removed;
+	}
+	
+	private void moveGap(int offset) {
+		if (offset < gapStart) {
+			System.arraycopy(chars, offset, chars, gapEnd - (gapStart - offset), gapStart - offset);
+		} else if (offset > gapStart) {
+			System.arraycopy(chars, gapEnd, chars, gapStart, offset - gapStart);
+		}
+		gapEnd += offset - gapStart;
+		gapStart = offset;
+	}
+	
+	private void grow(int needed) {
+		final int tail = chars.length - gapEnd;
+		final char[] grown = new char[Math.max(2 * chars.length, length() + needed + 64)];
+		System.arraycopy(chars, 0, grown, 0, gapStart);
+		System.arraycopy(chars, gapEnd, grown, grown.length - tail, tail);
+		chars = grown;
+		gapEnd = grown.length - tail;
+	}
+	
+	@Override
+	public int length() {
+		return chars.length - (gapEnd - gapStart);
+	}
+	
+	@Override
+	public char charAt(int index) {
+		return chars[index < gapStart ? index : index + gapEnd - gapStart];
+	}
+	
+	@Override
+	public String subSequence(int start, int end) {
+		if (end <= gapStart) {
+			return new String(chars, start, end - start);
+		}
+		if (start >= gapStart) {
+			return new String(chars, start + gapEnd - gapStart, end - start);
+		}
+		return new StringBuilder(end - start).append(chars, start, gapStart - start)
+				.append(chars, gapEnd, end - gapStart).toString();
+	}
+	
+	@Override
+	public String toString() {
+		return subSequence(0, length());
+	}
+}
@@ -0,0 +1,95 @@
+package cfml.parsing;
+
+/**
+ * A change to a source text: <code>removedLength</code> characters at <code>offset</code> are replaced by
+ * <code>insertedText</code>.
+ */
+public class TextEdit {
+	
+	private final int offset;
+	private final int removedLength;
+	private final String insertedText;
+	
+	/**
+	 * @param offset where the edit starts
+	 * @param removedLength the number of characters removed at offset
+	 * @param insertedText the text inserted at offset, may be empty
+	 */
+	public TextEdit(int offset, int removedLength, String insertedText) {
+		if (offset < 0 || removedLength < 0) {
+			throw new IllegalArgumentException("offset and removedLength must not be negative");
+		}
+		this.offset = offset;
+		this.removedLength = removedLength;
+		this.insertedText = insertedText == null ? "" : insertedText;
+	}
+	
+	/**
+	 * @param offset where to insert
+	 * @param text the text to insert
+	 * @return an edit inserting text
+	 */
+	public static TextEdit insert(int offset, String text) {
+		return new TextEdit(offset, 0, text);
+	}
+	
+	/**
+	 * @param offset where to delete
+	 * @param length the number of characters to delete
+	 * @return an edit deleting text
+	 */
+	public static TextEdit delete(int offset, int length) {
+		return new TextEdit(offset, length, "");
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	public int getRemovedLength() {
+		return removedLength;
+	}
+	
+	public String getInsertedText() {
+		return insertedText;
+	}
+	
+	/**
+	 * @return the offset just past the removed text, in the text before the edit
+	 */
+	public int getOldEnd() {
+		return offset + removedLength;
+	}
+	
+	/**
+	 * @return the offset just past the inserted text, in the text after the edit
+	 */
+	public int getNewEnd() {
+		return offset + insertedText.length();
+	}
+	
+	/**
+	 * @return the change in length of the text
+	 */
+	public int getDelta() {
+		return insertedText.length() - removedLength;
+	}
+	
+	/**
+	 * @param text the text to edit
+	 * @return the edited text
+	 * @throws IllegalArgumentException if the edit does not lie within the text
+	 */
+	public String apply(String text) {
+		if (getOldEnd() > text.length()) {
+			throw new IllegalArgumentException("Edit " + this + " is outside of the text (length " + text.length() + ")");
+		}
+		return new StringBuilder(text.length() + getDelta()).append(text, 0, offset).append(insertedText)
+				.append(text, getOldEnd(), text.length()).toString();
+	}
+	
+	@Override
+	public String toString() {
+		return "offset:" + offset + " removed:" + removedLength + " inserted:" + insertedText.length();
+	}
+}
@@ -0,0 +1,101 @@
+package cfml.parsing;
+
+import java.lang.reflect.Field;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+
+import org.antlr.v4.runtime.Token;
+
+/**
+ * Replaces the ANTLR tokens of a statement tree by {@link PositionToken}s. A token shared by several nodes is replaced
+ * by one PositionToken. Without a source the PositionTokens keep the token texts, equal texts as one string.
+ */
+final class TokenDetacher {
+	
+	private final String source;
+	private final Map<Token, Token> replaced = new IdentityHashMap<Token, Token>();
+	private final Map<String, String> texts = new HashMap<String, String>();
+	private final Set<Object> visited = Collections.newSetFromMap(new IdentityHashMap<Object, Boolean>());
+	private final Deque<Object> pending = new ArrayDeque<Object>();
+	
+	private TokenDetacher(String source) {
+		this.source = source;
+	}
+	
+	/**
+	 * @param root the root of the tree
+	 * @param source the source text the PositionTokens refer to, null to keep the token texts instead
+	 */
+	static void detach(Object root, String source) {
+		new TokenDetacher(source).run(root);
+	}
+	
+	private void run(Object root) {
+		push(root);
+		while (!pending.isEmpty()) {
+			final Object current = pending.pop();
+			if (current instanceof Iterable) {
+				for (Object element : (Iterable<?>) current) {
+					push(element);
+				}
+			} else if (current instanceof Map) {
+				for (Map.Entry<?, ?> entry : ((Map<?, ?>) current).entrySet()) {
+					push(entry.getKey());
+					push(entry.getValue());
+				}
+			}
+			if (ASTFields.isCFMLClass(current.getClass())) {
+				detachFields(current);
+			}
+		}
+	}
+	
+	private void detachFields(Object node) {
+		for (Field field : ASTFields.layout(node.getClass())) {
+			if (field.getType().isPrimitive() || field.getType() == String.class) {
+				continue;
+			}
+			try {
+				final Object value = field.get(node);
+				if (value instanceof Token) {
+					field.set(node, replace((Token) value));
+				} else {
+					push(value);
+				}
+			} catch (IllegalAccessException e) {
+				throw new IllegalStateException(e);
+			}
+		}
+	}
+	
+	private Token replace(Token token) {
+		if (token instanceof PositionToken) {
+			return token;
+		}
+		Token position = replaced.get(token);
+		if (position == null) {
+			position = PositionToken.of(token, source, source == null ? text(token.getText()) : null);
+			replaced.put(token, position);
+		}
+		return position;
+	}
+	
+	private String text(String text) {
+		if (text == null) {
+			return null;
+		}
+		final String shared = texts.putIfAbsent(text, text);
+		return shared == null ? text : shared;
+	}
+	
+	private void push(Object value) {
+		if (value != null && !(value instanceof String) && visited.add(value)) {
+			pending.push(value);
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package cfml.parsing;
+
+/**
+ * What a parsed statement tree keeps of the tokens it was built from, see {@link CFMLParser#setTokenRetention}.
+ */
+public enum TokenRetention {
+	/**
+	 * Nodes keep their ANTLR tokens and the root statement keeps the token stream, and with it every token, the
+	 * character stream and the lexer. The default.
+	 */
+	FULL,
+	/**
+	 * Nodes keep a {@link PositionToken} with the position of their token and a reference to the source text, so token
+	 * texts are still available. Token streams are released after visiting.
+	 */
+	SOURCE,
+	/**
+	 * Nodes keep a {@link PositionToken} with the position and the text of their token, but not the source text; equal
+	 * texts of a tree are one string.
+	 */
+	POSITIONS
+}
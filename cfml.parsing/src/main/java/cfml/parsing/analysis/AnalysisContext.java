@@ -0,0 +1,230 @@
+package cfml.parsing.analysis;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+/**
+ * The analysis of one file by an {@link AnalysisEngine}: where the walk is, the findings reported so far and the state
+ * the rules keep for the file. A context belongs to the thread analyzing the file.
+ */
+public class AnalysisContext {
+	
+	private final AnalysisEngine engine;
+	private final Path path;
+	private final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+	private final Dispatcher dispatcher = new Dispatcher();
+	private final List<Finding> findings = new ArrayList<Finding>();
+	private final Object[] states;
+	/** the rules that threw, not called again for the file */
+	private final boolean[] failed;
+	private final long[] calls;
+	private final long[] nanos;
+	private final int[] found;
+	private final boolean timing;
+	private CFScriptStatement script;
+	
+	AnalysisContext(AnalysisEngine engine, Path path, boolean timing) {
+		final int rules = engine.getRules().size();
+		this.engine = engine;
+		this.path = path;
+		this.timing = timing;
+		states = new Object[rules];
+		failed = new boolean[rules];
+		calls = new long[rules];
+		nanos = new long[rules];
+		found = new int[rules];
+	}
+	
+	/**
+	 * @return the file analyzed, null if the trees do not come from a file
+	 */
+	public Path getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return the tree being walked, one of the file's scripts
+	 */
+	public CFScriptStatement getScript() {
+		return script;
+	}
+	
+	/**
+	 * @return the parent of the node entered or left, null for the root of the script
+	 */
+	public Object getParent() {
+		return walker.getParent();
+	}
+	
+	/**
+	 * @return the number of ancestors of the node entered or left
+	 */
+	public int getDepth() {
+		return walker.getDepth();
+	}
+	
+	/**
+	 * @return the findings reported for the file so far
+	 */
+	public List<Finding> getFindings() {
+		return Collections.unmodifiableList(findings);
+	}
+	
+	/**
+	 * @return what the rule keeps for the file, null if nothing
+	 */
+	public Object getState(AnalysisRule rule) {
+		return states[engine.indexOf(rule)];
+	}
+	
+	/**
+	 * Keeps something for the rule until the file is done, e.g. the variables declared in the function being walked.
+	 */
+	public void setState(AnalysisRule rule, Object state) {
+		states[engine.indexOf(rule)] = state;
+	}
+	
+	/**
+	 * Reports a problem at a node.
+	 *
+	 * @param rule the rule that found it
+	 * @param node the statement or expression
+	 * @param message what is wrong
+	 */
+	public void report(AnalysisRule rule, HasToken node, String message) {
+		final Token token = node.getToken();
+		int line;
+		int start;
+		if (node instanceof CFScriptStatement) {
+			line = ((CFScriptStatement) node).getLine();
+			start = ((CFScriptStatement) node).getOffset();
+		} else if (node instanceof CFExpression) {
+			line = ((CFExpression) node).getLine();
+			start = ((CFExpression) node).getOffset();
+		} else {
+			line = token != null ? token.getLine() : 0;
+			start = token != null ? token.getStartIndex() : 0;
+		}
+		final int end = token != null && token.getStopIndex() >= token.getStartIndex() ? token.getStopIndex() + 1
+				: start;
+		report(rule, line, start, end, token != null ? token.getText() : null, message);
+	}
+	
+	/**
+	 * Reports a problem at a place in the file.
+	 */
+	public void report(AnalysisRule rule, int line, int start, int end, String data, String message) {
+		found[engine.indexOf(rule)]++;
+		findings.add(new Finding(rule.getName(), line, start, end, data, message));
+	}
+	
+	/**
+	 * Walks the scripts of the file with every rule.
+	 */
+	List<Finding> analyze(List<CFScriptStatement> scripts) {
+		final int rules = engine.getRules().size();
+		for (int i = 0; i < rules; i++) {
+			try {
+				engine.rule(i).startFile(this);
+			} catch (RuntimeException e) {
+				fail(i, e);
+			}
+		}
+		for (CFScriptStatement tree : scripts) {
+			if (tree != null) {
+				script = tree;
+				walker.walk(tree, dispatcher);
+			}
+		}
+		script = null;
+		for (int i = 0; i < rules; i++) {
+			if (!failed[i]) {
+				try {
+					engine.rule(i).endFile(this);
+				} catch (RuntimeException e) {
+					fail(i, e);
+				}
+			}
+		}
+		engine.count(calls, nanos, found);
+		return findings;
+	}
+	
+	private void fail(int rule, RuntimeException e) {
+		failed[rule] = true;
+		final AnalysisRule failing = engine.rule(rule);
+		report(failing, 0, 0, 0, null, "Rule " + failing.getName() + " failed: " + e);
+	}
+	
+	/**
+	 * Calls the rules that apply to each node, timing them if asked to.
+	 */
+	private class Dispatcher extends CFScriptTreeVisitor {
+		
+		private static final int ENTER = 0, EXIT = 1;
+		
+		@Override
+		public Action enterStatement(CFScriptStatement statement) {
+			dispatch(statement, ENTER);
+			return Action.CONTINUE;
+		}
+		
+		@Override
+		public Action exitStatement(CFScriptStatement statement) {
+			dispatch(statement, EXIT);
+			return Action.CONTINUE;
+		}
+		
+		@Override
+		public Action enterExpression(CFExpression expression) {
+			dispatch(expression, ENTER);
+			return Action.CONTINUE;
+		}
+		
+		@Override
+		public Action exitExpression(CFExpression expression) {
+			dispatch(expression, EXIT);
+			return Action.CONTINUE;
+		}
+		
+		private void dispatch(Object node, int event) {
+			final int[] applying = engine.rulesFor(node.getClass());
+			for (int i : applying) {
+				if (failed[i]) {
+					continue;
+				}
+				final AnalysisRule rule = engine.rule(i);
+				final long start = timing ? System.nanoTime() : 0;
+				try {
+					if (node instanceof CFExpression) {
+						if (event == ENTER) {
+							rule.enterExpression((CFExpression) node, AnalysisContext.this);
+						} else {
+							rule.exitExpression((CFExpression) node, AnalysisContext.this);
+						}
+					} else if (event == ENTER) {
+						rule.enterStatement((CFScriptStatement) node, AnalysisContext.this);
+					} else {
+						rule.exitStatement((CFScriptStatement) node, AnalysisContext.this);
+					}
+				} catch (RuntimeException e) {
+					fail(i, e);
+				}
+				if (timing) {
+					nanos[i] += System.nanoTime() - start;
+				}
+				calls[i]++;
+			}
+		}
+	}
+}
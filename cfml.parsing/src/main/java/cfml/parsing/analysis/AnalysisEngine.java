@@ -0,0 +1,217 @@
+package cfml.parsing.analysis;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ProjectParseResult;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.reporting.DiagnosticSink;
+
+/**
+ * Runs many {@link AnalysisRule}s over the script trees of a project in one walk per tree: each node is handed to the
+ * rules registered for its type, found once per node class, so a rule costs the calls it gets rather than a traversal
+ * of its own. Files are analyzed in parallel on a work-stealing {@link ForkJoinPool}, each with its own
+ * {@link AnalysisContext}.
+ *
+ * The engine counts the calls and findings of every rule, and with {@link #setTiming(boolean)} the time spent in it.
+ */
+public class AnalysisEngine {
+	
+	private final AnalysisRule[] rules;
+	private final List<AnalysisRule> ruleList;
+	private final Map<AnalysisRule, Integer> indexes = new IdentityHashMap<AnalysisRule, Integer>();
+	private final int parallelism;
+	private final LongAdder[] calls;
+	private final LongAdder[] nanos;
+	private final LongAdder[] findings;
+	private final ClassValue<int[]> dispatch = new ClassValue<int[]>() {
+		@Override
+		protected int[] computeValue(Class<?> type) {
+			int count = 0;
+			final int[] applying = new int[rules.length];
+			for (int i = 0; i < rules.length; i++) {
+				if (rules[i].appliesTo(type)) {
+					applying[count++] = i;
+				}
+			}
+			final int[] result = new int[count];
+			System.arraycopy(applying, 0, result, 0, count);
+			return result;
+		}
+	};
+	private volatile boolean timing;
+	private volatile DiagnosticSink sink;
+	
+	public AnalysisEngine(List<? extends AnalysisRule> rules) {
+		this(rules, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param rules the rules to run, in the order they are called for a node
+	 * @param parallelism the number of files analyzed at once
+	 */
+	public AnalysisEngine(List<? extends AnalysisRule> rules, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.rules = rules.toArray(new AnalysisRule[rules.size()]);
+		for (int i = 0; i < this.rules.length; i++) {
+			if (indexes.put(this.rules[i], i) != null) {
+				throw new IllegalArgumentException("Rule " + this.rules[i].getName() + " is given twice");
+			}
+		}
+		ruleList = Collections.unmodifiableList(new ArrayList<AnalysisRule>(rules));
+		this.parallelism = parallelism;
+		calls = adders(this.rules.length);
+		nanos = adders(this.rules.length);
+		findings = adders(this.rules.length);
+	}
+	
+	private static LongAdder[] adders(int count) {
+		final LongAdder[] adders = new LongAdder[count];
+		for (int i = 0; i < count; i++) {
+			adders[i] = new LongAdder();
+		}
+		return adders;
+	}
+	
+	public List<AnalysisRule> getRules() {
+		return ruleList;
+	}
+	
+	public boolean isTiming() {
+		return timing;
+	}
+	
+	/**
+	 * Times every call of a rule. Off by default, reading the clock twice per call costs about as much as a small rule.
+	 */
+	public void setTiming(boolean timing) {
+		this.timing = timing;
+	}
+	
+	public DiagnosticSink getDiagnosticSink() {
+		return sink;
+	}
+	
+	/**
+	 * @param sink receives the findings of every file as soon as the file is analyzed, from the worker threads; null
+	 *            for none
+	 */
+	public void setDiagnosticSink(DiagnosticSink sink) {
+		this.sink = sink;
+	}
+	
+	/**
+	 * Analyzes the scripts of one file on the calling thread.
+	 *
+	 * @param path the file, for the context and the sink; may be null
+	 * @param scripts the script trees of the file
+	 * @return the findings, in the order they were reported
+	 */
+	public List<Finding> analyze(Path path, List<CFScriptStatement> scripts) {
+		final List<Finding> found = new AnalysisContext(this, path, timing).analyze(scripts);
+		final DiagnosticSink target = sink;
+		if (target != null) {
+			for (Finding finding : found) {
+				target.report(String.valueOf(path), finding);
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Analyzes the files of a project in parallel.
+	 *
+	 * @return the findings of every file, keyed by path in the order of the results
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+	 */
+	public Map<Path, List<Finding>> analyze(ProjectParseResult project) throws InterruptedException {
+		return analyze(project.getResults());
+	}
+	
+	/**
+	 * Analyzes the given files in parallel.
+	 *
+	 * @return the findings of every file, keyed by path in the order of files
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+	 */
+	public Map<Path, List<Finding>> analyze(List<FileParseResult> files) throws InterruptedException {
+		final ForkJoinPool executor = new ForkJoinPool(parallelism);
+		final List<Future<List<Finding>>> futures = new ArrayList<Future<List<Finding>>>(files.size());
+		try {
+			for (final FileParseResult file : files) {
+				futures.add(executor.submit(() -> analyze(file.getPath(), file.getScripts())));
+			}
+			final Map<Path, List<Finding>> results = new LinkedHashMap<Path, List<Finding>>();
+			for (int i = 0; i < files.size(); i++) {
+				results.put(files.get(i).getPath(), futures.get(i).get());
+			}
+			return results;
+		} catch (ExecutionException e) {
+			// the context reports failing rules as findings
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @return the calls, time and findings of every rule so far, in the order of the rules
+	 */
+	public List<RuleStatistics> getStatistics() {
+		final List<RuleStatistics> statistics = new ArrayList<RuleStatistics>(rules.length);
+		for (int i = 0; i < rules.length; i++) {
+			statistics.add(new RuleStatistics(rules[i].getName(), calls[i].sum(), nanos[i].sum(), findings[i].sum()));
+		}
+		return statistics;
+	}
+	
+	public void resetStatistics() {
+		for (int i = 0; i < rules.length; i++) {
+			calls[i].reset();
+			nanos[i].reset();
+			findings[i].reset();
+		}
+	}
+	
+	AnalysisRule rule(int index) {
+		return rules[index];
+	}
+	
+	int indexOf(AnalysisRule rule) {
+		final Integer index = indexes.get(rule);
+		if (index == null) {
+			throw new IllegalArgumentException("Rule " + rule + " is not run by this engine");
+		}
+		return index;
+	}
+	
+	/**
+	 * @return the indexes of the rules called for nodes of the class
+	 */
+	int[] rulesFor(Class<?> nodeClass) {
+		return dispatch.get(nodeClass);
+	}
+	
+	/**
+	 * Adds the counts of a file.
+	 */
+	void count(long[] fileCalls, long[] fileNanos, int[] fileFindings) {
+		for (int i = 0; i < rules.length; i++) {
+			calls[i].add(fileCalls[i]);
+			nanos[i].add(fileNanos[i]);
+			findings[i].add(fileFindings[i]);
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package cfml.parsing.analysis;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * A check run by an {@link AnalysisEngine}. The engine calls a rule for the nodes of the types it registers, on
+ * entering a node and on leaving it, together with every other rule in one walk of each tree.
+ *
+ * The engine analyzes several files at once and shares a rule between them, so a rule must be thread safe; state of a
+ * file is kept in the context, see {@link AnalysisContext#setState(AnalysisRule, Object)}.
+ */
+public abstract class AnalysisRule {
+	
+	private final String name;
+	private final Class<?>[] nodeTypes;
+	
+	/**
+	 * @param name the name findings are reported under
+	 * @param nodeTypes the statement and expression classes the rule is called for, with their subclasses; none for
+	 *            every node
+	 */
+	protected AnalysisRule(String name, Class<?>... nodeTypes) {
+		if (name == null) {
+			throw new IllegalArgumentException("A rule needs a name");
+		}
+		this.name = name;
+		this.nodeTypes = nodeTypes.clone();
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Class<?>[] getNodeTypes() {
+		return nodeTypes.clone();
+	}
+	
+	/**
+	 * @return true if the rule is called for nodes of the class
+	 */
+	public boolean appliesTo(Class<?> nodeClass) {
+		if (nodeTypes.length == 0) {
+			return true;
+		}
+		for (Class<?> type : nodeTypes) {
+			if (type.isAssignableFrom(nodeClass)) {
+				return true;
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Called before the trees of a file are walked.
+	 */
+	public void startFile(AnalysisContext context) {
+	}
+	
+	/**
+	 * Called after the trees of a file were walked.
+	 */
+	public void endFile(AnalysisContext context) {
+	}
+	
+	public void enterStatement(CFScriptStatement statement, AnalysisContext context) {
+	}
+	
+	public void exitStatement(CFScriptStatement statement, AnalysisContext context) {
+	}
+	
+	public void enterExpression(CFExpression expression, AnalysisContext context) {
+	}
+	
+	public void exitExpression(CFExpression expression, AnalysisContext context) {
+	}
+	
+	@Override
+	public String toString() {
+		return name;
+	}
+}
@@ -0,0 +1,37 @@
+package cfml.parsing.analysis;
+
+import cfml.parsing.ParseWarning;
+
+/**
+ * A problem an {@link AnalysisRule} found in a file. Findings are warnings, so they can be reported through a
+ * {@link cfml.parsing.reporting.DiagnosticSink} like the messages of the parser.
+ */
+public class Finding extends ParseWarning {
+	
+	private final String rule;
+	
+	/**
+	 * @param rule the name of the rule
+	 * @param lineNum the line of the node
+	 * @param docStart the offset of the node
+	 * @param docEnd the offset behind the node
+	 * @param data the text of the node
+	 * @param msg what is wrong
+	 */
+	public Finding(String rule, int lineNum, int docStart, int docEnd, String data, String msg) {
+		super(lineNum, docStart, docEnd, data, msg);
+		this.rule = rule;
+	}
+	
+	/**
+	 * @return the name of the rule that found the problem
+	 */
+	public String getRule() {
+		return rule;
+	}
+	
+	@Override
+	public String toString() {
+		return rule + " [" + lineNumber + "]: " + message;
+	}
+}
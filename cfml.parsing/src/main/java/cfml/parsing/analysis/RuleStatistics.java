@@ -0,0 +1,49 @@
+package cfml.parsing.analysis;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * What an {@link AnalysisRule} cost, summed over the files an {@link AnalysisEngine} analyzed.
+ */
+public class RuleStatistics {
+	
+	private final String rule;
+	private final long calls;
+	private final long nanos;
+	private final long findings;
+	
+	public RuleStatistics(String rule, long calls, long nanos, long findings) {
+		this.rule = rule;
+		this.calls = calls;
+		this.nanos = nanos;
+		this.findings = findings;
+	}
+	
+	public String getRule() {
+		return rule;
+	}
+	
+	/**
+	 * @return how often the rule was called, on entering and on leaving nodes
+	 */
+	public long getCalls() {
+		return calls;
+	}
+	
+	/**
+	 * @return the time spent in the rule, 0 unless the engine times its rules
+	 */
+	public long getNanos() {
+		return nanos;
+	}
+	
+	public long getFindings() {
+		return findings;
+	}
+	
+	@Override
+	public String toString() {
+		return rule + ": " + calls + " calls, " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms, " + findings
+				+ " findings";
+	}
+}
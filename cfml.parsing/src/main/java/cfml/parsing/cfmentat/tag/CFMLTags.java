@@ -1,6 +1,11 @@
 package cfml.parsing.cfmentat.tag;
 
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import cfml.dictionary.DictionaryManager;
 import cfml.dictionary.SyntaxDictionary;
@@ -36,64 +41,123 @@ public class CFMLTags {
 	private static final TagType[] TAG_TYPES = { CFML_STANDARD, CFML_COMMENT, CFML_SET, CFML_IF, CFML_ELSE, CFML_ELSEIF,
 			CFML_FUNCTION, CFML_ARGUMENT, HTML_SCRIPT, CFML_SCRIPT, CFML_RETURN, CFML_MAIL, CFML_QUERY };
 	
-	static boolean registered = false;
+	/** the dictionaries whose tags are registered */
+	private static final Set<SyntaxDictionary> REGISTERED = Collections
+			.newSetFromMap(new ConcurrentHashMap<SyntaxDictionary, Boolean>());
 	
+	/** the tag types registered for dictionary tags, by tag name */
+	private static final Map<String, CFMLStartTag> DICTIONARY_TAG_TYPES = new HashMap<String, CFMLStartTag>();
+	
+	/** the names of the dictionary tags seen, registered by the first dictionary that has them */
+	private static final Set<String> TAG_NAMES = new HashSet<String>();
+	
+	/** the names added to Jericho's end tag forbidden elements, which were not there before */
+	private static final Set<String> END_TAG_FORBIDDEN = new HashSet<String>();
+	
+	/**
+	 * Registers the tags of the default CF dictionary of the {@link DictionaryManager}.
+	 */
 	public static void register() {
-		if (registered)
-			return;
-		
 		DictionaryManager.initDictionaries();
-		SyntaxDictionary cfdic = DictionaryManager.getDictionary("CF_DICTIONARY");
-		Set<Tag> cfTags = cfdic.getAllTags();
-		CFMLStartTag cftag;
-		for (Tag tag : cfTags) {
-			if (tag.isSingle() || !tag.isEndtagrequired()) {
-				HTMLElements.getEndTagForbiddenElementNames().add(tag.getName());
-			}
-			
-			if (!tag.getName().equals("cfif") && !tag.getName().equals("cfcomment")) {
-				if (tag.isSingle()) {
-					cftag = new CFMLStartTag(tag.getHelp(), "<" + tag.getName(), ">", null, false, tag.hasParameters(),
-							tag.isXMLStyle());
-				} else {
-					cftag = new CFMLStartTag(tag.getHelp(), "<" + tag.getName(), ">", EndTagType.NORMAL, false,
-							tag.hasParameters(), tag.isXMLStyle());
-				}
-				cftag.register();
-			}
-		}
-		// we register these last so they override anything in the syntax dictionary
-		for (TagType tagType : TAG_TYPES)
-			tagType.register();
-		registered = true;
+		register(DictionaryManager.getDictionary(DictionaryManager.CFDIC_KEY));
 	}
 	
+	/**
+	 * Registers the tags of the CF dictionary configured in prefs.
+	 * 
+	 * @param prefs the dictionary directory and version
+	 */
 	public static void register(ParserPreferences prefs) {
-		if (registered)
-			return;
 		DictionaryPreferences dictPrefs = new DictionaryPreferences();
 		dictPrefs.setDictionaryDir(prefs.getDictionaryDir());
 		dictPrefs.setCFDictionary(prefs.getCFDictionary());
 		DictionaryManager.initDictionaries(dictPrefs);
-		SyntaxDictionary cfdic = DictionaryManager.getDictionary("CF_DICTIONARY");
-		Set<Tag> cfTags = cfdic.getAllTags();
-		CFMLStartTag cftag;
-		for (Tag tag : cfTags) {
-			if (!tag.getName().equals("cfif") && tag.getName().equals("cfcomment")) {
-				if (tag.isSingle()) {
-					cftag = new CFMLStartTag(tag.getHelp(), "<" + tag.getName(), ">", null, false, tag.hasParameters(),
-							tag.isXMLStyle());
-				} else {
-					cftag = new CFMLStartTag(tag.getHelp(), "<" + tag.getName(), ">", EndTagType.NORMAL, false,
-							tag.hasParameters(), tag.isXMLStyle());
+		register(DictionaryManager.getDictionary(DictionaryManager.CFDIC_KEY));
+	}
+	
+	/**
+	 * Registers the tags of a dictionary with Jericho. A dictionary is registered once, after that this is a lookup,
+	 * so parsers running in parallel do not wait on each other.
+	 * 
+	 * Jericho keeps one register of tag types and end tag forbidden elements for the whole JVM, shared by all
+	 * dictionaries: a tag name is registered by the first dictionary that has it, which decides its tag type and
+	 * whether it has an end tag; later dictionaries only add the names that are new. {@link #deregister()} removes the
+	 * registrations, e.g. to switch to a dictionary that disagrees.
+	 * 
+	 * Jericho reads its register unsynchronized while it parses, so a dictionary must be registered before any thread
+	 * parses with Jericho: registering while other threads parse is a data race. {@link cfml.parsing.CFMLParserPool}
+	 * registers its dictionary when it is created, before it hands out workers.
+	 * 
+	 * @param cfdic the CF dictionary
+	 */
+	public static void register(SyntaxDictionary cfdic) {
+		if (cfdic == null) {
+			throw new IllegalArgumentException("No CF dictionary to register");
+		}
+		if (REGISTERED.contains(cfdic)) {
+			return;
+		}
+		synchronized (DICTIONARY_TAG_TYPES) {
+			if (REGISTERED.contains(cfdic)) {
+				return;
+			}
+			for (Tag tag : cfdic.getAllTags()) {
+				final String name = tag.getName();
+				if (!TAG_NAMES.add(name)) {
+					continue;
+				}
+				if ((tag.isSingle() || !tag.isEndtagrequired())
+						&& HTMLElements.getEndTagForbiddenElementNames().add(name)) {
+					END_TAG_FORBIDDEN.add(name);
 				}
-				cftag.register();
+				if (!name.equals("cfif") && !name.equals("cfcomment")) {
+					registerTag(tag);
+				}
+			}
+			// we register these last so they override anything in the syntax dictionary
+			for (TagType tagType : TAG_TYPES)
+				tagType.register();
+			REGISTERED.add(cfdic);
+		}
+	}
+	
+	/**
+	 * @param cfdic a CF dictionary
+	 * @return true if its tags are registered
+	 */
+	public static boolean isRegistered(SyntaxDictionary cfdic) {
+		return REGISTERED.contains(cfdic);
+	}
+	
+	/**
+	 * Removes the tag types and end tag forbidden elements registered for dictionaries from Jericho, so the next
+	 * dictionary registered decides them anew. The tag types of this class stay registered. Like registering, this
+	 * must not run while other threads parse.
+	 */
+	public static void deregister() {
+		synchronized (DICTIONARY_TAG_TYPES) {
+			for (CFMLStartTag tagType : DICTIONARY_TAG_TYPES.values()) {
+				tagType.deregister();
 			}
+			DICTIONARY_TAG_TYPES.clear();
+			HTMLElements.getEndTagForbiddenElementNames().removeAll(END_TAG_FORBIDDEN);
+			END_TAG_FORBIDDEN.clear();
+			TAG_NAMES.clear();
+			REGISTERED.clear();
+			for (TagType tagType : TAG_TYPES)
+				tagType.register();
 		}
-		// we register these last so they override anything in the syntax dictionary
-		for (TagType tagType : TAG_TYPES)
-			tagType.register();
-		registered = true;
+	}
+	
+	/**
+	 * Registers the tag type of a dictionary tag.
+	 */
+	private static void registerTag(Tag tag) {
+		final EndTagType endTagType = tag.isSingle() ? null : EndTagType.NORMAL;
+		final CFMLStartTag cftag = new CFMLStartTag(tag.getName(), "<" + tag.getName(), ">", endTagType, false,
+				tag.hasParameters(), tag.isXMLStyle());
+		cftag.register();
+		DICTIONARY_TAG_TYPES.put(tag.getName(), cftag);
 	}
 	
 }
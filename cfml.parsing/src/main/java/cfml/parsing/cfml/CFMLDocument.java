@@ -0,0 +1,90 @@
+package cfml.parsing.cfml;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * The CFML tags of a document, as built by {@link cfml.parsing.CFMLParser#parseCFMLDocument(String)}. HTML and text
+ * are not part of the tree.
+ */
+public class CFMLDocument {
+	
+	private final String source;
+	private final List<CFMLTag> children = new ArrayList<CFMLTag>();
+	
+	/**
+	 * @param source the document text
+	 */
+	public CFMLDocument(String source) {
+		this.source = source;
+	}
+	
+	public String getSource() {
+		return source;
+	}
+	
+	/**
+	 * @return the top level tags
+	 */
+	public List<CFMLTag> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+	
+	public void addChild(CFMLTag child) {
+		children.add(child);
+	}
+	
+	/**
+	 * @return all tags, in document order
+	 */
+	public List<CFMLTag> getAllTags() {
+		final List<CFMLTag> tags = new ArrayList<CFMLTag>();
+		final Deque<CFMLTag> pending = new ArrayDeque<CFMLTag>();
+		for (int i = children.size() - 1; i >= 0; i--) {
+			pending.push(children.get(i));
+		}
+		while (!pending.isEmpty()) {
+			final CFMLTag tag = pending.pop();
+			tags.add(tag);
+			final List<CFMLTag> nested = tag.getChildren();
+			for (int i = nested.size() - 1; i >= 0; i--) {
+				pending.push(nested.get(i));
+			}
+		}
+		return tags;
+	}
+	
+	/**
+	 * @param name a tag name, in any case
+	 * @return all tags with that name, in document order
+	 */
+	public List<CFMLTag> getAllTags(String name) {
+		final List<CFMLTag> tags = new ArrayList<CFMLTag>();
+		for (CFMLTag tag : getAllTags()) {
+			if (tag.getName().equalsIgnoreCase(name)) {
+				tags.add(tag);
+			}
+		}
+		return tags;
+	}
+	
+	/**
+	 * @param tag a tag of this document
+	 * @return the text between the start and the end tag, empty for a tag without end tag
+	 */
+	public String getContent(CFMLTag tag) {
+		if (!tag.hasEndTag()) {
+			return "";
+		}
+		final int endTagBegin = source.lastIndexOf("</", tag.getEnd());
+		return source.substring(tag.getStartTagEnd(), Math.max(tag.getStartTagEnd(), endTagBegin));
+	}
+	
+	@Override
+	public String toString() {
+		return getAllTags().toString();
+	}
+}
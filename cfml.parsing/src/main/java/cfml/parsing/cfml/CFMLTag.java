@@ -0,0 +1,175 @@
+package cfml.parsing.cfml;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * A CFML tag of a {@link CFMLDocument}, with its nested tags. The expression of a cfset, cfif, cfelseif or cfreturn
+ * and the statements of a cfscript are parsed along with the tags, their positions are those in the document.
+ */
+public class CFMLTag {
+	
+	private final String name;
+	private final int begin;
+	private final int startTagEnd;
+	private int end;
+	private boolean endTag;
+	private final int line;
+	private final int column;
+	private final boolean selfClosing;
+	private final Map<String, String> attributes = new LinkedHashMap<String, String>();
+	private final List<CFMLTag> children = new ArrayList<CFMLTag>();
+	private CFMLTag parent;
+	private CFExpression expression;
+	private CFScriptStatement script;
+	
+	/**
+	 * @param name the tag name, any case
+	 * @param begin the offset of the '&lt;'
+	 * @param startTagEnd the offset behind the '&gt;' of the start tag
+	 * @param line the line of the '&lt;'
+	 * @param column the column of the '&lt;', 1 based
+	 * @param selfClosing true for a tag ending with '/&gt;'
+	 */
+	public CFMLTag(String name, int begin, int startTagEnd, int line, int column, boolean selfClosing) {
+		this.name = name.toLowerCase();
+		this.begin = begin;
+		this.startTagEnd = startTagEnd;
+		this.end = startTagEnd;
+		this.line = line;
+		this.column = column;
+		this.selfClosing = selfClosing;
+	}
+	
+	/**
+	 * @return the tag name in lower case, e.g. cfset
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the offset of the '&lt;'
+	 */
+	public int getBegin() {
+		return begin;
+	}
+	
+	/**
+	 * @return the offset behind the '&gt;' of the start tag
+	 */
+	public int getStartTagEnd() {
+		return startTagEnd;
+	}
+	
+	/**
+	 * @return the offset behind the end tag, or behind the start tag if there is none
+	 */
+	public int getEnd() {
+		return end;
+	}
+	
+	/**
+	 * @return true if the tag was closed by an end tag
+	 */
+	public boolean hasEndTag() {
+		return endTag;
+	}
+	
+	/**
+	 * @param end the offset behind the end of the tag
+	 * @param endTag true if it ends with an end tag
+	 */
+	public void setEnd(int end, boolean endTag) {
+		this.end = end;
+		this.endTag = endTag;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	/**
+	 * @return the column of the '&lt;', 1 based
+	 */
+	public int getColumn() {
+		return column;
+	}
+	
+	public boolean isSelfClosing() {
+		return selfClosing;
+	}
+	
+	/**
+	 * @return the attributes by name, in the order they appear, values without quotes
+	 */
+	public Map<String, String> getAttributes() {
+		return attributes;
+	}
+	
+	/**
+	 * @param attributeName the attribute name, in any case
+	 * @return the value of the attribute without quotes, or null if the tag does not have it
+	 */
+	public String getAttribute(String attributeName) {
+		for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+			if (attribute.getKey().equalsIgnoreCase(attributeName)) {
+				return attribute.getValue();
+			}
+		}
+		return null;
+	}
+	
+	public List<CFMLTag> getChildren() {
+		return Collections.unmodifiableList(children);
+	}
+	
+	/**
+	 * @param child a tag nested in this one, appended to the children
+	 */
+	public void addChild(CFMLTag child) {
+		child.parent = this;
+		children.add(child);
+	}
+	
+	/**
+	 * @return the enclosing tag, null for a top level tag
+	 */
+	public CFMLTag getParent() {
+		return parent;
+	}
+	
+	/**
+	 * @return the expression of a cfset, cfif, cfelseif or cfreturn, null for other tags or if it could not be parsed
+	 */
+	public CFExpression getExpression() {
+		return expression;
+	}
+	
+	public void setExpression(CFExpression expression) {
+		this.expression = expression;
+	}
+	
+	/**
+	 * @return the statements of a cfscript, null for other tags or if they could not be parsed
+	 */
+	public CFScriptStatement getScript() {
+		return script;
+	}
+	
+	public void setScript(CFScriptStatement script) {
+		this.script = script;
+	}
+	
+	@Override
+	public String toString() {
+		return "<" + name + (attributes.isEmpty() ? "" : " " + attributes) + (selfClosing ? "/>" : ">") + " at " + line
+				+ ":" + column;
+	}
+}
@@ -0,0 +1,56 @@
+package cfml.parsing.cfml;
+
+/**
+ * Receives what a {@link CFMLTagScanner} finds, in document order. All methods do nothing by default.
+ */
+public abstract class CFMLTagHandler {
+	
+	/**
+	 * A CFML start tag.
+	 *
+	 * @param tag the tag
+	 */
+	public void startTag(ScannedTag tag) {
+	}
+	
+	/**
+	 * A CFML end tag.
+	 *
+	 * @param tag the tag
+	 */
+	public void endTag(ScannedTag tag) {
+	}
+	
+	/**
+	 * A CFML comment, &lt;!--- ... ---&gt;, including nested comments.
+	 *
+	 * @param begin the offset of the comment
+	 * @param end the offset behind the comment
+	 * @param line the line the comment starts on
+	 * @param column the column the comment starts at
+	 */
+	public void comment(int begin, int end, int line, int column) {
+	}
+	
+	/**
+	 * The body of a cfscript or cfquery tag, reported before its end tag. Only reported if the scanner captures bodies.
+	 *
+	 * @param tag the start tag
+	 * @param body the text between the start and the end tag; for a cfquery this includes nested tags
+	 * @param line the line the body starts on
+	 * @param column the column the body starts at
+	 */
+	public void body(ScannedTag tag, String body, int line, int column) {
+	}
+	
+	/**
+	 * Unterminated comments, tags and bodies.
+	 *
+	 * @param message what is wrong
+	 * @param offset where the construct started
+	 * @param line the line it started on
+	 * @param column the column it started at
+	 */
+	public void error(String message, int offset, int line, int column) {
+	}
+}
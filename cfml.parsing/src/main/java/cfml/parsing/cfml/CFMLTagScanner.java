@@ -0,0 +1,378 @@
+package cfml.parsing.cfml;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * A single pass scanner for the CFML tags of a document.
+ *
+ * Unlike {@link cfml.parsing.CFMLSource}, which builds and caches the Jericho element tree of the whole document, the
+ * scanner reads the document once from a Reader and reports CFML start and end tags, CFML comments and the bodies of
+ * cfscript and cfquery tags to a {@link CFMLTagHandler} as it finds them. It keeps no more than a small read buffer, the
+ * tag being read and the bodies being captured, so it works for huge generated files and is cheap enough for a quick
+ * "find all cf tags" pass. Everything else, HTML included, is skipped.
+ *
+ * Quoted attribute values and parenthesized expressions may contain '&gt;'. cfscript bodies are not scanned for tags;
+ * tags nested in a cfquery are reported, and are part of its body. A scanner is not thread-safe, but may be reused.
+ */
+public class CFMLTagScanner {
+	
+	private static final int BUFFER_SIZE = 8192;
+	private static final String COMMENT_START = "<!---";
+	private static final String COMMENT_END = "--->";
+	private static final String QUERY = "cfquery";
+	
+	private final ICFMLDictionary dictionary;
+	private boolean captureBodies = true;
+	
+	private final char[] buffer = new char[BUFFER_SIZE];
+	private Reader reader;
+	private int pos;
+	private int limit;
+	private boolean eof;
+	private int offset;
+	private int line;
+	private int column;
+	private boolean stopped;
+	private final Deque<Capture> captures = new ArrayDeque<Capture>();
+	private final StringBuilder tagText = new StringBuilder();
+	
+	private static final class Capture {
+		final ScannedTag tag;
+		final StringBuilder text = new StringBuilder();
+		final int line;
+		final int column;
+		
+		Capture(ScannedTag tag, int line, int column) {
+			this.tag = tag;
+			this.line = line;
+			this.column = column;
+		}
+	}
+	
+	public CFMLTagScanner() {
+		this(new DefaultCFMLDictionary());
+	}
+	
+	/**
+	 * @param dictionary tells which tags are CFML tags, which hold cfscript and which have attributes
+	 */
+	public CFMLTagScanner(ICFMLDictionary dictionary) {
+		this.dictionary = dictionary;
+	}
+	
+	public boolean isCaptureBodies() {
+		return captureBodies;
+	}
+	
+	/**
+	 * @param captureBodies false to skip cfscript and cfquery bodies without collecting their text, for passes that only
+	 *            look at tags
+	 */
+	public void setCaptureBodies(boolean captureBodies) {
+		this.captureBodies = captureBodies;
+	}
+	
+	/**
+	 * Stops the running scan after the current callback returns.
+	 */
+	public void stop() {
+		stopped = true;
+	}
+	
+	/**
+	 * Scans a document held in memory.
+	 *
+	 * @param document the document
+	 * @param handler receives the tags
+	 */
+	public void scan(CharSequence document, CFMLTagHandler handler) {
+		try {
+			scan(new StringReader(document.toString()), handler);
+		} catch (IOException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+	
+	/**
+	 * Scans a document. The reader is not closed.
+	 *
+	 * @param in the document
+	 * @param handler receives the tags
+	 * @throws IOException if reading fails
+	 */
+	public void scan(Reader in, CFMLTagHandler handler) throws IOException {
+		reader = in;
+		pos = 0;
+		limit = 0;
+		eof = false;
+		offset = 0;
+		line = 1;
+		column = 1;
+		stopped = false;
+		captures.clear();
+		try {
+			while (!stopped && peek(0) != -1) {
+				if (peek(0) == '<') {
+					if (startsWith(0, COMMENT_START)) {
+						scanComment(handler);
+						continue;
+					}
+					if (peek(1) == '/' && isCFMLName(2)) {
+						scanEndTag(handler);
+						continue;
+					}
+					if (isCFMLName(1)) {
+						scanStartTag(handler);
+						continue;
+					}
+				}
+				next();
+			}
+			if (!stopped) {
+				for (Capture capture : captures) {
+					handler.error("Missing end tag of " + capture.tag.getName(), capture.tag.getBegin(),
+							capture.tag.getLine(), capture.tag.getColumn());
+				}
+			}
+		} finally {
+			reader = null;
+			captures.clear();
+			tagText.setLength(0);
+		}
+	}
+	
+	/**
+	 * Collects all CFML start tags of a document.
+	 *
+	 * @param document the document
+	 * @return the start tags, in document order
+	 */
+	public static List<ScannedTag> findStartTags(CharSequence document) {
+		final List<ScannedTag> tags = new ArrayList<ScannedTag>();
+		final CFMLTagScanner scanner = new CFMLTagScanner();
+		scanner.setCaptureBodies(false);
+		scanner.scan(document, new CFMLTagHandler() {
+			@Override
+			public void startTag(ScannedTag tag) {
+				tags.add(tag);
+			}
+		});
+		return tags;
+	}
+	
+	private void scanComment(CFMLTagHandler handler) throws IOException {
+		final int begin = offset;
+		final int startLine = line;
+		final int startColumn = column;
+		skip(COMMENT_START.length());
+		int depth = 1;
+		while (peek(0) != -1) {
+			if (startsWith(0, COMMENT_START)) {
+				skip(COMMENT_START.length());
+				depth++;
+			} else if (startsWith(0, COMMENT_END)) {
+				skip(COMMENT_END.length());
+				if (--depth == 0) {
+					handler.comment(begin, offset, startLine, startColumn);
+					return;
+				}
+			} else {
+				next();
+			}
+		}
+		handler.error("Unterminated comment", begin, startLine, startColumn);
+	}
+	
+	private void scanStartTag(CFMLTagHandler handler) throws IOException {
+		final int begin = offset;
+		final int startLine = line;
+		final int startColumn = column;
+		next();
+		final String name = readName();
+		if (!dictionary.isColdFusionTag(name)) {
+			return;
+		}
+		tagText.setLength(0);
+		char quote = 0;
+		int parens = 0;
+		int c;
+		while ((c = peek(0)) != -1) {
+			if (quote != 0) {
+				if (c == quote) {
+					quote = 0;
+				}
+			} else if (c == '"' || c == '\'') {
+				quote = (char) c;
+			} else if (c == '(') {
+				parens++;
+			} else if (c == ')' && parens > 0) {
+				parens--;
+			} else if (c == '>' && parens == 0) {
+				break;
+			}
+			tagText.append((char) next());
+		}
+		if (c == -1) {
+			handler.error("Unterminated tag " + name, begin, startLine, startColumn);
+			return;
+		}
+		next();
+		int textEnd = tagText.length();
+		final boolean selfClosing = textEnd > 0 && tagText.charAt(textEnd - 1) == '/';
+		if (selfClosing) {
+			textEnd--;
+		}
+		final ScannedTag tag = new ScannedTag(name, false, begin, offset, startLine, startColumn,
+				tagText.substring(0, textEnd).trim(), selfClosing, dictionary.usesAttributes(name));
+		handler.startTag(tag);
+		if (selfClosing) {
+			return;
+		}
+		if (dictionary.conatinsCFScript(name)) {
+			scanScriptBody(tag, handler);
+		} else if (QUERY.equals(name) && captureBodies) {
+			captures.push(new Capture(tag, line, column));
+		}
+	}
+	
+	private void scanScriptBody(ScannedTag tag, CFMLTagHandler handler) throws IOException {
+		final int bodyLine = line;
+		final int bodyColumn = column;
+		final StringBuilder body = captureBodies ? new StringBuilder() : null;
+		while (peek(0) != -1) {
+			if (peek(0) == '<' && peek(1) == '/' && startsWithName(2, tag.getName())) {
+				if (body != null) {
+					handler.body(tag, body.toString(), bodyLine, bodyColumn);
+				}
+				scanEndTag(handler);
+				return;
+			}
+			final int c = next();
+			if (body != null) {
+				body.append((char) c);
+			}
+		}
+		handler.error("Missing end tag of " + tag.getName(), tag.getBegin(), tag.getLine(), tag.getColumn());
+	}
+	
+	private void scanEndTag(CFMLTagHandler handler) throws IOException {
+		final int begin = offset;
+		final int startLine = line;
+		final int startColumn = column;
+		if (!captures.isEmpty() && startsWithName(2, captures.peek().tag.getName())) {
+			final Capture capture = captures.pop();
+			handler.body(capture.tag, capture.text.toString(), capture.line, capture.column);
+		}
+		skip(2);
+		final String name = readName();
+		int c;
+		while ((c = peek(0)) != -1 && c != '>') {
+			next();
+		}
+		if (c == -1) {
+			handler.error("Unterminated end tag " + name, begin, startLine, startColumn);
+			return;
+		}
+		next();
+		if (dictionary.isColdFusionTag(name)) {
+			handler.endTag(new ScannedTag(name, true, begin, offset, startLine, startColumn, "", false, false));
+		}
+	}
+	
+	private String readName() throws IOException {
+		final StringBuilder name = new StringBuilder();
+		while (ScannedTag.isNameChar(peek(0))) {
+			name.append(Character.toLowerCase((char) next()));
+		}
+		return name.toString();
+	}
+	
+	/**
+	 * @return true if a name starting with "cf" starts at the lookahead position
+	 */
+	private boolean isCFMLName(int at) throws IOException {
+		final int c = peek(at);
+		final int f = peek(at + 1);
+		return (c == 'c' || c == 'C') && (f == 'f' || f == 'F');
+	}
+	
+	/**
+	 * @return true if the given name, and not a longer one, starts at the lookahead position
+	 */
+	private boolean startsWithName(int at, String name) throws IOException {
+		for (int i = 0; i < name.length(); i++) {
+			final int c = peek(at + i);
+			if (c == -1 || Character.toLowerCase((char) c) != name.charAt(i)) {
+				return false;
+			}
+		}
+		return !ScannedTag.isNameChar(peek(at + name.length()));
+	}
+	
+	private boolean startsWith(int at, String text) throws IOException {
+		for (int i = 0; i < text.length(); i++) {
+			if (peek(at + i) != text.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * @return the character at the given distance ahead, -1 at the end of the document
+	 */
+	private int peek(int ahead) throws IOException {
+		if (pos + ahead >= limit && !fill(ahead + 1)) {
+			return -1;
+		}
+		return buffer[pos + ahead];
+	}
+	
+	private boolean fill(int needed) throws IOException {
+		if (pos > 0) {
+			System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+			limit -= pos;
+			pos = 0;
+		}
+		while (limit < needed && !eof) {
+			final int read = reader.read(buffer, limit, buffer.length - limit);
+			if (read < 0) {
+				eof = true;
+			} else {
+				limit += read;
+			}
+		}
+		return limit >= needed;
+	}
+	
+	private int next() throws IOException {
+		final int c = peek(0);
+		if (c == -1) {
+			return c;
+		}
+		pos++;
+		offset++;
+		if (c == '\n' || c == '\r' && peek(0) != '\n') {
+			line++;
+			column = 1;
+		} else {
+			column++;
+		}
+		for (Capture capture : captures) {
+			capture.text.append((char) c);
+		}
+		return c;
+	}
+	
+	private void skip(int count) throws IOException {
+		for (int i = 0; i < count; i++) {
+			next();
+		}
+	}
+}
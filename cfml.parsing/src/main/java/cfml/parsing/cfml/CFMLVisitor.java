@@ -61,6 +61,15 @@ public abstract class CFMLVisitor implements ANTLRErrorListener {
 	
 	public abstract void visitScript(CFScriptStatement scriptStatement);
 	
+	/**
+	 * Called for every tag of a {@link CFMLDocument}, before its expression, script and nested tags.
+	 */
+	public void visitTagStart(CFMLTag tag) {
+	}
+	
+	public void visitTagEnd(CFMLTag tag) {
+	}
+	
 	public boolean visitPreParseExpression(String context, String cfscript) {
 		return true;
 	}
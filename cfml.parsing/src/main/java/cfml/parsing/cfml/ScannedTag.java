@@ -0,0 +1,169 @@
+package cfml.parsing.cfml;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * A start or end tag found by the {@link CFMLTagScanner}.
+ */
+public class ScannedTag {
+	
+	private final String name;
+	private final boolean endTag;
+	private final int begin;
+	private final int end;
+	private final int line;
+	private final int column;
+	private final String attributesText;
+	private final boolean selfClosing;
+	private final boolean usesAttributes;
+	private Map<String, String> attributes;
+	
+	ScannedTag(String name, boolean endTag, int begin, int end, int line, int column, String attributesText,
+			boolean selfClosing, boolean usesAttributes) {
+		this.name = name;
+		this.endTag = endTag;
+		this.begin = begin;
+		this.end = end;
+		this.line = line;
+		this.column = column;
+		this.attributesText = attributesText;
+		this.selfClosing = selfClosing;
+		this.usesAttributes = usesAttributes;
+	}
+	
+	/**
+	 * @return the tag name in lower case, e.g. cfset
+	 */
+	public String getName() {
+		return name;
+	}
+	
+	public boolean isEndTag() {
+		return endTag;
+	}
+	
+	/**
+	 * @return the offset of the '&lt;'
+	 */
+	public int getBegin() {
+		return begin;
+	}
+	
+	/**
+	 * @return the offset behind the '&gt;'
+	 */
+	public int getEnd() {
+		return end;
+	}
+	
+	/**
+	 * @return the line of the '&lt;', starting at 1
+	 */
+	public int getLine() {
+		return line;
+	}
+	
+	/**
+	 * @return the column of the '&lt;', starting at 1
+	 */
+	public int getColumn() {
+		return column;
+	}
+	
+	/**
+	 * @return the text between the name and the closing '&gt;' or '/&gt;', e.g. the expression of a cfset, empty for
+	 *         end tags
+	 */
+	public String getAttributesText() {
+		return attributesText;
+	}
+	
+	/**
+	 * @return true if the tag ends with '/&gt;'
+	 */
+	public boolean isSelfClosing() {
+		return selfClosing;
+	}
+	
+	/**
+	 * @return the attributes by name, in the order they appear; empty for tags like cfset and cfif that hold an
+	 *         expression instead of attributes
+	 */
+	public Map<String, String> getAttributes() {
+		if (attributes == null) {
+			attributes = usesAttributes ? parseAttributes(attributesText) : Collections.<String, String> emptyMap();
+		}
+		return attributes;
+	}
+	
+	/**
+	 * @param attributeName the attribute name, in any case
+	 * @return the value of the attribute without quotes, or null if the tag does not have it
+	 */
+	public String getAttribute(String attributeName) {
+		for (Map.Entry<String, String> attribute : getAttributes().entrySet()) {
+			if (attribute.getKey().equalsIgnoreCase(attributeName)) {
+				return attribute.getValue();
+			}
+		}
+		return null;
+	}
+	
+	static Map<String, String> parseAttributes(String text) {
+		final Map<String, String> attributes = new LinkedHashMap<String, String>();
+		final int length = text.length();
+		int i = 0;
+		while (i < length) {
+			while (i < length && !isNameChar(text.charAt(i))) {
+				i++;
+			}
+			final int nameStart = i;
+			while (i < length && isNameChar(text.charAt(i))) {
+				i++;
+			}
+			if (nameStart == i) {
+				break;
+			}
+			final String attributeName = text.substring(nameStart, i);
+			while (i < length && Character.isWhitespace(text.charAt(i))) {
+				i++;
+			}
+			String value = "";
+			if (i < length && text.charAt(i) == '=') {
+				i++;
+				while (i < length && Character.isWhitespace(text.charAt(i))) {
+					i++;
+				}
+				if (i < length && (text.charAt(i) == '"' || text.charAt(i) == '\'')) {
+					final char quote = text.charAt(i++);
+					final int valueStart = i;
+					while (i < length && text.charAt(i) != quote) {
+						i++;
+					}
+					value = text.substring(valueStart, i);
+					i++;
+				} else {
+					final int valueStart = i;
+					while (i < length && !Character.isWhitespace(text.charAt(i))) {
+						i++;
+					}
+					value = text.substring(valueStart, i);
+				}
+			}
+			attributes.put(attributeName, value);
+		}
+		return attributes;
+	}
+	
+	static boolean isNameChar(int c) {
+		return Character.isLetterOrDigit(c) || c == '_' || c == '-' || c == '.' || c == ':';
+	}
+	
+	@Override
+	public String toString() {
+		return (endTag ? "</" : "<") + name + (attributesText.isEmpty() ? "" : " " + attributesText)
+				+ (selfClosing ? "/>" : ">") + " at " + line + ":" + column;
+	}
+}
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.script.CFFuncDeclStatement;
 import cfml.parsing.cfscript.script.CFScriptStatement;
@@ -50,4 +51,19 @@ public class CFAnonymousFunctionExpression extends CFExpression {
 		return ArrayBuilder.createCFScriptStatement(funcDeclStatement);
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return funcDeclStatement;
+	}
 }
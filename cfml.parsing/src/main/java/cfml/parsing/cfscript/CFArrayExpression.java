@@ -59,4 +59,19 @@ public class CFArrayExpression extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return elements.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return elements.get(index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -140,4 +140,22 @@ public class CFAssignmentExpression extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 2 + otherIds.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		if (index == 0) {
+			return left;
+		}
+		return index == 1 ? right : otherIds.get(index - 2);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -77,4 +78,18 @@ public class CFBinaryExpression extends CFExpression {
 		return ArrayBuilder.createCFScriptStatement();
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return 2;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return Objects.checkIndex(index, 2) == 0 ? _left : _right;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
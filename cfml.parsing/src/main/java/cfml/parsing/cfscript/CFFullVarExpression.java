@@ -99,4 +99,19 @@ public class CFFullVarExpression extends CFIdentifier {
 	public String toString() {
 		return Decompile(0);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return expressions.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return expressions.get(index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
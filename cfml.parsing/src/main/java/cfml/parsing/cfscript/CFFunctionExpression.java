@@ -2,6 +2,7 @@ package cfml.parsing.cfscript;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -115,4 +116,30 @@ public class CFFunctionExpression extends CFMember {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return args.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		final CFExpression expr = args.get(index);
+		if (expr instanceof CFAssignmentExpression && !(expr instanceof CFTernaryExpression)) {
+			// a named parameter
+			return ((CFAssignmentExpression) expr).getRight();
+		}
+		return expr;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
@@ -71,4 +71,14 @@ public class CFIdentifier extends CFVarExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -97,4 +97,19 @@ public class CFJavaMethodExpression extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1 + args.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return index == 0 ? name : args.get(index - 1);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -94,4 +94,14 @@ public class CFLiteral extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -56,4 +57,20 @@ public class CFMember extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return expression;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -54,4 +54,13 @@ public class CFMultipartIdentifier extends CFIdentifier {
 		return ArrayBuilder.createCFScriptStatement();
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return ids.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return ids.get(index);
+	}
 }
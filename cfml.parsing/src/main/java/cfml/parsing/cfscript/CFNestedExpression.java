@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.script.CFScriptStatement;
 import cfml.parsing.util.ArrayBuilder;
@@ -50,4 +51,19 @@ public class CFNestedExpression extends CFExpression {
 		return ArrayBuilder.createCFScriptStatement();
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return sub;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
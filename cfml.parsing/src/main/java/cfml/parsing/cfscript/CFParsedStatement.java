@@ -20,6 +20,7 @@ public abstract class CFParsedStatement implements CFStatement, java.io.Serializ
 	private int col;
 	private Token token;
 	private Object parent;
+	private transient PositionShift shift;
 	
 	@Deprecated
 	public CFParsedStatement(int _line, int _col) {
@@ -65,17 +66,40 @@ public abstract class CFParsedStatement implements CFStatement, java.io.Serializ
 	}
 	
 	public int getOffset() {
+		shiftPosition();
 		return offset;
 	}
 	
 	public int getLine() {
+		shiftPosition();
 		return line;
 	}
 	
 	public int getColumn() {
+		shiftPosition();
 		return col;
 	}
 	
+	/**
+	 * Lets the recorded source position follow the edits appended to a chain of shifts from now on, see
+	 * {@link cfml.parsing.IncrementalScriptParser}. The edits are applied when the position is next read.
+	 *
+	 * @param shift the last shift of the chain, its edits are already part of the position
+	 */
+	public void trackPosition(PositionShift shift) {
+		this.shift = shift;
+	}
+	
+	private void shiftPosition() {
+		for (PositionShift next; shift != null && (next = shift.next()) != null; shift = next) {
+			if (next.moves(offset)) {
+				col += next.getColumnDelta(line);
+				offset += next.getOffsetDelta();
+				line += next.getLineDelta();
+			}
+		}
+	}
+	
 	public String Indent(int indent) {
 		StringBuilder sb = new StringBuilder();
 		for (int i = 0; i < indent; i++) {
@@ -88,6 +112,41 @@ public abstract class CFParsedStatement implements CFStatement, java.io.Serializ
 	
 	public abstract List<CFScriptStatement> decomposeScript();
 	
+	/**
+	 * The children of {@link #decomposeExpression()} by index, for walking a tree without building lists, see
+	 * {@link cfml.parsing.cfscript.walker.CFScriptTreeWalker}. The node classes of the parser answer without allocating;
+	 * this default falls back to the list.
+	 *
+	 * @return the number of expression children, including those a node does not have, see
+	 *         {@link #getExpression(int)}
+	 */
+	public int getExpressionCount() {
+		return decomposeExpression().size();
+	}
+	
+	/**
+	 * @param index 0 to {@link #getExpressionCount()} - 1
+	 * @return the expression child, or null for an optional one the node does not have, e.g. an initializer
+	 */
+	public CFExpression getExpression(int index) {
+		return decomposeExpression().get(index);
+	}
+	
+	/**
+	 * @return the number of statement children, those of {@link #decomposeScript()}
+	 */
+	public int getStatementCount() {
+		return decomposeScript().size();
+	}
+	
+	/**
+	 * @param index 0 to {@link #getStatementCount()} - 1
+	 * @return the statement child, or null for an optional one the node does not have
+	 */
+	public CFScriptStatement getStatement(int index) {
+		return decomposeScript().get(index);
+	}
+	
 	@Override
 	public Object getParent() {
 		return parent;
@@ -61,4 +61,18 @@ public class CFStringExpression extends CFExpression {
 		return ArrayBuilder.createCFScriptStatement();
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return subExpressions.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return subExpressions.get(index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
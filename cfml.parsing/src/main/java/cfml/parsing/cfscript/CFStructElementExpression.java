@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -57,4 +58,19 @@ public class CFStructElementExpression extends CFExpression {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 2;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return Objects.checkIndex(index, 2) == 0 ? key : value;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -69,4 +69,19 @@ public class CFStructExpression extends CFExpression {
 	public boolean isOrdered() {
 		return ordered;
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return elements.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return elements.get(index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -66,4 +67,20 @@ public class CFTernaryExpression extends CFAssignmentExpression {
 		return ArrayBuilder.createCFExpression(_cond, _left, _right);
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return 3;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		switch (Objects.checkIndex(index, 3)) {
+		case 0:
+			return _cond;
+		case 1:
+			return _left;
+		default:
+			return _right;
+		}
+	}
 }
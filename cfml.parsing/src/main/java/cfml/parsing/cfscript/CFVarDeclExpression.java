@@ -2,6 +2,7 @@ package cfml.parsing.cfscript;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -85,4 +86,22 @@ public class CFVarDeclExpression extends CFExpression {
 			return ((CFIdentifier) var).getName();
 		return var.Decompile(0);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 2 + otherIds.size() + otherVars.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		if (index < 2) {
+			return Objects.checkIndex(index, 2) == 0 ? var : init;
+		}
+		return index - 2 < otherIds.size() ? otherIds.get(index - 2) : otherVars.get(index - 2 - otherIds.size());
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -0,0 +1,98 @@
+package cfml.parsing.cfscript;
+
+/**
+ * One edit in a chain of edits to a source text, for positions that are moved lazily. A node or token keeps the last
+ * shift it has applied and applies those appended after it when its position is read, so an edit costs nothing for the
+ * positions behind it that are never read again.
+ *
+ * A shift moves the positions at or after {@link #getFrom()}, an offset in the text before the edit. The column only
+ * changes for positions on {@link #getLine()}, the line the edit ended on.
+ */
+public final class PositionShift {
+	
+	private final int from;
+	private final int offsetDelta;
+	private final int line;
+	private final int lineDelta;
+	private final int columnDelta;
+	private final int indexDelta;
+	private PositionShift next;
+	
+	/**
+	 * Starts a chain, for positions that have not been moved yet.
+	 */
+	public PositionShift() {
+		this(Integer.MAX_VALUE, 0, 0, 0, 0, 0);
+	}
+	
+	private PositionShift(int from, int offsetDelta, int line, int lineDelta, int columnDelta, int indexDelta) {
+		this.from = from;
+		this.offsetDelta = offsetDelta;
+		this.line = line;
+		this.lineDelta = lineDelta;
+		this.columnDelta = columnDelta;
+		this.indexDelta = indexDelta;
+	}
+	
+	/**
+	 * Appends the next edit to the chain; this must be its last shift.
+	 *
+	 * @param from the offset, before the edit, of the first position to move
+	 * @param offsetDelta the number of characters inserted (positive) or removed (negative)
+	 * @param line the line, before the edit, the edit ended on
+	 * @param lineDelta the number of lines inserted or removed
+	 * @param columnDelta the change of the column on line
+	 * @param indexDelta the number of tokens inserted or removed
+	 * @return the new last shift
+	 */
+	public PositionShift append(int from, int offsetDelta, int line, int lineDelta, int columnDelta, int indexDelta) {
+		if (next != null) {
+			throw new IllegalStateException("Not the last shift of its chain");
+		}
+		next = new PositionShift(from, offsetDelta, line, lineDelta, columnDelta, indexDelta);
+		return next;
+	}
+	
+	/**
+	 * @return the shift appended after this one, null if none was
+	 */
+	public PositionShift next() {
+		return next;
+	}
+	
+	/**
+	 * @param offset a position before this shift
+	 * @return true if the position is moved by this shift
+	 */
+	public boolean moves(int offset) {
+		return offset >= from;
+	}
+	
+	public int getFrom() {
+		return from;
+	}
+	
+	public int getOffsetDelta() {
+		return offsetDelta;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	public int getLineDelta() {
+		return lineDelta;
+	}
+	
+	/**
+	 * @param positionLine the line of a moved position, before this shift
+	 * @return the change of its column
+	 */
+	public int getColumnDelta(int positionLine) {
+		return positionLine == line ? columnDelta : 0;
+	}
+	
+	public int getIndexDelta() {
+		return indexDelta;
+	}
+}
@@ -0,0 +1,248 @@
+package cfml.parsing.cfscript.flat;
+
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+
+/**
+ * A node of a {@link FlatTree}, read with the accessors of the statement and expression nodes: position, parent,
+ * children by index, and the names, types, parameters and attributes of declarations. Where a node holds an
+ * identifier that is not a child, such as the return type of a function, the view gives its name. A view is a small
+ * object made on demand; two views of the same node are equal. Loops over many nodes are cheaper on the node numbers
+ * of the tree.
+ */
+public final class FlatNode {
+	
+	private final FlatTree tree;
+	private final int node;
+	
+	FlatNode(FlatTree tree, int node) {
+		this.tree = tree;
+		this.node = node;
+	}
+	
+	public FlatTree getTree() {
+		return tree;
+	}
+	
+	/**
+	 * @return the number of the node in the tree
+	 */
+	public int getIndex() {
+		return node;
+	}
+	
+	/**
+	 * @return see {@link FlatTree#kindOf(Class)}
+	 */
+	public int getKind() {
+		return tree.getKind(node);
+	}
+	
+	/**
+	 * @return the class of the node the view was made from
+	 */
+	public Class<?> getNodeClass() {
+		return tree.getNodeClass(node);
+	}
+	
+	public boolean isExpression() {
+		return tree.isExpression(node);
+	}
+	
+	/**
+	 * @return the parent, null for a root
+	 */
+	public FlatNode getParent() {
+		return tree.getNode(tree.getParent(node));
+	}
+	
+	public int getOffset() {
+		return tree.getOffset(node);
+	}
+	
+	public int getLine() {
+		return tree.getLine(node);
+	}
+	
+	public int getColumn() {
+		return tree.getColumn(node);
+	}
+	
+	/**
+	 * @return see {@link FlatTree#getText(int)}
+	 */
+	public String getText() {
+		return tree.getText(node);
+	}
+	
+	/**
+	 * @return see {@link FlatTree#getData(int)}
+	 */
+	public int getData() {
+		return tree.getData(node);
+	}
+	
+	/**
+	 * @return the access of a component or function declaration
+	 */
+	public byte getAccess() {
+		return isFunction() || CFCompDeclStatement.class.isAssignableFrom(getNodeClass()) ? (byte) tree.getData(node)
+				: 0;
+	}
+	
+	public boolean isStatic() {
+		return isFunction() && (tree.getData(node) & FlatTree.STATIC) != 0;
+	}
+	
+	public boolean isFinal() {
+		return isFunction() && (tree.getData(node) & FlatTree.FINAL) != 0;
+	}
+	
+	public boolean isAbstract() {
+		return isFunction() && (tree.getData(node) & FlatTree.ABSTRACT) != 0;
+	}
+	
+	/**
+	 * @return the name of a function declaration, function call, identifier or variable declaration, null for other
+	 *         nodes
+	 */
+	public String getName() {
+		final Class<?> nodeClass = getNodeClass();
+		final boolean named = isFunction() || CFFunctionExpression.class.isAssignableFrom(nodeClass)
+				|| CFIdentifier.class.isAssignableFrom(nodeClass) || CFVarDeclExpression.class.isAssignableFrom(nodeClass);
+		return named ? tree.getText(node) : null;
+	}
+	
+	/**
+	 * @return the name of the return type of a function declaration or component, null for other nodes
+	 */
+	public String getReturnType() {
+		return CFCatchStatement.class.isAssignableFrom(getNodeClass()) ? null : tree.getType(node);
+	}
+	
+	/**
+	 * @return the type of a catch, null for other nodes
+	 */
+	public String getType() {
+		return CFCatchStatement.class.isAssignableFrom(getNodeClass()) ? tree.getType(node) : null;
+	}
+	
+	/**
+	 * @return the variable of a catch, null for other nodes
+	 */
+	public FlatNode getVariable() {
+		return CFCatchStatement.class.isAssignableFrom(getNodeClass()) ? getExpression(0) : null;
+	}
+	
+	/**
+	 * @return the name of a property, null for other nodes
+	 */
+	public FlatNode getPropertyName() {
+		return isProperty() ? getExpression(getExpressionCount() - 2) : null;
+	}
+	
+	/**
+	 * @return the type of a property, null for other nodes
+	 */
+	public FlatNode getPropertyType() {
+		return isProperty() ? getExpression(getExpressionCount() - 1) : null;
+	}
+	
+	public boolean isShortHand() {
+		return isProperty() && tree.getData(node) != 0;
+	}
+	
+	/**
+	 * @return see {@link FlatTree#getParameterCount(int)}
+	 */
+	public int getParameterCount() {
+		return tree.getParameterCount(node);
+	}
+	
+	public String getParameterName(int index) {
+		return tree.getParameterName(node, index);
+	}
+	
+	public String getParameterType(int index) {
+		return tree.getParameterType(node, index);
+	}
+	
+	public boolean isParameterRequired(int index) {
+		return tree.isParameterRequired(node, index);
+	}
+	
+	/**
+	 * @return the default expression of a parameter, null if it has none
+	 */
+	public FlatNode getParameterDefault(int index) {
+		return tree.getNode(tree.getParameterDefault(node, index));
+	}
+	
+	/**
+	 * @return see {@link FlatTree#getAttributeCount(int)}
+	 */
+	public int getAttributeCount() {
+		return tree.getAttributeCount(node);
+	}
+	
+	public FlatNode getAttributeName(int index) {
+		return tree.getNode(tree.getAttributeName(node, index));
+	}
+	
+	public FlatNode getAttributeValue(int index) {
+		return tree.getNode(tree.getAttributeValue(node, index));
+	}
+	
+	public int getExpressionCount() {
+		return tree.getExpressionCount(node);
+	}
+	
+	/**
+	 * @param index 0 to {@link #getExpressionCount()} - 1
+	 * @return the expression child, or null for an optional one the node does not have
+	 */
+	public FlatNode getExpression(int index) {
+		return tree.getNode(tree.getExpression(node, index));
+	}
+	
+	public int getStatementCount() {
+		return tree.getStatementCount(node);
+	}
+	
+	/**
+	 * @param index 0 to {@link #getStatementCount()} - 1
+	 * @return the statement child, or null for an optional one the node does not have
+	 */
+	public FlatNode getStatement(int index) {
+		return tree.getNode(tree.getStatement(node, index));
+	}
+	
+	private boolean isFunction() {
+		return CFFuncDeclStatement.class.isAssignableFrom(getNodeClass());
+	}
+	
+	private boolean isProperty() {
+		return CFPropertyStatement.class.isAssignableFrom(getNodeClass());
+	}
+	
+	@Override
+	public boolean equals(Object obj) {
+		return obj instanceof FlatNode && ((FlatNode) obj).tree == tree && ((FlatNode) obj).node == node;
+	}
+	
+	@Override
+	public int hashCode() {
+		return System.identityHashCode(tree) * 31 + node;
+	}
+	
+	@Override
+	public String toString() {
+		final String text = getText();
+		return getNodeClass().getSimpleName() + (text == null ? "" : " " + text) + " line:" + getLine();
+	}
+}
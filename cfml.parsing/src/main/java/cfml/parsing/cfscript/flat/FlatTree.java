@@ -0,0 +1,618 @@
+package cfml.parsing.cfscript.flat;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFUnaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFParsedAttributeStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * A statement tree stored in arrays of ints instead of node objects: per node its kind, parent, position, text, type
+ * and children, each in an array of its own, the parameters of functions in arrays of their own, and all strings in a
+ * {@link StringPool}. A tree takes a fraction of the heap of its nodes and holds no tokens, so the trees of a whole
+ * project can be kept; {@link FlatNode} reads it with the accessors of the nodes.
+ *
+ * Nodes are numbered 0 to {@link #size()} - 1 in the order a {@link cfml.parsing.cfscript.walker.CFScriptTreeWalker}
+ * enters them: depth first, expressions before statements. A loop over the numbers visits every node with the
+ * parent first and reads the arrays front to back; the descendants of a node are the numbers after it up to
+ * {@link #getEnd(int)}. The children keep the indexes of getExpression(int) and getStatement(int) of the node, a
+ * child the node does not have is -1.
+ *
+ * A tree is a copy: it does not change with the nodes it was made from. It is immutable and may be read by several
+ * threads.
+ */
+public final class FlatTree {
+	
+	/** flag of {@link #getData(int)} for a static function */
+	public static final int STATIC = 0x100;
+	/** flag of {@link #getData(int)} for a final function */
+	public static final int FINAL = 0x200;
+	/** flag of {@link #getData(int)} for an abstract function */
+	public static final int ABSTRACT = 0x400;
+	
+	/** node class of every kind, the index is the kind */
+	private static volatile Class<?>[] kindClasses = new Class<?>[0];
+	/** whether the nodes of a kind are expressions */
+	private static volatile boolean[] kindExpressions = new boolean[0];
+	
+	private static final ClassValue<Integer> KINDS = new ClassValue<Integer>() {
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			return register(type);
+		}
+	};
+	
+	private final StringPool pool;
+	private final int[] roots;
+	private final int[] kinds;
+	private final int[] parents;
+	private final int[] ends;
+	private final int[] offsets;
+	private final int[] lines;
+	private final int[] columns;
+	/** pool number of the text of a node, -1 for none */
+	private final int[] texts;
+	private final int[] data;
+	/** pool number of the type of a node, -1 for none */
+	private final int[] types;
+	/** the parameters of node i are parameters[parameterStarts[i]] to parameters[parameterStarts[i + 1] - 1] */
+	private final int[] parameterStarts;
+	/** pool numbers of the parameter names */
+	private final int[] parameters;
+	/** pool numbers of the parameter types, -1 for none */
+	private final int[] parameterTypes;
+	private final boolean[] parametersRequired;
+	/** the children of node i are children[childStarts[i]] to children[childStarts[i + 1] - 1] */
+	private final int[] childStarts;
+	private final int[] expressionCounts;
+	private final int[] children;
+	
+	private FlatTree(Builder builder) {
+		final int size = builder.size;
+		pool = builder.pool;
+		roots = builder.roots;
+		kinds = Arrays.copyOf(builder.kinds, size);
+		parents = Arrays.copyOf(builder.parents, size);
+		ends = Arrays.copyOf(builder.ends, size);
+		offsets = Arrays.copyOf(builder.offsets, size);
+		lines = Arrays.copyOf(builder.lines, size);
+		columns = Arrays.copyOf(builder.columns, size);
+		texts = Arrays.copyOf(builder.texts, size);
+		data = Arrays.copyOf(builder.data, size);
+		types = Arrays.copyOf(builder.types, size);
+		parameterStarts = Arrays.copyOf(builder.parameterStarts, size + 1);
+		parameterStarts[size] = builder.parameterCount;
+		parameters = Arrays.copyOf(builder.parameters, builder.parameterCount);
+		parameterTypes = Arrays.copyOf(builder.parameterTypes, builder.parameterCount);
+		parametersRequired = Arrays.copyOf(builder.parametersRequired, builder.parameterCount);
+		childStarts = Arrays.copyOf(builder.childStarts, size + 1);
+		childStarts[size] = builder.childCount;
+		expressionCounts = Arrays.copyOf(builder.expressionCounts, size);
+		children = Arrays.copyOf(builder.children, builder.childCount);
+	}
+	
+	/**
+	 * @param root a statement tree
+	 * @return the tree flattened, with strings in a pool of its own
+	 */
+	public static FlatTree of(CFScriptStatement root) {
+		return of(Collections.singletonList(root), new StringPool());
+	}
+	
+	/**
+	 * @param roots the statement trees of a file; nulls are passed over
+	 * @param pool the pool for the strings, shared with other trees
+	 * @return the trees flattened into one
+	 */
+	public static FlatTree of(List<? extends CFScriptStatement> roots, StringPool pool) {
+		final Builder builder = new Builder(pool);
+		for (CFScriptStatement root : roots) {
+			if (root != null) {
+				builder.add(root);
+			}
+		}
+		return new FlatTree(builder);
+	}
+	
+	/**
+	 * @param nodeClass the class of a statement or expression
+	 * @return the kind of the nodes of the class, the same in every tree
+	 */
+	public static int kindOf(Class<?> nodeClass) {
+		return KINDS.get(nodeClass);
+	}
+	
+	/**
+	 * @param kind a kind of {@link #getKind(int)}
+	 * @return the class of the nodes of the kind
+	 */
+	public static Class<?> getKindClass(int kind) {
+		return kindClasses[kind];
+	}
+	
+	private static synchronized int register(Class<?> nodeClass) {
+		final Class<?>[] classes = Arrays.copyOf(kindClasses, kindClasses.length + 1);
+		final boolean[] expressions = Arrays.copyOf(kindExpressions, classes.length);
+		classes[classes.length - 1] = nodeClass;
+		expressions[classes.length - 1] = CFExpression.class.isAssignableFrom(nodeClass);
+		kindExpressions = expressions;
+		kindClasses = classes;
+		return classes.length - 1;
+	}
+	
+	public StringPool getStringPool() {
+		return pool;
+	}
+	
+	/**
+	 * @return the number of nodes
+	 */
+	public int size() {
+		return kinds.length;
+	}
+	
+	/**
+	 * @return the number of statement trees flattened
+	 */
+	public int getRootCount() {
+		return roots.length;
+	}
+	
+	/**
+	 * @return the node of a statement tree
+	 */
+	public int getRoot(int index) {
+		return roots[index];
+	}
+	
+	/**
+	 * @return a view of a node, or null for -1
+	 */
+	public FlatNode getNode(int node) {
+		return node < 0 ? null : new FlatNode(this, node);
+	}
+	
+	/**
+	 * @return the kind of a node, see {@link #kindOf(Class)}
+	 */
+	public int getKind(int node) {
+		return kinds[node];
+	}
+	
+	public Class<?> getNodeClass(int node) {
+		return kindClasses[kinds[node]];
+	}
+	
+	/**
+	 * @return true for an expression, false for a statement
+	 */
+	public boolean isExpression(int node) {
+		return kindExpressions[kinds[node]];
+	}
+	
+	/**
+	 * @return the parent of a node, -1 for a root
+	 */
+	public int getParent(int node) {
+		return parents[node];
+	}
+	
+	/**
+	 * @return the number after the last descendant of a node
+	 */
+	public int getEnd(int node) {
+		return ends[node];
+	}
+	
+	public int getOffset(int node) {
+		return offsets[node];
+	}
+	
+	public int getLine(int node) {
+		return lines[node];
+	}
+	
+	public int getColumn(int node) {
+		return columns[node];
+	}
+	
+	/**
+	 * @return the name of an identifier, function call, function or variable declaration, the value of a literal as
+	 *         written, the operator of a binary expression or assignment; null for other nodes
+	 */
+	public String getText(int node) {
+		return texts[node] < 0 ? null : pool.get(texts[node]);
+	}
+	
+	/**
+	 * @return the getKind() of an operator expression or literal, the getAccess() of a component or of a function
+	 *         declaration with its {@link #STATIC}, {@link #FINAL} and {@link #ABSTRACT} flags, 1 for a shorthand
+	 *         property; 0 for other nodes
+	 */
+	public int getData(int node) {
+		return data[node];
+	}
+	
+	/**
+	 * @return the return type of a function declaration or component, the type of a catch; null for other nodes
+	 */
+	public String getType(int node) {
+		return types[node] < 0 ? null : pool.get(types[node]);
+	}
+	
+	/**
+	 * @return the number of parameters of a function declaration, 0 for other nodes
+	 */
+	public int getParameterCount(int node) {
+		return parameterStarts[node + 1] - parameterStarts[node];
+	}
+	
+	public String getParameterName(int node, int index) {
+		return pool.get(parameters[parameter(node, index)]);
+	}
+	
+	/**
+	 * @return the type of a parameter, null if it is not typed
+	 */
+	public String getParameterType(int node, int index) {
+		final int type = parameterTypes[parameter(node, index)];
+		return type < 0 ? null : pool.get(type);
+	}
+	
+	public boolean isParameterRequired(int node, int index) {
+		return parametersRequired[parameter(node, index)];
+	}
+	
+	/**
+	 * @return the default expression of a parameter, -1 if it has none
+	 */
+	public int getParameterDefault(int node, int index) {
+		parameter(node, index);
+		// the defaults are the last expression children
+		return getExpression(node, expressionCounts[node] - getParameterCount(node) + index);
+	}
+	
+	private int parameter(int node, int index) {
+		if (index < 0 || index >= getParameterCount(node)) {
+			throw new IndexOutOfBoundsException("Parameter " + index + " of " + getParameterCount(node));
+		}
+		return parameterStarts[node] + index;
+	}
+	
+	/**
+	 * @return the number of attributes of a component, function declaration or attribute statement, 0 for other nodes
+	 */
+	public int getAttributeCount(int node) {
+		final Class<?> nodeClass = getNodeClass(node);
+		if (CFFuncDeclStatement.class.isAssignableFrom(nodeClass)) {
+			return (expressionCounts[node] - 1 - getParameterCount(node)) / 2;
+		}
+		if (CFPropertyStatement.class.isAssignableFrom(nodeClass)) {
+			return (expressionCounts[node] - 2) / 2;
+		}
+		if (CFCompDeclStatement.class.isAssignableFrom(nodeClass)
+				|| CFParsedAttributeStatement.class.isAssignableFrom(nodeClass)) {
+			return expressionCounts[node] / 2;
+		}
+		return 0;
+	}
+	
+	/**
+	 * @return the expression child of the name of an attribute
+	 */
+	public int getAttributeName(int node, int index) {
+		return getExpression(node, attribute(node, index));
+	}
+	
+	/**
+	 * @return the expression child of the value of an attribute
+	 */
+	public int getAttributeValue(int node, int index) {
+		return getExpression(node, attribute(node, index) + 1);
+	}
+	
+	private int attribute(int node, int index) {
+		if (index < 0 || index >= getAttributeCount(node)) {
+			throw new IndexOutOfBoundsException("Attribute " + index + " of " + getAttributeCount(node));
+		}
+		// the attributes of a function follow its name
+		return (CFFuncDeclStatement.class.isAssignableFrom(getNodeClass(node)) ? 1 : 0) + 2 * index;
+	}
+	
+	public int getExpressionCount(int node) {
+		return expressionCounts[node];
+	}
+	
+	/**
+	 * @return the expression child, -1 if the node does not have it
+	 */
+	public int getExpression(int node, int index) {
+		if (index < 0 || index >= expressionCounts[node]) {
+			throw new IndexOutOfBoundsException("Expression " + index + " of " + expressionCounts[node]);
+		}
+		return children[childStarts[node] + index];
+	}
+	
+	public int getStatementCount(int node) {
+		return childStarts[node + 1] - childStarts[node] - expressionCounts[node];
+	}
+	
+	/**
+	 * @return the statement child, -1 if the node does not have it
+	 */
+	public int getStatement(int node, int index) {
+		if (index < 0 || index >= getStatementCount(node)) {
+			throw new IndexOutOfBoundsException("Statement " + index + " of " + getStatementCount(node));
+		}
+		return children[childStarts[node] + expressionCounts[node] + index];
+	}
+	
+	/**
+	 * @return the bytes held by the arrays of the tree, not counting the string pool
+	 */
+	public long getMemorySize() {
+		// 16 bytes of array header each
+		return 16L * 17 + 4L * (roots.length + 12L * kinds.length + 2 + children.length + 2L * parameters.length)
+				+ parametersRequired.length;
+	}
+	
+	@Override
+	public String toString() {
+		return "FlatTree nodes:" + size() + " roots:" + roots.length;
+	}
+	
+	/**
+	 * Numbers the nodes in walk order with the path in arrays, like the walker, growing the node arrays as it goes.
+	 */
+	private static final class Builder {
+		
+		final StringPool pool;
+		int[] roots = new int[0];
+		int size;
+		int[] kinds = new int[64];
+		int[] parents = new int[64];
+		int[] ends = new int[64];
+		int[] offsets = new int[64];
+		int[] lines = new int[64];
+		int[] columns = new int[64];
+		int[] texts = new int[64];
+		int[] data = new int[64];
+		int[] types = new int[64];
+		int[] parameterStarts = new int[64];
+		int parameterCount;
+		int[] parameters = new int[16];
+		int[] parameterTypes = new int[16];
+		boolean[] parametersRequired = new boolean[16];
+		int[] childStarts = new int[64];
+		int[] expressionCounts = new int[64];
+		int childCount;
+		int[] children = new int[64];
+		
+		/** the path to the node whose children are added */
+		private Object[] path = new Object[32];
+		private int[] pathNodes = new int[32];
+		private int[] next = new int[32];
+		private int[] counts = new int[32];
+		private int depth;
+		
+		Builder(StringPool pool) {
+			this.pool = pool;
+		}
+		
+		void add(CFScriptStatement root) {
+			roots = Arrays.copyOf(roots, roots.length + 1);
+			roots[roots.length - 1] = enter(root, -1);
+			while (depth > 0) {
+				final int top = depth - 1;
+				final Object node = path[top];
+				final int flat = pathNodes[top];
+				final int expressionCount = expressionCounts[flat];
+				if (next[top] < counts[top]) {
+					final int index = next[top]++;
+					final Object child = index < expressionCount ? getExpression(node, index)
+							: getStatement(node, index - expressionCount);
+					// entered before the slot is written, entering may grow the children array
+					final int flatChild = child == null ? -1 : enter(child, flat);
+					children[childStarts[flat] + index] = flatChild;
+				} else {
+					path[top] = null;
+					ends[flat] = size;
+					depth = top;
+				}
+			}
+		}
+		
+		/**
+		 * Numbers a node, reserves the slots of its children and puts it on the path if it has any.
+		 *
+		 * @return the number of the node
+		 */
+		private int enter(Object node, int parent) {
+			final int expressionCount;
+			final int statementCount;
+			final CFExpression expression = node instanceof CFExpression ? (CFExpression) node : null;
+			final CFScriptStatement statement = expression == null ? (CFScriptStatement) node : null;
+			if (expression != null) {
+				expressionCount = expression.getExpressionCount();
+				statementCount = expression.getStatementCount();
+			} else {
+				expressionCount = statement.getExpressionCount();
+				statementCount = statement.getStatementCount();
+			}
+			if (size == kinds.length) {
+				growNodes();
+			}
+			final int flat = size++;
+			kinds[flat] = KINDS.get(node.getClass());
+			parents[flat] = parent;
+			if (expression != null) {
+				offsets[flat] = expression.getOffset();
+				lines[flat] = expression.getLine();
+				columns[flat] = expression.getColumn();
+			} else {
+				offsets[flat] = statement.getOffset();
+				lines[flat] = statement.getLine();
+				columns[flat] = statement.getColumn();
+			}
+			final String text = text(node);
+			texts[flat] = text == null ? -1 : pool.intern(text);
+			data[flat] = data(node);
+			final String type = type(node);
+			types[flat] = type == null ? -1 : pool.intern(type);
+			parameterStarts[flat] = parameterCount;
+			if (node instanceof CFFuncDeclStatement) {
+				addParameters(((CFFuncDeclStatement) node).getFormals());
+			}
+			expressionCounts[flat] = expressionCount;
+			childStarts[flat] = childCount;
+			final int count = expressionCount + statementCount;
+			if (childCount + count > children.length) {
+				children = Arrays.copyOf(children, Math.max(children.length * 2, childCount + count));
+			}
+			childCount += count;
+			if (count == 0) {
+				ends[flat] = flat + 1;
+				return flat;
+			}
+			if (depth == path.length) {
+				path = Arrays.copyOf(path, depth * 2);
+				pathNodes = Arrays.copyOf(pathNodes, depth * 2);
+				next = Arrays.copyOf(next, depth * 2);
+				counts = Arrays.copyOf(counts, depth * 2);
+			}
+			path[depth] = node;
+			pathNodes[depth] = flat;
+			next[depth] = 0;
+			counts[depth] = count;
+			depth++;
+			return flat;
+		}
+		
+		private void growNodes() {
+			final int capacity = kinds.length * 2;
+			kinds = Arrays.copyOf(kinds, capacity);
+			parents = Arrays.copyOf(parents, capacity);
+			ends = Arrays.copyOf(ends, capacity);
+			offsets = Arrays.copyOf(offsets, capacity);
+			lines = Arrays.copyOf(lines, capacity);
+			columns = Arrays.copyOf(columns, capacity);
+			texts = Arrays.copyOf(texts, capacity);
+			data = Arrays.copyOf(data, capacity);
+			types = Arrays.copyOf(types, capacity);
+			parameterStarts = Arrays.copyOf(parameterStarts, capacity + 1);
+			childStarts = Arrays.copyOf(childStarts, capacity + 1);
+			expressionCounts = Arrays.copyOf(expressionCounts, capacity);
+		}
+		
+		private void addParameters(List<CFFunctionParameter> formals) {
+			if (parameterCount + formals.size() > parameters.length) {
+				final int capacity = Math.max(parameters.length * 2, parameterCount + formals.size());
+				parameters = Arrays.copyOf(parameters, capacity);
+				parameterTypes = Arrays.copyOf(parameterTypes, capacity);
+				parametersRequired = Arrays.copyOf(parametersRequired, capacity);
+			}
+			for (CFFunctionParameter formal : formals) {
+				parameters[parameterCount] = pool.intern(formal.getName());
+				parameterTypes[parameterCount] = formal.getType() == null ? -1 : pool.intern(formal.getType());
+				parametersRequired[parameterCount] = formal.isRequired();
+				parameterCount++;
+			}
+		}
+		
+		private static String text(Object node) {
+			if (node instanceof CFFullVarExpression) {
+				// the members are children
+				return null;
+			}
+			if (node instanceof CFIdentifier) {
+				return ((CFIdentifier) node).getName();
+			}
+			if (node instanceof CFLiteral) {
+				return ((CFLiteral) node).getVal();
+			}
+			if (node instanceof CFFunctionExpression) {
+				return ((CFFunctionExpression) node).getName();
+			}
+			if (node instanceof CFBinaryExpression) {
+				return ((CFBinaryExpression) node).getOperatorImage();
+			}
+			if (node instanceof CFAssignmentExpression) {
+				return ((CFAssignmentExpression) node).getOperatorImage();
+			}
+			if (node instanceof CFVarDeclExpression) {
+				return ((CFVarDeclExpression) node).getName();
+			}
+			if (node instanceof CFFuncDeclStatement) {
+				final CFIdentifier name = ((CFFuncDeclStatement) node).getName();
+				return name == null ? null : name.getName();
+			}
+			return null;
+		}
+		
+		private static int data(Object node) {
+			if (node instanceof CFLiteral) {
+				return ((CFLiteral) node).getKind();
+			}
+			if (node instanceof CFBinaryExpression) {
+				return ((CFBinaryExpression) node).getKind();
+			}
+			if (node instanceof CFAssignmentExpression) {
+				return ((CFAssignmentExpression) node).getKind();
+			}
+			if (node instanceof CFUnaryExpression) {
+				return ((CFUnaryExpression) node).getKind();
+			}
+			if (node instanceof CFFuncDeclStatement) {
+				final CFFuncDeclStatement function = (CFFuncDeclStatement) node;
+				return function.getAccess() & 0xFF | (function.isStatic() ? STATIC : 0)
+						| (function.isFinal() ? FINAL : 0) | (function.isAbstract() ? ABSTRACT : 0);
+			}
+			if (node instanceof CFCompDeclStatement) {
+				return ((CFCompDeclStatement) node).getAccess() & 0xFF;
+			}
+			if (node instanceof CFPropertyStatement) {
+				return ((CFPropertyStatement) node).isShortHand() ? 1 : 0;
+			}
+			return 0;
+		}
+		
+		private static String type(Object node) {
+			if (node instanceof CFFuncDeclStatement) {
+				final CFIdentifier type = ((CFFuncDeclStatement) node).getReturnType();
+				return type == null ? null : type.getName();
+			}
+			if (node instanceof CFCompDeclStatement) {
+				return ((CFCompDeclStatement) node).getReturnType();
+			}
+			if (node instanceof CFCatchStatement) {
+				return ((CFCatchStatement) node).getType();
+			}
+			return null;
+		}
+		
+		private static CFExpression getExpression(Object node, int index) {
+			return node instanceof CFExpression ? ((CFExpression) node).getExpression(index)
+					: ((CFScriptStatement) node).getExpression(index);
+		}
+		
+		private static CFScriptStatement getStatement(Object node, int index) {
+			return node instanceof CFExpression ? ((CFExpression) node).getStatement(index)
+					: ((CFScriptStatement) node).getStatement(index);
+		}
+	}
+}
@@ -0,0 +1,57 @@
+package cfml.parsing.cfscript.flat;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The strings of {@link FlatTree}s, each stored once and referred to by number. A pool is meant to be shared by the
+ * trees of a project, where the same identifiers, scopes and operators occur in every file.
+ *
+ * Strings are added under a lock and looked up without one; a pool may be used by several threads.
+ */
+public class StringPool {
+	
+	private final Map<String, Integer> ids = new ConcurrentHashMap<String, Integer>();
+	private volatile String[] strings = new String[256];
+	private int size;
+	
+	/**
+	 * @param string a string
+	 * @return the number of the string, the same for equal strings
+	 */
+	public int intern(String string) {
+		final Integer id = ids.get(string);
+		if (id != null) {
+			return id;
+		}
+		synchronized (this) {
+			final Integer added = ids.get(string);
+			if (added != null) {
+				return added;
+			}
+			if (size == strings.length) {
+				strings = Arrays.copyOf(strings, size * 2);
+			}
+			// stored before the number is published by the map
+			strings[size] = string;
+			ids.put(string, size);
+			return size++;
+		}
+	}
+	
+	/**
+	 * @param id a number given by {@link #intern(String)}
+	 * @return the string
+	 */
+	public String get(int id) {
+		return strings[id];
+	}
+	
+	/**
+	 * @return the number of strings
+	 */
+	public synchronized int size() {
+		return size;
+	}
+}
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.util.ArrayBuilder;
@@ -43,4 +44,19 @@ public class CFAbortStatement extends CFParsedStatement {
 		return ArrayBuilder.createCFScriptStatement();
 	}
 	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return message;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
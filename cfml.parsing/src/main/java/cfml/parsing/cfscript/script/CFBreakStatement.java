@@ -26,4 +26,14 @@ public class CFBreakStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
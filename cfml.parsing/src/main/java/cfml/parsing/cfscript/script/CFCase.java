@@ -6,6 +6,7 @@ package cfml.parsing.cfscript.script;
  */
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Token;
@@ -141,4 +142,25 @@ public class CFCase implements CFScriptStatement, java.io.Serializable {
 	public int getColumn() {
 		return col;
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return constant;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return statements == null ? 0 : statements.size();
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		return statements.get(index);
+	}
 }
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.CommonTokenStream;
 import org.antlr.v4.runtime.Token;
@@ -51,12 +52,20 @@ public class CFCatchStatement implements CFScriptStatement {
 	}
 	
 	public CFCatchStatement(CFIdentifier _type, CFIdentifier _var, CFScriptStatement _body) {
-		type = _type.Decompile(0);
+		this(_type.Decompile(0), _var, _body, _type.getOffset(), _type.getLine(), _type.getColumn());
+	}
+	
+	/**
+	 * Creates a catch clause at the given position, without setting the parents of var and body.
+	 */
+	public CFCatchStatement(String _type, CFIdentifier _var, CFScriptStatement _body, int _offset, int _line,
+			int _col) {
+		type = _type;
 		var = _var;
 		body = _body;
-		offset = _type.getOffset();
-		line = _type.getLine();
-		col = _type.getColumn();
+		offset = _offset;
+		line = _line;
+		col = _col;
 		if (var != null)
 			token = var.getToken();
 		else if (body != null)
@@ -127,19 +136,38 @@ public class CFCatchStatement implements CFScriptStatement {
 	
 	@Override
 	public int getOffset() {
-		// Auto-generated method stub
-		return 0;
+		return offset;
 	}
 	
 	@Override
 	public int getLine() {
-		// Auto-generated method stub
-		return 0;
+		return line;
 	}
 	
 	@Override
 	public int getColumn() {
-		// Auto-generated method stub
-		return 0;
+		return col;
+	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return var;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
 	}
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -102,4 +103,25 @@ public class CFCompDeclStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return getAttributeExpressionCount(attributes);
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return getAttributeExpression(attributes, index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
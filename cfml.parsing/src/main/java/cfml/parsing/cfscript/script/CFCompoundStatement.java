@@ -75,4 +75,19 @@ public class CFCompoundStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return statements;
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return statements.size();
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		return statements.get(index);
+	}
 }
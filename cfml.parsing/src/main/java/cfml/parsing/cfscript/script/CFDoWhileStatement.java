@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -53,4 +54,26 @@ public class CFDoWhileStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return condition;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
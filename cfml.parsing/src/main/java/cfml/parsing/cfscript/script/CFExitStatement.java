@@ -20,6 +20,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.util.ArrayBuilder;
@@ -57,4 +58,20 @@ public class CFExitStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return methodArg;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
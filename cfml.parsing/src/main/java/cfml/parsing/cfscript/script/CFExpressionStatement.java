@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.util.ArrayBuilder;
@@ -38,4 +39,20 @@ public class CFExpressionStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return expression;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -60,4 +61,25 @@ public class CFForInStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 2;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return Objects.checkIndex(index, 2) == 0 ? variable : structure;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
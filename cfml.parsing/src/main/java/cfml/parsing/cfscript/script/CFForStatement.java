@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -73,4 +74,32 @@ public class CFForStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 3;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		switch (Objects.checkIndex(index, 3)) {
+		case 0:
+			return init;
+		case 1:
+			return cond;
+		default:
+			return next;
+		}
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
@@ -5,6 +5,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -204,4 +205,31 @@ public class CFFuncDeclStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1 + getAttributeExpressionCount(attributes) + formals.size();
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		if (index == 0) {
+			return name;
+		}
+		if (index - 1 < getAttributeExpressionCount(attributes)) {
+			return getAttributeExpression(attributes, index - 1);
+		}
+		return formals.get(index - 1 - getAttributeExpressionCount(attributes)).getDefaultExpression();
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
@@ -68,6 +68,13 @@ public class CFFunctionParameter implements HasToken {
 		return defaultExp;
 	}
 	
+	/**
+	 * @return the identifier the parameter was declared with
+	 */
+	public CFIdentifier getIdentifier() {
+		return token;
+	}
+	
 	@Override
 	public Token getToken() {
 		return token == null ? null : token.getToken();
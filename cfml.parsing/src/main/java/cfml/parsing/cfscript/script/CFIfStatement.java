@@ -1,6 +1,7 @@
 package cfml.parsing.cfscript.script;
 
 import java.util.List;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.util.ArrayBuilder;
@@ -67,4 +68,25 @@ public class CFIfStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement(thenStatement, elseStatement);
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return cond;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 2;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		return Objects.checkIndex(index, 2) == 0 ? thenStatement : elseStatement;
+	}
 }
@@ -111,4 +111,19 @@ abstract public class CFParsedAttributeStatement extends CFParsedStatement {
 	public List<CFScriptStatement> decomposeScript() {
 		return ArrayBuilder.createCFScriptStatement();
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return getAttributeExpressionCount(attributes);
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		return getAttributeExpression(attributes, index);
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 0;
+	}
 }
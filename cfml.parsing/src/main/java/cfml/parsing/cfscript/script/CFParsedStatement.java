@@ -1,5 +1,10 @@
 package cfml.parsing.cfscript.script;
 
+import java.util.ConcurrentModificationException;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Objects;
+
 import org.antlr.v4.runtime.CommonTokenStream;
 
 /**
@@ -9,6 +14,9 @@ import org.antlr.v4.runtime.CommonTokenStream;
 
 import org.antlr.v4.runtime.Token;
 
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.PositionShift;
+
 abstract public class CFParsedStatement implements CFScriptStatement, java.io.Serializable {
 	private static final long serialVersionUID = 1L;
 	
@@ -18,6 +26,7 @@ abstract public class CFParsedStatement implements CFScriptStatement, java.io.Se
 	protected Token token = null;
 	CommonTokenStream tokens;
 	Object parent;
+	private transient PositionShift shift;
 	
 	protected CFParsedStatement(int offset, int line, int col) {
 		_offset = offset;
@@ -39,17 +48,40 @@ abstract public class CFParsedStatement implements CFScriptStatement, java.io.Se
 	}
 	
 	public int getLine() {
+		shiftPosition();
 		return _line;
 	}
 	
 	public int getOffset() {
+		shiftPosition();
 		return _offset;
 	}
 	
 	public int getColumn() {
+		shiftPosition();
 		return _col;
 	}
 	
+	/**
+	 * Lets the recorded source position follow the edits appended to a chain of shifts from now on, see
+	 * {@link cfml.parsing.IncrementalScriptParser}. The edits are applied when the position is next read.
+	 *
+	 * @param shift the last shift of the chain, its edits are already part of the position
+	 */
+	public void trackPosition(PositionShift shift) {
+		this.shift = shift;
+	}
+	
+	private void shiftPosition() {
+		for (PositionShift next; shift != null && (next = shift.next()) != null; shift = next) {
+			if (next.moves(_offset)) {
+				_col += next.getColumnDelta(_line);
+				_offset += next.getOffsetDelta();
+				_line += next.getLineDelta();
+			}
+		}
+	}
+	
 	public String Indent(int indent) {
 		StringBuilder sb = new StringBuilder();
 		for (int i = 0; i < indent; i++) {
@@ -66,6 +98,30 @@ abstract public class CFParsedStatement implements CFScriptStatement, java.io.Se
 		this.tokens = tokens;
 	}
 	
+	/**
+	 * The attribute expression children by index: 2n is the key of the n-th attribute, 2n + 1 its value. They are
+	 * read from the map, which may change between walks, so nothing is kept on the statement.
+	 *
+	 * @return the number of attribute expressions
+	 */
+	protected static int getAttributeExpressionCount(Map<? extends CFExpression, ? extends CFExpression> attributes) {
+		return attributes == null ? 0 : 2 * attributes.size();
+	}
+	
+	/**
+	 * @return the attribute expression at index, see {@link #getAttributeExpressionCount(Map)}
+	 */
+	protected static CFExpression getAttributeExpression(Map<? extends CFExpression, ? extends CFExpression> attributes,
+			int index) {
+		int remaining = Objects.checkIndex(index, getAttributeExpressionCount(attributes)) / 2;
+		for (Entry<? extends CFExpression, ? extends CFExpression> attribute : attributes.entrySet()) {
+			if (remaining-- == 0) {
+				return index % 2 == 0 ? attribute.getKey() : attribute.getValue();
+			}
+		}
+		throw new ConcurrentModificationException();
+	}
+	
 	public Token getToken() {
 		return token;
 	}
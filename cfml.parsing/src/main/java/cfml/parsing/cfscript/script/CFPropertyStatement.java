@@ -3,6 +3,7 @@ package cfml.parsing.cfscript.script;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import cfml.parsing.cfscript.CFExpression;
 import cfml.parsing.cfscript.CFIdentifier;
@@ -56,6 +57,10 @@ public class CFPropertyStatement extends CFParsedAttributeStatement {
 		shorthand = b;
 	}
 	
+	public boolean isShortHand() {
+		return shorthand;
+	}
+	
 	public void setPropertyName(CFExpression cfExpression) {
 		propertyName = cfExpression;
 	}
@@ -82,4 +87,18 @@ public class CFPropertyStatement extends CFParsedAttributeStatement {
 	public CFExpression getPropertyType() {
 		return propertyType;
 	}
+	
+	@Override
+	public int getExpressionCount() {
+		return super.getExpressionCount() + 2;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		final int inherited = 2 * getAttributes().size();
+		if (index < inherited) {
+			return super.getExpression(index);
+		}
+		return Objects.checkIndex(index - inherited, 2) == 0 ? propertyName : propertyType;
+	}
 }
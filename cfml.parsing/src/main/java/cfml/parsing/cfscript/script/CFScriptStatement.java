@@ -21,6 +21,41 @@ public interface CFScriptStatement extends HasToken {
 	
 	public List<CFExpression> decomposeExpression();
 	
+	/**
+	 * The children of {@link #decomposeExpression()} by index, for walking a tree without building lists, see
+	 * {@link cfml.parsing.cfscript.walker.CFScriptTreeWalker}. The statement classes of the parser answer without
+	 * allocating; this default falls back to the list.
+	 *
+	 * @return the number of expression children, including those a statement does not have, see
+	 *         {@link #getExpression(int)}
+	 */
+	public default int getExpressionCount() {
+		return decomposeExpression().size();
+	}
+	
+	/**
+	 * @param index 0 to {@link #getExpressionCount()} - 1
+	 * @return the expression child, or null for an optional one the statement does not have, e.g. a return value
+	 */
+	public default CFExpression getExpression(int index) {
+		return decomposeExpression().get(index);
+	}
+	
+	/**
+	 * @return the number of statement children, those of {@link #decomposeScript()}
+	 */
+	public default int getStatementCount() {
+		return decomposeScript().size();
+	}
+	
+	/**
+	 * @param index 0 to {@link #getStatementCount()} - 1
+	 * @return the statement child, or null for an optional one the statement does not have, e.g. an else branch
+	 */
+	public default CFScriptStatement getStatement(int index) {
+		return decomposeScript().get(index);
+	}
+	
 	public void setParent(Object parent);
 	
 	public int getOffset();
@@ -7,6 +7,7 @@ import java.util.ArrayList;
  */
 
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -61,9 +62,27 @@ public class CFSwitchStatement extends CFParsedStatement {
 	
 	@Override
 	public List<CFScriptStatement> decomposeScript() {
-		List<CFScriptStatement> retval = new ArrayList<CFScriptStatement>();
-		retval.addAll(retval);
-		
-		return retval;
+		return new ArrayList<CFScriptStatement>(cases);
+	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFExpression getExpression(int index) {
+		Objects.checkIndex(index, 1);
+		return variable;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return cases.size();
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		return cases.get(index);
 	}
 }
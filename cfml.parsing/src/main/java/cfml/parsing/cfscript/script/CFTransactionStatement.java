@@ -3,6 +3,7 @@ package cfml.parsing.cfscript.script;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -58,4 +59,14 @@ public class CFTransactionStatement extends CFParsedAttributeStatement {
 		return ArrayBuilder.createCFScriptStatement(body);
 	}
 	
+	@Override
+	public int getStatementCount() {
+		return 1;
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		Objects.checkIndex(index, 1);
+		return body;
+	}
 }
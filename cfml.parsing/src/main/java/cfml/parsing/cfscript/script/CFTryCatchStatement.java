@@ -1,7 +1,7 @@
 package cfml.parsing.cfscript.script;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.Objects;
 
 import org.antlr.v4.runtime.Token;
 
@@ -88,10 +88,33 @@ public class CFTryCatchStatement extends CFParsedStatement {
 	
 	@Override
 	public List<CFScriptStatement> decomposeScript() {
-		List<CFScriptStatement> retval = new ArrayList<CFScriptStatement>();
-		retval.add(body);
+		List<CFScriptStatement> retval = ArrayBuilder.createCFScriptStatement(body);
 		retval.addAll(catchStatements);
-		retval.add(finallyStatement);
-		return ArrayBuilder.createCFScriptStatement();
+		if (finallyStatement != null) {
+			retval.add(finallyStatement);
+		}
+		return retval;
+	}
+	
+	@Override
+	public int getExpressionCount() {
+		return 0;
+	}
+	
+	@Override
+	public int getStatementCount() {
+		return 2 + catchStatements.size();
+	}
+	
+	@Override
+	public CFScriptStatement getStatement(int index) {
+		if (index == 0) {
+			return body;
+		}
+		if (index <= catchStatements.size()) {
+			return catchStatements.get(index - 1);
+		}
+		Objects.checkIndex(index, 2 + catchStatements.size());
+		return finallyStatement;
 	}
 }
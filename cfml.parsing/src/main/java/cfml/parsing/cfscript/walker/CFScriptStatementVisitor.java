@@ -1,7 +1,6 @@
 package cfml.parsing.cfscript.walker;
 
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -460,7 +459,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitTransactionStatement(TransactionStatementContext ctx) {
 		// System.out.println("visitTransactionStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFTransactionStatement transactionStatement = new CFTransactionStatement(ctx.TRANSACTION().getSymbol(), _attr,
 				visitNullSafe(ctx.compoundStatement()));
 		if (ctx.paramStatementAttributes() != null) {
@@ -474,7 +473,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitCfmlfunctionStatement(CfmlfunctionStatementContext ctx) {
 		// System.out.println("visitCfmlfunctionStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFMLFunctionStatement cfmlFunctionStatement = new CFMLFunctionStatement(ctx.start, ctx.cfmlFunction().start, _attr,
 				visitNullSafe(ctx.compoundStatement()));
 		if (ctx.paramStatementAttributes() != null) {
@@ -494,7 +493,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitLockStatement(LockStatementContext ctx) {
 		// System.out.println("visitLockStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFLockStatement lockStatement = new CFLockStatement(ctx.LOCK().getSymbol(), _attr, visit(ctx.compoundStatement()));
 		aggregator.push(lockStatement);
 		visitChildren(ctx.paramStatementAttributes());
@@ -505,7 +504,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitThreadStatement(ThreadStatementContext ctx) {
 		// System.out.println("visitThreadStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFThreadStatement threadStatement = new CFThreadStatement(ctx.THREAD().getSymbol(), _attr,
 				visitNullSafe(ctx.compoundStatement()));
 		aggregator.push(threadStatement);
@@ -524,7 +523,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitAdminStatement(AdminStatementContext ctx) {
 		// System.out.println("visitAbortStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFAdminStatement adminStatement = new CFAdminStatement(ctx.ADMIN().getSymbol(), _attr);
 		aggregator.push(adminStatement);
 		visitChildren(ctx.paramStatementAttributes());
@@ -550,7 +549,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitParamStatement(ParamStatementContext ctx) {
 		// System.out.println("visitParamStatement");
-		Map<CFIdentifier, CFExpression> _attributes = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attributes = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFParamStatement paramStatement = new CFParamStatement(ctx.PARAM().getSymbol(), _attributes);
 		aggregator.push(paramStatement);
 		if (ctx.paramStatementAttributes() != null)
@@ -562,7 +561,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitPropertyStatement(PropertyStatementContext ctx) {
 		// System.out.println("visitPropertyStatement");
-		Map<CFIdentifier, CFExpression> _attributes = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attributes = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFPropertyStatement propertyStatement = new CFPropertyStatement(ctx.PROPERTY().getSymbol(), _attributes);
 		aggregator.push(propertyStatement);
 		if (ctx.paramStatementAttributes() != null) {
@@ -719,7 +718,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	@Override
 	public CFScriptStatement visitTagThrowStatement(TagThrowStatementContext ctx) {
 		// System.out.println("visitLockStatement");
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFTagThrowStatement lockStatement = new CFTagThrowStatement(ctx.THROW().getSymbol(), _attr);
 		aggregator.push(lockStatement);
 		visitChildren(ctx.paramStatementAttributes());
@@ -729,7 +728,7 @@ public class CFScriptStatementVisitor extends CFSCRIPTParserBaseVisitor<CFScript
 	
 	@Override
 	public CFScriptStatement visitTagStatement(TagStatementContext ctx) {
-		Map<CFIdentifier, CFExpression> _attr = new HashMap<CFIdentifier, CFExpression>();
+		Map<CFIdentifier, CFExpression> _attr = new LinkedHashMap<CFIdentifier, CFExpression>();
 		CFTagThrowStatement lockStatement = new CFTagThrowStatement(ctx.lc.getStart(), _attr);
 		aggregator.push(lockStatement);
 		visitChildren(ctx.paramStatementAttributes());
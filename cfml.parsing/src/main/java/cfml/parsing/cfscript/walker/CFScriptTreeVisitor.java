@@ -0,0 +1,46 @@
+package cfml.parsing.cfscript.walker;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+/**
+ * Called by a {@link CFScriptTreeWalker} for the nodes of a statement tree, on entering a node, before its children,
+ * and on leaving it, after them. Every method continues the walk by default; override those the analysis needs.
+ * The walker that calls tells the parent, depth and child index of the node.
+ */
+public abstract class CFScriptTreeVisitor {
+	
+	/**
+	 * What the walk does next.
+	 */
+	public enum Action {
+		/** go on, into the children of an entered node */
+		CONTINUE,
+		/** go on, but leave out the children of the entered node; it is still left */
+		SKIP_CHILDREN,
+		/** end the walk, no node is left any more */
+		STOP
+	}
+	
+	public Action enterStatement(CFScriptStatement statement) {
+		return Action.CONTINUE;
+	}
+	
+	/**
+	 * @return {@link Action#STOP} to end the walk, anything else goes on
+	 */
+	public Action exitStatement(CFScriptStatement statement) {
+		return Action.CONTINUE;
+	}
+	
+	public Action enterExpression(CFExpression expression) {
+		return Action.CONTINUE;
+	}
+	
+	/**
+	 * @return {@link Action#STOP} to end the walk, anything else goes on
+	 */
+	public Action exitExpression(CFExpression expression) {
+		return Action.CONTINUE;
+	}
+}
@@ -0,0 +1,195 @@
+package cfml.parsing.cfscript.walker;
+
+import java.util.Arrays;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor.Action;
+
+/**
+ * Walks a statement or expression tree depth first, calling a {@link CFScriptTreeVisitor} on entering and leaving
+ * every node. The children of a node are its expressions, then its statements, the children of
+ * {@link CFScriptStatement#decomposeExpression()} and {@link CFScriptStatement#decomposeScript()}, read by index with
+ * getExpression(int) and getStatement(int); children a node does not have, like the else of an if without one, are
+ * passed over.
+ *
+ * The walk keeps its path in arrays of the walker instead of building child lists or recursing, so once the arrays
+ * have grown to the depth of the trees walking allocates nothing. A walker is reused from one tree to the next; it is
+ * not thread safe, use one per thread.
+ */
+public class CFScriptTreeWalker {
+	
+	/** the path from the root to the current node */
+	private Object[] nodes = new Object[32];
+	/** the next child to walk of each node of the path, expressions first */
+	private int[] next = new int[32];
+	private int[] expressionCounts = new int[32];
+	private int[] childCounts = new int[32];
+	private int depth;
+	private boolean walking;
+	
+	/**
+	 * @param root the tree
+	 * @param visitor called for every node of the tree
+	 * @return false if the visitor stopped the walk
+	 */
+	public boolean walk(CFScriptStatement root, CFScriptTreeVisitor visitor) {
+		start(root);
+		try {
+			return walk(visitor.enterStatement(root), root, visitor);
+		} finally {
+			finish();
+		}
+	}
+	
+	/**
+	 * @param root the tree
+	 * @param visitor called for every node of the tree
+	 * @return false if the visitor stopped the walk
+	 */
+	public boolean walk(CFExpression root, CFScriptTreeVisitor visitor) {
+		start(root);
+		try {
+			return walk(visitor.enterExpression(root), root, visitor);
+		} finally {
+			finish();
+		}
+	}
+	
+	/**
+	 * @return the parent of the node entered or left, null for the root
+	 */
+	public Object getParent() {
+		return depth > 0 ? nodes[depth - 1] : null;
+	}
+	
+	/**
+	 * @return the number of ancestors of the node entered or left, 0 for the root
+	 */
+	public int getDepth() {
+		return depth;
+	}
+	
+	/**
+	 * @return the index of the node entered or left among the children of its parent, expressions first, -1 for the
+	 *         root
+	 */
+	public int getChildIndex() {
+		return depth > 0 ? next[depth - 1] - 1 : -1;
+	}
+	
+	/**
+	 * @return true if the node entered or left is an expression child of its parent
+	 */
+	public boolean isExpressionChild() {
+		return depth > 0 && next[depth - 1] <= expressionCounts[depth - 1];
+	}
+	
+	private void start(Object root) {
+		if (root == null) {
+			throw new IllegalArgumentException("No tree to walk");
+		}
+		if (walking) {
+			throw new IllegalStateException("The walker is already walking a tree");
+		}
+		walking = true;
+		depth = 0;
+	}
+	
+	private void finish() {
+		// do not keep the tree
+		Arrays.fill(nodes, 0, depth, null);
+		depth = 0;
+		walking = false;
+	}
+	
+	private boolean walk(Action rootAction, Object root, CFScriptTreeVisitor visitor) {
+		if (rootAction == Action.STOP) {
+			return false;
+		}
+		if (!enter(root, rootAction == Action.SKIP_CHILDREN) && exit(root, visitor) == Action.STOP) {
+			return false;
+		}
+		while (depth > 0) {
+			final int top = depth - 1;
+			final Object node = nodes[top];
+			if (next[top] < childCounts[top]) {
+				final int index = next[top]++;
+				final boolean expression = index < expressionCounts[top];
+				final Object child = expression ? getExpression(node, index)
+						: getStatement(node, index - expressionCounts[top]);
+				if (child == null) {
+					continue;
+				}
+				final Action action = expression ? visitor.enterExpression((CFExpression) child)
+						: visitor.enterStatement((CFScriptStatement) child);
+				if (action == Action.STOP) {
+					return false;
+				}
+				// a node without children is left right away, without a place on the path
+				if (!enter(child, action == Action.SKIP_CHILDREN) && exit(child, visitor) == Action.STOP) {
+					return false;
+				}
+			} else {
+				nodes[top] = null;
+				depth = top;
+				if (exit(node, visitor) == Action.STOP) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+	
+	/**
+	 * Puts a node on the path if it has children to walk.
+	 *
+	 * @return true if it was put on the path
+	 */
+	private boolean enter(Object node, boolean skipChildren) {
+		if (skipChildren) {
+			return false;
+		}
+		final int expressionCount;
+		final int statementCount;
+		if (node instanceof CFExpression) {
+			final CFExpression expression = (CFExpression) node;
+			expressionCount = expression.getExpressionCount();
+			statementCount = expression.getStatementCount();
+		} else {
+			final CFScriptStatement statement = (CFScriptStatement) node;
+			expressionCount = statement.getExpressionCount();
+			statementCount = statement.getStatementCount();
+		}
+		if (expressionCount + statementCount == 0) {
+			return false;
+		}
+		if (depth == nodes.length) {
+			nodes = Arrays.copyOf(nodes, depth * 2);
+			next = Arrays.copyOf(next, depth * 2);
+			expressionCounts = Arrays.copyOf(expressionCounts, depth * 2);
+			childCounts = Arrays.copyOf(childCounts, depth * 2);
+		}
+		nodes[depth] = node;
+		next[depth] = 0;
+		expressionCounts[depth] = expressionCount;
+		childCounts[depth] = expressionCount + statementCount;
+		depth++;
+		return true;
+	}
+	
+	private static Action exit(Object node, CFScriptTreeVisitor visitor) {
+		return node instanceof CFExpression ? visitor.exitExpression((CFExpression) node)
+				: visitor.exitStatement((CFScriptStatement) node);
+	}
+	
+	private static CFExpression getExpression(Object node, int index) {
+		return node instanceof CFExpression ? ((CFExpression) node).getExpression(index)
+				: ((CFScriptStatement) node).getExpression(index);
+	}
+	
+	private static CFScriptStatement getStatement(Object node, int index) {
+		return node instanceof CFExpression ? ((CFExpression) node).getStatement(index)
+				: ((CFScriptStatement) node).getStatement(index);
+	}
+}
@@ -0,0 +1,326 @@
+package cfml.parsing.index;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFTernaryExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+/**
+ * Collects the {@link CallSite}s of a file from its script trees in one walk.
+ *
+ * The component a function is called on is inferred from what the file assigns to the receiver: new and createObject
+ * results assigned to var, local and arguments variables of the enclosing function, or to variables and this scope
+ * variables and typed properties of the component; and typed parameters. Receivers are typed when the file is done,
+ * so an assignment in init() types the calls in functions declared before it.
+ */
+class CallCollector extends CFScriptTreeVisitor {
+	
+	private final Path file;
+	private final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+	private final List<Pending> pending = new ArrayList<Pending>();
+	/** lower case variables scope name to component name */
+	private final Map<String, String> fields = new HashMap<String, String>();
+	/** variables scope names assigned different components */
+	private final Set<String> conflicting = new HashSet<String>();
+	private CFFuncDeclStatement function;
+	private String functionName;
+	private Map<String, String> locals;
+	
+	private CallCollector(Path file) {
+		this.file = file;
+	}
+	
+	/**
+	 * @return the calls of the file, in source order
+	 */
+	static List<CallSite> collect(Path file, List<CFScriptStatement> scripts) {
+		final CallCollector collector = new CallCollector(file);
+		for (CFScriptStatement script : scripts) {
+			if (script != null) {
+				collector.walker.walk(script, collector);
+			}
+		}
+		return collector.toSites();
+	}
+	
+	private List<CallSite> toSites() {
+		final List<CallSite> sites = new ArrayList<CallSite>(pending.size());
+		for (Pending call : pending) {
+			String componentName = call.componentName;
+			if (componentName == null && call.receiver != null) {
+				componentName = typeOf(call.receiver, call.locals);
+			}
+			sites.add(new CallSite(call.kind, file, call.caller, call.receiver, componentName, call.functionName,
+					call.line, call.offset));
+		}
+		return sites;
+	}
+	
+	@Override
+	public Action enterStatement(CFScriptStatement statement) {
+		if (statement instanceof CFFuncDeclStatement && function == null) {
+			// calls in nested functions and closures belong to the enclosing one
+			function = (CFFuncDeclStatement) statement;
+			functionName = function.getName() == null ? null : function.getName().getName();
+			locals = new HashMap<String, String>();
+			for (CFFunctionParameter formal : function.getFormals()) {
+				locals.put(key(formal.getName()), formal.getType());
+			}
+		} else if (statement instanceof CFPropertyStatement) {
+			addProperty((CFPropertyStatement) statement);
+		}
+		return Action.CONTINUE;
+	}
+	
+	@Override
+	public Action exitStatement(CFScriptStatement statement) {
+		if (statement == function) {
+			function = null;
+			functionName = null;
+			locals = null;
+		}
+		return Action.CONTINUE;
+	}
+	
+	@Override
+	public Action enterExpression(CFExpression expression) {
+		if (expression instanceof CFFunctionExpression) {
+			addCall((CFFunctionExpression) expression);
+		} else if (expression instanceof CFNewExpression) {
+			// new runs init, createObject does not
+			add(CallSite.Kind.NEW, null, instantiated(expression), "init", expression);
+		} else if (expression instanceof CFAssignmentExpression && !(expression instanceof CFTernaryExpression)) {
+			final CFAssignmentExpression assignment = (CFAssignmentExpression) expression;
+			assign(assignment.getLeft().Decompile(0), instantiated(assignment.getRight()), false);
+		} else if (expression instanceof CFVarDeclExpression) {
+			final CFVarDeclExpression declaration = (CFVarDeclExpression) expression;
+			assign(declaration.getName(), instantiated(declaration.getInit()), true);
+		}
+		return Action.CONTINUE;
+	}
+	
+	private void addCall(CFFunctionExpression call) {
+		final CFIdentifier name = call.getIdentifier();
+		if (name == null) {
+			// a call of a call result, f()()
+			return;
+		}
+		if (name instanceof CFFullVarExpression) {
+			// a.b.c()
+			final String written = name.Decompile(0);
+			final CFIdentifier last = ((CFFullVarExpression) name).getLastIdentifier();
+			final String method = last == null ? written : last.Decompile(0);
+			final int dot = written.length() - method.length() - 1;
+			if (dot > 0 && written.charAt(dot) == '.' && written.endsWith(method)) {
+				add(CallSite.Kind.CALL, written.substring(0, dot), null, method, call);
+			} else {
+				add(CallSite.Kind.CALL, null, null, method, call);
+			}
+			return;
+		}
+		final Object parent = walker.getParent();
+		final int index = walker.getChildIndex();
+		if (parent instanceof CFFullVarExpression && index > 0) {
+			// a member call, receiver.name()
+			final List<CFExpression> members = ((CFFullVarExpression) parent).getExpressions();
+			if (index == 1) {
+				final String componentName = instantiated(members.get(0));
+				if (componentName != null) {
+					add(CallSite.Kind.CALL, members.get(0).Decompile(0), componentName, name.Decompile(0), call);
+					return;
+				}
+			}
+			add(CallSite.Kind.CALL, receiver(members, index), null, name.Decompile(0), call);
+			return;
+		}
+		final String componentName = createdComponent(call);
+		if (componentName != null) {
+			add(CallSite.Kind.NEW, null, componentName, null, call);
+		} else {
+			add(CallSite.Kind.CALL, null, null, name.Decompile(0), call);
+		}
+	}
+	
+	/**
+	 * @return the source of the members before a call
+	 */
+	private static String receiver(List<CFExpression> members, int index) {
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < index; i++) {
+			final CFExpression member = members.get(i);
+			if (i > 0 && member.getClass() == CFIdentifier.class) {
+				sb.append('.');
+			}
+			sb.append(member.Decompile(0));
+		}
+		return sb.toString();
+	}
+	
+	private void add(CallSite.Kind kind, String receiver, String componentName, String name, CFExpression at) {
+		pending.add(new Pending(kind, functionName, receiver, componentName, name, at.getLine(), at.getOffset(),
+				locals));
+	}
+	
+	private void addProperty(CFPropertyStatement property) {
+		String name = SymbolCollector.text(property.getPropertyName());
+		String type = SymbolCollector.text(property.getPropertyType());
+		for (Map.Entry<CFIdentifier, CFExpression> attribute : property.getAttributes().entrySet()) {
+			final String key = attribute.getKey().getName();
+			if (name == null && "name".equalsIgnoreCase(key)) {
+				name = SymbolCollector.text(attribute.getValue());
+			} else if (type == null && "type".equalsIgnoreCase(key)) {
+				type = SymbolCollector.text(attribute.getValue());
+			}
+		}
+		if (name != null) {
+			putField(key(name), type);
+		}
+	}
+	
+	/**
+	 * Records what a variable holds: a component name, or null for anything else. A local variable holds the last
+	 * component assigned to it in the function.
+	 */
+	private void assign(String variable, String componentName, boolean isLocal) {
+		final String name = key(variable);
+		if (name.startsWith("var ")) {
+			assign(variable.substring(4).trim(), componentName, true);
+		} else if (name.startsWith("local.") || name.startsWith("arguments.")) {
+			if (locals != null) {
+				locals.put(name.substring(name.indexOf('.') + 1), componentName);
+			}
+		} else if (name.startsWith("variables.") || name.startsWith("this.")) {
+			putField(name.substring(name.indexOf('.') + 1), componentName);
+		} else if (locals != null && (isLocal || locals.containsKey(name))) {
+			locals.put(name, componentName);
+		} else {
+			putField(name, componentName);
+		}
+	}
+	
+	/**
+	 * Types a variables scope variable. One that is given components of different names is not typed; of names that
+	 * differ in the package only, as in a property type and a new expression, the longer one is kept.
+	 */
+	private void putField(String name, String componentName) {
+		if (componentName == null || conflicting.contains(name)) {
+			return;
+		}
+		final String known = fields.get(name);
+		if (known == null) {
+			fields.put(name, componentName);
+		} else if (!simpleName(known).equalsIgnoreCase(simpleName(componentName))) {
+			fields.remove(name);
+			conflicting.add(name);
+		} else if (componentName.length() > known.length()) {
+			fields.put(name, componentName);
+		}
+	}
+	
+	private static String simpleName(String componentName) {
+		return componentName.substring(componentName.lastIndexOf('.') + 1);
+	}
+	
+	private String typeOf(String receiver, Map<String, String> locals) {
+		final String name = key(receiver);
+		if (name.startsWith("local.") || name.startsWith("arguments.")) {
+			return locals == null ? null : locals.get(name.substring(name.indexOf('.') + 1));
+		}
+		if (name.startsWith("variables.") || name.startsWith("this.")) {
+			return fields.get(name.substring(name.indexOf('.') + 1));
+		}
+		if (locals != null && locals.containsKey(name)) {
+			return locals.get(name);
+		}
+		return fields.get(name);
+	}
+	
+	/**
+	 * @return the component an expression creates: new C(), createObject("component", "C"), or either followed by
+	 *         .init(); else null
+	 */
+	private static String instantiated(CFExpression expression) {
+		if (expression instanceof CFNewExpression) {
+			return SymbolCollector.text(((CFNewExpression) expression).getComponentPath());
+		}
+		if (expression instanceof CFFunctionExpression) {
+			return createdComponent((CFFunctionExpression) expression);
+		}
+		if (expression instanceof CFFullVarExpression) {
+			final List<CFExpression> members = ((CFFullVarExpression) expression).getExpressions();
+			if (members.size() == 2 && members.get(1) instanceof CFFunctionExpression
+					&& "init".equalsIgnoreCase(((CFFunctionExpression) members.get(1)).getName())) {
+				return instantiated(members.get(0));
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * @return the component of createObject("component", "C") or createObject("C"), else null
+	 */
+	private static String createdComponent(CFFunctionExpression call) {
+		if (call.getIdentifier() == null || call.getIdentifier() instanceof CFFullVarExpression
+				|| !"createobject".equals(call.getFunctionName())) {
+			return null;
+		}
+		final int count = call.getExpressionCount();
+		if (count == 1) {
+			return SymbolCollector.text(call.getExpression(0));
+		}
+		if (count == 2 && "component".equalsIgnoreCase(SymbolCollector.text(call.getExpression(0)))) {
+			return SymbolCollector.text(call.getExpression(1));
+		}
+		return null;
+	}
+	
+	private static String key(String name) {
+		return name.trim().toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * A call whose receiver is typed when the file is done.
+	 */
+	private static final class Pending {
+		
+		final CallSite.Kind kind;
+		final String caller;
+		final String receiver;
+		final String componentName;
+		final String functionName;
+		final int line;
+		final int offset;
+		final Map<String, String> locals;
+		
+		Pending(CallSite.Kind kind, String caller, String receiver, String componentName, String functionName,
+				int line, int offset, Map<String, String> locals) {
+			this.kind = kind;
+			this.caller = caller;
+			this.receiver = receiver;
+			this.componentName = componentName;
+			this.functionName = functionName;
+			this.line = line;
+			this.offset = offset;
+			this.locals = locals;
+		}
+	}
+}
@@ -0,0 +1,85 @@
+package cfml.parsing.index;
+
+/**
+ * A {@link CallSite} resolved against a {@link SymbolIndex}: the function that calls and the function or component
+ * that is called, as far as they are indexed.
+ */
+public class CallEdge {
+	
+	private final CallSite site;
+	private final ComponentSymbol callerComponent;
+	private final FunctionSymbol callerFunction;
+	private final ComponentSymbol targetComponent;
+	private final FunctionSymbol targetFunction;
+	
+	/**
+	 * @param site the call
+	 * @param callerComponent the symbols of the calling file, null if it is not indexed
+	 * @param callerFunction the calling function, null for code outside of functions
+	 * @param targetComponent the called or instantiated component, null if it could not be resolved
+	 * @param targetFunction the called function, for a new expression its init function; null if there is none
+	 */
+	public CallEdge(CallSite site, ComponentSymbol callerComponent, FunctionSymbol callerFunction,
+			ComponentSymbol targetComponent, FunctionSymbol targetFunction) {
+		this.site = site;
+		this.callerComponent = callerComponent;
+		this.callerFunction = callerFunction;
+		this.targetComponent = targetComponent;
+		this.targetFunction = targetFunction;
+	}
+	
+	public CallSite getSite() {
+		return site;
+	}
+	
+	public ComponentSymbol getCallerComponent() {
+		return callerComponent;
+	}
+	
+	/**
+	 * @return the calling function, null for code outside of functions
+	 */
+	public FunctionSymbol getCallerFunction() {
+		return callerFunction;
+	}
+	
+	/**
+	 * @return the component declaring the called function, or the instantiated component; null if unresolved
+	 */
+	public ComponentSymbol getTargetComponent() {
+		return targetComponent;
+	}
+	
+	/**
+	 * @return the called function, for a new expression the init function of the component; null if unresolved or
+	 *         there is none
+	 */
+	public FunctionSymbol getTargetFunction() {
+		return targetFunction;
+	}
+	
+	/**
+	 * @return true if the called function, or for an instantiation the component, was found
+	 */
+	public boolean isResolved() {
+		return site.getKind() == CallSite.Kind.NEW ? targetComponent != null : targetFunction != null;
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		sb.append(callerComponent == null ? site.getFile().toString() : callerComponent.getPath());
+		if (callerFunction != null) {
+			sb.append('.').append(callerFunction.getName());
+		}
+		sb.append(" -> ");
+		if (!isResolved()) {
+			sb.append('?').append(site);
+		} else if (site.getKind() == CallSite.Kind.NEW) {
+			sb.append("new ").append(targetComponent.getPath());
+		} else {
+			sb.append(targetComponent.getPath()).append('.').append(targetFunction.getName());
+		}
+		return sb.toString();
+	}
+}
@@ -0,0 +1,489 @@
+package cfml.parsing.index;
+
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.IntConsumer;
+
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ProjectParseResult;
+
+/**
+ * The calls between the components and templates of a project: method calls, unqualified calls and instantiations by
+ * new and createObject, resolved to the functions of a {@link SymbolIndex}, for dead code and impact analysis.
+ *
+ * Files are indexed and their {@link CallSite}s collected in parallel on a {@link ForkJoinPool}, one task per file;
+ * then the sites are resolved in parallel. Each task adds its edges to concurrent sets keyed by the called function,
+ * so files are merged without a lock. When files change, {@link #update(List)} collects the calls of those files only
+ * and resolves again the files whose calls were resolved looking at a component of the same name.
+ *
+ * Queries may run during an update and see it partly applied; updates are serialized.
+ */
+public class CallGraph {
+	
+	private static final Comparator<CallEdge> SOURCE_ORDER = new Comparator<CallEdge>() {
+		@Override
+		public int compare(CallEdge a, CallEdge b) {
+			final int byFile = a.getSite().getFile().compareTo(b.getSite().getFile());
+			return byFile != 0 ? byFile : Integer.compare(a.getSite().getOffset(), b.getSite().getOffset());
+		}
+	};
+	
+	private final SymbolIndex index;
+	private final int parallelism;
+	private final Map<Path, FileCalls> files = new ConcurrentHashMap<Path, FileCalls>();
+	private final Map<FunctionSymbol, Set<CallEdge>> callers = new ConcurrentHashMap<FunctionSymbol, Set<CallEdge>>();
+	private final Map<ComponentSymbol, Set<CallEdge>> instantiations = new ConcurrentHashMap<ComponentSymbol,
+			Set<CallEdge>>();
+	/** lower case component name to the files whose calls depend on the components of that name */
+	private final Map<String, Set<Path>> dependents = new ConcurrentHashMap<String, Set<Path>>();
+	
+	public CallGraph(SymbolIndex index) {
+		this(index, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * @param index the index the calls are resolved against; updated with the files given to the graph
+	 * @param parallelism the number of files processed at once
+	 */
+	public CallGraph(SymbolIndex index, int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1");
+		}
+		this.index = index;
+		this.parallelism = parallelism;
+	}
+	
+	/**
+	 * Builds the call graph and symbol index of a project.
+	 *
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+	 */
+	public static CallGraph of(ProjectParseResult project) throws InterruptedException {
+		final CallGraph graph = new CallGraph(new SymbolIndex(project.getRoot()));
+		graph.update(project.getResults());
+		return graph;
+	}
+	
+	public SymbolIndex getIndex() {
+		return index;
+	}
+	
+	/**
+	 * @return the number of files in the graph
+	 */
+	public int size() {
+		return files.size();
+	}
+	
+	/**
+	 * Adds a file, or replaces it with a new parse of it.
+	 *
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+	 */
+	public void update(FileParseResult result) throws InterruptedException {
+		update(Collections.singletonList(result));
+	}
+	
+	/**
+	 * Adds files, or replaces them with new parses: indexes them, collects their calls and resolves them, and resolves
+	 * again the calls of other files that may now resolve differently.
+	 *
+	 * @param results the parsed files
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers; the graph is
+	 *             then partly updated
+	 */
+	public synchronized void update(final List<FileParseResult> results) throws InterruptedException {
+		final Set<String> names = new HashSet<String>();
+		final Set<Path> changed = new LinkedHashSet<Path>();
+		for (FileParseResult result : results) {
+			final Path file = normalize(result.getPath());
+			changed.add(file);
+			addName(names, index.getByFile(file));
+		}
+		final Queue<Object> emptied = new ConcurrentLinkedQueue<Object>();
+		final AtomicReferenceArray<List<CallSite>> sites = new AtomicReferenceArray<List<CallSite>>(results.size());
+		forEach(results.size(), i -> {
+			final FileParseResult result = results.get(i);
+			final Path file = normalize(result.getPath());
+			final FileCalls old = files.remove(file);
+			if (old != null) {
+				unlink(old, emptied);
+			}
+			index.update(result);
+			sites.set(i, CallCollector.collect(file, result.getScripts()));
+		});
+		for (Path file : changed) {
+			addName(names, index.getByFile(file));
+		}
+		final Map<Path, List<CallSite>> affected = new LinkedHashMap<Path, List<CallSite>>();
+		for (int i = 0; i < results.size(); i++) {
+			affected.put(normalize(results.get(i).getPath()), sites.get(i));
+		}
+		addDependents(names, affected);
+		relink(affected, emptied);
+	}
+	
+	/**
+	 * Drops a file and resolves again the calls that may have been resolved to it.
+	 *
+	 * @return true if the file was in the graph
+	 * @throws InterruptedException if the calling thread is interrupted while waiting for the workers
+	 */
+	public synchronized boolean remove(Path file) throws InterruptedException {
+		final Path normalized = normalize(file);
+		final FileCalls old = files.remove(normalized);
+		if (old == null) {
+			return false;
+		}
+		final Queue<Object> emptied = new ConcurrentLinkedQueue<Object>();
+		unlink(old, emptied);
+		final Set<String> names = new HashSet<String>();
+		addName(names, index.getByFile(normalized));
+		index.remove(normalized);
+		final Map<Path, List<CallSite>> affected = new LinkedHashMap<Path, List<CallSite>>();
+		addDependents(names, affected);
+		relink(affected, emptied);
+		return true;
+	}
+	
+	private void addDependents(Set<String> names, Map<Path, List<CallSite>> affected) {
+		for (String name : names) {
+			final Set<Path> dependent = dependents.get(name);
+			if (dependent != null) {
+				for (Path file : dependent) {
+					final FileCalls calls = files.get(file);
+					if (calls != null && !affected.containsKey(file)) {
+						affected.put(file, calls.sites);
+					}
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Resolves the calls of files in parallel, replacing their edges, then drops the sets left empty.
+	 */
+	private void relink(Map<Path, List<CallSite>> affected, Queue<Object> emptied) throws InterruptedException {
+		final List<Map.Entry<Path, List<CallSite>>> entries = new ArrayList<Map.Entry<Path, List<CallSite>>>(
+				affected.entrySet());
+		forEach(entries.size(), i -> {
+			final Path file = entries.get(i).getKey();
+			final FileCalls old = files.get(file);
+			if (old != null) {
+				unlink(old, emptied);
+			}
+			final FileCalls calls = resolve(file, entries.get(i).getValue());
+			files.put(file, calls);
+			link(calls);
+		});
+		// no task adds to the sets any more
+		for (Object key : emptied) {
+			if (key instanceof FunctionSymbol) {
+				callers.computeIfPresent((FunctionSymbol) key, (k, edges) -> edges.isEmpty() ? null : edges);
+			} else if (key instanceof ComponentSymbol) {
+				instantiations.computeIfPresent((ComponentSymbol) key, (k, edges) -> edges.isEmpty() ? null : edges);
+			} else {
+				dependents.computeIfPresent((String) key, (k, paths) -> paths.isEmpty() ? null : paths);
+			}
+		}
+	}
+	
+	private void link(FileCalls calls) {
+		for (CallEdge edge : calls.edges) {
+			if (edge.getTargetFunction() != null) {
+				callers.computeIfAbsent(edge.getTargetFunction(), k -> ConcurrentHashMap.<CallEdge> newKeySet())
+						.add(edge);
+			}
+			if (edge.getSite().getKind() == CallSite.Kind.NEW && edge.getTargetComponent() != null) {
+				instantiations.computeIfAbsent(edge.getTargetComponent(), k -> ConcurrentHashMap.<CallEdge> newKeySet())
+						.add(edge);
+			}
+		}
+		for (String name : calls.dependencies) {
+			dependents.computeIfAbsent(name, k -> ConcurrentHashMap.<Path> newKeySet()).add(calls.file);
+		}
+	}
+	
+	/**
+	 * Takes the edges of a file out of the sets, remembering the sets that may be left empty.
+	 */
+	private void unlink(FileCalls calls, Queue<Object> emptied) {
+		for (CallEdge edge : calls.edges) {
+			if (edge.getTargetFunction() != null) {
+				final Set<CallEdge> edges = callers.get(edge.getTargetFunction());
+				if (edges != null && edges.remove(edge) && edges.isEmpty()) {
+					emptied.add(edge.getTargetFunction());
+				}
+			}
+			if (edge.getSite().getKind() == CallSite.Kind.NEW && edge.getTargetComponent() != null) {
+				final Set<CallEdge> edges = instantiations.get(edge.getTargetComponent());
+				if (edges != null && edges.remove(edge) && edges.isEmpty()) {
+					emptied.add(edge.getTargetComponent());
+				}
+			}
+		}
+		for (String name : calls.dependencies) {
+			final Set<Path> paths = dependents.get(name);
+			if (paths != null && paths.remove(calls.file) && paths.isEmpty()) {
+				emptied.add(name);
+			}
+		}
+	}
+	
+	/**
+	 * Resolves the calls of a file against the index.
+	 */
+	private FileCalls resolve(Path file, List<CallSite> sites) {
+		final ComponentSymbol caller = index.getByFile(file);
+		final Set<String> dependencies = new HashSet<String>();
+		final List<CallEdge> edges = new ArrayList<CallEdge>(sites.size());
+		for (CallSite site : sites) {
+			final FunctionSymbol callerFunction = caller == null || site.getCaller() == null ? null
+					: caller.getFunction(site.getCaller());
+			if (site.getKind() == CallSite.Kind.NEW) {
+				final ComponentSymbol target = component(site.getComponentName(), caller, dependencies);
+				final ComponentSymbol declaring = target == null || site.getFunctionName() == null ? null
+						: declaring(target, site.getFunctionName(), dependencies);
+				edges.add(new CallEdge(site, caller, callerFunction, target,
+						declaring == null ? null : declaring.getFunction(site.getFunctionName())));
+				continue;
+			}
+			final String receiver = site.getReceiver();
+			ComponentSymbol start;
+			if (receiver == null || "this".equalsIgnoreCase(receiver) || "variables".equalsIgnoreCase(receiver)) {
+				start = caller;
+			} else if ("super".equalsIgnoreCase(receiver)) {
+				start = caller == null ? null : component(caller.getExtends(), caller, dependencies);
+			} else {
+				start = component(site.getComponentName(), caller, dependencies);
+			}
+			final ComponentSymbol declaring = start == null ? null
+					: declaring(start, site.getFunctionName(), dependencies);
+			edges.add(new CallEdge(site, caller, callerFunction, declaring,
+					declaring == null ? null : declaring.getFunction(site.getFunctionName())));
+		}
+		return new FileCalls(file, sites, edges, dependencies);
+	}
+	
+	private ComponentSymbol component(String name, ComponentSymbol from, Set<String> dependencies) {
+		if (name == null) {
+			return null;
+		}
+		dependencies.add(SymbolIndex.simpleKey(name));
+		return index.resolve(name, from);
+	}
+	
+	/**
+	 * Like {@link SymbolIndex#findFunction(ComponentSymbol, String)}, remembering the components looked at.
+	 *
+	 * @return the component or base component declaring the function, null if there is none
+	 */
+	private ComponentSymbol declaring(ComponentSymbol component, String name, Set<String> dependencies) {
+		final Set<ComponentSymbol> seen = new HashSet<ComponentSymbol>();
+		for (ComponentSymbol current = component; current != null && seen.add(current);) {
+			dependencies.add(SymbolIndex.simpleKey(current.getPath()));
+			if (current.getFunction(name) != null) {
+				return current;
+			}
+			current = component(current.getExtends(), current, dependencies);
+		}
+		return null;
+	}
+	
+	private static void addName(Set<String> names, ComponentSymbol component) {
+		if (component != null) {
+			names.add(SymbolIndex.simpleKey(component.getPath()));
+		}
+	}
+	
+	private static Path normalize(Path file) {
+		return file.toAbsolutePath().normalize();
+	}
+	
+	/**
+	 * Runs an action for 0 to count - 1, in parallel if there is more than one.
+	 */
+	private void forEach(int count, IntConsumer action) throws InterruptedException {
+		if (parallelism == 1 || count < 2) {
+			for (int i = 0; i < count; i++) {
+				action.accept(i);
+			}
+			return;
+		}
+		final ForkJoinPool executor = new ForkJoinPool(Math.min(parallelism, count));
+		final List<Future<?>> futures = new ArrayList<Future<?>>(count);
+		try {
+			for (int i = 0; i < count; i++) {
+				final int item = i;
+				futures.add(executor.submit(() -> action.accept(item)));
+			}
+			for (Future<?> future : futures) {
+				future.get();
+			}
+		} catch (ExecutionException e) {
+			throw new IllegalStateException(e.getCause());
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * @return the calls of a file, resolved or not, in source order; empty if the file is not in the graph
+	 */
+	public List<CallEdge> getCalls(Path file) {
+		final FileCalls calls = files.get(normalize(file));
+		return calls == null ? Collections.<CallEdge> emptyList() : calls.edges;
+	}
+	
+	/**
+	 * @param function an indexed function
+	 * @return the calls of the function, including new expressions calling it as init, ordered by file and offset
+	 */
+	public List<CallEdge> getCallers(FunctionSymbol function) {
+		return sorted(callers.get(function));
+	}
+	
+	/**
+	 * @param component an indexed component
+	 * @param functionName the name of a function it declares, in any case
+	 * @return the calls of the function, ordered by file and offset; empty if the component declares no such function
+	 */
+	public List<CallEdge> getCallers(ComponentSymbol component, String functionName) {
+		final FunctionSymbol function = component.getFunction(functionName);
+		return function == null ? Collections.<CallEdge> emptyList() : getCallers(function);
+	}
+	
+	/**
+	 * @return the new expressions and createObject calls creating a component, ordered by file and offset
+	 */
+	public List<CallEdge> getInstantiations(ComponentSymbol component) {
+		return sorted(instantiations.get(component));
+	}
+	
+	private static List<CallEdge> sorted(Set<CallEdge> edges) {
+		if (edges == null) {
+			return Collections.emptyList();
+		}
+		final List<CallEdge> list = new ArrayList<CallEdge>(edges);
+		list.sort(SOURCE_ORDER);
+		return list;
+	}
+	
+	/**
+	 * @return the calls that could not be resolved, ordered by file and offset; these include the calls of built in
+	 *         functions
+	 */
+	public List<CallEdge> getUnresolved() {
+		final List<CallEdge> unresolved = new ArrayList<CallEdge>();
+		for (FileCalls calls : files.values()) {
+			for (CallEdge edge : calls.edges) {
+				if (!edge.isResolved()) {
+					unresolved.add(edge);
+				}
+			}
+		}
+		unresolved.sort(SOURCE_ORDER);
+		return unresolved;
+	}
+	
+	/**
+	 * Finds the functions no file of the graph calls, other than themselves. Remote and public functions may still be
+	 * called from outside the project, and functions called dynamically are not seen.
+	 *
+	 * @return the uncalled functions of every indexed file, by component path
+	 */
+	public Map<ComponentSymbol, List<FunctionSymbol>> findUncalled() {
+		final List<ComponentSymbol> components = new ArrayList<ComponentSymbol>(index.getComponents());
+		components.sort(Comparator.comparing(ComponentSymbol::getPath));
+		final Map<ComponentSymbol, List<FunctionSymbol>> uncalled = new LinkedHashMap<ComponentSymbol,
+				List<FunctionSymbol>>();
+		for (ComponentSymbol component : components) {
+			final List<FunctionSymbol> functions = new ArrayList<FunctionSymbol>();
+			for (FunctionSymbol function : component.getFunctions()) {
+				if (!isCalledByOthers(function)) {
+					functions.add(function);
+				}
+			}
+			if (!functions.isEmpty()) {
+				uncalled.put(component, functions);
+			}
+		}
+		return uncalled;
+	}
+	
+	private boolean isCalledByOthers(FunctionSymbol function) {
+		final Set<CallEdge> edges = callers.get(function);
+		if (edges != null) {
+			for (CallEdge edge : edges) {
+				if (edge.getCallerFunction() != function) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+	
+	/**
+	 * Finds what a change of a function may affect: its calls, the calls of the functions making them, and so on.
+	 *
+	 * @return the calls reaching the function directly or through other functions, nearest first
+	 */
+	public List<CallEdge> findImpact(FunctionSymbol function) {
+		final List<CallEdge> impact = new ArrayList<CallEdge>();
+		final Set<FunctionSymbol> seen = new HashSet<FunctionSymbol>();
+		final Deque<FunctionSymbol> queue = new ArrayDeque<FunctionSymbol>();
+		seen.add(function);
+		queue.add(function);
+		while (!queue.isEmpty()) {
+			for (CallEdge edge : getCallers(queue.poll())) {
+				impact.add(edge);
+				final FunctionSymbol caller = edge.getCallerFunction();
+				if (caller != null && seen.add(caller)) {
+					queue.add(caller);
+				}
+			}
+		}
+		return impact;
+	}
+	
+	@Override
+	public String toString() {
+		return "CallGraph " + index.getRoot() + " files:" + size();
+	}
+	
+	/**
+	 * The calls of a file, as collected and as resolved.
+	 */
+	private static final class FileCalls {
+		
+		final Path file;
+		final List<CallSite> sites;
+		final List<CallEdge> edges;
+		/** the lower case names of the components the calls were resolved against */
+		final Set<String> dependencies;
+		
+		FileCalls(Path file, List<CallSite> sites, List<CallEdge> edges, Set<String> dependencies) {
+			this.file = file;
+			this.sites = sites;
+			this.edges = Collections.unmodifiableList(edges);
+			this.dependencies = dependencies;
+		}
+	}
+}
@@ -0,0 +1,111 @@
+package cfml.parsing.index;
+
+import java.nio.file.Path;
+
+/**
+ * A call or component instantiation found in a source file, as written: what is called and, where the file tells, the
+ * component it is called on. Call sites depend on their file only; {@link CallGraph} resolves them against a
+ * {@link SymbolIndex} into {@link CallEdge}s.
+ */
+public class CallSite {
+	
+	public enum Kind {
+		/** a function call, qualified or not */
+		CALL,
+		/** new a.b.C() or createObject("component", "a.b.C") */
+		NEW
+	}
+	
+	private final Kind kind;
+	private final Path file;
+	private final String caller;
+	private final String receiver;
+	private final String componentName;
+	private final String functionName;
+	private final int line;
+	private final int offset;
+	
+	/**
+	 * @param kind call or instantiation
+	 * @param file the file of the call
+	 * @param caller the name of the function the call is in, null for code outside of functions
+	 * @param receiver what a function is called on, as written, e.g. variables.dao, this or super; null for an
+	 *            unqualified call and for an instantiation
+	 * @param componentName the component called or instantiated, as written, if the file tells; else null
+	 * @param functionName the called function; for an instantiation init for new, null for createObject
+	 * @param line the line of the call
+	 * @param offset the offset of the call in the file
+	 */
+	public CallSite(Kind kind, Path file, String caller, String receiver, String componentName, String functionName,
+			int line, int offset) {
+		this.kind = kind;
+		this.file = file;
+		this.caller = caller;
+		this.receiver = receiver;
+		this.componentName = componentName;
+		this.functionName = functionName;
+		this.line = line;
+		this.offset = offset;
+	}
+	
+	public Kind getKind() {
+		return kind;
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+	/**
+	 * @return the name of the function the call is in, null for code outside of functions
+	 */
+	public String getCaller() {
+		return caller;
+	}
+	
+	/**
+	 * @return what the function is called on, as written; null for an unqualified call and an instantiation
+	 */
+	public String getReceiver() {
+		return receiver;
+	}
+	
+	/**
+	 * @return the component called or instantiated, as written or as assigned to the receiver; null if unknown
+	 */
+	public String getComponentName() {
+		return componentName;
+	}
+	
+	/**
+	 * @return the called function; for an instantiation, init for new and null for createObject, which does not call
+	 *         it
+	 */
+	public String getFunctionName() {
+		return functionName;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	@Override
+	public String toString() {
+		if (kind == Kind.NEW) {
+			return "new " + componentName + " line:" + line;
+		}
+		final StringBuilder sb = new StringBuilder();
+		if (receiver != null) {
+			sb.append(receiver);
+			if (componentName != null) {
+				sb.append(':').append(componentName);
+			}
+			sb.append('.');
+		}
+		return sb.append(functionName).append("() line:").append(line).toString();
+	}
+}
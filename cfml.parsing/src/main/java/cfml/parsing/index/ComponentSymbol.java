@@ -0,0 +1,141 @@
+package cfml.parsing.index;
+
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The symbols declared by one source file in a {@link SymbolIndex}: a component or interface with its functions and
+ * properties, or a template with the functions it declares.
+ *
+ * The size and modification time of the file when it was indexed tell whether it has to be indexed again.
+ */
+public class ComponentSymbol {
+	
+	private final String path;
+	private final Path file;
+	private final boolean isInterface;
+	private final String extendsName;
+	private final List<String> implementsNames;
+	private final int line;
+	private final int offset;
+	private final long lastModified;
+	private final long size;
+	private final List<FunctionSymbol> functions;
+	private final List<PropertySymbol> properties;
+	private final Map<String, FunctionSymbol> functionsByName;
+	
+	/**
+	 * @param path the component path, see {@link SymbolIndex#componentPath(Path, Path)}
+	 * @param file the source file
+	 * @param isInterface true for an interface
+	 * @param extendsName the extends attribute, or null
+	 * @param implementsNames the components named by the implements attribute
+	 * @param line the line of the component declaration, 0 if there is none
+	 * @param offset the offset of the component declaration, 0 if there is none
+	 * @param lastModified the modification time of the file when it was indexed, in milliseconds
+	 * @param size the size of the file when it was indexed
+	 * @param functions the functions, in declaration order
+	 * @param properties the properties, in declaration order
+	 */
+	public ComponentSymbol(String path, Path file, boolean isInterface, String extendsName,
+			List<String> implementsNames, int line, int offset, long lastModified, long size,
+			List<FunctionSymbol> functions, List<PropertySymbol> properties) {
+		this.path = path;
+		this.file = file;
+		this.isInterface = isInterface;
+		this.extendsName = extendsName;
+		this.implementsNames = Collections.unmodifiableList(implementsNames);
+		this.line = line;
+		this.offset = offset;
+		this.lastModified = lastModified;
+		this.size = size;
+		this.functions = Collections.unmodifiableList(functions);
+		this.properties = Collections.unmodifiableList(properties);
+		functionsByName = new HashMap<String, FunctionSymbol>(functions.size() * 2);
+		for (FunctionSymbol function : functions) {
+			// a duplicate declaration is an error in the engines, the first one is kept
+			functionsByName.putIfAbsent(key(function.getName()), function);
+		}
+	}
+	
+	static String key(String name) {
+		return name.toLowerCase(Locale.ROOT);
+	}
+	
+	/**
+	 * @return the dotted path of a component, or the path of a template relative to the indexed directory
+	 */
+	public String getPath() {
+		return path;
+	}
+	
+	/**
+	 * @return the last part of the path
+	 */
+	public String getName() {
+		return path.substring(path.lastIndexOf('.') + 1);
+	}
+	
+	public Path getFile() {
+		return file;
+	}
+	
+	public boolean isInterface() {
+		return isInterface;
+	}
+	
+	/**
+	 * @return the component named by the extends attribute, as written, or null
+	 */
+	public String getExtends() {
+		return extendsName;
+	}
+	
+	/**
+	 * @return the components named by the implements attribute, as written
+	 */
+	public List<String> getImplements() {
+		return implementsNames;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	public long getLastModified() {
+		return lastModified;
+	}
+	
+	public long getSize() {
+		return size;
+	}
+	
+	public List<FunctionSymbol> getFunctions() {
+		return functions;
+	}
+	
+	/**
+	 * @param name the name of a function, in any case
+	 * @return the function declared here with that name, or null
+	 */
+	public FunctionSymbol getFunction(String name) {
+		return functionsByName.get(key(name));
+	}
+	
+	public List<PropertySymbol> getProperties() {
+		return properties;
+	}
+	
+	@Override
+	public String toString() {
+		return path + " functions:" + functions.size() + " properties:" + properties.size();
+	}
+}
@@ -0,0 +1,123 @@
+package cfml.parsing.index;
+
+import java.util.Collections;
+import java.util.List;
+
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+
+/**
+ * A function of a component in a {@link SymbolIndex}.
+ */
+public class FunctionSymbol {
+	
+	/** modifier flags, see {@link #getModifiers()} */
+	public static final int STATIC = 1;
+	public static final int FINAL = 2;
+	public static final int ABSTRACT = 4;
+	
+	private final String name;
+	private final byte access;
+	private final String returnType;
+	private final int modifiers;
+	private final int line;
+	private final int offset;
+	private final List<ParameterSymbol> parameters;
+	
+	/**
+	 * @param name the name of the function
+	 * @param access one of the ACCESS constants of {@link UserDefinedFunction}
+	 * @param returnType the declared return type, or null
+	 * @param modifiers the {@link #STATIC}, {@link #FINAL} and {@link #ABSTRACT} flags
+	 * @param line the line of the declaration
+	 * @param offset the offset of the declaration in the file
+	 * @param parameters the parameters, in declaration order
+	 */
+	public FunctionSymbol(String name, byte access, String returnType, int modifiers, int line, int offset,
+			List<ParameterSymbol> parameters) {
+		this.name = name;
+		this.access = access;
+		this.returnType = returnType;
+		this.modifiers = modifiers;
+		this.line = line;
+		this.offset = offset;
+		this.parameters = Collections.unmodifiableList(parameters);
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return one of the ACCESS constants of {@link UserDefinedFunction}
+	 */
+	public byte getAccess() {
+		return access;
+	}
+	
+	/**
+	 * @return the access as written in source: private, package, public or remote
+	 */
+	public String getAccessName() {
+		switch (access) {
+		case UserDefinedFunction.ACCESS_PRIVATE:
+			return "private";
+		case UserDefinedFunction.ACCESS_PACKAGE:
+			return "package";
+		case UserDefinedFunction.ACCESS_REMOTE:
+			return "remote";
+		default:
+			return "public";
+		}
+	}
+	
+	/**
+	 * @return the declared return type, or null if there is none
+	 */
+	public String getReturnType() {
+		return returnType;
+	}
+	
+	public int getModifiers() {
+		return modifiers;
+	}
+	
+	public boolean isStatic() {
+		return (modifiers & STATIC) != 0;
+	}
+	
+	public boolean isFinal() {
+		return (modifiers & FINAL) != 0;
+	}
+	
+	public boolean isAbstract() {
+		return (modifiers & ABSTRACT) != 0;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	public List<ParameterSymbol> getParameters() {
+		return parameters;
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder(getAccessName());
+		if (returnType != null) {
+			sb.append(' ').append(returnType);
+		}
+		sb.append(' ').append(name).append('(');
+		for (int i = 0; i < parameters.size(); i++) {
+			if (i > 0) {
+				sb.append(", ");
+			}
+			sb.append(parameters.get(i));
+		}
+		return sb.append(')').toString();
+	}
+}
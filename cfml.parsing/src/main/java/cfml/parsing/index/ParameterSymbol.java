@@ -0,0 +1,70 @@
+package cfml.parsing.index;
+
+/**
+ * A parameter of a function in a {@link SymbolIndex}.
+ */
+public class ParameterSymbol {
+	
+	private final String name;
+	private final String type;
+	private final boolean required;
+	private final String defaultValue;
+	private final int offset;
+	
+	/**
+	 * @param name the name of the parameter
+	 * @param type the declared type, or null
+	 * @param required true if the parameter is required
+	 * @param defaultValue the source of the default value, or null
+	 * @param offset the offset of the name in the file
+	 */
+	public ParameterSymbol(String name, String type, boolean required, String defaultValue, int offset) {
+		this.name = name;
+		this.type = type;
+		this.required = required;
+		this.defaultValue = defaultValue;
+		this.offset = offset;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the declared type, or null if the parameter is not typed
+	 */
+	public String getType() {
+		return type;
+	}
+	
+	public boolean isRequired() {
+		return required;
+	}
+	
+	/**
+	 * @return the source of the default value, or null if there is none
+	 */
+	public String getDefaultValue() {
+		return defaultValue;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder sb = new StringBuilder();
+		if (required) {
+			sb.append("required ");
+		}
+		if (type != null) {
+			sb.append(type).append(' ');
+		}
+		sb.append(name);
+		if (defaultValue != null) {
+			sb.append('=').append(defaultValue);
+		}
+		return sb.toString();
+	}
+}
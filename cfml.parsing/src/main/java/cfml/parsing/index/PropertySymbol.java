@@ -0,0 +1,49 @@
+package cfml.parsing.index;
+
+/**
+ * A property of a component in a {@link SymbolIndex}.
+ */
+public class PropertySymbol {
+	
+	private final String name;
+	private final String type;
+	private final int line;
+	private final int offset;
+	
+	/**
+	 * @param name the name of the property
+	 * @param type the declared type, or null
+	 * @param line the line of the declaration
+	 * @param offset the offset of the declaration in the file
+	 */
+	public PropertySymbol(String name, String type, int line, int offset) {
+		this.name = name;
+		this.type = type;
+		this.line = line;
+		this.offset = offset;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	/**
+	 * @return the declared type, or null if the property is not typed
+	 */
+	public String getType() {
+		return type;
+	}
+	
+	public int getLine() {
+		return line;
+	}
+	
+	public int getOffset() {
+		return offset;
+	}
+	
+	@Override
+	public String toString() {
+		return type == null ? name : type + " " + name;
+	}
+}
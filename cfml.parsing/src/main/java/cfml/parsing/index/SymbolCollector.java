@@ -0,0 +1,139 @@
+package cfml.parsing.index;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFInterfaceDeclStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+/**
+ * Collects the symbols of a file from its script trees. Only the statements outside of functions are visited: the
+ * body of a function and all expressions are skipped, so indexing costs a fraction of a full walk.
+ */
+class SymbolCollector extends CFScriptTreeVisitor {
+	
+	private final List<FunctionSymbol> functions = new ArrayList<FunctionSymbol>();
+	private final List<PropertySymbol> properties = new ArrayList<PropertySymbol>();
+	private CFCompDeclStatement component;
+	
+	/**
+	 * @return the symbols of the file
+	 */
+	static ComponentSymbol collect(String path, Path file, List<CFScriptStatement> scripts, long lastModified,
+			long size) {
+		final SymbolCollector collector = new SymbolCollector();
+		final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+		for (CFScriptStatement script : scripts) {
+			if (script != null) {
+				walker.walk(script, collector);
+			}
+		}
+		return collector.toSymbol(path, file, lastModified, size);
+	}
+	
+	private ComponentSymbol toSymbol(String path, Path file, long lastModified, long size) {
+		if (component == null) {
+			return new ComponentSymbol(path, file, false, null, Collections.<String> emptyList(), 0, 0, lastModified,
+					size, functions, properties);
+		}
+		String extendsName = null;
+		final List<String> implementsNames = new ArrayList<String>();
+		for (Map.Entry<CFExpression, CFExpression> attribute : component.getAttributes().entrySet()) {
+			final String name = text(attribute.getKey());
+			if ("extends".equalsIgnoreCase(name)) {
+				extendsName = text(attribute.getValue());
+			} else if ("implements".equalsIgnoreCase(name) && attribute.getValue() != null) {
+				for (String implemented : text(attribute.getValue()).split(",")) {
+					if (!implemented.trim().isEmpty()) {
+						implementsNames.add(implemented.trim());
+					}
+				}
+			}
+		}
+		return new ComponentSymbol(path, file, component instanceof CFInterfaceDeclStatement, extendsName,
+				implementsNames, component.getLine(), component.getOffset(), lastModified, size, functions, properties);
+	}
+	
+	@Override
+	public Action enterStatement(CFScriptStatement statement) {
+		if (statement instanceof CFFuncDeclStatement) {
+			addFunction((CFFuncDeclStatement) statement);
+			return Action.SKIP_CHILDREN;
+		}
+		if (statement instanceof CFPropertyStatement) {
+			addProperty((CFPropertyStatement) statement);
+			return Action.SKIP_CHILDREN;
+		}
+		if (statement instanceof CFCompDeclStatement && component == null) {
+			component = (CFCompDeclStatement) statement;
+		}
+		return Action.CONTINUE;
+	}
+	
+	@Override
+	public Action enterExpression(CFExpression expression) {
+		return Action.SKIP_CHILDREN;
+	}
+	
+	private void addFunction(CFFuncDeclStatement function) {
+		if (function.getName() == null) {
+			return;
+		}
+		final List<ParameterSymbol> parameters = new ArrayList<ParameterSymbol>(function.getFormals().size());
+		for (CFFunctionParameter formal : function.getFormals()) {
+			parameters.add(new ParameterSymbol(formal.getName(), formal.getType(), formal.isRequired(),
+					formal.isDefaulted() ? formal.getDefaultExpression().Decompile(0) : null, formal.getOffset()));
+		}
+		final int modifiers = (function.isStatic() ? FunctionSymbol.STATIC : 0)
+				| (function.isFinal() ? FunctionSymbol.FINAL : 0) | (function.isAbstract() ? FunctionSymbol.ABSTRACT : 0);
+		functions.add(new FunctionSymbol(function.getName().getName(), function.getAccess(),
+				text(function.getReturnType()), modifiers, function.getLine(), function.getOffset(), parameters));
+	}
+	
+	private void addProperty(CFPropertyStatement property) {
+		String name = text(property.getPropertyName());
+		String type = text(property.getPropertyType());
+		for (Map.Entry<CFIdentifier, CFExpression> attribute : property.getAttributes().entrySet()) {
+			final String key = attribute.getKey().getName();
+			if (name == null && "name".equalsIgnoreCase(key)) {
+				name = text(attribute.getValue());
+			} else if (type == null && "type".equalsIgnoreCase(key)) {
+				type = text(attribute.getValue());
+			}
+		}
+		if (name != null) {
+			properties.add(new PropertySymbol(name, type, property.getLine(), property.getOffset()));
+		}
+	}
+	
+	/**
+	 * @return the value of a string literal without its quotes, the source of anything else, null for null
+	 */
+	static String text(CFExpression expression) {
+		if (expression == null) {
+			return null;
+		}
+		if (expression instanceof CFLiteral && ((CFLiteral) expression).getKind() == CFSCRIPTLexer.STRING_LITERAL) {
+			final String value = ((CFLiteral) expression).getVal();
+			if (value != null && value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+					&& value.charAt(value.length() - 1) == value.charAt(0)) {
+				return value.substring(1, value.length() - 1);
+			}
+			return value;
+		}
+		return expression.Decompile(0);
+	}
+}
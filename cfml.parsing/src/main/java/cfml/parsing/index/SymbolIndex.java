@@ -0,0 +1,364 @@
+package cfml.parsing.index;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import cfml.parsing.CFMLProjectParser;
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ProjectParseResult;
+
+/**
+ * The components, functions and properties declared in a source tree, so go-to-definition, usage searches and API
+ * reports do not have to parse the project again.
+ *
+ * Symbols are collected from the script trees of {@link CFMLProjectParser} results and kept per file, together with
+ * the size and modification time of the file; {@link #refresh(CFMLProjectParser)} parses only the files that changed
+ * since and drops the deleted ones. Lookups by component path or name, file and function name are hash lookups on
+ * concurrent maps and may run while the index is updated; updates are serialized. {@link #write(Path)} stores the
+ * index in a compact binary file that {@link #read(Path)} loads without parsing anything.
+ *
+ * Names are matched ignoring case, as in CFML.
+ */
+public class SymbolIndex {
+	
+	private final Path root;
+	private final Map<String, ComponentSymbol> components = new ConcurrentHashMap<String, ComponentSymbol>();
+	private final Map<Path, ComponentSymbol> files = new ConcurrentHashMap<Path, ComponentSymbol>();
+	/** function name to the components declaring it; the lists are replaced, never changed */
+	private final Map<String, List<ComponentSymbol>> declaring = new ConcurrentHashMap<String, List<ComponentSymbol>>();
+	/** last part of the path, in lower case, to the components with that path; the lists are replaced, never changed */
+	private final Map<String, List<ComponentSymbol>> named = new ConcurrentHashMap<String, List<ComponentSymbol>>();
+	
+	/**
+	 * @param root the directory component paths are relative to
+	 */
+	public SymbolIndex(Path root) {
+		this.root = root.toAbsolutePath().normalize();
+	}
+	
+	/**
+	 * Indexes the files of a project.
+	 *
+	 * @param project the parsed project
+	 * @return the index of the project root
+	 */
+	public static SymbolIndex of(ProjectParseResult project) {
+		final SymbolIndex index = new SymbolIndex(project.getRoot());
+		for (FileParseResult result : project.getResults()) {
+			index.update(result);
+		}
+		return index;
+	}
+	
+	public Path getRoot() {
+		return root;
+	}
+	
+	/**
+	 * @param root the indexed directory
+	 * @param file a file below it
+	 * @return the dotted path of a .cfc file, as in createObject("component", "a.b.C"); the path of any other file
+	 *         relative to the root, with / as separator
+	 */
+	public static String componentPath(Path root, Path file) {
+		final Path absolute = file.toAbsolutePath().normalize();
+		final Path base = root.toAbsolutePath().normalize();
+		final Path relative = absolute.startsWith(base) ? base.relativize(absolute) : absolute.getFileName();
+		final String name = relative.getFileName().toString();
+		final boolean isComponent = name.toLowerCase().endsWith(".cfc");
+		final StringBuilder sb = new StringBuilder();
+		for (int i = 0; i < relative.getNameCount() - 1; i++) {
+			sb.append(relative.getName(i)).append(isComponent ? '.' : '/');
+		}
+		return sb.append(isComponent ? name.substring(0, name.length() - 4) : name).toString();
+	}
+	
+	/**
+	 * @param path a component path, in any case
+	 * @return the symbols of the component, or null if it is not indexed
+	 */
+	public ComponentSymbol get(String path) {
+		return components.get(ComponentSymbol.key(path));
+	}
+	
+	/**
+	 * @return the symbols of the file, or null if it is not indexed
+	 */
+	public ComponentSymbol getByFile(Path file) {
+		return files.get(file.toAbsolutePath().normalize());
+	}
+	
+	/**
+	 * @return the indexed files, in no particular order
+	 */
+	public Collection<ComponentSymbol> getComponents() {
+		return Collections.unmodifiableCollection(files.values());
+	}
+	
+	/**
+	 * @return the number of indexed files
+	 */
+	public int size() {
+		return files.size();
+	}
+	
+	/**
+	 * @param functionName the name of a function, in any case
+	 * @return the components and templates declaring a function of that name
+	 */
+	public List<ComponentSymbol> findDeclaring(String functionName) {
+		final List<ComponentSymbol> found = declaring.get(ComponentSymbol.key(functionName));
+		return found == null ? Collections.<ComponentSymbol> emptyList() : found;
+	}
+	
+	/**
+	 * Finds the component a name refers to: the component with that path, else the one of that name in the package of
+	 * the referring component, else the only component with that name.
+	 *
+	 * @param name a component name or path, as in an extends attribute or a createObject call
+	 * @param from the component the name is used in, or null
+	 * @return the component, or null if there is none or several could be meant
+	 */
+	public ComponentSymbol resolve(String name, ComponentSymbol from) {
+		ComponentSymbol found = get(name);
+		if (found != null) {
+			return found;
+		}
+		if (from != null) {
+			final String path = from.getPath();
+			final int dot = path.lastIndexOf('.');
+			if (dot > 0) {
+				found = get(path.substring(0, dot + 1) + name);
+				if (found != null) {
+					return found;
+				}
+			}
+		}
+		final List<ComponentSymbol> candidates = named.get(simpleKey(name));
+		if (candidates == null) {
+			return null;
+		}
+		final String suffix = "." + ComponentSymbol.key(name);
+		for (ComponentSymbol component : candidates) {
+			if (ComponentSymbol.key(component.getPath()).endsWith(suffix)) {
+				if (found != null) {
+					return null;
+				}
+				found = component;
+			}
+		}
+		return found;
+	}
+	
+	/**
+	 * Finds a function of a component or of the components it extends.
+	 *
+	 * @param component the component
+	 * @param name the name of the function, in any case
+	 * @return the function, or null if neither the component nor an indexed base component declares it
+	 */
+	public FunctionSymbol findFunction(ComponentSymbol component, String name) {
+		final Set<ComponentSymbol> seen = new HashSet<ComponentSymbol>();
+		for (ComponentSymbol current = component; current != null && seen.add(current);) {
+			final FunctionSymbol function = current.getFunction(name);
+			if (function != null) {
+				return function;
+			}
+			current = current.getExtends() == null ? null : resolve(current.getExtends(), current);
+		}
+		return null;
+	}
+	
+	/**
+	 * Indexes a parsed file, replacing what was indexed for it. The size and modification time are read from the file
+	 * now.
+	 *
+	 * @param result the parsed file
+	 * @return the symbols of the file
+	 */
+	public ComponentSymbol update(FileParseResult result) {
+		final Path file = result.getPath().toAbsolutePath().normalize();
+		final long[] stamp = stamp(file);
+		return put(SymbolCollector.collect(componentPath(root, file), file, result.getScripts(), stamp[0], stamp[1]));
+	}
+	
+	/**
+	 * Adds the symbols of a file, replacing what was indexed for the file or under the same path.
+	 *
+	 * @param component the symbols
+	 * @return the symbols
+	 */
+	public synchronized ComponentSymbol put(ComponentSymbol component) {
+		final Path file = component.getFile().toAbsolutePath().normalize();
+		remove(file);
+		final ComponentSymbol replaced = components.get(ComponentSymbol.key(component.getPath()));
+		if (replaced != null) {
+			remove(replaced.getFile());
+		}
+		files.put(file, component);
+		components.put(ComponentSymbol.key(component.getPath()), component);
+		add(named, simpleKey(component.getPath()), component);
+		for (FunctionSymbol function : component.getFunctions()) {
+			if (component.getFunction(function.getName()) == function) {
+				add(declaring, ComponentSymbol.key(function.getName()), component);
+			}
+		}
+		return component;
+	}
+	
+	private static void add(Map<String, List<ComponentSymbol>> lists, String key, ComponentSymbol component) {
+		final List<ComponentSymbol> old = lists.get(key);
+		final List<ComponentSymbol> updated = new ArrayList<ComponentSymbol>(old == null ? 1 : old.size() + 1);
+		if (old != null) {
+			updated.addAll(old);
+		}
+		updated.add(component);
+		lists.put(key, Collections.unmodifiableList(updated));
+	}
+	
+	private static void remove(Map<String, List<ComponentSymbol>> lists, String key, ComponentSymbol component) {
+		final List<ComponentSymbol> old = lists.get(key);
+		if (old != null && old.contains(component)) {
+			final List<ComponentSymbol> updated = new ArrayList<ComponentSymbol>(old);
+			updated.remove(component);
+			if (updated.isEmpty()) {
+				lists.remove(key);
+			} else {
+				lists.put(key, Collections.unmodifiableList(updated));
+			}
+		}
+	}
+	
+	/**
+	 * @param name a component name or path
+	 * @return its last part in lower case, which {@link #resolve(String, ComponentSymbol)} finds components by
+	 */
+	static String simpleKey(String name) {
+		return ComponentSymbol.key(name.substring(name.lastIndexOf('.') + 1));
+	}
+	
+	/**
+	 * Drops the symbols of a file.
+	 *
+	 * @return true if the file was indexed
+	 */
+	public synchronized boolean remove(Path file) {
+		final ComponentSymbol component = files.remove(file.toAbsolutePath().normalize());
+		if (component == null) {
+			return false;
+		}
+		components.remove(ComponentSymbol.key(component.getPath()), component);
+		remove(named, simpleKey(component.getPath()), component);
+		for (FunctionSymbol function : component.getFunctions()) {
+			remove(declaring, ComponentSymbol.key(function.getName()), component);
+		}
+		return true;
+	}
+	
+	/**
+	 * Brings the index up to date with the files below the root: parses the new files and those whose size or
+	 * modification time changed, and drops the files that are gone.
+	 *
+	 * @param parser the parser for the changed files
+	 * @return the number of files indexed again or dropped
+	 * @throws IOException if the directory can not be walked, or the calling thread is interrupted
+	 */
+	public int refresh(CFMLProjectParser parser) throws IOException {
+		final Set<Path> present = new HashSet<Path>();
+		final List<Path> changed = new ArrayList<Path>();
+		final Map<Path, long[]> stamps = new HashMap<Path, long[]>();
+		for (Path source : CFMLProjectParser.findSources(root)) {
+			final Path file = source.toAbsolutePath().normalize();
+			present.add(file);
+			final long[] stamp = stamp(file);
+			final ComponentSymbol known = files.get(file);
+			if (known == null || known.getLastModified() != stamp[0] || known.getSize() != stamp[1]) {
+				changed.add(file);
+				// taken before parsing, so a change while parsing is seen by the next refresh
+				stamps.put(file, stamp);
+			}
+		}
+		int updated = 0;
+		for (Path file : new ArrayList<Path>(files.keySet())) {
+			if (!present.contains(file) && remove(file)) {
+				updated++;
+			}
+		}
+		for (FileParseResult result : parser.parse(changed)) {
+			final Path file = result.getPath();
+			final long[] stamp = stamps.get(file);
+			put(SymbolCollector.collect(componentPath(root, file), file, result.getScripts(), stamp[0], stamp[1]));
+			updated++;
+		}
+		return updated;
+	}
+	
+	/**
+	 * @return the modification time and size of a file, -1 for a file that can not be read
+	 */
+	private static long[] stamp(Path file) {
+		try {
+			return new long[] { Files.getLastModifiedTime(file).toMillis(), Files.size(file) };
+		} catch (IOException e) {
+			return new long[] { -1, -1 };
+		}
+	}
+	
+	/**
+	 * Stores the index in a file, written to a temporary file and moved into place.
+	 *
+	 * @param file where to store the index
+	 * @throws IOException if the file can not be written
+	 */
+	public void write(Path file) throws IOException {
+		final Path directory = file.toAbsolutePath().getParent();
+		Files.createDirectories(directory);
+		final Path temp = Files.createTempFile(directory, file.getFileName().toString(), ".tmp");
+		try {
+			try (OutputStream out = Files.newOutputStream(temp)) {
+				SymbolIndexFormat.write(this, out);
+			}
+			try {
+				Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+			}
+		} finally {
+			Files.deleteIfExists(temp);
+		}
+	}
+	
+	/**
+	 * Loads an index stored by {@link #write(Path)}.
+	 *
+	 * @param file the stored index
+	 * @return the index
+	 * @throws NoSuchFileException if there is no such file
+	 * @throws IOException if the file can not be read, is corrupt or was written in another format version
+	 */
+	public static SymbolIndex read(Path file) throws IOException {
+		try (InputStream in = Files.newInputStream(file)) {
+			return SymbolIndexFormat.read(in);
+		}
+	}
+	
+	@Override
+	public String toString() {
+		return "SymbolIndex " + root + " files:" + size();
+	}
+}
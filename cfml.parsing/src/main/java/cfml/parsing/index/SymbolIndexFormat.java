@@ -0,0 +1,285 @@
+package cfml.parsing.index;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The binary file format of a {@link SymbolIndex}. Every string (names, types, paths) is stored once in a table and
+ * referenced by index, and all numbers are varints, so an index takes a few bytes per symbol. Files are stored relative
+ * to the root of the index.
+ */
+final class SymbolIndexFormat {
+	
+	/** version of the format, files of another version are rejected */
+	static final int FORMAT_VERSION = 1;
+	
+	private static final int MAGIC = 0x43465349;
+	
+	private SymbolIndexFormat() {
+	}
+	
+	static void write(SymbolIndex index, OutputStream out) throws IOException {
+		final Encoder body = new Encoder(new ByteArrayOutputStream(64 * 1024));
+		final Map<String, Integer> strings = new HashMap<String, Integer>();
+		final List<String> table = new ArrayList<String>();
+		// a snapshot, the index may be updated meanwhile
+		final List<ComponentSymbol> components = new ArrayList<ComponentSymbol>(index.getComponents());
+		body.writeVarint(components.size());
+		for (ComponentSymbol component : components) {
+			body.writeString(component.getPath(), strings, table);
+			body.writeString(relative(index.getRoot(), component.getFile()), strings, table);
+			body.writeVarint(component.isInterface() ? 1 : 0);
+			body.writeString(component.getExtends(), strings, table);
+			body.writeVarint(component.getImplements().size());
+			for (String implemented : component.getImplements()) {
+				body.writeString(implemented, strings, table);
+			}
+			body.writeInt(component.getLine());
+			body.writeInt(component.getOffset());
+			body.writeLong(component.getLastModified());
+			body.writeLong(component.getSize());
+			body.writeVarint(component.getProperties().size());
+			for (PropertySymbol property : component.getProperties()) {
+				body.writeString(property.getName(), strings, table);
+				body.writeString(property.getType(), strings, table);
+				body.writeInt(property.getLine());
+				body.writeInt(property.getOffset());
+			}
+			body.writeVarint(component.getFunctions().size());
+			for (FunctionSymbol function : component.getFunctions()) {
+				body.writeString(function.getName(), strings, table);
+				body.writeVarint(function.getAccess());
+				body.writeString(function.getReturnType(), strings, table);
+				body.writeVarint(function.getModifiers());
+				body.writeInt(function.getLine());
+				body.writeInt(function.getOffset());
+				body.writeVarint(function.getParameters().size());
+				for (ParameterSymbol parameter : function.getParameters()) {
+					body.writeString(parameter.getName(), strings, table);
+					body.writeString(parameter.getType(), strings, table);
+					body.writeVarint(parameter.isRequired() ? 1 : 0);
+					body.writeString(parameter.getDefaultValue(), strings, table);
+					body.writeInt(parameter.getOffset());
+				}
+			}
+		}
+		final BufferedOutputStream buffered = new BufferedOutputStream(out);
+		final Encoder header = new Encoder(buffered);
+		header.writeVarint(MAGIC);
+		header.writeVarint(FORMAT_VERSION);
+		header.writeUTF(index.getRoot().toString());
+		header.writeVarint(table.size());
+		for (String string : table) {
+			header.writeUTF(string);
+		}
+		((ByteArrayOutputStream) body.out).writeTo(buffered);
+		buffered.flush();
+	}
+	
+	static SymbolIndex read(InputStream in) throws IOException {
+		final Decoder decoder = new Decoder(new BufferedInputStream(in));
+		if (decoder.readVarint() != MAGIC) {
+			throw new IOException("Not a symbol index");
+		}
+		final int version = decoder.readVarint();
+		if (version != FORMAT_VERSION) {
+			throw new IOException("Symbol index format " + version + " is not supported, expected " + FORMAT_VERSION);
+		}
+		final SymbolIndex index = new SymbolIndex(Paths.get(decoder.readUTF()));
+		final String[] table = new String[decoder.readCount()];
+		for (int i = 0; i < table.length; i++) {
+			table[i] = decoder.readUTF();
+		}
+		final int count = decoder.readCount();
+		for (int c = 0; c < count; c++) {
+			final String path = decoder.readString(table);
+			final Path file = index.getRoot().resolve(decoder.readString(table));
+			final boolean isInterface = decoder.readVarint() != 0;
+			final String extendsName = decoder.readString(table);
+			final List<String> implementsNames = new ArrayList<String>();
+			for (int i = decoder.readCount(); i > 0; i--) {
+				implementsNames.add(decoder.readString(table));
+			}
+			final int line = decoder.readInt();
+			final int offset = decoder.readInt();
+			final long lastModified = decoder.readLong();
+			final long size = decoder.readLong();
+			final int propertyCount = decoder.readCount();
+			final List<PropertySymbol> properties = new ArrayList<PropertySymbol>(propertyCount);
+			for (int p = 0; p < propertyCount; p++) {
+				properties.add(new PropertySymbol(decoder.readString(table), decoder.readString(table), decoder.readInt(),
+						decoder.readInt()));
+			}
+			final int functionCount = decoder.readCount();
+			final List<FunctionSymbol> functions = new ArrayList<FunctionSymbol>(functionCount);
+			for (int f = 0; f < functionCount; f++) {
+				final String name = decoder.readString(table);
+				final byte access = (byte) decoder.readVarint();
+				final String returnType = decoder.readString(table);
+				final int modifiers = decoder.readVarint();
+				final int functionLine = decoder.readInt();
+				final int functionOffset = decoder.readInt();
+				final int parameterCount = decoder.readCount();
+				final List<ParameterSymbol> parameters = new ArrayList<ParameterSymbol>(parameterCount);
+				for (int p = 0; p < parameterCount; p++) {
+					parameters.add(new ParameterSymbol(decoder.readString(table), decoder.readString(table),
+							decoder.readVarint() != 0, decoder.readString(table), decoder.readInt()));
+				}
+				functions.add(new FunctionSymbol(name, access, returnType, modifiers, functionLine, functionOffset,
+						parameters));
+			}
+			index.put(new ComponentSymbol(path, file, isInterface, extendsName, implementsNames, line, offset,
+					lastModified, size, functions, properties));
+		}
+		return index;
+	}
+	
+	private static String relative(Path root, Path file) {
+		final Path absolute = file.toAbsolutePath().normalize();
+		final Path relative = absolute.startsWith(root) ? root.relativize(absolute) : absolute;
+		return relative.toString().replace('\\', '/');
+	}
+	
+	private static final class Encoder {
+		
+		final OutputStream out;
+		
+		Encoder(OutputStream out) {
+			this.out = out;
+		}
+		
+		/**
+		 * Writes a reference into the string table, 0 for null.
+		 */
+		void writeString(String value, Map<String, Integer> strings, List<String> table) throws IOException {
+			if (value == null) {
+				writeVarint(0);
+				return;
+			}
+			Integer ref = strings.get(value);
+			if (ref == null) {
+				table.add(value);
+				ref = table.size();
+				strings.put(value, ref);
+			}
+			writeVarint(ref);
+		}
+		
+		void writeUTF(String value) throws IOException {
+			final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+			writeVarint(bytes.length);
+			out.write(bytes);
+		}
+		
+		/**
+		 * Writes a signed number, zigzag encoded so small negative numbers stay short.
+		 */
+		void writeInt(int value) throws IOException {
+			writeVarint((value << 1) ^ (value >> 31));
+		}
+		
+		void writeVarint(int value) throws IOException {
+			while ((value & ~0x7F) != 0) {
+				out.write((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			out.write(value);
+		}
+		
+		void writeLong(long value) throws IOException {
+			long zigzag = (value << 1) ^ (value >> 63);
+			while ((zigzag & ~0x7FL) != 0) {
+				out.write((int) (zigzag & 0x7F) | 0x80);
+				zigzag >>>= 7;
+			}
+			out.write((int) zigzag);
+		}
+	}
+	
+	private static final class Decoder {
+		
+		private final InputStream in;
+		
+		Decoder(InputStream in) {
+			this.in = in;
+		}
+		
+		String readString(String[] table) throws IOException {
+			final int ref = readVarint();
+			if (ref > table.length) {
+				throw new IOException("Corrupt symbol index: string " + ref + " of " + table.length);
+			}
+			return ref == 0 ? null : table[ref - 1];
+		}
+		
+		String readUTF() throws IOException {
+			final byte[] bytes = new byte[readCount()];
+			int read = 0;
+			while (read < bytes.length) {
+				final int n = in.read(bytes, read, bytes.length - read);
+				if (n < 0) {
+					throw new EOFException();
+				}
+				read += n;
+			}
+			return new String(bytes, StandardCharsets.UTF_8);
+		}
+		
+		int readCount() throws IOException {
+			final int count = readVarint();
+			if (count < 0) {
+				throw new IOException("Corrupt symbol index: count " + count);
+			}
+			return count;
+		}
+		
+		int readInt() throws IOException {
+			final int value = readVarint();
+			return (value >>> 1) ^ -(value & 1);
+		}
+		
+		int readVarint() throws IOException {
+			int value = 0;
+			for (int shift = 0; shift < 35; shift += 7) {
+				final int b = readByte();
+				value |= (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return value;
+				}
+			}
+			throw new IOException("Corrupt symbol index: varint too long");
+		}
+		
+		long readLong() throws IOException {
+			long value = 0;
+			for (int shift = 0; shift < 70; shift += 7) {
+				final int b = readByte();
+				value |= (long) (b & 0x7F) << shift;
+				if ((b & 0x80) == 0) {
+					return (value >>> 1) ^ -(value & 1);
+				}
+			}
+			throw new IOException("Corrupt symbol index: varint too long");
+		}
+		
+		private int readByte() throws IOException {
+			final int b = in.read();
+			if (b < 0) {
+				throw new EOFException();
+			}
+			return b;
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package cfml.parsing.reporting;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cfml.parsing.ParseMessage;
+
+/**
+ * A sink grouping messages by source, keeping at most a given number per source. Messages past the limit are counted,
+ * not kept, except fatal ones. Sources are kept in the order of their first message.
+ */
+public class DiagnosticCollector implements DiagnosticSink {
+	
+	private final int maxPerSource;
+	private final Map<String, List<ParseMessage>> messages = new LinkedHashMap<String, List<ParseMessage>>();
+	private final Map<String, Integer> suppressed = new LinkedHashMap<String, Integer>();
+	
+	public DiagnosticCollector() {
+		this(Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * @param maxPerSource the number of messages to keep per source
+	 */
+	public DiagnosticCollector(int maxPerSource) {
+		if (maxPerSource < 1) {
+			throw new IllegalArgumentException("maxPerSource must be at least 1");
+		}
+		this.maxPerSource = maxPerSource;
+	}
+	
+	@Override
+	public synchronized void report(String source, ParseMessage message) {
+		List<ParseMessage> list = messages.get(source);
+		if (list == null) {
+			list = new ArrayList<ParseMessage>();
+			messages.put(source, list);
+		}
+		if (list.size() < maxPerSource || message.isFatal()) {
+			list.add(message);
+		} else {
+			final Integer count = suppressed.get(source);
+			suppressed.put(source, count == null ? 1 : count + 1);
+		}
+	}
+	
+	/**
+	 * @return the sources that reported messages, in the order of their first message
+	 */
+	public synchronized List<String> getSources() {
+		return new ArrayList<String>(messages.keySet());
+	}
+	
+	/**
+	 * @param source a source
+	 * @return the messages kept for it
+	 */
+	public synchronized List<ParseMessage> getMessages(String source) {
+		final List<ParseMessage> list = messages.get(source);
+		return list == null ? Collections.<ParseMessage> emptyList() : new ArrayList<ParseMessage>(list);
+	}
+	
+	/**
+	 * @param source a source
+	 * @return the number of its messages past the limit
+	 */
+	public synchronized int getSuppressed(String source) {
+		final Integer count = suppressed.get(source);
+		return count == null ? 0 : count;
+	}
+	
+	/**
+	 * Writes the messages, one line each, under a line naming their source.
+	 *
+	 * @param out where to write
+	 * @throws IOException if out can not be written
+	 */
+	public synchronized void render(Appendable out) throws IOException {
+		for (Map.Entry<String, List<ParseMessage>> entry : messages.entrySet()) {
+			out.append(String.valueOf(entry.getKey())).append('\n');
+			for (ParseMessage message : entry.getValue()) {
+				out.append('\t').append(message.toString()).append('\n');
+			}
+			final int count = getSuppressed(entry.getKey());
+			if (count > 0) {
+				out.append('\t').append(suppressedText(count)).append('\n');
+			}
+		}
+	}
+	
+	/**
+	 * @param count the number of messages past a limit
+	 * @return the line telling about them
+	 */
+	public static String suppressedText(int count) {
+		return "... " + count + " more message" + (count == 1 ? "" : "s") + " suppressed";
+	}
+	
+	@Override
+	public String toString() {
+		final StringBuilder text = new StringBuilder();
+		try {
+			render(text);
+		} catch (IOException e) {
+			// a StringBuilder does not throw
+			throw new IllegalStateException(e);
+		}
+		return text.toString();
+	}
+}
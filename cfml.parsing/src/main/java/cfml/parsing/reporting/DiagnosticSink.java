@@ -0,0 +1,17 @@
+package cfml.parsing.reporting;
+
+import cfml.parsing.ParseMessage;
+
+/**
+ * Receives the messages of a parse as they are reported, so they can be streamed to a log or an IDE instead of being
+ * collected. A sink given to {@link cfml.parsing.CFMLProjectParser} is called from its worker threads and must be
+ * thread safe.
+ */
+public interface DiagnosticSink {
+	
+	/**
+	 * @param source the file or source the message is about
+	 * @param message the message
+	 */
+	void report(String source, ParseMessage message);
+}
@@ -0,0 +1,84 @@
+package cfml.parsing.reporting;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cfml.parsing.ParseMessage;
+
+/**
+ * A sink keeping the last messages reported, in a buffer of fixed size. Older messages are overwritten, so the memory
+ * used does not depend on the number of errors.
+ */
+public class MessageRingBuffer implements DiagnosticSink {
+	
+	private final String[] sources;
+	private final ParseMessage[] messages;
+	private long total;
+	
+	/**
+	 * @param capacity the number of messages to keep
+	 */
+	public MessageRingBuffer(int capacity) {
+		if (capacity < 1) {
+			throw new IllegalArgumentException("capacity must be at least 1");
+		}
+		sources = new String[capacity];
+		messages = new ParseMessage[capacity];
+	}
+	
+	@Override
+	public synchronized void report(String source, ParseMessage message) {
+		final int slot = (int) (total % messages.length);
+		sources[slot] = source;
+		messages[slot] = message;
+		total++;
+	}
+	
+	/**
+	 * @return the messages kept, oldest first
+	 */
+	public synchronized List<ParseMessage> getMessages() {
+		final int size = size();
+		final List<ParseMessage> list = new ArrayList<ParseMessage>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(messages[slot(i)]);
+		}
+		return list;
+	}
+	
+	/**
+	 * @param index the index of a kept message, 0 for the oldest
+	 * @return the source the message was reported for
+	 */
+	public synchronized String getSource(int index) {
+		if (index < 0 || index >= size()) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + size());
+		}
+		return sources[slot(index)];
+	}
+	
+	/**
+	 * @return the number of messages kept
+	 */
+	public synchronized int size() {
+		return (int) Math.min(total, messages.length);
+	}
+	
+	/**
+	 * @return the number of messages reported, including those overwritten
+	 */
+	public synchronized long getTotal() {
+		return total;
+	}
+	
+	/**
+	 * @return the number of messages overwritten
+	 */
+	public synchronized long getDropped() {
+		return total - size();
+	}
+	
+	private int slot(int index) {
+		return (int) ((total - size() + index) % messages.length);
+	}
+}
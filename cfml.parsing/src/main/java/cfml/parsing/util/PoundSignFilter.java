@@ -0,0 +1,329 @@
+package cfml.parsing.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Rewrites the pound sign expressions in strings as concatenations, like {@link PoundSignFilterStream}, but over a
+ * whole text at once: the text between strings and comments is copied in bulk, and the output, the copy of the input
+ * and the offset map are buffers reused from one call to the next, so once they have grown to the size of the texts
+ * filtering allocates nothing but the returned view.
+ *
+ * The offset map relates the positions of the filtered text to those of the original, see {@link #toOriginal(int)}
+ * and {@link #toFiltered(int)}.
+ *
+ * A filter is not thread safe, use one per thread.
+ */
+public class PoundSignFilter {
+	
+	/** the text being filtered, the input buffer or the array of a char buffer */
+	private char[] text;
+	private int base;
+	private int pos;
+	private int end;
+	private char[] input = new char[0];
+	private char[] output = new char[256];
+	private int length;
+	private int originalLength;
+	/** segment i of the offset map starts at filteredStarts[i] in the output and originalStarts[i] in the input */
+	private int[] filteredStarts = new int[16];
+	private int[] originalStarts = new int[16];
+	private int segments;
+	
+	/**
+	 * Filters a text.
+	 *
+	 * @param source the text, e.g. a script
+	 * @return the filtered text, a read only view of the output buffer that is valid until the next call
+	 * @throws PoundSignFilterStreamException if a string or a pound sign expression is not closed
+	 */
+	public CharBuffer filter(CharSequence source) {
+		final int size = source.length();
+		if (source instanceof CharBuffer && ((CharBuffer) source).hasArray()) {
+			final CharBuffer buffer = (CharBuffer) source;
+			return filter(buffer.array(), buffer.arrayOffset() + buffer.position(), size);
+		}
+		ensureInput(size);
+		if (source instanceof String) {
+			((String) source).getChars(0, size, input, 0);
+		} else {
+			for (int i = 0; i < size; i++) {
+				input[i] = source.charAt(i);
+			}
+		}
+		return filter(input, 0, size);
+	}
+	
+	/**
+	 * Reads a text to its end and filters it.
+	 *
+	 * @param reader the text, it is not closed
+	 * @return the filtered text, a read only view of the output buffer that is valid until the next call
+	 * @throws PoundSignFilterStreamException if a string or a pound sign expression is not closed
+	 */
+	public CharBuffer filter(Reader reader) throws IOException {
+		ensureInput(8192);
+		int size = 0;
+		int read;
+		while ((read = reader.read(input, size, input.length - size)) != -1) {
+			size += read;
+			if (size == input.length) {
+				ensureInput(size * 2);
+			}
+		}
+		return filter(input, 0, size);
+	}
+	
+	private CharBuffer filter(char[] chars, int offset, int size) {
+		text = chars;
+		base = offset;
+		pos = offset;
+		end = offset + size;
+		originalLength = size;
+		length = 0;
+		segments = 0;
+		ensureOutput(size + (size >> 4) + 16);
+		try {
+			scan();
+		} finally {
+			// do not keep the caller's array
+			text = null;
+		}
+		return CharBuffer.wrap(output, 0, length).asReadOnlyBuffer();
+	}
+	
+	/**
+	 * @return the length of the last filtered text
+	 */
+	public int length() {
+		return length;
+	}
+	
+	/**
+	 * @return how much longer the last filtered text is than the original, see {@link PoundSignFilterStream#getAdded()}
+	 */
+	public int getAdded() {
+		return length - originalLength;
+	}
+	
+	/**
+	 * @param filteredOffset an offset in the last filtered text
+	 * @return the offset of the original text it comes from; chars added by the filter come from the pound sign they
+	 *         replace
+	 */
+	public int toOriginal(int filteredOffset) {
+		if (filteredOffset < 0 || filteredOffset > length) {
+			throw new IllegalArgumentException("Offset " + filteredOffset + " outside of 0.." + length);
+		}
+		if (segments == 0) {
+			return filteredOffset;
+		}
+		final int segment = Math.max(0, search(filteredStarts, filteredOffset));
+		return originalStarts[segment] + filteredOffset - filteredStarts[segment];
+	}
+	
+	/**
+	 * @param originalOffset an offset in the original of the last filtered text
+	 * @return the first offset of the filtered text that comes from it, or for a char the filter dropped, e.g. the
+	 *         quotes around a lone pound sign expression, the offset of what follows
+	 */
+	public int toFiltered(int originalOffset) {
+		if (originalOffset < 0 || originalOffset > originalLength) {
+			throw new IllegalArgumentException("Offset " + originalOffset + " outside of 0.." + originalLength);
+		}
+		int segment = search(originalStarts, originalOffset);
+		if (segment < 0) {
+			return 0;
+		}
+		while (segment > 0 && originalStarts[segment - 1] == originalStarts[segment]) {
+			segment--;
+		}
+		final int segmentEnd = segment + 1 < segments ? filteredStarts[segment + 1] : length;
+		return Math.min(filteredStarts[segment] + originalOffset - originalStarts[segment], segmentEnd);
+	}
+	
+	/**
+	 * @return the index of the last of the first segments entries that is at most value, -1 if there is none
+	 */
+	private int search(int[] starts, int value) {
+		int low = 0;
+		int high = segments - 1;
+		while (low <= high) {
+			final int middle = (low + high) >>> 1;
+			if (starts[middle] <= value) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+	
+	private void scan() {
+		int run = pos;
+		while (pos < end) {
+			final char c = text[pos];
+			if (c == '"' || c == '\'') {
+				copy(run, pos);
+				readString();
+				run = pos;
+			} else if (c == '/' && pos + 1 < end && text[pos + 1] == '*') {
+				// block comments are copied as they are
+				// the star that closes it comes after the one that opens it
+				pos += 3;
+				while (pos < end && !(text[pos] == '/' && text[pos - 1] == '*')) {
+					pos++;
+				}
+				pos = Math.min(pos + 1, end);
+			} else if (c == '/' && pos + 1 < end && text[pos + 1] == '/') {
+				// as are line comments
+				pos += 2;
+				while (pos < end && text[pos] != '\r' && text[pos] != '\n') {
+					pos++;
+				}
+			} else {
+				pos++;
+			}
+		}
+		copy(run, end);
+	}
+	
+	/**
+	 * Reads a string, replacing the pound sign expressions in it by concatenations and removing escaped pound signs. A
+	 * string of a single pound sign expression is reduced to the expression, e.g. "#a#" to a.
+	 */
+	private void readString() {
+		final int start = length;
+		final char endMarker = text[pos];
+		emit(endMarker, pos++);
+		while (pos < end) {
+			final char c = text[pos];
+			if (c == '#') {
+				final int pound = pos++;
+				if (pos < end && text[pos] == '#') {
+					// an escaped pound sign
+					emit('#', pound);
+					pos++;
+					continue;
+				}
+				emit(endMarker, pound);
+				emit('&', pound);
+				final int expression = length;
+				addSegment(pos);
+				while (pos < end && text[pos] != '#') {
+					if (text[pos] == '\'' || text[pos] == '"') {
+						readString();
+					} else {
+						emit(text[pos], pos++);
+					}
+				}
+				if (pos == end) {
+					throw new PoundSignFilterStreamException("Invalid string expression - unclosed '#' expression");
+				}
+				final int closing = pos++;
+				if (pos == end || text[pos] != endMarker) {
+					emit('&', closing);
+					emit(endMarker, closing);
+				} else if (pos + 1 == end || text[pos + 1] != endMarker) {
+					// the end of the string
+					pos++;
+					if (expression - start == 3) {
+						// nothing but the expression
+						remove(start, expression);
+					}
+					return;
+				} else {
+					// an escaped end marker follows
+					emit('&', closing);
+					emit(endMarker, closing);
+					emit(endMarker, pos);
+					emit(endMarker, pos + 1);
+					pos += 2;
+				}
+			} else if (c == endMarker) {
+				if (pos + 1 < end && text[pos + 1] == endMarker) {
+					emit(endMarker, pos);
+					emit(endMarker, pos + 1);
+					pos += 2;
+				} else {
+					emit(endMarker, pos++);
+					return;
+				}
+			} else {
+				emit(c, pos++);
+			}
+		}
+		throw new PoundSignFilterStreamException("Unclosed string expression - missing " + endMarker + ".");
+	}
+	
+	private void emit(char c, int source) {
+		if (segments == 0 || source - base - originalStarts[segments - 1] != length - filteredStarts[segments - 1]) {
+			addSegment(source);
+		}
+		if (length == output.length) {
+			ensureOutput(length + 1);
+		}
+		output[length++] = c;
+	}
+	
+	/**
+	 * Copies a run of the text unchanged.
+	 */
+	private void copy(int from, int to) {
+		if (from == to) {
+			return;
+		}
+		if (segments == 0 || from - base - originalStarts[segments - 1] != length - filteredStarts[segments - 1]) {
+			addSegment(from);
+		}
+		ensureOutput(length + to - from);
+		System.arraycopy(text, from, output, length, to - from);
+		length += to - from;
+	}
+	
+	private void addSegment(int source) {
+		if (segments > 0 && filteredStarts[segments - 1] == length) {
+			// the previous segment is empty
+			segments--;
+		}
+		if (segments == filteredStarts.length) {
+			filteredStarts = Arrays.copyOf(filteredStarts, segments * 2);
+			originalStarts = Arrays.copyOf(originalStarts, segments * 2);
+		}
+		filteredStarts[segments] = length;
+		originalStarts[segments] = source - base;
+		segments++;
+	}
+	
+	/**
+	 * Removes the chars from..to of the output, which start segments.
+	 */
+	private void remove(int from, int to) {
+		System.arraycopy(output, to, output, from, length - to);
+		length -= to - from;
+		int kept = 0;
+		for (int i = 0; i < segments; i++) {
+			if (filteredStarts[i] >= to) {
+				filteredStarts[kept] = filteredStarts[i] - (to - from);
+				originalStarts[kept++] = originalStarts[i];
+			} else if (filteredStarts[i] < from) {
+				kept++;
+			}
+		}
+		segments = kept;
+	}
+	
+	private void ensureInput(int size) {
+		if (input.length < size) {
+			input = Arrays.copyOf(input, size);
+		}
+	}
+	
+	private void ensureOutput(int size) {
+		if (output.length < size) {
+			output = Arrays.copyOf(output, Math.max(size, output.length * 2));
+		}
+	}
+}
@@ -13,6 +13,11 @@ import java.io.FilterReader;
 import java.io.IOException;
 import java.io.Reader;
 
+/**
+ * @deprecated reads one char at a time under a lock; use {@link PoundSignFilter}, which filters a whole text in bulk
+ *             and maps the offsets of the filtered text to the original
+ */
+@Deprecated
 public class PoundSignFilterStream extends FilterReader {
 	
 	char[] buffer = null;
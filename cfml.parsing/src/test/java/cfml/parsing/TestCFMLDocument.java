@@ -0,0 +1,253 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.antlr.v4.runtime.BaseErrorListener;
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.RecognitionException;
+import org.antlr.v4.runtime.Recognizer;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.CFMLLexer;
+import cfml.CFSCRIPTLexer;
+import cfml.CFSCRIPTParser;
+import cfml.parsing.cfml.CFMLDocument;
+import cfml.parsing.cfml.CFMLTag;
+import cfml.parsing.cfml.CFMLTagScanner;
+import cfml.parsing.cfml.CFMLVisitor;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.utils.TestUtils;
+import net.htmlparser.jericho.Element;
+
+public class TestCFMLDocument {
+	
+	private static final String COMPONENT = "<cfcomponent displayname=\"Test\" output='false'>\n"
+			+ "<!--- a <!--- nested ---> comment <cfset hidden = 1> --->\n"
+			+ "\t<cffunction name=\"run\" access=public>\n"
+			+ "\t\t<cfargument name=\"a\" required=\"true\">\n"
+			+ "\t\t<cfset var x = a / 2 />\n"
+			+ "\t\t<cfif x GT (a > 1 ? 1 : 0)><p>big</p><cfelseif \"foo\" <> \"bar\"><cfelse></cfif>\n"
+			+ "\t\t<cfscript>\n"
+			+ "\t\t\ty = x < 3;\n"
+			+ "\t\t</cfscript>\n"
+			+ "\t\t<cfreturn x>\n"
+			+ "\t</cffunction>\n"
+			+ "</cfcomponent>\n";
+	
+	private CFMLParser parser;
+	private List<String> errors;
+	private BaseErrorListener listener;
+	
+	@Before
+	public void setUp() {
+		parser = new CFMLParser();
+		errors = new ArrayList<String>();
+		listener = new BaseErrorListener() {
+			@Override
+			public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+					int charPositionInLine, String msg, RecognitionException e) {
+				// the errors of the tag grammar, not those of the expressions and scripts
+				if (!(recognizer instanceof CFSCRIPTLexer || recognizer instanceof CFSCRIPTParser)) {
+					errors.add(line + ":" + charPositionInLine + " " + msg);
+				}
+			}
+		};
+	}
+	
+	private static String outline(List<CFMLTag> tags) {
+		final StringBuilder outline = new StringBuilder();
+		for (CFMLTag tag : tags) {
+			if (outline.length() > 0) {
+				outline.append(' ');
+			}
+			outline.append(tag.getName());
+			if (!tag.getChildren().isEmpty()) {
+				outline.append('(').append(outline(tag.getChildren())).append(')');
+			}
+		}
+		return outline.toString();
+	}
+	
+	@Test
+	public void testTree() {
+		final CFMLDocument document = parser.parseCFMLDocument(COMPONENT, listener);
+		assertEquals("cfcomponent(cffunction(cfargument cfset cfif(cfelseif cfelse) cfscript cfreturn))",
+				outline(document.getChildren()));
+		final CFMLTag component = document.getChildren().get(0);
+		assertEquals("Test", component.getAttribute("DISPLAYNAME"));
+		assertEquals("false", component.getAttribute("output"));
+		assertTrue(component.hasEndTag());
+		assertEquals(COMPONENT.length() - 1, component.getEnd());
+		final CFMLTag function = component.getChildren().get(0);
+		assertEquals("public", function.getAttribute("access"));
+		assertEquals(3, function.getLine());
+		assertEquals(2, function.getColumn());
+		assertEquals(component, function.getParent());
+		final CFMLTag set = document.getAllTags("cfset").get(0);
+		assertTrue(set.isSelfClosing());
+		assertFalse(set.hasEndTag());
+		assertEquals(9, document.getAllTags().size());
+		assertEquals("<p>big</p><cfelseif \"foo\" <> \"bar\"><cfelse>",
+				document.getContent(document.getAllTags("cfif").get(0)));
+		assertEquals("[]", errors.toString());
+	}
+	
+	/**
+	 * Expressions and scripts are parsed in place, their positions are those in the document.
+	 */
+	@Test
+	public void testPositions() {
+		final CFMLDocument document = parser.parseCFMLDocument(COMPONENT, listener);
+		final CFExpression expression = document.getAllTags("cfset").get(0).getExpression();
+		assertNotNull(expression);
+		assertEquals(5, expression.getLine());
+		assertEquals(COMPONENT.indexOf("var x"), expression.getOffset());
+		final CFScriptStatement script = document.getAllTags("cfscript").get(0).getScript();
+		assertNotNull(script);
+		assertEquals(8, script.decomposeScript() == null || script.decomposeScript().isEmpty() ? script.getLine()
+				: ((CFScriptStatement) script.decomposeScript().get(0)).getLine());
+		assertEquals("x", document.getAllTags("cfreturn").get(0).getExpression().Decompile(0));
+	}
+	
+	/**
+	 * A '>' inside a string of either quote style neither ends the tag nor the string.
+	 */
+	@Test
+	public void testQuotedGreaterThan() {
+		final List<String> scriptErrors = new ArrayList<String>();
+		final CFMLDocument document = parser.parseCFMLDocument(
+				"<cfset x = \"a>b\"><cfset y = 'c>d'><cfif x EQ \"a>b\">1</cfif>", new BaseErrorListener() {
+					@Override
+					public void syntaxError(Recognizer<?, ?> recognizer, Object offendingSymbol, int line,
+							int charPositionInLine, String msg, RecognitionException e) {
+						scriptErrors.add(line + ":" + charPositionInLine + " " + msg);
+					}
+				});
+		assertEquals("[]", scriptErrors.toString());
+		assertEquals("cfset cfset cfif", outline(document.getChildren()));
+		final List<CFMLTag> sets = document.getAllTags("cfset");
+		// decompiled strings are single quoted
+		assertEquals("x = 'a>b'", sets.get(0).getExpression().Decompile(0));
+		assertEquals("y = 'c>d'", sets.get(1).getExpression().Decompile(0));
+		assertEquals("x EQ 'a>b'", document.getAllTags("cfif").get(0).getExpression().Decompile(0));
+	}
+	
+	@Test
+	public void testMissingEndTags() {
+		final String source = "<cfinvoke component=\"a\" method=\"b\">\n<cfset x = 1>\n<cfoutput><cfloop from=1 to=2>"
+				+ "</cfoutput>\n</cfif>\n<cfscript>x = 1;";
+		final CFMLDocument document = parser.parseCFMLDocument(source, listener);
+		assertEquals("cfinvoke cfset cfoutput(cfloop) cfscript", outline(document.getChildren()));
+		assertFalse(document.getAllTags("cfloop").get(0).hasEndTag());
+		assertNull(document.getAllTags("cfscript").get(0).getScript());
+		assertTrue(errors.toString(), errors.size() >= 2);
+		assertTrue(errors.toString(), errors.contains("4:0 Unexpected end tag cfif"));
+	}
+	
+	/**
+	 * The HTML document rule takes cfscript blocks at the top level and inside HTML elements.
+	 */
+	@Test
+	public void testHtmlDocumentScript() {
+		final CFMLLexer lexer = new CFMLLexer(CharStreams.fromString(
+				"<cfscript>x = 1;</cfscript><div><cfscript>if (x < 2) { y = 1; }</cfscript></div>"));
+		lexer.removeErrorListeners();
+		lexer.addErrorListener(listener);
+		final cfml.CFMLParser htmlParser = new cfml.CFMLParser(new CommonTokenStream(lexer));
+		htmlParser.removeErrorListeners();
+		htmlParser.addErrorListener(listener);
+		final cfml.CFMLParser.HtmlDocumentContext html = htmlParser.htmlDocument();
+		assertEquals("[]", errors.toString());
+		assertEquals(1, html.cfmlElement().size());
+		assertNotNull(html.cfmlElement(0).cfscript());
+		assertNotNull(html.htmlElements(0).htmlElement().htmlContent().htmlElement(0).cfscript());
+	}
+	
+	@Test
+	public void testVisit() {
+		final CFMLDocument document = parser.parseCFMLDocument(COMPONENT, listener);
+		final StringBuilder visited = new StringBuilder();
+		final List<Object> parsed = new ArrayList<Object>();
+		parser.visit(document, new CFMLVisitor() {
+			@Override
+			public void visitTagStart(CFMLTag tag) {
+				visited.append('<').append(tag.getName());
+			}
+			
+			@Override
+			public void visitTagEnd(CFMLTag tag) {
+				visited.append('>');
+			}
+			
+			@Override
+			public void visitElementStart(Element elem) {
+			}
+			
+			@Override
+			public void visitElementEnd(Element elem) {
+			}
+			
+			@Override
+			public void visitExpression(String context, CFExpression expression) {
+				parsed.add(expression);
+			}
+			
+			@Override
+			public void visitScript(CFScriptStatement scriptStatement) {
+				parsed.add(scriptStatement);
+			}
+		});
+		assertEquals("<cfcomponent<cffunction<cfargument><cfset><cfif<cfelseif><cfelse>><cfscript><cfreturn>>>",
+				visited.toString());
+		final List<Object> expected = new ArrayList<Object>();
+		for (CFMLTag tag : document.getAllTags()) {
+			if (tag.getExpression() != null) {
+				expected.add(tag.getExpression());
+			}
+			if (tag.getScript() != null) {
+				expected.add(tag.getScript());
+			}
+		}
+		assertEquals(expected, parsed);
+	}
+	
+	/**
+	 * Every CFML start tag of the tag test files ends up in the tree.
+	 */
+	@Test
+	public void testTagFiles() throws Exception {
+		final List<File> files = new ArrayList<File>();
+		collect(new File("src/test/resources/tag"), files);
+		assertFalse(files.isEmpty());
+		for (File file : files) {
+			final String source = TestUtils.loadFile(file);
+			final CFMLDocument document = parser.parseCFMLDocument(source, listener);
+			assertEquals(file.getPath(), CFMLTagScanner.findStartTags(source).size(), document.getAllTags().size());
+		}
+	}
+	
+	private static void collect(File directory, List<File> files) {
+		final File[] children = directory.listFiles();
+		if (children == null) {
+			return;
+		}
+		for (File child : children) {
+			if (child.isDirectory()) {
+				collect(child, files);
+			} else if (child.getName().endsWith(".cfm") || child.getName().endsWith(".cfc")) {
+				files.add(child);
+			}
+		}
+	}
+}
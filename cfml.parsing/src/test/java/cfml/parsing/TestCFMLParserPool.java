@@ -0,0 +1,102 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestCFMLParserPool {
+	
+	private static CFMLParserPool pool;
+	
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new CFMLParserPool();
+	}
+	
+	private static String decompile(CFScriptStatement statement) {
+		return statement == null ? null : statement.Decompile(0);
+	}
+	
+	@Test
+	public void testParserPerThread() throws Exception {
+		final CFMLParser mine = pool.getParser();
+		assertSame(mine, pool.getParser());
+		ExecutorService executor = Executors.newSingleThreadExecutor();
+		try {
+			CFMLParser other = executor.submit(new Callable<CFMLParser>() {
+				@Override
+				public CFMLParser call() {
+					return pool.getParser();
+				}
+			}).get();
+			assertNotSame(mine, other);
+			assertSame(mine.getDictionary(), other.getDictionary());
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testConcurrentParseMatchesSerial() throws Exception {
+		final List<String> scripts = new ArrayList<String>();
+		for (int i = 0; i < 64; i++) {
+			scripts.add("var a" + i + " = " + i + ";\nif (a" + i + " > 2) { b = foo(a" + i + ", 'x'); } else { b = [1,2]; }");
+		}
+		final CFMLParser serial = new CFMLParser(pool.getDictionary());
+		final List<String> expected = new ArrayList<String>();
+		for (String script : scripts) {
+			final CFScriptStatement statement = serial.parseScript(script);
+			// the declaration and the if, so the comparison below is not of nulls or empty trees
+			assertNotNull(script, statement);
+			assertTrue(script, statement instanceof CFCompoundStatement);
+			final List<CFScriptStatement> statements = ((CFCompoundStatement) statement).getStatements();
+			assertEquals(script, 2, statements.size());
+			assertTrue(script, statements.get(1) instanceof CFIfStatement);
+			expected.add(decompile(statement));
+			serial.reset();
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(4);
+		try {
+			List<Future<ParseResult>> futures = new ArrayList<Future<ParseResult>>();
+			for (final String script : scripts) {
+				futures.add(executor.submit(new Callable<ParseResult>() {
+					@Override
+					public ParseResult call() throws Exception {
+						return pool.parseScript(script);
+					}
+				}));
+			}
+			for (int i = 0; i < scripts.size(); i++) {
+				ParseResult result = futures.get(i).get();
+				assertEquals(scripts.get(i), expected.get(i), decompile(result.getScript()));
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+	
+	@Test
+	public void testMessagesArePerCall() throws Exception {
+		pool.parseScript("x = ;");
+		ParseResult result = pool.parseScript("x = 1;");
+		assertEquals(0, result.getMessages().size());
+		assertEquals(0, pool.getParser().getMessages().size());
+	}
+}
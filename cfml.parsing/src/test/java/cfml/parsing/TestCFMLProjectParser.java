@@ -0,0 +1,173 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.reporting.DiagnosticCollector;
+import cfml.parsing.reporting.ParseException;
+
+public class TestCFMLProjectParser {
+	
+	private static final Path ROOT = Paths.get("src/test/resources/cfml/tests");
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private static CFMLProjectParser projectParser;
+	
+	@BeforeClass
+	public static void setUpClass() {
+		// a tiny in-flight budget forces the submitting thread to wait on the workers
+		projectParser = new CFMLProjectParser(new CFMLParserPool(), 4, 8 * 1024);
+	}
+	
+	private static String decompile(List<CFScriptStatement> scripts) {
+		StringBuilder sb = new StringBuilder();
+		for (CFScriptStatement script : scripts) {
+			try {
+				sb.append(script.Decompile(0)).append('\n');
+			} catch (Exception e) {
+				sb.append(e.getMessage()).append('\n');
+			}
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testFindSources() throws Exception {
+		List<Path> sources = CFMLProjectParser.findSources(ROOT);
+		assertFalse(sources.isEmpty());
+		for (Path source : sources) {
+			String name = source.toString();
+			assertTrue(name, name.endsWith(".cfc") || name.endsWith(".cfm"));
+		}
+	}
+	
+	@Test
+	public void testParallelMatchesSerial() throws Exception {
+		List<Path> sources = CFMLProjectParser.findSources(ROOT);
+		ProjectParseResult project = projectParser.parse(ROOT);
+		assertEquals(sources.size(), project.getResults().size());
+		int messages = 0;
+		for (int i = 0; i < sources.size(); i++) {
+			FileParseResult parallel = project.getResults().get(i);
+			assertEquals(sources.get(i), parallel.getPath());
+			FileParseResult serial = projectParser.parseFile(sources.get(i));
+			assertEquals(parallel.getPath().toString(), decompile(serial.getScripts()), decompile(parallel.getScripts()));
+			assertEquals(serial.getMessages().size(), parallel.getMessages().size());
+			messages += parallel.getMessages().size();
+		}
+		assertEquals(messages, project.getMessages().size());
+	}
+	
+	/**
+	 * A pool whose parsers report 100 errors per script, 5 more of which they dropped themselves.
+	 */
+	private static class ErrorPool extends CFMLParserPool {
+		@Override
+		public ParseResult parseScript(String cfscript) {
+			final List<ParseMessage> messages = new ArrayList<ParseMessage>();
+			for (int i = 1; i <= 100; i++) {
+				messages.add(new ParseError(i, 0, 0, cfscript, "error " + i));
+			}
+			messages.add(new SuppressedMessages(5));
+			return new ParseResult(null, messages);
+		}
+	}
+	
+	@Test
+	public void testMessageLimit() throws Exception {
+		final Path file = folder.newFile("errors.cfm").toPath();
+		Files.write(file, "<cfscript>x = ;</cfscript><cfscript>y = ;</cfscript>".getBytes(StandardCharsets.UTF_8));
+		final CFMLProjectParser limited = new CFMLProjectParser(new ErrorPool(), 1, 8 * 1024);
+		final List<ParseMessage> all = limited.parseFile(file).getMessages();
+		// the counts of the two scripts add up
+		assertEquals(201, all.size());
+		assertEquals(10, ((SuppressedMessages) all.get(200)).getCount());
+		
+		final DiagnosticCollector collector = new DiagnosticCollector();
+		limited.setMaxMessagesPerFile(10);
+		limited.setDiagnosticSink(collector);
+		final FileParseResult result = limited.parse(Collections.singletonList(file)).get(0);
+		assertEquals(11, result.getMessages().size());
+		assertEquals(10, result.getMessages().get(9).getLineNumber());
+		assertEquals(200 - 10 + 2 * 5, ((SuppressedMessages) result.getMessages().get(10)).getCount());
+		assertEquals(10, limited.getPool().getMaxMessages());
+		assertEquals(result.getMessages(), collector.getMessages(file.toString()));
+	}
+	
+	@Test
+	public void testIsScript() {
+		assertTrue(CFMLProjectParser.isScript(Paths.get("Script.cfc"), "\n component { }"));
+		assertFalse(CFMLProjectParser.isScript(Paths.get("Tag.CFC"), "\n<cfcomponent></cfcomponent>"));
+		// templates starting with text or an expression are tag based
+		assertFalse(CFMLProjectParser.isScript(Paths.get("page.cfm"), "Hello #name#<cfset x = 1>"));
+		assertFalse(CFMLProjectParser.isScript(Paths.get("page.cfm"), "#now()#"));
+		// leading CFML comments, which nest, are skipped
+		assertTrue(CFMLProjectParser.isScript(Paths.get("Script.cfc"),
+				"<!--- a <!--- nested <cfset x = 1> ---> comment --->\n<!--- another --->component { }"));
+		assertFalse(CFMLProjectParser.isScript(Paths.get("Tag.cfc"),
+				"<!--- a comment --->\n<cfcomponent></cfcomponent>"));
+		assertFalse(CFMLProjectParser.isScript(Paths.get("Open.cfc"), "<!--- <!--- ---> component { }"));
+	}
+	
+	/**
+	 * Messages of a script block are moved to the line of the block in copies; results handed out more than once, as
+	 * cached ones can be, stay as they are.
+	 */
+	@Test
+	public void testSharedMessagesKeepTheirLines() throws Exception {
+		final ParseError error = new ParseError(1, 0, 0, null, "shared");
+		final ParseResult shared = new ParseResult(null, Collections.<ParseMessage> singletonList(error));
+		final CFMLProjectParser parser = new CFMLProjectParser(new CFMLParserPool() {
+			@Override
+			public ParseResult parseScript(String cfscript) {
+				return shared;
+			}
+		}, 1, 8 * 1024);
+		final Path file = folder.newFile("shared.cfm").toPath();
+		Files.write(file, "\n\n<cfscript>x = ;</cfscript>".getBytes(StandardCharsets.UTF_8));
+		for (int i = 0; i < 2; i++) {
+			final ParseMessage message = parser.parseFile(file).getMessages().get(0);
+			assertEquals(3, message.getLineNumber());
+			assertTrue(message instanceof ParseError);
+		}
+		assertEquals(1, error.getLineNumber());
+	}
+	
+	/**
+	 * Files are decoded with the charset they declare, the parser's charset is for the others.
+	 */
+	@Test
+	public void testPageEncoding() throws Exception {
+		final List<String> parsed = Collections.synchronizedList(new ArrayList<String>());
+		final CFMLProjectParser parser = new CFMLProjectParser(new CFMLParserPool() {
+			@Override
+			public ParseResult parseScript(String cfscript) throws ParseException, IOException {
+				parsed.add(cfscript);
+				return super.parseScript(cfscript);
+			}
+		}, 1, 8 * 1024);
+		final Path file = folder.newFile("latin.cfm").toPath();
+		Files.write(file, "<cfprocessingdirective pageencoding=\"iso-8859-1\"><cfscript>x = \"café\";</cfscript>"
+				.getBytes(StandardCharsets.ISO_8859_1));
+		assertTrue(parser.parseFile(file).getMessages().isEmpty());
+		assertEquals(Collections.singletonList("x = \"café\";"), parsed);
+	}
+}
@@ -0,0 +1,226 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFParamStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.CFTryCatchStatement;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+public class TestCFScriptTreeWalker {
+	
+	private CFCompoundStatement tree;
+	private CFIdentifier b;
+	private CFIfStatement ifStatement;
+	
+	/**
+	 * { if (a && 1) { f(x = b, 2); } else return c; try { d; } catch (any e) { } }
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final CFBinaryExpression cond = new CFBinaryExpression(token(CFSCRIPTLexer.ANDOPERATOR, "&&"), id("a"),
+				new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, "1")));
+		b = id("b");
+		final CFFunctionExpression call = new CFFunctionExpression(id("f"), new ArrayList<CFExpression>(
+				Arrays.asList(new CFAssignmentExpression(token(CFSCRIPTLexer.EQUALSOP, "="), id("x"), b),
+						new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, "2")))));
+		final CFCompoundStatement then = new CFCompoundStatement();
+		then.add(new CFExpressionStatement(call));
+		ifStatement = new CFIfStatement(token(CFSCRIPTLexer.IF, "if"), cond, then,
+				new CFReturnStatement(token(CFSCRIPTLexer.RETURN, "return"), id("c")));
+		final CFCompoundStatement tryBody = new CFCompoundStatement();
+		tryBody.add(new CFExpressionStatement(id("d")));
+		final CFTryCatchStatement tryCatch = new CFTryCatchStatement(token(CFSCRIPTLexer.TRY, "try"), tryBody,
+				Arrays.asList(new CFCatchStatement("any", id("e"), new CFCompoundStatement())), null);
+		tree = new CFCompoundStatement();
+		tree.add(ifStatement);
+		tree.add(tryCatch);
+	}
+	
+	/**
+	 * The walker visits the nodes decomposeExpression and decomposeScript give, in the same order.
+	 */
+	@Test
+	public void testSameAsDecompose() {
+		final List<Object> expected = new ArrayList<Object>();
+		decompose(tree, expected);
+		final List<Object> actual = new ArrayList<Object>();
+		assertTrue(new CFScriptTreeWalker().walk(tree, new Recorder(actual)));
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertSame("node " + i, expected.get(i), actual.get(i));
+		}
+		// try, catch, their bodies and the statement in the try
+		assertNotNull(id(actual, "d"));
+		assertNotNull(id(actual, "e"));
+	}
+	
+	@Test
+	public void testPath() {
+		final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+		walker.walk(tree, new CFScriptTreeVisitor() {
+			@Override
+			public Action enterStatement(CFScriptStatement statement) {
+				if (statement == tree) {
+					assertNull(walker.getParent());
+					assertEquals(0, walker.getDepth());
+					assertEquals(-1, walker.getChildIndex());
+				}
+				return Action.CONTINUE;
+			}
+			
+			@Override
+			public Action exitExpression(CFExpression expression) {
+				if (expression == b) {
+					// tree, if, then, the expression statement, the call
+					assertEquals(5, walker.getDepth());
+					assertEquals(0, walker.getChildIndex());
+					assertTrue(walker.isExpressionChild());
+					assertTrue(walker.getParent() instanceof CFFunctionExpression);
+				}
+				return Action.CONTINUE;
+			}
+		});
+	}
+	
+	@Test
+	public void testSkipAndStop() {
+		final List<Object> visited = new ArrayList<Object>();
+		final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+		assertTrue(walker.walk(tree, new Recorder(visited) {
+			@Override
+			public Action enterStatement(CFScriptStatement statement) {
+				super.enterStatement(statement);
+				return statement == ifStatement ? Action.SKIP_CHILDREN : Action.CONTINUE;
+			}
+		}));
+		assertFalse(visited.contains(b));
+		assertTrue(visited.contains(ifStatement));
+		
+		visited.clear();
+		assertFalse(walker.walk(tree, new Recorder(visited) {
+			@Override
+			public Action enterExpression(CFExpression expression) {
+				super.enterExpression(expression);
+				return expression == b ? Action.STOP : Action.CONTINUE;
+			}
+		}));
+		assertSame(b, visited.get(visited.size() - 1));
+		
+		// the walker is reused after a stop
+		visited.clear();
+		assertTrue(walker.walk(ifStatement.getCond(), new Recorder(visited)));
+		assertEquals(3, visited.size());
+	}
+	
+	/**
+	 * The attribute children follow the attribute map, also when it changes after construction, as the parser fills it.
+	 */
+	@Test
+	public void testAttributes() {
+		final CFParamStatement param = new CFParamStatement(token(CFSCRIPTLexer.PARAM, "param"),
+				new LinkedHashMap<CFIdentifier, CFExpression>());
+		assertEquals(0, param.getExpressionCount());
+		final CFIdentifier name = id("name");
+		final CFIdentifier value = id("value");
+		param.getAttributes().put(name, value);
+		param.getAttributes().put(id("type"), id("string"));
+		assertEquals(4, param.getExpressionCount());
+		assertSame(name, param.getExpression(0));
+		assertSame(value, param.getExpression(1));
+		
+		final List<Object> expected = new ArrayList<Object>();
+		decompose(param, expected);
+		final List<Object> actual = new ArrayList<Object>();
+		assertTrue(new CFScriptTreeWalker().walk(param, new Recorder(actual)));
+		assertEquals(expected, actual);
+		
+		param.getAttributes().remove(name);
+		assertEquals(2, param.getExpressionCount());
+		assertEquals("type", ((CFIdentifier) param.getExpression(0)).getName());
+	}
+	
+	private static void decompose(Object node, List<Object> nodes) {
+		nodes.add(node);
+		final List<CFExpression> expressions = node instanceof CFExpression ? ((CFExpression) node).decomposeExpression()
+				: ((CFScriptStatement) node).decomposeExpression();
+		for (CFExpression expression : expressions) {
+			if (expression != null) {
+				decompose(expression, nodes);
+			}
+		}
+		final List<CFScriptStatement> statements = node instanceof CFExpression ? ((CFExpression) node)
+				.decomposeScript() : ((CFScriptStatement) node).decomposeScript();
+		for (CFScriptStatement statement : statements) {
+			if (statement != null) {
+				decompose(statement, nodes);
+			}
+		}
+	}
+	
+	private static Object id(List<Object> nodes, String name) {
+		for (Object node : nodes) {
+			if (node instanceof CFIdentifier && name.equals(((CFIdentifier) node).getName())) {
+				return node;
+			}
+		}
+		return null;
+	}
+	
+	private static CFIdentifier id(String name) {
+		return new CFIdentifier(token(CFSCRIPTLexer.IDENTIFIER, name), name);
+	}
+	
+	private static Token token(int type, String text) {
+		return new CommonToken(type, text);
+	}
+	
+	private static class Recorder extends CFScriptTreeVisitor {
+		
+		private final List<Object> nodes;
+		
+		Recorder(List<Object> nodes) {
+			this.nodes = nodes;
+		}
+		
+		@Override
+		public Action enterStatement(CFScriptStatement statement) {
+			nodes.add(statement);
+			return Action.CONTINUE;
+		}
+		
+		@Override
+		public Action enterExpression(CFExpression expression) {
+			nodes.add(expression);
+			return Action.CONTINUE;
+		}
+	}
+}
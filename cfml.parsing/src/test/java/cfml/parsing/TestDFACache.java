@@ -0,0 +1,86 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestDFACache {
+	
+	private static final String SCRIPT = "var a = 1;\nif (a > 2) { b = foo(a, 'x'); } else { b = [1,2]; }";
+	
+	private static CFMLParserPool pool;
+	
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new CFMLParserPool();
+	}
+	
+	private static String decompile(CFScriptStatement statement) {
+		return statement == null ? null : statement.Decompile(0);
+	}
+	
+	private static String decompile(CFExpression expression) {
+		return expression == null ? null : expression.Decompile(0);
+	}
+	
+	@Test
+	public void testWarmUp() throws Exception {
+		DFACache cache = new DFACache();
+		assertEquals(0, cache.getStateCount());
+		cache.warmUp();
+		assertTrue(cache.getStateCount() > 0);
+		assertTrue(cache.getMisses() > 0);
+		
+		cache.resetStatistics();
+		cache.warmUp();
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.getHitRatio() > 0.5);
+		assertEquals(0, cache.getResets());
+	}
+	
+	@Test
+	public void testResetWhenFull() throws Exception {
+		DFACache cache = new DFACache(1, 2);
+		CFMLParser parser = new CFMLParser(pool.getDictionary());
+		parser.setDFACache(cache);
+		parser.parseScript(SCRIPT);
+		// the limit is only checked every second parse
+		assertEquals(0, cache.getResets());
+		assertTrue(cache.getStateCount() > 1);
+		parser.parseScript(SCRIPT);
+		assertTrue(cache.getResets() > 0);
+		assertEquals(0, cache.getStateCount());
+	}
+	
+	@Test
+	public void testSameResultAsStaticCache() throws Exception {
+		CFMLParser plain = new CFMLParser(pool.getDictionary());
+		CFMLParser cached = new CFMLParser(pool.getDictionary());
+		DFACache cache = new DFACache();
+		cached.setDFACache(cache);
+		assertEquals(decompile(plain.parseScript(SCRIPT)), decompile(cached.parseScript(SCRIPT)));
+		assertEquals(decompile(plain.parseCFExpression("a + b * 2", null)),
+				decompile(cached.parseCFExpression("a + b * 2", null)));
+		assertTrue(cache.getStateCount() > 0);
+	}
+	
+	@Test
+	public void testPoolSharesCache() throws Exception {
+		DFACache cache = new DFACache();
+		CFMLParserPool cachedPool = new CFMLParserPool(pool.getDictionary(), cache);
+		assertSame(cache, cachedPool.getParser().getDFACache());
+		cachedPool.parseScript(SCRIPT);
+		final long misses = cache.getMisses();
+		cache.resetStatistics();
+		cachedPool.parseScript(SCRIPT);
+		// the second parse of the same script is served almost entirely from the cache
+		assertTrue(cache.getHits() > 0);
+		assertTrue(cache.getMisses() * 10 < misses);
+	}
+}
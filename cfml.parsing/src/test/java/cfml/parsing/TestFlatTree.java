@@ -0,0 +1,263 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFBinaryExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.flat.FlatNode;
+import cfml.parsing.cfscript.flat.FlatTree;
+import cfml.parsing.cfscript.flat.StringPool;
+import cfml.parsing.cfscript.script.CFCatchStatement;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFReturnStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+import cfml.parsing.cfscript.walker.CFScriptTreeVisitor;
+import cfml.parsing.cfscript.walker.CFScriptTreeWalker;
+
+public class TestFlatTree {
+	
+	private CFCompoundStatement tree;
+	
+	/**
+	 * { if (a && 1) { f(x = b, 2); } return a; }
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final CFBinaryExpression cond = new CFBinaryExpression(token(CFSCRIPTLexer.ANDOPERATOR, "&&", 1), id("a", 1),
+				new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, "1", 1)));
+		final CFFunctionExpression call = new CFFunctionExpression(id("f", 2), new ArrayList<CFExpression>(
+				Arrays.asList(new CFAssignmentExpression(token(CFSCRIPTLexer.EQUALSOP, "=", 2), id("x", 2), id("b", 2)),
+						new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, "2", 2)))));
+		final CFCompoundStatement then = new CFCompoundStatement();
+		then.add(new CFExpressionStatement(call));
+		tree = new CFCompoundStatement();
+		tree.add(new CFIfStatement(token(CFSCRIPTLexer.IF, "if", 1), cond, then, null));
+		tree.add(new CFReturnStatement(token(CFSCRIPTLexer.RETURN, "return", 4), id("a", 4)));
+	}
+	
+	/**
+	 * The nodes are numbered in the order the walker enters them, with the parent and child index the walker gives.
+	 */
+	@Test
+	public void testSameAsWalker() {
+		final FlatTree flat = FlatTree.of(tree);
+		final List<Object> nodes = new ArrayList<Object>();
+		final List<Object> parents = new ArrayList<Object>();
+		final CFScriptTreeWalker walker = new CFScriptTreeWalker();
+		walker.walk(tree, new CFScriptTreeVisitor() {
+			@Override
+			public Action enterStatement(CFScriptStatement statement) {
+				nodes.add(statement);
+				parents.add(walker.getParent());
+				return Action.CONTINUE;
+			}
+			
+			@Override
+			public Action enterExpression(CFExpression expression) {
+				nodes.add(expression);
+				parents.add(walker.getParent());
+				return Action.CONTINUE;
+			}
+		});
+		assertEquals(nodes.size(), flat.size());
+		assertEquals(1, flat.getRootCount());
+		assertEquals(0, flat.getRoot(0));
+		for (int i = 0; i < nodes.size(); i++) {
+			assertSame("node " + i, nodes.get(i).getClass(), flat.getNodeClass(i));
+			assertEquals("node " + i, nodes.get(i) instanceof CFExpression, flat.isExpression(i));
+			final int parent = flat.getParent(i);
+			assertSame("node " + i, parents.get(i), parent < 0 ? null : nodes.get(parent));
+		}
+		assertEquals(flat.size(), flat.getEnd(0));
+	}
+	
+	@Test
+	public void testNodes() {
+		final FlatTree flat = FlatTree.of(tree);
+		final FlatNode root = flat.getNode(0);
+		assertNull(root.getParent());
+		assertEquals(0, root.getExpressionCount());
+		assertEquals(2, root.getStatementCount());
+		
+		// the if without an else
+		final FlatNode ifNode = root.getStatement(0);
+		assertSame(CFIfStatement.class, ifNode.getNodeClass());
+		assertEquals(root, ifNode.getParent());
+		assertEquals(2, ifNode.getStatementCount());
+		assertNull(ifNode.getStatement(1));
+		assertEquals(-1, flat.getStatement(ifNode.getIndex(), 1));
+		assertEquals(root.getStatement(1).getIndex(), flat.getEnd(ifNode.getIndex()));
+		
+		final FlatNode cond = ifNode.getExpression(0);
+		assertEquals("&&", cond.getText());
+		assertEquals(CFSCRIPTLexer.AND, cond.getData());
+		assertEquals("a", cond.getExpression(0).getText());
+		assertEquals(1, cond.getExpression(0).getLine());
+		assertEquals(10, cond.getExpression(0).getOffset());
+		assertEquals("1", cond.getExpression(1).getText());
+		
+		// then, the expression statement, the call
+		final FlatNode call = ifNode.getStatement(0).getStatement(0).getExpression(0);
+		assertSame(CFFunctionExpression.class, call.getNodeClass());
+		assertEquals("f", call.getText());
+		// x = b is a named argument, the child is its value
+		assertEquals("b", call.getExpression(0).getText());
+		assertEquals(2, call.getExpression(0).getLine());
+		
+		final FlatNode returned = root.getStatement(1).getExpression(0);
+		assertEquals("a", returned.getText());
+		assertEquals(4, returned.getLine());
+		assertFalse(returned.equals(cond.getExpression(0)));
+		assertEquals(returned, flat.getNode(returned.getIndex()));
+		
+		try {
+			root.getExpression(0);
+			fail("no expressions");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testSharedPool() {
+		final StringPool pool = new StringPool();
+		final FlatTree first = FlatTree.of(Arrays.asList(tree, null, tree), pool);
+		final int size = pool.size();
+		final FlatTree second = FlatTree.of(Arrays.asList(tree), pool);
+		// no new strings, and the trees of the first are in a row
+		assertEquals(size, pool.size());
+		assertEquals(2, first.getRootCount());
+		assertEquals(second.size() * 2, first.size());
+		assertEquals(second.size(), first.getRoot(1));
+		assertEquals(first.size(), first.getEnd(first.getRoot(1)));
+		assertEquals(-1, first.getParent(first.getRoot(1)));
+		for (int i = 0; i < second.size(); i++) {
+			assertSame(second.getText(i), first.getText(second.size() + i));
+		}
+		assertEquals(FlatTree.kindOf(CFIdentifier.class), first.getKind(first.getNode(1).getExpression(0)
+				.getExpression(0).getIndex()));
+		assertSame(CFIdentifier.class, FlatTree.getKindClass(FlatTree.kindOf(CFIdentifier.class)));
+	}
+	
+	/**
+	 * More child slots and nodes than the builder starts with, so its arrays grow while children are linked.
+	 */
+	@Test
+	public void testLargeTree() throws Exception {
+		final CFCompoundStatement large = new CFCompoundStatement();
+		for (int i = 1; i <= 40; i++) {
+			large.add(new CFExpressionStatement(new CFFunctionExpression(id("f", i), new ArrayList<CFExpression>(
+					Arrays.asList(id("a", i), id("b", i), id("c", i))))));
+		}
+		final FlatTree flat = FlatTree.of(large);
+		assertEquals(1 + 40 * 5, flat.size());
+		for (int node = 0; node < flat.size(); node++) {
+			final int count = flat.getExpressionCount(node) + flat.getStatementCount(node);
+			for (int i = 0; i < count; i++) {
+				final int child = i < flat.getExpressionCount(node) ? flat.getExpression(node, i)
+						: flat.getStatement(node, i - flat.getExpressionCount(node));
+				if (child >= 0) {
+					assertEquals("child " + i + " of " + node, node, flat.getParent(child));
+				}
+			}
+		}
+		final FlatNode last = flat.getNode(0).getStatement(39).getExpression(0);
+		assertEquals("f", last.getText());
+		assertEquals(40, last.getLine());
+		assertEquals("c", last.getExpression(2).getText());
+		assertEquals(flat.size(), flat.getEnd(0));
+	}
+	
+	/**
+	 * The declarations keep their names, types, parameters and attributes.
+	 */
+	@Test
+	public void testDeclarations() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		final CFScriptStatement script = parser.parseScript("component output=false { property string name; "
+				+ "public string function f(required string a, b = 1) output=true { "
+				+ "try { return a; } catch (any e) { return b; } } }");
+		assertTrue(parser.getMessages().toString(), parser.getMessages().isEmpty());
+		final FlatTree flat = FlatTree.of(script);
+		FlatNode component = null;
+		FlatNode property = null;
+		FlatNode function = null;
+		FlatNode caught = null;
+		for (int node = 0; node < flat.size(); node++) {
+			final Class<?> nodeClass = flat.getNodeClass(node);
+			if (nodeClass == CFCompDeclStatement.class) {
+				component = flat.getNode(node);
+			} else if (nodeClass == CFPropertyStatement.class) {
+				property = flat.getNode(node);
+			} else if (nodeClass == CFFuncDeclStatement.class) {
+				function = flat.getNode(node);
+			} else if (nodeClass == CFCatchStatement.class) {
+				caught = flat.getNode(node);
+			}
+		}
+		assertEquals(1, component.getAttributeCount());
+		assertEquals("output", component.getAttributeName(0).getName());
+		assertEquals("false", component.getAttributeValue(0).getText());
+		
+		assertEquals("name", property.getPropertyName().getText());
+		assertEquals("string", property.getPropertyType().getText());
+		assertTrue(property.isShortHand());
+		
+		assertEquals("f", function.getName());
+		assertEquals("string", function.getReturnType());
+		assertEquals(UserDefinedFunction.ACCESS_PUBLIC, function.getAccess());
+		assertFalse(function.isStatic());
+		assertFalse(function.isFinal());
+		assertEquals(1, function.getAttributeCount());
+		assertEquals("output", function.getAttributeName(0).getName());
+		assertEquals(2, function.getParameterCount());
+		assertEquals("a", function.getParameterName(0));
+		assertEquals("string", function.getParameterType(0));
+		assertTrue(function.isParameterRequired(0));
+		assertNull(function.getParameterDefault(0));
+		assertEquals("b", function.getParameterName(1));
+		assertNull(function.getParameterType(1));
+		assertFalse(function.isParameterRequired(1));
+		assertEquals("1", function.getParameterDefault(1).getText());
+		
+		assertEquals("any", caught.getType());
+		assertEquals("e", caught.getVariable().getName());
+		assertNull(caught.getReturnType());
+		assertEquals(0, caught.getParameterCount());
+	}
+	
+	private static CFIdentifier id(String name, int line) {
+		return new CFIdentifier(token(CFSCRIPTLexer.IDENTIFIER, name, line), name);
+	}
+	
+	private static CommonToken token(int type, String text, int line) {
+		final CommonToken token = new CommonToken(type, text);
+		token.setLine(line);
+		token.setStartIndex(line * 10);
+		return token;
+	}
+}
@@ -0,0 +1,74 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringWriter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class TestGrammarProfiler {
+	
+	private static final String SCRIPT = "var a = 1;\nif (a > 2) { b = foo(a, 'x'); } else { b = [1,2]; }";
+	
+	private static CFMLParserPool pool;
+	
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new CFMLParserPool();
+	}
+	
+	@Test
+	public void testRecordsScriptAndExpressions() throws Exception {
+		GrammarProfiler profiler = new GrammarProfiler();
+		CFMLParser parser = new CFMLParser(pool.getDictionary());
+		parser.setProfiler(profiler);
+		parser.parseScript(SCRIPT);
+		parser.parseCFExpression("a + b * 2", null);
+		assertEquals(2, profiler.getParses());
+		assertFalse(profiler.getDecisions().isEmpty());
+		
+		long invocations = 0;
+		for (GrammarProfiler.Entry decision : profiler.getDecisions()) {
+			assertTrue(decision.getDecision() >= 0);
+			invocations += decision.getInvocations();
+		}
+		long ruleInvocations = 0;
+		for (GrammarProfiler.Entry rule : profiler.getRules()) {
+			assertEquals(-1, rule.getDecision());
+			ruleInvocations += rule.getInvocations();
+		}
+		assertEquals(invocations, ruleInvocations);
+		
+		parser.setProfiler(null);
+		assertNull(parser.getProfiler());
+		parser.parseCFExpression("a + b * 2", null);
+		assertEquals(2, profiler.getParses());
+	}
+	
+	@Test
+	public void testReports() throws Exception {
+		GrammarProfiler profiler = new GrammarProfiler();
+		profiler.createPool(pool.getDictionary()).parseScript(SCRIPT);
+		assertEquals(1, profiler.getParses());
+		
+		StringWriter csv = new StringWriter();
+		profiler.writeDecisionsCSV(csv);
+		String[] lines = csv.toString().split("\n");
+		assertTrue(lines[0].startsWith("rule,decision,invocations,timeNanos"));
+		assertEquals(profiler.getDecisions().size() + 1, lines.length);
+		
+		StringWriter json = new StringWriter();
+		profiler.writeJSON(json);
+		assertTrue(json.toString().startsWith("{\n  \"parses\": 1,"));
+		assertTrue(json.toString().contains("\"rules\": ["));
+		assertTrue(json.toString().contains("\"llFallback\": "));
+		
+		profiler.clear();
+		assertEquals(0, profiler.getParses());
+		assertTrue(profiler.getDecisions().isEmpty());
+	}
+}
@@ -0,0 +1,201 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestIncrementalScriptParser {
+	
+	private static final String COMPONENT = "component {\n"
+			+ "\tfunction one(a) {\n"
+			+ "\t\tvar x = a + 1;\n"
+			+ "\t\tif (x > 2) {\n"
+			+ "\t\t\tx = x * 2;\n"
+			+ "\t\t}\n"
+			+ "\t\treturn x;\n"
+			+ "\t}\n"
+			+ "\tfunction two(b) {\n"
+			+ "\t\tvar y = foo(b, 'text');\n"
+			+ "\t\treturn y;\n"
+			+ "\t}\n"
+			+ "}\n";
+	
+	private IncrementalScriptParser parser;
+	
+	@Before
+	public void setUp() {
+		parser = new IncrementalScriptParser();
+	}
+	
+	private static String positions(CFScriptStatement script) {
+		if (script == null) {
+			return "null";
+		}
+		StringBuilder sb = new StringBuilder();
+		Deque<Object> pending = new ArrayDeque<Object>();
+		pending.push(script);
+		while (!pending.isEmpty()) {
+			Object current = pending.pop();
+			List<CFScriptStatement> scripts;
+			List<CFExpression> expressions;
+			if (current instanceof CFScriptStatement) {
+				CFScriptStatement statement = (CFScriptStatement) current;
+				sb.append(statement.getClass().getSimpleName()).append('@').append(statement.getOffset()).append(':')
+						.append(statement.getLine()).append(':').append(statement.getColumn()).append('\n');
+				scripts = statement.decomposeScript();
+				expressions = statement.decomposeExpression();
+			} else {
+				CFExpression expression = (CFExpression) current;
+				sb.append(expression.getClass().getSimpleName()).append('@').append(expression.getOffset()).append(':')
+						.append(expression.getLine()).append(':').append(expression.getColumn()).append('\n');
+				scripts = expression.decomposeScript();
+				expressions = expression.decomposeExpression();
+			}
+			if (scripts != null) {
+				for (Object child : scripts) {
+					if (child != null && child != current) {
+						pending.push(child);
+					}
+				}
+			}
+			if (expressions != null) {
+				for (Object child : expressions) {
+					if (child != null) {
+						pending.push(child);
+					}
+				}
+			}
+		}
+		return sb.toString();
+	}
+	
+	private static String tokens(IncrementalParseResult result) {
+		StringBuilder sb = new StringBuilder();
+		for (Token token : result.getTokens()) {
+			sb.append(token.getTokenIndex()).append(' ').append(token.getType()).append(' ').append(token.getStartIndex())
+					.append('-').append(token.getStopIndex()).append(' ').append(token.getLine()).append(':')
+					.append(token.getCharPositionInLine()).append(' ').append(token.getText()).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	private void assertSameAsFullParse(IncrementalParseResult result) throws Exception {
+		IncrementalParseResult full = new IncrementalScriptParser().parse(result.getText());
+		assertEquals(full.getScript() == null ? null : full.getScript().Decompile(0),
+				result.getScript() == null ? null : result.getScript().Decompile(0));
+		assertEquals(positions(full.getScript()), positions(result.getScript()));
+		assertEquals(tokens(full), tokens(result));
+		assertEquals(full.getTree().toStringTree(), result.getTree().toStringTree());
+		assertEquals(full.getMessages().size(), result.getMessages().size());
+	}
+	
+	private IncrementalParseResult edit(IncrementalParseResult result, String find, int removed, String inserted)
+			throws Exception {
+		int offset = result.getText().indexOf(find);
+		assertTrue(find, offset >= 0);
+		return parser.reparse(result, new TextEdit(offset, removed, inserted));
+	}
+	
+	private IncrementalParseResult parse(String cfscript) throws Exception {
+		IncrementalParseResult result = parser.parse(cfscript);
+		assertNotNull(result.getScript());
+		assertTrue(result.getMessages().toString(), result.getMessages().isEmpty());
+		return result;
+	}
+	
+	@Test
+	public void testEditInsideStatement() throws Exception {
+		IncrementalParseResult result = parse(COMPONENT);
+		assertFalse(result.isIncremental());
+		
+		// change "x * 2" to "x * 20 + 1" inside the if block of the first function
+		result = edit(result, "2;\n\t\t}", 1, "20 + 1");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+		assertTrue(result.getReparsedLength() < result.getText().length() / 4);
+	}
+	
+	@Test
+	public void testSequenceOfEdits() throws Exception {
+		IncrementalParseResult result = parse(COMPONENT);
+		// a new line inside the first function moves everything behind it
+		result = edit(result, "\t\treturn x;", 0, "\t\tx++;\n");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+		result = edit(result, "'text'", 6, "'other', 3");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+		result = edit(result, "a + 1", 5, "a");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+		// typing a statement character by character passes through broken states
+		String typed = "z = 1;";
+		int offset = result.getText().indexOf("\t\treturn y;");
+		for (int i = 0; i < typed.length(); i++) {
+			result = parser.reparse(result, TextEdit.insert(offset + i, typed.substring(i, i + 1)));
+			assertSameAsFullParse(result);
+		}
+	}
+	
+	@Test
+	public void testEditTopLevelStatement() throws Exception {
+		IncrementalParseResult result = parse("a = 1;\nb = foo(a, 2);\nif (b) {\n\tc = 3;\n}\n");
+		result = edit(result, "2)", 1, "a +\n 2");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+		// the positions behind the first edit are moved once they are read, and again by the next edit
+		result = edit(result, "3;", 1, "4");
+		assertSameAsFullParse(result);
+		assertTrue(result.isIncremental());
+	}
+	
+	@Test
+	public void testEditAcrossStatementsFallsBack() throws Exception {
+		IncrementalParseResult result = parse(COMPONENT);
+		// removes the end of the first function and the start of the second
+		result = edit(result, "return x;", "return x;\n\t}\n\tfunction two(b) {".length(), "return x;");
+		assertSameAsFullParse(result);
+		assertFalse(result.isIncremental());
+	}
+	
+	@Test(expected = IllegalStateException.class)
+	public void testStaleResult() throws Exception {
+		IncrementalParseResult result = parse(COMPONENT);
+		parser.reparse(result, TextEdit.insert(0, " "));
+		parser.reparse(result, TextEdit.insert(0, " "));
+	}
+	
+	@Test
+	public void testTextEdit() {
+		assertEquals("abXYe", new TextEdit(2, 2, "XY").apply("abcde"));
+		assertEquals("ae", TextEdit.delete(1, 3).apply("abcde"));
+		assertEquals(-2, TextEdit.delete(1, 2).getDelta());
+	}
+	
+	@Test
+	public void testTextBuffer() {
+		String text = "abcde";
+		TextBuffer buffer = new TextBuffer(text);
+		TextEdit[] edits = { TextEdit.insert(5, "fg"), new TextEdit(1, 2, "XY"), TextEdit.delete(0, 1),
+				TextEdit.insert(3, new String(new char[200]).replace('\0', 'z')), TextEdit.delete(2, 150) };
+		for (TextEdit edit : edits) {
+			text = edit.apply(text);
+			buffer.apply(edit);
+			assertEquals(text, buffer.toString());
+			assertEquals(text.length(), buffer.length());
+			assertEquals(text.substring(1, 4), buffer.subSequence(1, 4));
+		}
+	}
+}
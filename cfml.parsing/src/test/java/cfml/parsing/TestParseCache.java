@@ -0,0 +1,390 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.Token;
+
+import org.junit.BeforeClass;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestParseCache {
+	
+	private static final String SCRIPT = "component {\n"
+			+ "\tproperty name=\"id\" type=\"numeric\";\n"
+			+ "\tfunction one(required string a, b = 2) {\n"
+			+ "\t\tvar x = { key: [1, 2.5, 'text', true], other: a ?: b };\n"
+			+ "\t\tfor (var i = 1; i <= 10; i++) { x.key[i] = i > 5 ? -i : i & 'a'; }\n"
+			+ "\t\twhile (x.len() > 0) { switch (a) { case 'a': break; default: continue; } }\n"
+			+ "\t\treturn new some.Component(argumentCollection = arguments);\n"
+			+ "\t}\n"
+			+ "}\n";
+	
+	private static CFMLParserPool pool;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@BeforeClass
+	public static void setUpClass() {
+		pool = new CFMLParserPool();
+	}
+	
+	private static String decompile(CFScriptStatement script) {
+		try {
+			return script == null ? "null" : script.Decompile(0);
+		} catch (Exception e) {
+			return e.getMessage();
+		}
+	}
+	
+	private static String describe(ParseResult result) throws Exception {
+		StringBuilder sb = new StringBuilder();
+		sb.append(decompile(result.getScript())).append('\n');
+		Deque<Object> pending = new ArrayDeque<Object>();
+		if (result.getScript() != null) {
+			pending.push(result.getScript());
+		}
+		while (!pending.isEmpty()) {
+			Object current = pending.pop();
+			List<CFScriptStatement> scripts;
+			List<CFExpression> expressions;
+			if (current instanceof CFScriptStatement) {
+				CFScriptStatement statement = (CFScriptStatement) current;
+				sb.append(statement.getClass().getSimpleName()).append('@').append(statement.getOffset()).append(':')
+						.append(statement.getLine()).append(':').append(statement.getColumn());
+				scripts = statement.decomposeScript();
+				expressions = statement.decomposeExpression();
+			} else {
+				CFExpression expression = (CFExpression) current;
+				sb.append(expression.getClass().getSimpleName()).append('@').append(expression.getOffset()).append(':')
+						.append(expression.getLine()).append(':').append(expression.getColumn());
+				scripts = expression.decomposeScript();
+				expressions = expression.decomposeExpression();
+			}
+			if (((cfml.parsing.cfscript.HasToken) current).getToken() != null) {
+				sb.append(' ').append(((cfml.parsing.cfscript.HasToken) current).getToken().getText());
+			}
+			sb.append('\n');
+			for (List<?> children : new List<?>[] { scripts, expressions }) {
+				if (children != null) {
+					for (Object child : children) {
+						if (child != null && child != current) {
+							pending.push(child);
+						}
+					}
+				}
+			}
+		}
+		for (ParseMessage message : result.getMessages()) {
+			sb.append(message.getClass().getSimpleName()).append(' ').append(message).append('\n');
+		}
+		return sb.toString();
+	}
+	
+	private static List<String> scriptSources() throws IOException {
+		List<String> sources = new ArrayList<String>();
+		for (Path path : CFMLProjectParser.findSources(Paths.get("src/test/resources/cfml"))) {
+			String contents = new String(Files.readAllBytes(path), StandardCharsets.UTF_8);
+			if (CFMLProjectParser.isScript(path, contents)) {
+				sources.add(contents);
+			}
+		}
+		sources.add(SCRIPT);
+		return sources;
+	}
+	
+	@Test
+	public void testRoundTrip() throws Exception {
+		int parsed = 0;
+		for (String source : scriptSources()) {
+			ParseResult result;
+			try {
+				result = pool.parseScript(source);
+			} catch (Exception e) {
+				continue;
+			}
+			ParseResult copy = ASTSerializer.deserialize(ASTSerializer.serialize(result));
+			assertEquals(describe(result), describe(copy));
+			parsed++;
+		}
+		assertTrue(parsed > 0);
+	}
+	
+	private static String describe(Token token) {
+		return token.getType() + " " + token.getText() + " " + token.getStartIndex() + "-" + token.getStopIndex() + " "
+				+ token.getLine() + ":" + token.getCharPositionInLine() + " " + token.getChannel() + " "
+				+ token.getTokenIndex();
+	}
+	
+	/**
+	 * Compares every field of the AST classes, following references; a node or token met again must be the copy of the
+	 * one met before.
+	 */
+	private static void assertSameTree(String path, Object expected, Object actual, Map<Object, Object> copies)
+			throws Exception {
+		if (expected == null || actual == null) {
+			assertTrue(path + ": " + expected + " <> " + actual, expected == actual);
+			return;
+		}
+		if (expected instanceof String || expected instanceof Number || expected instanceof Boolean
+				|| expected instanceof Character) {
+			assertEquals(path, expected, actual);
+			return;
+		}
+		final Object copy = copies.get(expected);
+		if (copy != null) {
+			assertSame(path, copy, actual);
+			return;
+		}
+		copies.put(expected, actual);
+		if (expected instanceof Token) {
+			assertEquals(path, describe((Token) expected), describe((Token) actual));
+			return;
+		}
+		if (ASTFields.isCFMLClass(expected.getClass())) {
+			assertEquals(path, expected.getClass(), actual.getClass());
+			for (Field field : ASTFields.layout(expected.getClass())) {
+				assertSameTree(path + "." + field.getName(), field.get(expected), field.get(actual), copies);
+			}
+		}
+		if (expected instanceof List) {
+			final List<?> expectedList = (List<?>) expected;
+			final List<?> actualList = (List<?>) actual;
+			assertEquals(path + ".size", expectedList.size(), actualList.size());
+			for (int i = 0; i < expectedList.size(); i++) {
+				assertSameTree(path + "[" + i + "]", expectedList.get(i), actualList.get(i), copies);
+			}
+		} else if (expected instanceof Map) {
+			final Map<?, ?> expectedMap = (Map<?, ?>) expected;
+			assertEquals(path + ".size", expectedMap.size(), ((Map<?, ?>) actual).size());
+			final Iterator<? extends Map.Entry<?, ?>> entries = ((Map<?, ?>) actual).entrySet().iterator();
+			int i = 0;
+			for (Map.Entry<?, ?> entry : expectedMap.entrySet()) {
+				final Map.Entry<?, ?> actualEntry = entries.next();
+				assertSameTree(path + ".key" + i, entry.getKey(), actualEntry.getKey(), copies);
+				assertSameTree(path + ".value" + i, entry.getValue(), actualEntry.getValue(), copies);
+				i++;
+			}
+		} else if (!ASTFields.isCFMLClass(expected.getClass())) {
+			fail(path + ": unexpected " + expected.getClass().getName());
+		}
+	}
+	
+	private static void assertSameResult(ParseResult expected, ParseResult actual) throws Exception {
+		final Map<Object, Object> copies = new IdentityHashMap<>();
+		assertSameTree("script", expected.getScript(), actual.getScript(), copies);
+		assertSameTree("messages", expected.getMessages(), actual.getMessages(), copies);
+	}
+	
+	@Test
+	public void testFieldsRoundTrip() throws Exception {
+		int parsed = 0;
+		for (String source : scriptSources()) {
+			ParseResult result;
+			try {
+				result = pool.parseScript(source);
+			} catch (Exception e) {
+				continue;
+			}
+			assertSameResult(result, ASTSerializer.deserialize(ASTSerializer.serialize(result)));
+			parsed++;
+		}
+		assertTrue(parsed > 0);
+	}
+	
+	@Test
+	public void testFieldsRoundTripDetached() throws Exception {
+		for (final TokenRetention retention : TokenRetention.values()) {
+			CFMLParserPool detached = new CFMLParserPool(pool.getDictionary()) {
+				@Override
+				protected CFMLParser createParser() {
+					CFMLParser parser = super.createParser();
+					parser.setTokenRetention(retention);
+					return parser;
+				}
+			};
+			ParseResult result = detached.parseScript(SCRIPT);
+			assertNotNull(retention.name(), result.getScript());
+			assertSameResult(result, ASTSerializer.deserialize(ASTSerializer.serialize(result)));
+		}
+	}
+	
+	@Test
+	public void testUnknownTag() throws Exception {
+		byte[] data = ASTSerializer.serialize(pool.parseScript(SCRIPT));
+		// the tag of the root node follows the magic number and the grammar version
+		int root = 4 + 2 + ASTSerializer.getGrammarVersion().length();
+		assertEquals(ASTSerializer.getGrammarVersion(), new String(data, 6, root - 6, StandardCharsets.UTF_8));
+		data[root] = 127;
+		try {
+			ASTSerializer.deserialize(data);
+			fail("unknown tag accepted");
+		} catch (IOException e) {
+			assertTrue(e.getMessage(), e.getMessage().contains("Unknown node tag 127"));
+		}
+		try {
+			ASTSerializer.serialize(new ParseResult(new CFCompoundStatement() {
+				private static final long serialVersionUID = 1L;
+			}, new ArrayList<ParseMessage>()));
+			fail("node class without a codec accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+	
+	@Test
+	public void testParents() throws Exception {
+		ParseResult copy = ASTSerializer.deserialize(ASTSerializer.serialize(pool.parseScript(SCRIPT)));
+		if (copy.getScript() == null) {
+			return;
+		}
+		Deque<CFScriptStatement> pending = new ArrayDeque<CFScriptStatement>();
+		pending.push(copy.getScript());
+		while (!pending.isEmpty()) {
+			CFScriptStatement current = pending.pop();
+			for (CFScriptStatement child : current.decomposeScript()) {
+				if (child != null && child != current) {
+					assertTrue(child.getParent() == null || child.getParent() instanceof cfml.parsing.cfscript.HasToken);
+					pending.push(child);
+				}
+			}
+		}
+	}
+	
+	@Test
+	public void testCorruptData() throws Exception {
+		byte[] data = ASTSerializer.serialize(pool.parseScript(SCRIPT));
+		try {
+			ASTSerializer.deserialize(new byte[] { 1, 2, 3, 4 });
+			fail("bad magic accepted");
+		} catch (IOException e) {
+			// expected
+		}
+		for (int length : new int[] { 0, 5, data.length / 2, data.length - 1 }) {
+			if (length >= data.length) {
+				continue;
+			}
+			try {
+				ASTSerializer.deserialize(java.util.Arrays.copyOf(data, length));
+				fail("truncated data accepted");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+		// the grammar version string with a length far beyond the data, and beyond any sane string
+		for (byte[] length : new byte[][] { { (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x1F },
+				{ (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, (byte) 0xFF, 0x07 } }) {
+			final byte[] corrupt = java.util.Arrays.copyOf(new byte[] { 'C', 'F', 'A', 'S', 1 }, 5 + length.length + 3);
+			System.arraycopy(length, 0, corrupt, 5, length.length);
+			try {
+				ASTSerializer.deserialize(corrupt);
+				fail("string length accepted");
+			} catch (IOException e) {
+				// expected
+			}
+		}
+	}
+	
+	@Test
+	public void testCache() throws Exception {
+		Path directory = folder.newFolder("cache").toPath();
+		ParseCache cache = new ParseCache(directory);
+		assertTrue(cache.getDirectory().startsWith(directory));
+		assertTrue(cache.getDirectory().toString().contains(ASTSerializer.getGrammarVersion()));
+		
+		assertNull(cache.get(SCRIPT));
+		ParseResult first = cache.parseScript(pool, SCRIPT);
+		assertEquals(2, cache.getMisses());
+		assertTrue(Files.isRegularFile(cache.entryFor(SCRIPT)));
+		
+		ParseResult second = cache.parseScript(pool, SCRIPT);
+		assertEquals(1, cache.getHits());
+		assertEquals(describe(first), describe(second));
+		
+		// a new cache on the same directory, as on the next run
+		ParseCache next = new ParseCache(directory);
+		assertNotNull(next.get(SCRIPT));
+		assertNull(next.get(SCRIPT + " "));
+		
+		// a damaged entry is dropped and parsed again
+		Files.write(cache.entryFor(SCRIPT), new byte[] { 0, 1 });
+		assertNull(next.get(SCRIPT));
+		assertFalse(Files.exists(cache.entryFor(SCRIPT)));
+		assertEquals(describe(first), describe(next.parseScript(pool, SCRIPT)));
+		assertTrue(Files.exists(cache.entryFor(SCRIPT)));
+	}
+	
+	@Test
+	public void testCacheKeyHasSettings() throws Exception {
+		ParseCache cache = new ParseCache(folder.newFolder("settings").toPath());
+		assertEquals(cache.entryFor(SCRIPT), cache.entryFor(SCRIPT, TokenRetention.FULL, Integer.MAX_VALUE));
+		assertFalse(cache.entryFor(SCRIPT).equals(cache.entryFor(SCRIPT, TokenRetention.POSITIONS, Integer.MAX_VALUE)));
+		assertFalse(cache.entryFor(SCRIPT).equals(cache.entryFor(SCRIPT, TokenRetention.FULL, 10)));
+		
+		CFMLParserPool limited = new CFMLParserPool(pool.getDictionary());
+		limited.setMaxMessages(1);
+		String broken = "x = ; y = ; z = ;";
+		ParseResult all = cache.parseScript(pool, broken);
+		assertTrue(all.getMessages().size() > 2);
+		ParseResult first = cache.parseScript(limited, broken);
+		assertEquals(0, cache.getHits());
+		assertEquals(2, first.getMessages().size());
+		assertTrue(first.getMessages().get(1) instanceof SuppressedMessages);
+		assertEquals(all.getMessages().size(), cache.parseScript(pool, broken).getMessages().size());
+		assertEquals(2, cache.parseScript(limited, broken).getMessages().size());
+		assertEquals(2, cache.getHits());
+	}
+	
+	@Test
+	public void testProjectParserUsesCache() throws Exception {
+		Path root = Paths.get("src/test/resources/cfml/tests");
+		CFMLProjectParser projectParser = new CFMLProjectParser(pool, 2, CFMLProjectParser.DEFAULT_MAX_IN_FLIGHT_BYTES);
+		ProjectParseResult uncached = projectParser.parse(root);
+		ParseCache cache = new ParseCache(folder.newFolder("project").toPath());
+		projectParser.setCache(cache);
+		projectParser.parse(root);
+		long misses = cache.getMisses();
+		ProjectParseResult cached = projectParser.parse(root);
+		// only scripts that failed with an exception are parsed again
+		assertTrue(cache.getMisses() - misses <= misses);
+		assertTrue(cache.getHits() > 0);
+		for (int i = 0; i < uncached.getResults().size(); i++) {
+			FileParseResult expected = uncached.getResults().get(i);
+			FileParseResult actual = cached.getResults().get(i);
+			assertEquals(expected.getScripts().size(), actual.getScripts().size());
+			for (int s = 0; s < expected.getScripts().size(); s++) {
+				assertEquals(decompile(expected.getScripts().get(s)), decompile(actual.getScripts().get(s)));
+			}
+			assertEquals(expected.getMessages().size(), actual.getMessages().size());
+			for (int m = 0; m < expected.getMessages().size(); m++) {
+				assertEquals(expected.getMessages().get(m).getLineNumber(), actual.getMessages().get(m).getLineNumber());
+			}
+		}
+	}
+}
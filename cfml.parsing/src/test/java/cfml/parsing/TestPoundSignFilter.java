@@ -0,0 +1,89 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.StringReader;
+import java.nio.CharBuffer;
+
+import org.junit.Test;
+
+import cfml.parsing.util.PoundSignFilter;
+import cfml.parsing.util.PoundSignFilterStream;
+import cfml.parsing.util.PoundSignFilterStreamException;
+
+public class TestPoundSignFilter {
+	
+	private static final String[] INPUTS = { "writeoutput( \"##\" );", "writeoutput( \"#a##b#\" );",
+			"writeoutput( \"#a#\" );", "writeoutput( \"#a#more text\" );", "writeoutput( \"more text#a#\" );",
+			"writeoutput( \"more text#a#more text\" );", "writeoutput( \"more#a#text#a#more#a#text\" );",
+			"x = 1;\nwriteoutput( \"#x#\" );", "/* this is a comment line */\na = 1;\nwriteoutput( a );",
+			"arrayAppend( variables.framework.routes, { '#method##route#' : target } );",
+			"x = \"a#f('b#c#d')#e\"; // \"#y#\"\r\ny = 'it''s #z#''';", "/**/ x = \"#a#\"\"\" / 2; /*/ '#b#' */",
+			"x = \"\";" };
+	
+	/**
+	 * The filter gives the same text as the deprecated stream.
+	 */
+	@Test
+	@SuppressWarnings("deprecation")
+	public void testSameAsStream() throws Exception {
+		final PoundSignFilter filter = new PoundSignFilter();
+		for (String input : INPUTS) {
+			final PoundSignFilterStream stream = new PoundSignFilterStream(new StringReader(input));
+			final char[] buffer = new char[1024];
+			final int read = stream.read(buffer);
+			stream.close();
+			assertEquals(input, new String(buffer, 0, read), filter.filter(input).toString());
+			assertEquals(input, stream.getAdded(), filter.getAdded());
+		}
+	}
+	
+	@Test
+	public void testOffsets() {
+		final PoundSignFilter filter = new PoundSignFilter();
+		final String input = "x = \"a#b#c\"; y = \"#z#\";";
+		final String filtered = filter.filter(input).toString();
+		assertEquals("x = \"a\"&b&\"c\"; y = z;", filtered);
+		// text before the first string
+		assertEquals(2, filter.toOriginal(2));
+		assertEquals(2, filter.toFiltered(2));
+		// b, and the chars added for the pound signs around it
+		assertEquals(input.indexOf('b'), filter.toOriginal(filtered.indexOf('b')));
+		assertEquals(filtered.indexOf('b'), filter.toFiltered(input.indexOf('b')));
+		assertEquals(input.indexOf('#'), filter.toOriginal(filtered.indexOf('&')));
+		// z, whose quotes and pound signs were dropped
+		assertEquals(input.indexOf('z'), filter.toOriginal(filtered.indexOf('z')));
+		assertEquals(filtered.indexOf('z'), filter.toFiltered(input.indexOf('z') - 1));
+		assertEquals(filtered.indexOf(';', filtered.indexOf('z')), filter.toFiltered(input.lastIndexOf(';')));
+		assertEquals(input.length(), filter.toOriginal(filtered.length()));
+		assertEquals(filtered.length(), filter.toFiltered(input.length()));
+	}
+	
+	/**
+	 * The filter is reused, and reads char buffers and readers.
+	 */
+	@Test
+	public void testReuse() throws Exception {
+		final PoundSignFilter filter = new PoundSignFilter();
+		final StringBuilder large = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			large.append("x").append(i).append(" = \"#a#-#b#\";\n");
+		}
+		final String expected = filter.filter(large).toString();
+		assertEquals(2000, filter.getAdded());
+		assertEquals(expected, filter.filter(new StringReader(large.toString())).toString());
+		assertEquals("a", filter.filter(CharBuffer.wrap(("--\"#a#\"--").toCharArray(), 2, 5)).toString());
+		assertEquals(2, filter.toOriginal(0));
+		assertEquals("y = 1;", filter.filter("y = 1;").toString());
+	}
+	
+	@Test(expected = PoundSignFilterStreamException.class)
+	public void testUnclosedExpression() {
+		new PoundSignFilter().filter("x = \"#a\";");
+	}
+	
+	@Test(expected = PoundSignFilterStreamException.class)
+	public void testUnclosedString() {
+		new PoundSignFilter().filter("x = \"a");
+	}
+}
@@ -0,0 +1,151 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.ListTokenSource;
+import org.antlr.v4.runtime.ParserRuleContext;
+import org.antlr.v4.runtime.Token;
+import org.antlr.v4.runtime.atn.PredictionMode;
+import org.junit.Test;
+
+import cfml.CFSCRIPTLexer;
+import cfml.CFSCRIPTParser;
+import cfml.CFSCRIPTParser.ScriptBlockContext;
+import cfml.CFSCRIPTParserBaseListener;
+
+public class TestScriptParseMode {
+	
+	/** x = 1; */
+	private static final int[] VALID = { CFSCRIPTLexer.IDENTIFIER, CFSCRIPTLexer.EQUALSOP,
+			CFSCRIPTLexer.INTEGER_LITERAL, CFSCRIPTLexer.SEMICOLON };
+	/** x = 1; y = ; */
+	private static final int[] BROKEN = { CFSCRIPTLexer.IDENTIFIER, CFSCRIPTLexer.EQUALSOP,
+			CFSCRIPTLexer.INTEGER_LITERAL, CFSCRIPTLexer.SEMICOLON, CFSCRIPTLexer.IDENTIFIER, CFSCRIPTLexer.EQUALSOP,
+			CFSCRIPTLexer.SEMICOLON };
+	
+	@Test
+	public void testFastPath() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		assertNull(parser.getLastParseMode());
+		parser.parseScriptBlockContext(tokens("valid.cfm", VALID));
+		assertEquals(ScriptParseMode.SLL, parser.getLastParseMode());
+		assertEquals(ScriptParseMode.SLL, parser.getParseMode("valid.cfm"));
+		assertTrue(parser.getMessages().isEmpty());
+	}
+	
+	/**
+	 * A syntax error is reported once, and the statements in front of it are kept.
+	 */
+	@Test
+	public void testSyntaxError() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		final ScriptBlockContext tree = parser.parseScriptBlockContext(tokens("broken.cfm", BROKEN));
+		assertEquals(ScriptParseMode.SYNTAX_ERROR, parser.getLastParseMode());
+		assertFalse(parser.getMessages().isEmpty());
+		assertEquals("x=1;", tree.getChild(0).getText());
+	}
+	
+	/**
+	 * A source that had errors last time is parsed with LL right away, and with SLL again once it is fixed.
+	 */
+	@Test
+	public void testRememberedMode() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		parser.parseScriptBlockContext(tokens("edited.cfm", BROKEN));
+		parser.clearMessages();
+		parser.parseScriptBlockContext(tokens("edited.cfm", BROKEN));
+		assertEquals(ScriptParseMode.SYNTAX_ERROR, parser.getParseMode("edited.cfm"));
+		assertFalse(parser.getMessages().isEmpty());
+		
+		parser.clearMessages();
+		parser.parseScriptBlockContext(tokens("edited.cfm", VALID));
+		assertTrue(parser.getMessages().isEmpty());
+		assertEquals(ScriptParseMode.SLL, parser.getParseMode("edited.cfm"));
+		assertNull(parser.getParseMode("other.cfm"));
+	}
+	
+	/**
+	 * A remembered LL or SYNTAX_ERROR mode skips the SLL parse only while the tokens are the same, and only so often.
+	 */
+	@Test
+	public void testReprobe() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		parser.setProfiler(new GrammarProfiler());
+		final long probed = predictions(parser, "probed.cfm", BROKEN);
+		assertTrue(predictions(parser, "probed.cfm", BROKEN) < probed);
+		// an edit that keeps the errors
+		final int[] edited = new int[VALID.length + BROKEN.length];
+		System.arraycopy(VALID, 0, edited, 0, VALID.length);
+		System.arraycopy(BROKEN, 0, edited, VALID.length, BROKEN.length);
+		final long editedProbed = predictions(parser, "probed.cfm", edited);
+		final long editedSkipped = predictions(parser, "probed.cfm", edited);
+		assertTrue(editedSkipped < editedProbed);
+		assertEquals(ScriptParseMode.SYNTAX_ERROR, parser.getParseMode("probed.cfm"));
+		for (int i = 1; i < CFMLParser.MAX_SKIPPED_PROBES; i++) {
+			assertEquals(editedSkipped, predictions(parser, "probed.cfm", edited));
+		}
+		assertEquals(editedProbed, predictions(parser, "probed.cfm", edited));
+		assertEquals(editedSkipped, predictions(parser, "probed.cfm", edited));
+	}
+	
+	/**
+	 * LL prediction is used for the top level element that failed only; the elements after it are predicted with SLL
+	 * again.
+	 */
+	@Test
+	public void testPredictionSwitch() throws Exception {
+		final int[] three = new int[VALID.length * 3];
+		for (int i = 0; i < 3; i++) {
+			System.arraycopy(VALID, 0, three, i * VALID.length, VALID.length);
+		}
+		final List<PredictionMode> modes = new ArrayList<PredictionMode>();
+		final CFSCRIPTParser parser = new CFSCRIPTParser(tokens("switch.cfm", three));
+		parser.getInterpreter().setPredictionMode(PredictionMode.SLL);
+		parser.addParseListener(new CFMLParser.PredictionSwitch(parser, VALID.length, true));
+		parser.addParseListener(new CFSCRIPTParserBaseListener() {
+			@Override
+			public void enterEveryRule(ParserRuleContext ctx) {
+				if (ctx.getParent() instanceof ScriptBlockContext) {
+					modes.add(parser.getInterpreter().getPredictionMode());
+				}
+			}
+		});
+		parser.scriptBlock();
+		assertEquals(Arrays.asList(PredictionMode.SLL, PredictionMode.LL, PredictionMode.SLL), modes);
+		assertEquals(PredictionMode.SLL, parser.getInterpreter().getPredictionMode());
+	}
+	
+	/**
+	 * @return the number of predictions a parse made, more if it tried SLL first
+	 */
+	private static long predictions(CFMLParser parser, String sourceName, int[] types) throws Exception {
+		parser.getProfiler().clear();
+		parser.parseScriptBlockContext(tokens(sourceName, types));
+		long predictions = 0;
+		for (GrammarProfiler.Entry decision : parser.getProfiler().getDecisions()) {
+			predictions += decision.getInvocations();
+		}
+		return predictions;
+	}
+	
+	private static CommonTokenStream tokens(String sourceName, int[] types) {
+		final List<Token> tokens = new ArrayList<Token>();
+		for (int type : types) {
+			final String text = type == CFSCRIPTLexer.IDENTIFIER ? "x" : type == CFSCRIPTLexer.INTEGER_LITERAL ? "1"
+					: CFSCRIPTLexer.VOCABULARY.getLiteralName(type).replace("'", "");
+			final CommonToken token = new CommonToken(type, text);
+			token.setTokenIndex(tokens.size());
+			tokens.add(token);
+		}
+		return new CommonTokenStream(new ListTokenSource(tokens, sourceName));
+	}
+}
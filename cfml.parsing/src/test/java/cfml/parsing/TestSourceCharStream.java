@@ -0,0 +1,141 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+import org.antlr.v4.runtime.CharStreams;
+import org.antlr.v4.runtime.CommonTokenStream;
+import org.antlr.v4.runtime.misc.Interval;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestSourceCharStream {
+	
+	private static final Charset LATIN_1 = StandardCharsets.ISO_8859_1;
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testByteOrderMark() throws Exception {
+		final File utf8 = write("bom.cfm", new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF },
+				"<cfset x = \"café\">", StandardCharsets.UTF_8);
+		final SourceCharStream input = SourceCharStream.open(utf8.toPath(), LATIN_1);
+		assertEquals(StandardCharsets.UTF_8, input.getCharset());
+		assertEquals("<cfset x = \"café\">", input.toString());
+		
+		final File utf16 = write("bom16.cfm", new byte[] { (byte) 0xFF, (byte) 0xFE }, "x = 1;",
+				StandardCharsets.UTF_16LE);
+		assertEquals("x = 1;", SourceCharStream.open(utf16.toPath(), LATIN_1).toString());
+	}
+	
+	@Test
+	public void testPageEncoding() throws Exception {
+		final String tag = "<cfprocessingdirective pageEncoding=\"iso-8859-1\">\n<cfset x = \"café\">";
+		final SourceCharStream input = SourceCharStream.open(write("tag.cfm", null, tag, LATIN_1).toPath(),
+				StandardCharsets.UTF_8);
+		assertEquals(LATIN_1, input.getCharset());
+		assertEquals(tag, input.toString());
+		
+		final String script = "component {\n\tpageencoding 'iso-8859-1';\n\tx = \"café\";\n}";
+		assertEquals(script,
+				SourceCharStream.open(write("script.cfc", null, script, LATIN_1).toPath(), StandardCharsets.UTF_8)
+						.toString());
+		
+		// an assignment is not a directive
+		final String assignment = "<cfset pageEncoding = \"iso-8859-1\">";
+		assertEquals(StandardCharsets.UTF_8, SourceCharStream
+				.open(write("var.cfm", null, assignment, LATIN_1).toPath(), StandardCharsets.UTF_8).getCharset());
+	}
+	
+	/**
+	 * Only the start of a file is searched for the directive.
+	 */
+	@Test
+	public void testPageEncodingScanLength() {
+		final StringBuilder text = new StringBuilder();
+		while (text.length() < SourceCharStream.PAGEENCODING_SCAN_LENGTH) {
+			text.append("<!-- padding -->\n");
+		}
+		final ByteBuffer late = ByteBuffer
+				.wrap((text + "<cfprocessingdirective pageencoding=\"iso-8859-1\">").getBytes(LATIN_1));
+		assertEquals(StandardCharsets.UTF_8, SourceCharStream.detectCharset(late, StandardCharsets.UTF_8));
+		
+		text.setLength(SourceCharStream.PAGEENCODING_SCAN_LENGTH - "<cfprocessingdirective pageencoding".length());
+		final ByteBuffer early = ByteBuffer
+				.wrap((text + "<cfprocessingdirective pageencoding=\"iso-8859-1\">").getBytes(LATIN_1));
+		assertEquals(LATIN_1, SourceCharStream.detectCharset(early, StandardCharsets.UTF_8));
+	}
+	
+	@Test
+	public void testDetectCharset() {
+		final ByteBuffer unknown = ByteBuffer.wrap("<cfprocessingdirective pageencoding=\"nope\">".getBytes(LATIN_1));
+		assertEquals(LATIN_1, SourceCharStream.detectCharset(unknown, LATIN_1));
+		assertEquals(0, unknown.position());
+	}
+	
+	/**
+	 * The stream lexes as a string stream does, also when the file is mapped.
+	 */
+	@Test
+	public void testLexer() throws Exception {
+		final StringBuilder script = new StringBuilder();
+		for (int i = 0; i < 5000; i++) {
+			script.append("x").append(i).append(" = \"value\" & y; // line\n");
+		}
+		final File file = write("large.cfm", null, script.toString(), StandardCharsets.UTF_8);
+		final SourceCharStream input = SourceCharStream.open(file.toPath(), StandardCharsets.UTF_8);
+		assertEquals(script.length(), input.size());
+		assertEquals(file.getPath(), input.getSourceName());
+		assertEquals("x1 = ", input.getText(Interval.of(script.indexOf("x1 "), script.indexOf("x1 ") + 4)));
+		assertEquals("x0", input.subSequence(0, 2).toString());
+		
+		final CommonTokenStream expected = new CommonTokenStream(
+				new CFSCRIPTLexer(CharStreams.fromString(script.toString())));
+		expected.fill();
+		final CommonTokenStream actual = new CommonTokenStream(new CFSCRIPTLexer(input));
+		actual.fill();
+		assertEquals(expected.size(), actual.size());
+		for (int i = 0; i < expected.size(); i++) {
+			assertEquals(expected.get(i).getText(), actual.get(i).getText());
+		}
+	}
+	
+	@Test
+	public void testParseFile() throws Exception {
+		final CFMLParser parser = new CFMLParser();
+		final String text = "component { function f() { return 1; } }";
+		final File script = write("test.cfc", null, text, StandardCharsets.UTF_8);
+		assertEquals(decompile(parser.parseScript(text)), decompile(parser.parseScriptFile(script.getPath())));
+		assertEquals(ScriptParseMode.SLL, parser.getParseMode(script.getPath()));
+		
+		final File page = write("test.cfm", null, "<cfoutput><cfset x = 1></cfoutput>", StandardCharsets.UTF_8);
+		assertEquals(2, parser.addCFMLSource(page).getAllCFMLTags().size());
+		assertEquals(1, parser.parseCFMLDocumentFile(page.getPath()).getChildren().size());
+	}
+	
+	private static String decompile(CFScriptStatement statement) {
+		return statement == null ? null : statement.Decompile(0);
+	}
+	
+	private File write(String name, byte[] mark, String text, Charset charset) throws Exception {
+		final File file = folder.newFile(name);
+		final byte[] bytes = text.getBytes(charset);
+		final ByteBuffer content = ByteBuffer.allocate((mark == null ? 0 : mark.length) + bytes.length);
+		if (mark != null) {
+			content.put(mark);
+		}
+		content.put(bytes);
+		Files.write(file.toPath(), content.array());
+		return file;
+	}
+}
@@ -0,0 +1,146 @@
+package cfml.parsing;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+import org.antlr.v4.runtime.Token;
+import org.junit.Before;
+import org.junit.Test;
+
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.HasToken;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestTokenRetention {
+	
+	private static final String SCRIPT = "component {\n"
+			+ "\tfunction one(required string a, b = 2) {\n"
+			+ "\t\tvar x = { key: [1, 2.5, 'text', true], other: a ?: b };\n"
+			+ "\t\tfor (var i = 1; i <= 10; i++) { x.key[i] = i > 5 ? -i : i & 'a'; }\n"
+			+ "\t\treturn new some.Component(argumentCollection = arguments);\n"
+			+ "\t}\n"
+			+ "}\n";
+	
+	private CFMLParser parser;
+	
+	@Before
+	public void setUp() {
+		parser = new CFMLParser();
+	}
+	
+	private static List<Object> nodes(CFScriptStatement script) {
+		List<Object> nodes = new ArrayList<Object>();
+		Deque<Object> pending = new ArrayDeque<Object>();
+		pending.push(script);
+		while (!pending.isEmpty()) {
+			Object current = pending.pop();
+			nodes.add(current);
+			List<?> scripts = current instanceof CFScriptStatement ? ((CFScriptStatement) current).decomposeScript()
+					: ((CFExpression) current).decomposeScript();
+			List<?> expressions = current instanceof CFScriptStatement
+					? ((CFScriptStatement) current).decomposeExpression()
+					: ((CFExpression) current).decomposeExpression();
+			for (List<?> children : new List<?>[] { scripts, expressions }) {
+				if (children != null) {
+					for (Object child : children) {
+						if (child != null && child != current) {
+							pending.push(child);
+						}
+					}
+				}
+			}
+		}
+		return nodes;
+	}
+	
+	private static String positions(List<Object> nodes) {
+		StringBuilder sb = new StringBuilder();
+		for (Object node : nodes) {
+			Token token = ((HasToken) node).getToken();
+			sb.append(node.getClass().getSimpleName());
+			if (token != null) {
+				sb.append(' ').append(token.getType()).append('@').append(token.getStartIndex()).append('-')
+						.append(token.getStopIndex()).append(':').append(token.getLine()).append(':')
+						.append(token.getCharPositionInLine());
+			}
+			sb.append('\n');
+		}
+		return sb.toString();
+	}
+	
+	@Test
+	public void testDefaultKeepsTokens() throws Exception {
+		assertEquals(TokenRetention.FULL, parser.getTokenRetention());
+		CFScriptStatement script = parser.parseScript(SCRIPT);
+		assertNotNull(script);
+		assertNotNull(script.getTokens());
+	}
+	
+	@Test
+	public void testSource() throws Exception {
+		CFScriptStatement full = parser.parseScript(SCRIPT);
+		parser.reset();
+		parser.setTokenRetention(TokenRetention.SOURCE);
+		CFScriptStatement light = parser.parseScript(SCRIPT);
+		assertNotNull(full);
+		assertNotNull(light);
+		assertNull(light.getTokens());
+		assertEquals(full.Decompile(0), light.Decompile(0));
+		List<Object> fullNodes = nodes(full);
+		List<Object> lightNodes = nodes(light);
+		assertEquals(positions(fullNodes), positions(lightNodes));
+		for (int i = 0; i < fullNodes.size(); i++) {
+			Token original = ((HasToken) fullNodes.get(i)).getToken();
+			Token token = ((HasToken) lightNodes.get(i)).getToken();
+			if (token != null) {
+				assertTrue(token instanceof PositionToken);
+				assertNull(token.getInputStream());
+				assertEquals(original.getText(), token.getText());
+			}
+		}
+	}
+	
+	@Test
+	public void testPositions() throws Exception {
+		CFScriptStatement full = parser.parseScript(SCRIPT);
+		parser.reset();
+		parser.setTokenRetention(TokenRetention.POSITIONS);
+		CFScriptStatement light = parser.parseScript(SCRIPT);
+		assertNotNull(full);
+		assertNotNull(light);
+		assertNull(light.getTokens());
+		assertEquals(full.Decompile(0), light.Decompile(0));
+		List<Object> fullNodes = nodes(full);
+		List<Object> lightNodes = nodes(light);
+		assertEquals(positions(fullNodes), positions(lightNodes));
+		for (int i = 0; i < fullNodes.size(); i++) {
+			Token original = ((HasToken) fullNodes.get(i)).getToken();
+			Token token = ((HasToken) lightNodes.get(i)).getToken();
+			if (token != null) {
+				assertNull(((PositionToken) token).getSource());
+				assertEquals(original.getText(), token.getText());
+				assertEquals(((PositionToken) token).getLength(), token.getStopIndex() - token.getStartIndex() + 1);
+			}
+		}
+	}
+	
+	@Test
+	public void testPositionToken() {
+		PositionToken token = new PositionToken(7, 4, 3, 2, 1, "abc\ndef");
+		assertEquals("def", token.getText());
+		assertEquals(6, token.getStopIndex());
+		assertNull(new PositionToken(7, 4, 3, 2, 1, "abc").getText());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testNullRetention() {
+		parser.setTokenRetention(null);
+	}
+}
@@ -0,0 +1,173 @@
+package cfml.parsing.analysis;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.junit.Test;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ParseMessage;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFIfStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestAnalysisEngine {
+	
+	/**
+	 * Reports every identifier named x.
+	 */
+	private static final class NoX extends AnalysisRule {
+		NoX() {
+			super("no-x", CFIdentifier.class);
+		}
+		
+		@Override
+		public void enterExpression(CFExpression expression, AnalysisContext context) {
+			if ("x".equals(((CFIdentifier) expression).getName())) {
+				context.report(this, expression, "x is not allowed");
+			}
+		}
+	}
+	
+	/**
+	 * Counts the if statements of a file in its state and reports the count at the end of the file.
+	 */
+	private static final class CountIfs extends AnalysisRule {
+		CountIfs() {
+			super("count-ifs", CFIfStatement.class);
+		}
+		
+		@Override
+		public void startFile(AnalysisContext context) {
+			context.setState(this, new int[1]);
+		}
+		
+		@Override
+		public void enterStatement(CFScriptStatement statement, AnalysisContext context) {
+			((int[]) context.getState(this))[0]++;
+		}
+		
+		@Override
+		public void endFile(AnalysisContext context) {
+			context.report(this, 0, 0, 0, null, ((int[]) context.getState(this))[0] + " ifs");
+		}
+	}
+	
+	/**
+	 * Fails on the first node.
+	 */
+	private static final class Broken extends AnalysisRule {
+		int calls;
+		
+		Broken() {
+			super("broken");
+		}
+		
+		@Override
+		public void enterStatement(CFScriptStatement statement, AnalysisContext context) {
+			calls++;
+			throw new IllegalStateException("broken");
+		}
+	}
+	
+	@Test
+	public void testOneWalk() {
+		final AnalysisEngine engine = new AnalysisEngine(Arrays.asList(new NoX(), new CountIfs()));
+		final List<Finding> findings = engine.analyze(Paths.get("a.cfm"), Collections.singletonList(script(2)));
+		assertEquals(3, findings.size());
+		assertEquals("no-x", findings.get(0).getRule());
+		assertEquals("x is not allowed", findings.get(0).getMessage());
+		assertEquals(7, findings.get(0).getLineNumber());
+		assertEquals("x", findings.get(0).getDocData());
+		assertEquals("2 ifs", findings.get(2).getMessage());
+		
+		final List<RuleStatistics> statistics = engine.getStatistics();
+		// entered and left: 4 identifiers, 2 ifs
+		assertEquals(8, statistics.get(0).getCalls());
+		assertEquals(2, statistics.get(0).getFindings());
+		assertEquals(4, statistics.get(1).getCalls());
+		assertEquals(0, statistics.get(1).getNanos());
+		engine.resetStatistics();
+		assertEquals(0, engine.getStatistics().get(0).getCalls());
+	}
+	
+	@Test
+	public void testParallel() throws Exception {
+		final AnalysisEngine engine = new AnalysisEngine(Arrays.asList(new NoX(), new CountIfs()), 4);
+		engine.setTiming(true);
+		final List<FileParseResult> files = new ArrayList<FileParseResult>();
+		for (int i = 0; i < 50; i++) {
+			files.add(new FileParseResult(Paths.get("f" + i + ".cfm"), Arrays.asList(script(i % 5), script(1)),
+					Collections.<ParseMessage> emptyList()));
+		}
+		final List<String> reported = Collections.synchronizedList(new ArrayList<String>());
+		engine.setDiagnosticSink((source, message) -> reported.add(source));
+		final Map<Path, List<Finding>> results = engine.analyze(files);
+		assertEquals(50, results.size());
+		int i = 0;
+		for (Map.Entry<Path, List<Finding>> result : results.entrySet()) {
+			assertEquals(files.get(i).getPath(), result.getKey());
+			final List<Finding> findings = result.getValue();
+			assertEquals((i % 5 + 1) + " ifs", findings.get(findings.size() - 1).getMessage());
+			i++;
+		}
+		assertEquals(engine.getStatistics().get(0).getFindings() + 50, reported.size());
+		assertTrue(engine.getStatistics().get(0).getNanos() > 0);
+	}
+	
+	@Test
+	public void testFailingRule() {
+		final Broken broken = new Broken();
+		final AnalysisEngine engine = new AnalysisEngine(Arrays.asList(broken, new NoX()));
+		final List<Finding> findings = engine.analyze(null, Collections.singletonList(script(3)));
+		assertEquals(1, broken.calls);
+		assertEquals("broken", findings.get(0).getRule());
+		assertTrue(findings.get(0).getMessage().startsWith("Rule broken failed"));
+		assertEquals(4, findings.size());
+	}
+	
+	@Test(expected = IllegalArgumentException.class)
+	public void testRuleGivenTwice() {
+		final NoX rule = new NoX();
+		new AnalysisEngine(Arrays.asList(rule, rule));
+	}
+	
+	/**
+	 * { if (x) { y = 1; } ... } with the given number of ifs, on lines 7, 8, ...
+	 */
+	private static CFScriptStatement script(int ifs) {
+		final CFCompoundStatement script = new CFCompoundStatement();
+		for (int i = 0; i < ifs; i++) {
+			final CFCompoundStatement then = new CFCompoundStatement();
+			then.add(new CFExpressionStatement(new CFAssignmentExpression(token(CFSCRIPTLexer.EQUALSOP, "=", i),
+					id("y", i), new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, "1", i)))));
+			script.add(new CFIfStatement(token(CFSCRIPTLexer.IF, "if", i), id("x", i), then, null));
+		}
+		return script;
+	}
+	
+	private static CFIdentifier id(String name, int line) {
+		return new CFIdentifier(token(CFSCRIPTLexer.IDENTIFIER, name, line), name);
+	}
+	
+	private static CommonToken token(int type, String text, int line) {
+		final CommonToken token = new CommonToken(type, text);
+		token.setLine(7 + line);
+		return token;
+	}
+}
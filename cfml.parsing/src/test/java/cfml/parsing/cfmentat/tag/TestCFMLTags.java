@@ -0,0 +1,118 @@
+package cfml.parsing.cfmentat.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import cfml.dictionary.DictionaryRegistry;
+import cfml.dictionary.SyntaxDictionary;
+import cfml.parsing.CFMLParser;
+import cfml.parsing.CFMLParserPool;
+import cfml.parsing.CFMLSource;
+import net.htmlparser.jericho.HTMLElements;
+import net.htmlparser.jericho.TagType;
+
+public class TestCFMLTags {
+	
+	private static final DictionaryRegistry REGISTRY = new DictionaryRegistry();
+	
+	@Test
+	public void testConcurrentRegister() throws Exception {
+		final SyntaxDictionary cf10 = REGISTRY.getDictionary("cf10");
+		final ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			final List<Future<Boolean>> results = new ArrayList<Future<Boolean>>();
+			for (int i = 0; i < 8; i++) {
+				results.add(executor.submit(new Callable<Boolean>() {
+					public Boolean call() {
+						CFMLTags.register(cf10);
+						return CFMLTags.isRegistered(cf10);
+					}
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue(result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+		assertEquals(1, countTagTypes("<cfoutput"));
+	}
+	
+	/**
+	 * Another dictionary is registered too, and tags it has in common are not registered twice.
+	 */
+	@Test
+	public void testSecondDictionary() {
+		final SyntaxDictionary cf10 = REGISTRY.getDictionary("cf10");
+		final SyntaxDictionary cf11 = REGISTRY.getDictionary("cf11");
+		CFMLTags.register(cf10);
+		CFMLTags.register(cf11);
+		assertTrue(CFMLTags.isRegistered(cf11));
+		assertEquals(1, countTagTypes("<cfoutput"));
+		assertEquals(0, countTagTypes("<cfcomment"));
+	}
+	
+	/**
+	 * A pool registers its dictionary before it hands out workers, so they only look it up.
+	 */
+	@Test
+	public void testPoolRegisters() {
+		final SyntaxDictionary cf10 = REGISTRY.getDictionary("cf10");
+		CFMLTags.deregister();
+		new CFMLParserPool(cf10);
+		assertTrue(CFMLTags.isRegistered(cf10));
+		assertEquals(1, countTagTypes("<cfoutput"));
+	}
+	
+	/**
+	 * Deregistering removes the tag types and end tag forbidden elements of the dictionaries, registering again
+	 * restores them.
+	 */
+	@Test
+	public void testDeregister() {
+		final SyntaxDictionary cf10 = REGISTRY.getDictionary("cf10");
+		CFMLTags.register(cf10);
+		assertTrue(HTMLElements.getEndTagForbiddenElementNames().contains("cfabort"));
+		CFMLTags.deregister();
+		assertFalse(CFMLTags.isRegistered(cf10));
+		assertFalse(HTMLElements.getEndTagForbiddenElementNames().contains("cfabort"));
+		assertEquals(0, countTagTypes("<cfoutput"));
+		assertEquals(1, countTagTypes("<cfset"));
+		CFMLTags.register(cf10);
+		assertTrue(HTMLElements.getEndTagForbiddenElementNames().contains("cfabort"));
+		assertEquals(1, countTagTypes("<cfoutput"));
+	}
+	
+	/**
+	 * A parser registers its own dictionary for its sources.
+	 */
+	@Test
+	public void testParserDictionary() {
+		final SyntaxDictionary lucee5 = REGISTRY.getDictionary("lucee5");
+		assertFalse(CFMLTags.isRegistered(lucee5));
+		final CFMLSource source = new CFMLParser(lucee5).addCFMLSource("test.cfm",
+				"<cfoutput><cfset x = 1></cfoutput>");
+		assertTrue(CFMLTags.isRegistered(lucee5));
+		assertEquals(2, source.getAllCFMLTags().size());
+	}
+	
+	private static int countTagTypes(String startDelimiter) {
+		int count = 0;
+		for (TagType tagType : TagType.getRegisteredTagTypes()) {
+			if (tagType.getStartDelimiter().equals(startDelimiter)) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
@@ -0,0 +1,194 @@
+package cfml.parsing.cfml;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import cfml.parsing.CFMLSource;
+import cfml.parsing.cfmentat.tag.CFMLTags;
+import net.htmlparser.jericho.Element;
+
+public class TestCFMLTagScanner {
+	
+	private static final String DOCUMENT = "<html>\r\n"
+			+ "<cfset x = 1>\r\n"
+			+ "<!--- outer <!--- inner ---> <cfset hidden = 1> --->\r\n"
+			+ "<cfif x GT 0 AND (y > 2)><p>yes</p></cfif>\r\n"
+			+ "<cfquery name=\"q\" datasource='ds'>\r\n"
+			+ "SELECT * FROM t WHERE id = <cfqueryparam value=\"#x#\" cfsqltype=\"cf_sql_integer\" />\r\n"
+			+ "</cfquery>\r\n"
+			+ "<cfscript>\r\n"
+			+ "\tif (a < b) { writeOutput('<cfset not a tag>'); }\r\n"
+			+ "</CFSCRIPT>\r\n"
+			+ "<cfoutput query=\"q\" group='a>b'>#id#</cfoutput>\r\n"
+			+ "</html>\r\n";
+	
+	/**
+	 * Records all callbacks as text.
+	 */
+	private static class Recorder extends CFMLTagHandler {
+		final List<String> events = new ArrayList<String>();
+		final List<ScannedTag> tags = new ArrayList<ScannedTag>();
+		
+		@Override
+		public void startTag(ScannedTag tag) {
+			tags.add(tag);
+			events.add("start " + tag.getName() + "@" + tag.getLine() + ":" + tag.getColumn());
+		}
+		
+		@Override
+		public void endTag(ScannedTag tag) {
+			events.add("end " + tag.getName() + "@" + tag.getLine() + ":" + tag.getColumn());
+		}
+		
+		@Override
+		public void comment(int begin, int end, int line, int column) {
+			events.add("comment@" + line + ":" + column);
+		}
+		
+		@Override
+		public void body(ScannedTag tag, String body, int line, int column) {
+			events.add("body " + tag.getName() + "@" + line + ":" + column + " " + body.trim());
+		}
+		
+		@Override
+		public void error(String message, int offset, int line, int column) {
+			events.add("error@" + line + ":" + column + " " + message);
+		}
+	}
+	
+	private static Recorder scan(String document) {
+		final Recorder recorder = new Recorder();
+		new CFMLTagScanner().scan(document, recorder);
+		return recorder;
+	}
+	
+	@Test
+	public void testEvents() {
+		final Recorder recorder = scan(DOCUMENT);
+		assertEquals("[start cfset@2:1, comment@3:1, start cfif@4:1, end cfif@4:36, start cfquery@5:1, "
+				+ "start cfqueryparam@6:28, body cfquery@5:35 SELECT * FROM t WHERE id = <cfqueryparam value=\"#x#\" "
+				+ "cfsqltype=\"cf_sql_integer\" />, end cfquery@7:1, start cfscript@8:1, "
+				+ "body cfscript@8:11 if (a < b) { writeOutput('<cfset not a tag>'); }, end cfscript@10:1, "
+				+ "start cfoutput@11:1, end cfoutput@11:37]", recorder.events.toString());
+	}
+	
+	@Test
+	public void testTags() {
+		final List<ScannedTag> tags = scan(DOCUMENT).tags;
+		final ScannedTag set = tags.get(0);
+		assertEquals("x = 1", set.getAttributesText());
+		assertTrue(set.getAttributes().isEmpty());
+		final ScannedTag cfif = tags.get(1);
+		assertEquals("x GT 0 AND (y > 2)", cfif.getAttributesText());
+		final ScannedTag query = tags.get(2);
+		assertEquals("q", query.getAttribute("NAME"));
+		assertEquals("ds", query.getAttribute("datasource"));
+		final ScannedTag param = tags.get(3);
+		assertTrue(param.isSelfClosing());
+		assertEquals("cf_sql_integer", param.getAttribute("cfsqltype"));
+		final ScannedTag output = tags.get(5);
+		assertEquals("a>b", output.getAttribute("group"));
+		assertEquals(DOCUMENT.indexOf("<cfoutput"), output.getBegin());
+		assertEquals(DOCUMENT.indexOf("#id#"), output.getEnd());
+	}
+	
+	@Test
+	public void testUnterminated() {
+		assertEquals("[error@1:6 Unterminated comment]", scan("text <!--- <!--- ---> <cfset x=1>").events.toString());
+		assertEquals("[start cfscript@1:1, error@1:1 Missing end tag of cfscript]",
+				scan("<cfscript>x = 1;").events.toString());
+		assertEquals("[error@2:1 Unterminated tag cfset]", scan("\n<cfset x = \"1>").events.toString());
+		assertEquals("[start cfquery@1:1, error@1:1 Missing end tag of cfquery]",
+				scan("<cfquery>select 1").events.toString());
+	}
+	
+	@Test
+	public void testNoBodies() {
+		final Recorder recorder = new Recorder();
+		final CFMLTagScanner scanner = new CFMLTagScanner();
+		scanner.setCaptureBodies(false);
+		scanner.scan(DOCUMENT, recorder);
+		for (String event : recorder.events) {
+			assertFalse(event, event.startsWith("body"));
+		}
+		assertEquals(6, recorder.tags.size());
+	}
+	
+	@Test
+	public void testStop() {
+		final CFMLTagScanner scanner = new CFMLTagScanner();
+		final List<String> names = new ArrayList<String>();
+		scanner.scan(DOCUMENT, new CFMLTagHandler() {
+			@Override
+			public void startTag(ScannedTag tag) {
+				names.add(tag.getName());
+				if (names.size() == 2) {
+					scanner.stop();
+				}
+			}
+		});
+		assertEquals("[cfset, cfif]", names.toString());
+	}
+	
+	/**
+	 * A document larger than the read buffer, delivered a few characters at a time.
+	 */
+	@Test
+	public void testLargeDocument() throws IOException {
+		final StringBuilder document = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			document.append("<p>row ").append(i).append("</p><cfset row").append(i).append(" = ").append(i)
+					.append(">\n");
+		}
+		document.append("<cfscript>done = true;</cfscript>");
+		final Reader reader = new StringReader(document.toString()) {
+			@Override
+			public int read(char[] cbuf, int off, int len) throws IOException {
+				return super.read(cbuf, off, Math.min(len, 7));
+			}
+		};
+		final Recorder recorder = new Recorder();
+		new CFMLTagScanner().scan(reader, recorder);
+		assertEquals(2001, recorder.tags.size());
+		assertEquals("row1999 = 1999", recorder.tags.get(1999).getAttributesText());
+		assertEquals("start cfset@2000:16", recorder.events.get(1999));
+		assertEquals("body cfscript@2001:11 done = true;", recorder.events.get(2001));
+	}
+	
+	@Test
+	public void testFindStartTags() {
+		assertEquals(6, CFMLTagScanner.findStartTags(DOCUMENT).size());
+	}
+	
+	/**
+	 * The scanner finds the same cfscript blocks as the Jericho element tree.
+	 */
+	@Test
+	public void testScriptsMatchCFMLSource() {
+		CFMLTags.register();
+		final String document = "<cfcomponent>\n<cffunction name=\"a\">\n<cfscript>\nx = 1;\n</cfscript>\n"
+				+ "</cffunction>\n<cfscript>y = 2;</cfscript>\n</cfcomponent>";
+		final CFMLSource source = new CFMLSource(document);
+		final List<String> expected = new ArrayList<String>();
+		for (Element element : source.getAllElements(CFMLTags.CFML_SCRIPT)) {
+			expected.add(source.getRow(element.getContent().getBegin()) + ":" + element.getContent());
+		}
+		final List<String> actual = new ArrayList<String>();
+		new CFMLTagScanner().scan(document, new CFMLTagHandler() {
+			@Override
+			public void body(ScannedTag tag, String body, int line, int column) {
+				actual.add(line + ":" + body);
+			}
+		});
+		assertEquals(expected, actual);
+	}
+}
@@ -0,0 +1,285 @@
+package cfml.parsing.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ParseMessage;
+import cfml.parsing.cfscript.CFAssignmentExpression;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFFullVarExpression;
+import cfml.parsing.cfscript.CFFunctionExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.CFNewExpression;
+import cfml.parsing.cfscript.CFVarDeclExpression;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFExpressionStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+
+public class TestCallGraph {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	private Path base;
+	private Path dao;
+	private Path service;
+	private Path page;
+	
+	/**
+	 * models/Base.cfc with getId(), models/Dao.cfc extending it, models/Service.cfc using a Dao and index.cfm using a
+	 * Service.
+	 */
+	@Before
+	public void setUp() throws Exception {
+		final Path root = folder.getRoot().toPath();
+		base = write(root.resolve("models/Base.cfc"));
+		dao = write(root.resolve("models/Dao.cfc"));
+		service = write(root.resolve("models/Service.cfc"));
+		page = write(root.resolve("index.cfm"));
+	}
+	
+	@Test
+	public void testResolve() throws Exception {
+		final CallGraph graph = project(4);
+		final SymbolIndex index = graph.getIndex();
+		assertEquals(4, graph.size());
+		final ComponentSymbol daoSymbol = index.get("models.Dao");
+		final ComponentSymbol serviceSymbol = index.get("models.Service");
+		final FunctionSymbol store = serviceSymbol.getFunction("store");
+		
+		// save(entity) in Dao.save, then dao.save(1) typed by the assignment in init()
+		final List<CallEdge> saves = graph.getCallers(daoSymbol, "save");
+		assertEquals(2, saves.size());
+		assertSame(daoSymbol.getFunction("save"), saves.get(0).getCallerFunction());
+		assertNull(saves.get(0).getSite().getReceiver());
+		assertSame(store, saves.get(1).getCallerFunction());
+		assertEquals("dao", saves.get(1).getSite().getReceiver());
+		assertEquals("Dao", saves.get(1).getSite().getComponentName());
+		
+		// variables.dao.getId(), inherited from Base
+		final List<CallEdge> ids = graph.getCallers(index.get("models.Base"), "getId");
+		assertEquals(1, ids.size());
+		assertSame(store, ids.get(0).getCallerFunction());
+		assertSame(index.get("models.Base"), ids.get(0).getTargetComponent());
+		
+		// new Dao() calls init, createObject does not
+		final List<CallEdge> created = graph.getInstantiations(daoSymbol);
+		assertEquals(1, created.size());
+		assertSame(daoSymbol.getFunction("init"), created.get(0).getTargetFunction());
+		final List<CallEdge> services = graph.getInstantiations(serviceSymbol);
+		assertEquals(1, services.size());
+		assertNull(services.get(0).getCallerFunction());
+		assertNull(services.get(0).getTargetFunction());
+		
+		// svc.store() in the template, writeOutput is a built in function
+		assertEquals(1, graph.getCallers(store).size());
+		assertEquals(Arrays.asList("writeOutput"), names(graph.getUnresolved()));
+		assertEquals(3, graph.getCalls(page).size());
+	}
+	
+	@Test
+	public void testUncalledAndImpact() throws Exception {
+		final CallGraph graph = project(1);
+		final SymbolIndex index = graph.getIndex();
+		final Map<ComponentSymbol, List<FunctionSymbol>> uncalled = graph.findUncalled();
+		// Dao.init is run by new, Service.init is not run by createObject
+		assertEquals(Arrays.asList(index.get("models.Service")), new ArrayList<ComponentSymbol>(uncalled.keySet()));
+		assertEquals(Arrays.asList(index.get("models.Service").getFunction("init")),
+				uncalled.get(index.get("models.Service")));
+		
+		final List<CallEdge> impact = graph.findImpact(index.get("models.Base").getFunction("getId"));
+		assertEquals(2, impact.size());
+		assertEquals("store", impact.get(0).getCallerFunction().getName());
+		assertEquals("index.cfm", impact.get(1).getCallerComponent().getPath());
+	}
+	
+	@Test
+	public void testUpdate() throws Exception {
+		final CallGraph graph = project(2);
+		final SymbolIndex index = graph.getIndex();
+		final FunctionSymbol oldGetId = index.get("models.Base").getFunction("getId");
+		
+		// Base without getId: the call in Service no longer resolves
+		graph.update(file(base, component(3, function("other", 1, new CFCompoundStatement()))));
+		assertTrue(graph.getCallers(oldGetId).isEmpty());
+		final CallEdge getId = find(graph.getCalls(service), "getId");
+		assertFalse(getId.isResolved());
+		// ordered by file, index.cfm first
+		assertEquals(Arrays.asList("writeOutput", "getId"), names(graph.getUnresolved()));
+		
+		graph.update(file(base, baseTree()));
+		final FunctionSymbol newGetId = index.get("models.Base").getFunction("getId");
+		assertSame(newGetId, find(graph.getCalls(service), "getId").getTargetFunction());
+		assertEquals(1, graph.getCallers(newGetId).size());
+		
+		assertTrue(graph.remove(dao));
+		assertFalse(graph.remove(dao));
+		assertEquals(3, graph.size());
+		assertTrue(graph.getCallers(newGetId).isEmpty());
+		assertEquals(Arrays.asList("writeOutput", "Dao", "save", "getId"), names(graph.getUnresolved()));
+	}
+	
+	private static CallEdge find(List<CallEdge> edges, String name) {
+		for (CallEdge edge : edges) {
+			if (name.equals(edge.getSite().getFunctionName())) {
+				return edge;
+			}
+		}
+		throw new AssertionError(name + " not called");
+	}
+	
+	private static List<String> names(List<CallEdge> edges) {
+		final List<String> names = new ArrayList<String>();
+		for (CallEdge edge : edges) {
+			final CallSite site = edge.getSite();
+			names.add(site.getKind() == CallSite.Kind.NEW ? site.getComponentName() : site.getFunctionName());
+		}
+		return names;
+	}
+	
+	private CallGraph project(int parallelism) throws Exception {
+		final CallGraph graph = new CallGraph(new SymbolIndex(folder.getRoot().toPath()), parallelism);
+		graph.update(Arrays.asList(file(base, baseTree()), file(dao, daoTree()), file(service, serviceTree()),
+				file(page, pageTree())));
+		return graph;
+	}
+	
+	/**
+	 * component { function getId() {} }
+	 */
+	private static CFScriptStatement baseTree() throws Exception {
+		return component(1, function("getId", 2, new CFCompoundStatement()));
+	}
+	
+	/**
+	 * component extends="Base" { function init() {} function save(entity) { save(entity); } }
+	 */
+	private static CFScriptStatement daoTree() throws Exception {
+		final CFCompoundStatement save = new CFCompoundStatement();
+		save.add(statement(call("save", 4, id("entity", 4))));
+		final CFCompoundStatement body = new CFCompoundStatement();
+		body.add(function("init", 2, new CFCompoundStatement()));
+		body.add(function("save", 3, save, new CFFunctionParameter(id("entity", 3), false, null, null)));
+		final Map<CFExpression, CFExpression> attributes = new LinkedHashMap<CFExpression, CFExpression>();
+		attributes.put(id("extends", 1), string("Base", 1));
+		return new CFCompDeclStatement(token("component", 1), attributes, body);
+	}
+	
+	/**
+	 * component { function init() { variables.dao = new Dao(); } function store() { dao.save(1); var id =
+	 * variables.dao.getId(); } }
+	 */
+	private static CFScriptStatement serviceTree() throws Exception {
+		final CFCompoundStatement init = new CFCompoundStatement();
+		init.add(statement(new CFAssignmentExpression(token("=", 3), member(3, id("variables", 3), id("dao", 3)),
+				new CFNewExpression(token("new", 3), id("Dao", 3), new ArrayList<CFExpression>()))));
+		final CFCompoundStatement store = new CFCompoundStatement();
+		store.add(statement(member(5, id("dao", 5), call("save", 5, number("1", 5)))));
+		store.add(statement(new CFVarDeclExpression(token("var", 6), id("id", 6),
+				member(6, id("variables", 6), id("dao", 6), call("getId", 6)))));
+		return component(1, function("init", 2, init), function("store", 4, store));
+	}
+	
+	/**
+	 * svc = createObject("component", "models.Service"); svc.store(); writeOutput(svc);
+	 */
+	private static CFScriptStatement pageTree() throws Exception {
+		final CFCompoundStatement page = new CFCompoundStatement();
+		page.add(statement(new CFAssignmentExpression(token("=", 1), id("svc", 1),
+				call("createObject", 1, string("component", 1), string("models.Service", 1)))));
+		page.add(statement(member(2, id("svc", 2), call("store", 2))));
+		page.add(statement(call("writeOutput", 3, id("svc", 3))));
+		return page;
+	}
+	
+	private static Path write(Path file) throws Exception {
+		Files.createDirectories(file.getParent());
+		return Files.write(file, "// parsed in the test".getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static FileParseResult file(Path path, CFScriptStatement script) {
+		return new FileParseResult(path, Collections.singletonList(script), Collections.<ParseMessage> emptyList());
+	}
+	
+	private static CFCompDeclStatement component(int line, CFFuncDeclStatement... functions) {
+		final CFCompoundStatement body = new CFCompoundStatement();
+		for (CFFuncDeclStatement function : functions) {
+			body.add(function);
+		}
+		return new CFCompDeclStatement(token("component", line), Collections.<CFExpression, CFExpression> emptyMap(),
+				body);
+	}
+	
+	private static CFFuncDeclStatement function(String name, int line, CFScriptStatement body,
+			CFFunctionParameter... formals) {
+		return new CFFuncDeclStatement(token("function", line), id(name, line), null, null, Arrays.asList(formals),
+				Collections.<CFExpression, CFExpression> emptyMap(), body, false, false, false);
+	}
+	
+	private static CFExpressionStatement statement(CFExpression expression) {
+		return new CFExpressionStatement(expression);
+	}
+	
+	private static CFFunctionExpression call(String name, int line, CFExpression... args) throws Exception {
+		return new CFFunctionExpression(id(name, line), new ArrayList<CFExpression>(Arrays.asList(args)));
+	}
+	
+	/**
+	 * @return first.second..., as the parser builds member access and member calls
+	 */
+	private static CFFullVarExpression member(int line, CFExpression first, CFExpression... members) {
+		final CFFullVarExpression expression = new CFFullVarExpression(token(first.Decompile(0), line), first);
+		for (CFExpression member : members) {
+			expression.addMember(member);
+		}
+		return expression;
+	}
+	
+	private static CFIdentifier id(String name, int line) {
+		return new CFIdentifier(token(name, line), name);
+	}
+	
+	private static CFLiteral string(String value, int line) {
+		return new CFLiteral(token(CFSCRIPTLexer.STRING_LITERAL, "'" + value + "'", line));
+	}
+	
+	private static CFLiteral number(String value, int line) {
+		return new CFLiteral(token(CFSCRIPTLexer.INTEGER_LITERAL, value, line));
+	}
+	
+	private static CommonToken token(String text, int line) {
+		return token(CFSCRIPTLexer.IDENTIFIER, text, line);
+	}
+	
+	private static CommonToken token(int type, String text, int line) {
+		final CommonToken token = new CommonToken(type, text);
+		token.setLine(line);
+		token.setStartIndex(line * 10);
+		return token;
+	}
+}
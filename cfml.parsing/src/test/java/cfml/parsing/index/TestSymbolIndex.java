@@ -0,0 +1,204 @@
+package cfml.parsing.index;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.antlr.v4.runtime.CommonToken;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import cfml.CFSCRIPTLexer;
+import cfml.parsing.CFMLProjectParser;
+import cfml.parsing.FileParseResult;
+import cfml.parsing.ParseMessage;
+import cfml.parsing.cfscript.CFExpression;
+import cfml.parsing.cfscript.CFIdentifier;
+import cfml.parsing.cfscript.CFLiteral;
+import cfml.parsing.cfscript.script.CFCompDeclStatement;
+import cfml.parsing.cfscript.script.CFCompoundStatement;
+import cfml.parsing.cfscript.script.CFFuncDeclStatement;
+import cfml.parsing.cfscript.script.CFFunctionParameter;
+import cfml.parsing.cfscript.script.CFPropertyStatement;
+import cfml.parsing.cfscript.script.CFScriptStatement;
+import cfml.parsing.cfscript.script.UserDefinedFunction;
+
+public class TestSymbolIndex {
+	
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+	
+	@Test
+	public void testCollect() throws Exception {
+		final SymbolIndex index = project();
+		assertEquals(2, index.size());
+		final ComponentSymbol user = index.get("MODELS.user");
+		assertEquals("models.User", user.getPath());
+		assertEquals("User", user.getName());
+		assertEquals("Base", user.getExtends());
+		assertEquals(3, user.getLine());
+		assertEquals(1, user.getProperties().size());
+		assertEquals("string email", user.getProperties().get(0).toString());
+		
+		final FunctionSymbol save = user.getFunction("SAVE");
+		assertEquals("private boolean save(required string mode, force=false)", save.toString());
+		assertEquals(UserDefinedFunction.ACCESS_PRIVATE, save.getAccess());
+		assertTrue(save.isFinal());
+		assertEquals(5, save.getLine());
+		// the nested function is not a member
+		assertNull(user.getFunction("inner"));
+		
+		// resolved in the package of User
+		final ComponentSymbol base = index.get("models.Base");
+		assertSame(base, index.resolve("Base", user));
+		assertSame(base.getFunction("getId"), index.findFunction(user, "getid"));
+		assertEquals(Arrays.asList(base), index.findDeclaring("getId"));
+		
+		assertTrue(index.remove(base.getFile()));
+		assertTrue(index.findDeclaring("getId").isEmpty());
+		assertNull(index.findFunction(user, "getId"));
+	}
+	
+	/**
+	 * A name not found by path or in the package of the referring component is resolved by the components of that
+	 * name.
+	 */
+	@Test
+	public void testResolveByName() throws Exception {
+		final SymbolIndex index = project();
+		final ComponentSymbol user = index.get("models.User");
+		assertSame(user, index.resolve("USER", null));
+		assertNull(index.resolve("Account", null));
+		
+		final Path other = write(folder.getRoot().toPath().resolve("admin/User.cfc"), "component {}");
+		final ComponentSymbol adminUser = index.update(file(other, new CFCompDeclStatement(token("component", 1),
+				Collections.<CFExpression, CFExpression> emptyMap(), new CFCompoundStatement())));
+		assertNull(index.resolve("User", null));
+		assertSame(adminUser, index.resolve("admin.user", null));
+		assertSame(user, index.resolve("User", index.get("models.Base")));
+		
+		assertTrue(index.remove(user.getFile()));
+		assertSame(adminUser, index.resolve("User", null));
+	}
+	
+	@Test
+	public void testWriteRead() throws Exception {
+		final SymbolIndex index = project();
+		final Path stored = folder.getRoot().toPath().resolve("index/symbols.bin");
+		index.write(stored);
+		final SymbolIndex read = SymbolIndex.read(stored);
+		assertEquals(index.getRoot(), read.getRoot());
+		assertEquals(2, read.size());
+		final ComponentSymbol user = read.get("models.User");
+		final ComponentSymbol original = index.get("models.User");
+		assertEquals(original.getFile(), user.getFile());
+		assertEquals(original.getLastModified(), user.getLastModified());
+		assertEquals(original.getSize(), user.getSize());
+		assertEquals(original.getExtends(), user.getExtends());
+		assertEquals(original.getFunctions().toString(), user.getFunctions().toString());
+		assertEquals(original.getFunction("save").getOffset(), user.getFunction("save").getOffset());
+		assertEquals(original.getProperties().toString(), user.getProperties().toString());
+		assertSame(read.get("models.Base"), read.findDeclaring("getId").get(0));
+	}
+	
+	@Test
+	public void testRefresh() throws Exception {
+		final Path root = folder.newFolder("app").toPath();
+		final Path a = write(root.resolve("a.cfc"), "component {}");
+		final Path b = write(root.resolve("sub/b.cfm"), "<cfset x = 1>");
+		final SymbolIndex index = new SymbolIndex(root);
+		final CFMLProjectParser parser = new CFMLProjectParser();
+		assertEquals(2, index.refresh(parser));
+		assertEquals("sub/b.cfm", index.getByFile(b).getPath());
+		assertEquals(0, index.refresh(parser));
+		
+		write(a, "component { }");
+		final ComponentSymbol old = index.get("a");
+		assertEquals(1, index.refresh(parser));
+		assertFalse(old == index.get("a"));
+		
+		Files.delete(b);
+		assertEquals(1, index.refresh(parser));
+		assertEquals(1, index.size());
+		assertNull(index.getByFile(b));
+	}
+	
+	/**
+	 * models/Base.cfc with getId() and models/User.cfc extending it.
+	 */
+	private SymbolIndex project() throws Exception {
+		final Path root = folder.getRoot().toPath();
+		final Path base = write(root.resolve("models/Base.cfc"), "component { function getId() {} }");
+		final Path user = write(root.resolve("models/User.cfc"), "component extends=\"Base\" { ... }");
+		final SymbolIndex index = new SymbolIndex(root);
+		
+		final CFCompoundStatement baseBody = new CFCompoundStatement();
+		baseBody.add(function("getId", null, null, 1, false, new CFCompoundStatement()));
+		index.update(file(base, new CFCompDeclStatement(token("component", 1),
+				Collections.<CFExpression, CFExpression> emptyMap(), baseBody)));
+		
+		final Map<CFIdentifier, CFExpression> propertyAttributes = new LinkedHashMap<CFIdentifier, CFExpression>();
+		propertyAttributes.put(id("name", 4), string("email", 4));
+		propertyAttributes.put(id("type", 4), string("string", 4));
+		final CFCompoundStatement saveBody = new CFCompoundStatement();
+		saveBody.add(function("inner", null, null, 6, false, new CFCompoundStatement()));
+		final CFCompoundStatement userBody = new CFCompoundStatement();
+		userBody.add(new CFPropertyStatement(token("property", 4), propertyAttributes));
+		userBody.add(function("save", "private", "boolean", 5, true, saveBody,
+				new CFFunctionParameter(id("mode", 5), true, "string", null),
+				new CFFunctionParameter(id("force", 5), false, null, new CFLiteral(token(CFSCRIPTLexer.BOOLEAN_LITERAL,
+						"false", 5)))));
+		final Map<CFExpression, CFExpression> componentAttributes = new LinkedHashMap<CFExpression, CFExpression>();
+		componentAttributes.put(id("extends", 3), string("Base", 3));
+		index.update(file(user, new CFCompDeclStatement(token("component", 3), componentAttributes, userBody)));
+		return index;
+	}
+	
+	private static Path write(Path file, String text) throws Exception {
+		Files.createDirectories(file.getParent());
+		return Files.write(file, text.getBytes(StandardCharsets.UTF_8));
+	}
+	
+	private static FileParseResult file(Path path, CFScriptStatement script) {
+		return new FileParseResult(path, Collections.singletonList(script), Collections.<ParseMessage> emptyList());
+	}
+	
+	private static CFFuncDeclStatement function(String name, String access, String returnType, int line,
+			boolean isFinal, CFScriptStatement body, CFFunctionParameter... formals) {
+		final List<CFFunctionParameter> parameters = Arrays.asList(formals);
+		return new CFFuncDeclStatement(token("function", line), id(name, line), access,
+				returnType == null ? null : id(returnType, line), parameters,
+				Collections.<CFExpression, CFExpression> emptyMap(), body, false, isFinal, false);
+	}
+	
+	private static CFIdentifier id(String name, int line) {
+		return new CFIdentifier(token(CFSCRIPTLexer.IDENTIFIER, name, line), name);
+	}
+	
+	private static CFLiteral string(String value, int line) {
+		return new CFLiteral(token(CFSCRIPTLexer.STRING_LITERAL, "'" + value + "'", line));
+	}
+	
+	private static CommonToken token(String text, int line) {
+		return token(CFSCRIPTLexer.IDENTIFIER, text, line);
+	}
+	
+	private static CommonToken token(int type, String text, int line) {
+		final CommonToken token = new CommonToken(type, text);
+		token.setLine(line);
+		token.setStartIndex(line * 10);
+		return token;
+	}
+}
@@ -0,0 +1,68 @@
+package cfml.parsing.reporting;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import cfml.parsing.CFMLParser;
+import cfml.parsing.ParseError;
+import cfml.parsing.ParseMessage;
+import cfml.parsing.ParseWarning;
+
+public class TestDiagnostics {
+	
+	private static ParseMessage error(int line) {
+		return new ParseError(line, 0, 0, "x", "error " + line);
+	}
+	
+	@Test
+	public void testRingBuffer() {
+		final MessageRingBuffer buffer = new MessageRingBuffer(3);
+		for (int i = 1; i <= 5; i++) {
+			buffer.report("file" + i, error(i));
+		}
+		assertEquals(5, buffer.getTotal());
+		assertEquals(2, buffer.getDropped());
+		final List<ParseMessage> messages = buffer.getMessages();
+		assertEquals(3, messages.size());
+		assertEquals(3, messages.get(0).getLineNumber());
+		assertEquals(5, messages.get(2).getLineNumber());
+		assertEquals("file3", buffer.getSource(0));
+	}
+	
+	@Test
+	public void testCollectorLimit() {
+		final DiagnosticCollector collector = new DiagnosticCollector(2);
+		collector.report("b.cfm", new ParseWarning(1, 0, 0, "x", "warning"));
+		for (int i = 1; i <= 4; i++) {
+			collector.report("a.cfm", error(i));
+		}
+		collector.report("a.cfm", new ParseError(9, 0, 0, "x", "fatal", true));
+		assertEquals("[b.cfm, a.cfm]", collector.getSources().toString());
+		assertEquals(3, collector.getMessages("a.cfm").size());
+		assertEquals(2, collector.getSuppressed("a.cfm"));
+		assertEquals(0, collector.getSuppressed("b.cfm"));
+		assertEquals("b.cfm\n\tLine: 1 offset:0 endoffset:0 message:warning\n"
+				+ "a.cfm\n\tLine: 1 offset:0 endoffset:0 message:error 1\n"
+				+ "\tLine: 2 offset:0 endoffset:0 message:error 2\n"
+				+ "\tLine: 9 offset:0 endoffset:0 message:fatal\n"
+				+ "\t... 2 more messages suppressed\n", collector.toString());
+	}
+	
+	@Test
+	public void testParserLimit() {
+		final CFMLParser parser = new CFMLParser();
+		parser.setMaxMessages(100);
+		for (int i = 0; i < 10000; i++) {
+			parser.addMessage(error(i));
+		}
+		assertEquals(100, parser.getMessages().size());
+		assertEquals(9900, parser.getSuppressedMessages());
+		final String text = parser.printMessages();
+		assertEquals(101, text.split("\n").length);
+		parser.clearMessages();
+		assertEquals(0, parser.getSuppressedMessages());
+	}
+}